@@ -0,0 +1,21 @@
+#!/bin/sh
+# Lanzador de linea de comandos (ver chip8.Main para las opciones).
+# Usa el archivo AppCDS generado por el objetivo "cds" de build.xml si
+# existe; sin el, o con otro JDK, la JVM arranca igual pero mas lento.
+DIR=$(dirname "$0")
+# El jar de NetBeans lleva el nombre del proyecto (build.xml: chip8-git);
+# si se renombro, se usa el unico jar de dist/
+JAR=${CHIP8_JAR:-$DIR/dist/chip8-git.jar}
+if [ ! -f "$JAR" ] && [ -z "$CHIP8_JAR" ]; then
+    for CANDIDATO in "$DIR"/dist/*.jar; do
+        [ -f "$CANDIDATO" ] && JAR=$CANDIDATO
+    done
+fi
+JSA=${JAR%/*}/chip8.jsa
+
+OPCIONES="-XX:+UseSerialGC -XX:-UsePerfData"
+if [ -f "$JSA" ]; then
+    OPCIONES="$OPCIONES -XX:SharedArchiveFile=$JSA -Xshare:auto"
+fi
+
+exec java $OPCIONES $CHIP8_JAVA_OPTS -cp "$JAR" chip8.Main "$@"
@@ -0,0 +1,287 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class ArenaChip8 {
+    /***********************
+     * Estado de muchas maquinas fuera del heap, en un solo bloque contiguo.
+     *
+     *   Cada maquina ocupa una ranura de TAM_RANURA bytes (multiplo de 64)
+     *   con memoria, pantalla, registros, stack, timers y contadores en
+     *   posiciones fijas. El bloque es un ByteBuffer directo, o un archivo
+     *   mapeado que otro proceso puede abrir con el mismo formato. El GC no
+     *   ve nada de esto sin importar cuantas maquinas haya, y una captura
+     *   de todas las maquinas es una sola copia (copiarA).
+     *
+     *   InterpreteArena ejecuta las maquinas directamente sobre la ranura.
+     *
+     *   Formato del archivo: encabezado de 64 bytes
+     *      [MAGICO: 4][VERSION: 4][instancias: 4][TAM_RANURA: 4][reservado]
+     *   seguido de las ranuras. Todo en el orden de bytes nativo.
+     **************************/
+
+    // Desplazamientos dentro de la ranura
+    static final int MEMORIA = 0;          // 4096 bytes
+    static final int PANTALLA = 4096;      // 32 longs, como Chip8.gfx
+    static final int REGISTROS = 4352;     // 16 ints
+    static final int PILA = 4416;          // 16 ints
+    static final int INDICE = 4480;
+    static final int PC = 4484;
+    static final int SP = 4488;
+    static final int DELAY = 4492;
+    static final int SONIDO = 4496;
+    static final int SEMILLA = 4500;
+    static final int TECLAS = 4504;        // mascara, bit n = tecla n
+    static final int BANDERAS = 4508;
+    static final int CICLOS = 4512;        // long
+    static final int INDEFINIDOS = 4520;   // long
+
+    static final int BANDERA_DIBUJO = 1;
+    static final int BANDERA_ESPERA = 2;
+
+    public static final int TAM_RANURA = 4544;
+    public static final int ENCABEZADO = 64;
+
+    private static final int MAGICO = 0x43384152; // "C8AR"
+    private static final int VERSION = 1;
+
+    final ByteBuffer buffer;
+    final private int instancias;
+
+    private ArenaChip8(ByteBuffer buffer, int instancias) {
+        this.buffer = buffer.order(ByteOrder.nativeOrder());
+        this.instancias = instancias;
+    }
+
+    public static ArenaChip8 crear(int instancias) {
+        ArenaChip8 arena = new ArenaChip8(
+                ByteBuffer.allocateDirect(ENCABEZADO + (instancias * TAM_RANURA)), instancias);
+        arena.escribirEncabezado();
+        return arena;
+    }
+
+    /*
+    * Mapea el archivo como arena. Si el archivo ya tiene una arena con el
+    * mismo formato y numero de instancias se usa tal cual (estado compartido
+    * con otro proceso); un archivo vacio se convierte en una arena vacia.
+    * Cualquier otro archivo se rechaza sin modificarlo.
+    */
+    public static ArenaChip8 mapear(Path archivo, int instancias) throws IOException {
+        long tam = ENCABEZADO + ((long)instancias * TAM_RANURA);
+
+        try(FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            boolean existente = canal.size() > 0;
+            if(existente){
+                ByteBuffer encabezado = ByteBuffer.allocate(16).order(ByteOrder.nativeOrder());
+                canal.read(encabezado, 0);
+                if(encabezado.hasRemaining()
+                        || encabezado.getInt(0) != MAGICO
+                        || encabezado.getInt(4) != VERSION
+                        || encabezado.getInt(12) != TAM_RANURA)
+                    throw new IOException("El archivo no es una arena compatible: " + archivo);
+                if(encabezado.getInt(8) != instancias || canal.size() < tam)
+                    throw new IOException("La arena tiene " + encabezado.getInt(8)
+                            + " instancias, se pidieron " + instancias + ": " + archivo);
+            }
+
+            ArenaChip8 arena = new ArenaChip8(canal.map(FileChannel.MapMode.READ_WRITE, 0, tam), instancias);
+            if(!existente)
+                arena.escribirEncabezado();
+            return arena;
+        }
+    }
+
+    private void escribirEncabezado() {
+        buffer.putInt(0, MAGICO);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, instancias);
+        buffer.putInt(12, TAM_RANURA);
+    }
+
+    public int getInstancias() {
+        return instancias;
+    }
+
+    // Posicion de la ranura dentro del buffer
+    int base(int ranura) {
+        if(ranura < 0 || ranura >= instancias)
+            throw new IndexOutOfBoundsException("Ranura " + ranura);
+        return ENCABEZADO + (ranura * TAM_RANURA);
+    }
+
+    /****************************************************************
+     * Carga y conversion desde/hacia Chip8
+     ****************************************************************/
+
+    // Deja la ranura como una maquina recien inicializada con la imagen;
+    // las ranuras son de 4 KB, sin XO-CHIP ni peculiaridades de la ROM
+    public void cargar(int ranura, ImagenRom imagen, long semilla) {
+        if(imagen.isXo())
+            throw new IllegalArgumentException("La arena no soporta XO-CHIP");
+        ConfiguracionRom configuracion = ConfiguracionRom.buscar(imagen.getHuella());
+        if(configuracion != null && configuracion.getPeculiaridades() != 0)
+            throw new IllegalArgumentException("La arena no soporta las peculiaridades de " + configuracion.getNombre());
+        int base = base(ranura);
+        for(int i = MEMORIA; i < TAM_RANURA; i += 8)
+            buffer.putLong(base + i, 0);
+
+        for(int pagina = 0; pagina < ImagenRom.PAGINAS; pagina++){
+            byte datos[] = imagen.paginas[pagina];
+            if(datos == ImagenRom.PAGINA_CERO)
+                continue;
+            for(int i = 0; i < datos.length; i++)
+                buffer.put(base + MEMORIA + (pagina * ImagenRom.TAM_PAGINA) + i, datos[i]);
+        }
+
+        buffer.putInt(base + PC, 0x200);
+        buffer.putInt(base + SEMILLA, (int)(semilla ^ (semilla >>> 32)) | 1);
+        buffer.putInt(base + BANDERAS, BANDERA_DIBUJO);
+    }
+
+    public void importar(int ranura, Chip8 chip) {
+        if(chip.isXo())
+            throw new IllegalArgumentException("La arena no soporta XO-CHIP");
+        if(chip.peculiaridades != 0)
+            throw new IllegalArgumentException("La arena no soporta peculiaridades de la ROM");
+        EstadoChip8 estado = new EstadoChip8();
+        chip.guardarEstado(estado);
+        int base = base(ranura);
+
+        for(int pagina = 0; pagina < ImagenRom.PAGINAS; pagina++){
+            byte datos[] = estado.paginas[pagina];
+            for(int i = 0; i < datos.length; i++)
+                buffer.put(base + MEMORIA + (pagina * ImagenRom.TAM_PAGINA) + i, datos[i]);
+        }
+        for(int i = 0; i < 32; i++)
+            buffer.putLong(base + PANTALLA + (i * 8), estado.gfx[i]);
+        for(int i = 0; i < 16; i++){
+            buffer.putInt(base + REGISTROS + (i * 4), estado.V[i]);
+            buffer.putInt(base + PILA + (i * 4), estado.stack[i]);
+        }
+
+        int teclas = 0;
+        for(int i = 0; i < 16; i++)
+            teclas |= (estado.key[i] != 0 ? 1 : 0) << i;
+
+        buffer.putInt(base + INDICE, estado.I);
+        buffer.putInt(base + PC, estado.pc);
+        buffer.putInt(base + SP, estado.sp);
+        buffer.putInt(base + DELAY, estado.delayTimer);
+        buffer.putInt(base + SONIDO, estado.soundTimer);
+        buffer.putInt(base + SEMILLA, estado.semillaRng);
+        buffer.putInt(base + TECLAS, teclas);
+        buffer.putInt(base + BANDERAS,
+                (estado.drawFlag ? BANDERA_DIBUJO : 0) | (estado.esperandoTecla ? BANDERA_ESPERA : 0));
+        buffer.putLong(base + CICLOS, estado.ciclosEjecutados);
+        buffer.putLong(base + INDEFINIDOS, estado.opcodesIndefinidos);
+    }
+
+    public void exportar(int ranura, Chip8 chip) {
+        EstadoChip8 estado = new EstadoChip8();
+        int base = base(ranura);
+
+        for(int pagina = 0; pagina < ImagenRom.PAGINAS; pagina++){
+            byte datos[] = new byte[ImagenRom.TAM_PAGINA];
+            for(int i = 0; i < datos.length; i++)
+                datos[i] = buffer.get(base + MEMORIA + (pagina * ImagenRom.TAM_PAGINA) + i);
+            estado.paginas[pagina] = datos;
+        }
+        for(int i = 0; i < 32; i++)
+            estado.gfx[i] = buffer.getLong(base + PANTALLA + (i * 8));
+        for(int i = 0; i < 16; i++){
+            estado.V[i] = buffer.getInt(base + REGISTROS + (i * 4));
+            estado.stack[i] = buffer.getInt(base + PILA + (i * 4));
+            estado.key[i] = (buffer.getInt(base + TECLAS) >> i) & 1;
+        }
+
+        int banderas = buffer.getInt(base + BANDERAS);
+        estado.I = buffer.getInt(base + INDICE);
+        estado.pc = buffer.getInt(base + PC);
+        estado.sp = buffer.getInt(base + SP);
+        estado.delayTimer = buffer.getInt(base + DELAY);
+        estado.soundTimer = buffer.getInt(base + SONIDO);
+        estado.semillaRng = buffer.getInt(base + SEMILLA);
+        estado.drawFlag = (banderas & BANDERA_DIBUJO) != 0;
+        estado.esperandoTecla = (banderas & BANDERA_ESPERA) != 0;
+        estado.ciclosEjecutados = buffer.getLong(base + CICLOS);
+        estado.opcodesIndefinidos = buffer.getLong(base + INDEFINIDOS);
+
+        // La ranura no guarda la configuracion de la ROM: se conserva la
+        // de la maquina destino
+        estado.configuracion = chip.getConfiguracion();
+        chip.restaurarEstado(estado);
+    }
+
+    /****************************************************************
+     * Acceso por ranura
+     ****************************************************************/
+    public void setTeclas(int ranura, int teclas) {
+        buffer.putInt(base(ranura) + TECLAS, teclas & 0xFFFF);
+    }
+
+    public void escribirPantalla(int ranura, long[] filas) {
+        int base = base(ranura);
+        for(int i = 0; i < 32; i++)
+            filas[i] = buffer.getLong(base + PANTALLA + (i * 8));
+    }
+
+    public long getCiclosEjecutados(int ranura) {
+        return buffer.getLong(base(ranura) + CICLOS);
+    }
+
+    // Mismo hash que Chip8.hashEstado para el mismo estado
+    public long hashEstado(int ranura) {
+        int base = base(ranura);
+        long hash = 0xCBF29CE484222325L;
+        for(int i = 0; i < 4096; i++)
+            hash = (hash ^ (buffer.get(base + MEMORIA + i) & 0xFF)) * 0x100000001B3L;
+        for(int i = 0; i < 16; i++)
+            hash = (hash ^ buffer.getInt(base + REGISTROS + (i * 4))) * 0x100000001B3L;
+        for(int i = 0; i < 16; i++)
+            hash = (hash ^ buffer.getInt(base + PILA + (i * 4))) * 0x100000001B3L;
+        for(int i = 0; i < 32; i++)
+            hash = (hash ^ buffer.getLong(base + PANTALLA + (i * 8))) * 0x100000001B3L;
+        hash = (hash ^ buffer.getInt(base + INDICE)) * 0x100000001B3L;
+        hash = (hash ^ buffer.getInt(base + PC)) * 0x100000001B3L;
+        hash = (hash ^ buffer.getInt(base + SP)) * 0x100000001B3L;
+        hash = (hash ^ buffer.getInt(base + DELAY)) * 0x100000001B3L;
+        hash = (hash ^ buffer.getInt(base + SONIDO)) * 0x100000001B3L;
+        hash = (hash ^ buffer.getInt(base + SEMILLA)) * 0x100000001B3L;
+        return hash;
+    }
+
+    /****************************************************************
+     * Capturas
+     ****************************************************************/
+
+    // Copia todas las ranuras a otra arena del mismo tamano en una operacion
+    public void copiarA(ArenaChip8 destino) {
+        if(destino.instancias != instancias)
+            throw new IllegalArgumentException("Arenas de distinto tamano");
+
+        ByteBuffer origen = buffer.duplicate();
+        origen.position(ENCABEZADO);
+        ByteBuffer copia = destino.buffer.duplicate();
+        copia.position(ENCABEZADO);
+        copia.put(origen);
+    }
+
+    public void copiarRanura(int desde, int hasta) {
+        ByteBuffer origen = buffer.duplicate();
+        origen.position(base(desde)).limit(base(desde) + TAM_RANURA);
+        ByteBuffer copia = buffer.duplicate();
+        copia.position(base(hasta));
+        copia.put(origen);
+    }
+}
@@ -0,0 +1,155 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+public class AudioChip8 implements SalidaSonido {
+    /***********************
+     * Tono del Chip-8 con javax.sound.
+     *
+     *   Un hilo dedicado alimenta un SourceDataLine con un buffer pequeño,
+     *   copiando bloques pre-renderizados de onda cuadrada o de silencio.
+     *   El estado encendido/apagado se publica con un volatile desde el
+     *   timer de sonido, de modo que el emulador nunca espera al audio.
+     *
+     *   En XO-CHIP (setPatron) el bloque se genera en el hilo de audio a
+     *   partir del patron de 128 bits, con la fase continua entre bloques;
+     *   el patron se publica como un objeto inmutable, uno por cada F002 o
+     *   FX3A.
+     **************************/
+
+    // 22050 Hz / 441 Hz = 50 muestras por periodo exactas
+    private static final float MUESTREO = 22050f;
+    private static final int MUESTRAS_POR_PERIODO = 50;
+
+    // Cada bloque contiene dos periodos completos (~4.5 ms), asi la fase
+    // de la onda se mantiene continua entre bloques
+    private static final int BLOQUE = MUESTRAS_POR_PERIODO * 2;
+
+    // Buffer de la linea: ~11.6 ms, menos de un frame a 60 Hz
+    private static final int BUFFER_LINEA = 256;
+
+    private static final byte AMPLITUD = 24;
+
+    final private byte tono[] = new byte[BLOQUE];
+    final private byte silencio[] = new byte[BLOQUE];
+
+    final private SourceDataLine linea;
+    final private Thread hilo;
+
+    private volatile boolean activo;
+    private volatile boolean abierto = true;
+
+    // Patron de XO-CHIP; null mientras la ROM no lo define
+    private volatile Patron patron;
+    final private byte bloquePatron[] = new byte[BLOQUE];
+    private double fase;
+
+    private static final class Patron {
+        final long alto;
+        final long bajo;
+        // Bits del patron que avanza cada muestra
+        final double paso;
+
+        Patron(byte[] bytes, int tono) {
+            long alto = 0;
+            long bajo = 0;
+            for(int i = 0; i < 8; i++){
+                alto = (alto << 8) | (bytes[i] & 0xFF);
+                bajo = (bajo << 8) | (bytes[i + 8] & 0xFF);
+            }
+            this.alto = alto;
+            this.bajo = bajo;
+            this.paso = 4000 * Math.pow(2, (tono - 64) / 48.0) / MUESTREO;
+        }
+
+        boolean bit(int indice) {
+            long palabra = indice < 64 ? alto : bajo;
+            return ((palabra >>> (63 - (indice & 63))) & 1) != 0;
+        }
+    }
+
+    private AudioChip8(SourceDataLine linea) {
+        this.linea = linea;
+
+        // Onda cuadrada pre-renderizada
+        for(int i = 0; i < BLOQUE; i++) {
+            tono[i] = (i % MUESTRAS_POR_PERIODO) < (MUESTRAS_POR_PERIODO / 2)
+                    ? AMPLITUD : -AMPLITUD;
+        }
+
+        hilo = new Thread(this::alimentarLinea, "chip8-audio");
+        hilo.setDaemon(true);
+        hilo.setPriority(Thread.MAX_PRIORITY);
+        hilo.start();
+    }
+
+    /*
+    * Abre la linea de audio por defecto. Si no existe un mezclador (por
+    * ejemplo en un servidor sin tarjeta de sonido) se regresa la salida nula.
+    */
+    public static SalidaSonido crear() {
+        AudioFormat formato = new AudioFormat(MUESTREO, 8, 1, true, false);
+        try {
+            SourceDataLine linea = AudioSystem.getSourceDataLine(formato);
+            linea.open(formato, BUFFER_LINEA);
+            linea.start();
+            return new AudioChip8(linea);
+        } catch (LineUnavailableException | IllegalArgumentException | SecurityException ex) {
+            Logger.getLogger(AudioChip8.class.getName())
+                    .log(Level.INFO, "Audio no disponible, se usa salida nula: {0}", ex.toString());
+            return SalidaSonido.NULA;
+        }
+    }
+
+    @Override
+    public void setActivo(boolean activo) {
+        this.activo = activo;
+    }
+
+    @Override
+    public void setPatron(byte[] patron, int tono) {
+        this.patron = new Patron(patron, tono);
+    }
+
+    public void cerrar() {
+        abierto = false;
+        hilo.interrupt();
+    }
+
+    private void alimentarLinea() {
+        // write() bloquea mientras la linea esta llena, lo que marca el ritmo
+        // del hilo sin necesidad de dormirlo
+        while(abierto) {
+            Patron actual = patron;
+            if(!activo)
+                linea.write(silencio, 0, BLOQUE);
+            else if(actual == null)
+                linea.write(tono, 0, BLOQUE);
+            else
+                linea.write(generar(actual), 0, BLOQUE);
+        }
+        linea.stop();
+        linea.close();
+    }
+
+    private byte[] generar(Patron actual) {
+        for(int i = 0; i < BLOQUE; i++) {
+            bloquePatron[i] = actual.bit((int)fase) ? AMPLITUD : -AMPLITUD;
+            fase += actual.paso;
+            if(fase >= 128)
+                fase -= 128;
+        }
+        return bloquePatron;
+    }
+}
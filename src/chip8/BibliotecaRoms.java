@@ -0,0 +1,128 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class BibliotecaRoms {
+    /***********************
+     * Registro de ROMs compartido, indexado por el SHA-256 del contenido.
+     *
+     *   Cada ROM se lee una sola vez (mapeando el archivo con FileChannel, o
+     *   desde un zip) y se convierte en una ImagenRom inmutable. Todas las
+     *   sesiones del mismo juego cargan esa imagen con
+     *   Chip8.cargarJuego(ImagenRom) y comparten sus paginas de memoria.
+     **************************/
+
+    final private ConcurrentHashMap<String, ImagenRom> imagenes = new ConcurrentHashMap<>();
+
+    // Mapea el archivo y registra su contenido
+    public ImagenRom cargar(Path archivo) throws IOException {
+        try(FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)){
+            if(canal.size() > 4096 - 512)
+                throw new IOException("ROM demasiado grande: " + archivo);
+
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            return registrar(mapa);
+        }
+    }
+
+    // Registra cada entrada (que no sea directorio) de un archivo zip
+    public List<ImagenRom> cargarZip(Path archivo) throws IOException {
+        List<ImagenRom> cargadas = new ArrayList<>();
+
+        try(ZipFile zip = new ZipFile(archivo.toFile())){
+            Enumeration<? extends ZipEntry> entradas = zip.entries();
+            while(entradas.hasMoreElements()){
+                ZipEntry entrada = entradas.nextElement();
+                if(entrada.isDirectory())
+                    continue;
+
+                try(InputStream in = zip.getInputStream(entrada)){
+                    cargadas.add(registrar(ByteBuffer.wrap(leer(in, entrada.getName()))));
+                }
+            }
+        }
+        return cargadas;
+    }
+
+    public ImagenRom registrar(byte[] rom) throws IOException {
+        return registrar(ByteBuffer.wrap(rom));
+    }
+
+    /*
+    * Si el contenido ya estaba registrado se regresa la imagen existente
+    * sin copiar nada; solo se hace el hash.
+    */
+    private ImagenRom registrar(ByteBuffer contenido) throws IOException {
+        String hash = sha256(contenido.duplicate());
+
+        ImagenRom imagen = imagenes.get(hash);
+        if(imagen != null)
+            return imagen;
+
+        byte rom[] = new byte[contenido.remaining()];
+        contenido.duplicate().get(rom);
+
+        imagen = ImagenRom.crear(rom, hash);
+        ImagenRom previa = imagenes.putIfAbsent(hash, imagen);
+        return previa != null ? previa : imagen;
+    }
+
+    // Imagen registrada con ese hash, o null
+    public ImagenRom obtener(String hash) {
+        return imagenes.get(hash);
+    }
+
+    public int getTamano() {
+        return imagenes.size();
+    }
+
+    public static String sha256(ByteBuffer contenido) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(contenido);
+
+            StringBuilder hex = new StringBuilder(64);
+            for(byte b: digest.digest()){
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+
+        } catch (NoSuchAlgorithmException ex) {
+            // Todas las JVM deben incluir SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static byte[] leer(InputStream in, String nombre) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        byte buffer[] = new byte[1024];
+        int leidos;
+        while((leidos = in.read(buffer)) != -1){
+            salida.write(buffer, 0, leidos);
+            if(salida.size() > 4096 - 512)
+                throw new IOException("ROM demasiado grande: " + nombre);
+        }
+        return salida.toByteArray();
+    }
+}
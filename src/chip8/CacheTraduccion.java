@@ -0,0 +1,372 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+public class CacheTraduccion {
+    /***********************
+     * Cache en disco del codigo analizado de cada ROM (ver NucleoFusion),
+     * indexado por el SHA-256 del contenido (ImagenRom.getHash).
+     *
+     *   Un archivo por ROM, <hash>.c8t:
+     *      [magia "C8TR"][formato][version del analisis][tamano de la ROM]
+     *      [paginas: un bit por pagina guardada][CRC32 de los datos]
+     *      [SHA-256: 32 bytes][relleno hasta 64 bytes]
+     *      [datos: 256 enteros por cada pagina guardada, en orden]
+     *
+     *   Al cargar, el archivo se mapea en memoria y se valida completo; si
+     *   algo no coincide (otro formato, otra version del analisis, otra ROM,
+     *   archivo truncado o datos corruptos) se borra y se analiza de nuevo.
+     *   Los archivos se escriben en uno temporal y se renombran, asi otro
+     *   proceso nunca ve uno a medias.
+     *
+     *   El tamano total esta acotado: al guardar se borran los archivos
+     *   usados hace mas tiempo (la fecha de modificacion se actualiza en
+     *   cada acierto). Los errores de disco nunca detienen la emulacion,
+     *   solo se registran y la ROM se analiza como si no hubiera cache.
+     **************************/
+
+    public static final int FORMATO = 1;
+
+    private static final int MAGIA = 0x43385452;
+    private static final int ENCABEZADO = 64;
+    private static final int BYTES_PAGINA = ImagenRom.TAM_PAGINA * 4;
+    private static final String EXTENSION = ".c8t";
+
+    // Paginas guardadas y sus datos (256 enteros por pagina, en orden)
+    public static class Entrada {
+        public final int paginas;
+        public final IntBuffer datos;
+
+        Entrada(int paginas, IntBuffer datos) {
+            this.paginas = paginas;
+            this.datos = datos;
+        }
+    }
+
+    final private Path directorio;
+    final private long maxBytes;
+
+    final private AtomicLong aciertos = new AtomicLong();
+    final private AtomicLong fallos = new AtomicLong();
+    final private AtomicLong descartadas = new AtomicLong();
+    final private AtomicLong guardadas = new AtomicLong();
+    final private AtomicLong desalojadas = new AtomicLong();
+
+    public CacheTraduccion(Path directorio, long maxBytes) {
+        this.directorio = directorio;
+        this.maxBytes = maxBytes;
+    }
+
+    private static class Predeterminada {
+        static final CacheTraduccion INSTANCIA = crearPredeterminada();
+    }
+
+    /*
+    * Cache del usuario: -Dchip8.cache=<directorio> (por omision
+    * ~/.chip8/cache, "no" la desactiva) y -Dchip8.cache.max=<bytes>.
+    * Regresa null si esta desactivada.
+    */
+    public static CacheTraduccion predeterminada() {
+        return Predeterminada.INSTANCIA;
+    }
+
+    private static CacheTraduccion crearPredeterminada() {
+        String ruta = System.getProperty("chip8.cache");
+        if("no".equals(ruta))
+            return null;
+
+        Path directorio = ruta != null
+                ? Paths.get(ruta)
+                : Paths.get(System.getProperty("user.home"), ".chip8", "cache");
+        return new CacheTraduccion(directorio, Long.getLong("chip8.cache.max", 16L << 20));
+    }
+
+    public Path getDirectorio() {
+        return directorio;
+    }
+
+    public long getAciertos() {
+        return aciertos.get();
+    }
+
+    public long getFallos() {
+        return fallos.get();
+    }
+
+    public long getDescartadas() {
+        return descartadas.get();
+    }
+
+    public long getGuardadas() {
+        return guardadas.get();
+    }
+
+    public long getDesalojadas() {
+        return desalojadas.get();
+    }
+
+    /*
+    * Traduccion guardada de la imagen, o null si no hay o si estaba
+    * obsoleta (en ese caso se borra). Los datos apuntan al archivo mapeado.
+    */
+    public Entrada leer(ImagenRom imagen, int version) {
+        byte hash[] = hashBinario(imagen.getHash());
+        if(hash == null)
+            return null;
+
+        Path archivo = directorio.resolve(imagen.getHash() + EXTENSION);
+        if(!Files.isRegularFile(archivo)){
+            fallos.incrementAndGet();
+            return null;
+        }
+
+        try(FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)){
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+
+            String problema = validar(mapa, hash, imagen.getTamano(), version);
+            if(problema != null){
+                descartar(archivo, problema);
+                return null;
+            }
+
+            // Uso reciente para el desalojo
+            Files.setLastModifiedTime(archivo, FileTime.fromMillis(System.currentTimeMillis()));
+            aciertos.incrementAndGet();
+
+            mapa.position(ENCABEZADO);
+            return new Entrada(mapa.getInt(16), mapa.slice().asIntBuffer());
+
+        } catch (IOException ex) {
+            Logger.getLogger(CacheTraduccion.class.getName())
+                    .log(Level.WARNING, "No se pudo leer " + archivo, ex);
+            fallos.incrementAndGet();
+            return null;
+        }
+    }
+
+    // Motivo por el que el archivo no sirve, o null si es valido
+    private static String validar(ByteBuffer mapa, byte[] hash, int tamano, int version) {
+        if(mapa.capacity() < ENCABEZADO || mapa.getInt(0) != MAGIA)
+            return "no es un archivo de cache";
+        if(mapa.getInt(4) != FORMATO)
+            return "formato " + mapa.getInt(4);
+        if(mapa.getInt(8) != version)
+            return "version del analisis " + mapa.getInt(8);
+        if(mapa.getInt(12) != tamano)
+            return "tamano de la ROM " + mapa.getInt(12);
+
+        for(int i = 0; i < hash.length; i++){
+            if(mapa.get(24 + i) != hash[i])
+                return "otra ROM";
+        }
+
+        int paginas = mapa.getInt(16);
+        if((paginas >>> ImagenRom.PAGINAS) != 0
+                || mapa.capacity() != ENCABEZADO + (Integer.bitCount(paginas) * BYTES_PAGINA))
+            return "archivo truncado";
+
+        ByteBuffer datos = mapa.duplicate();
+        datos.position(ENCABEZADO);
+        CRC32 crc = new CRC32();
+        crc.update(datos);
+        if((int)crc.getValue() != mapa.getInt(20))
+            return "datos corruptos";
+
+        return null;
+    }
+
+    /*
+    * Borra la traduccion de la imagen; la usa el motor si los datos pasan
+    * la validacion del archivo pero no la suya.
+    */
+    public void descartar(ImagenRom imagen, String problema) {
+        descartar(directorio.resolve(imagen.getHash() + EXTENSION), problema);
+    }
+
+    private void descartar(Path archivo, String problema) {
+        descartadas.incrementAndGet();
+        Logger.getLogger(CacheTraduccion.class.getName())
+                .log(Level.INFO, "Cache obsoleta {0}: {1}", new Object[]{archivo.getFileName(), problema});
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException ex) {
+            Logger.getLogger(CacheTraduccion.class.getName())
+                    .log(Level.WARNING, "No se pudo borrar " + archivo, ex);
+        }
+    }
+
+    /*
+    * Guarda las paginas indicadas de la tabla (256 enteros por pagina,
+    * indexada por direccion) y desaloja lo menos usado si se pasa del
+    * tamano maximo.
+    */
+    public void guardar(ImagenRom imagen, int version, int paginas, int[] tabla) {
+        byte hash[] = hashBinario(imagen.getHash());
+        if(hash == null || paginas == 0)
+            return;
+
+        ByteBuffer buffer = ByteBuffer.allocate(ENCABEZADO + (Integer.bitCount(paginas) * BYTES_PAGINA));
+        buffer.position(ENCABEZADO);
+        IntBuffer datos = buffer.asIntBuffer();
+        for(int pagina = 0; pagina < ImagenRom.PAGINAS; pagina++){
+            if((paginas & (1 << pagina)) != 0)
+                datos.put(tabla, pagina * ImagenRom.TAM_PAGINA, ImagenRom.TAM_PAGINA);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer);
+
+        buffer.putInt(0, MAGIA);
+        buffer.putInt(4, FORMATO);
+        buffer.putInt(8, version);
+        buffer.putInt(12, imagen.getTamano());
+        buffer.putInt(16, paginas);
+        buffer.putInt(20, (int)crc.getValue());
+        for(int i = 0; i < hash.length; i++)
+            buffer.put(24 + i, hash[i]);
+        buffer.clear();
+
+        Path archivo = directorio.resolve(imagen.getHash() + EXTENSION);
+        try {
+            Files.createDirectories(directorio);
+            Path temporal = Files.createTempFile(directorio, imagen.getHash(), ".tmp");
+            try(FileChannel canal = FileChannel.open(temporal, StandardOpenOption.WRITE)){
+                while(buffer.hasRemaining())
+                    canal.write(buffer);
+            }
+
+            try {
+                Files.move(temporal, archivo, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING);
+            }
+            guardadas.incrementAndGet();
+
+            desalojar(archivo);
+
+        } catch (IOException ex) {
+            Logger.getLogger(CacheTraduccion.class.getName())
+                    .log(Level.WARNING, "No se pudo guardar " + archivo, ex);
+        }
+    }
+
+    // Borra los archivos usados hace mas tiempo hasta quedar bajo el maximo
+    private void desalojar(Path conservar) throws IOException {
+        List<Path> archivos = new ArrayList<>();
+        try(DirectoryStream<Path> contenido = Files.newDirectoryStream(directorio, "*" + EXTENSION)){
+            for(Path archivo: contenido)
+                archivos.add(archivo);
+        }
+
+        long usos[] = new long[archivos.size()];
+        long total = 0;
+        for(int i = 0; i < usos.length; i++){
+            usos[i] = Files.getLastModifiedTime(archivos.get(i)).toMillis();
+            total += Files.size(archivos.get(i));
+        }
+
+        while(total > maxBytes){
+            int masViejo = -1;
+            for(int i = 0; i < usos.length; i++){
+                if(archivos.get(i) != null && !archivos.get(i).equals(conservar)
+                        && (masViejo < 0 || usos[i] < usos[masViejo]))
+                    masViejo = i;
+            }
+            if(masViejo < 0)
+                break;
+
+            total -= Files.size(archivos.get(masViejo));
+            Files.deleteIfExists(archivos.get(masViejo));
+            archivos.set(masViejo, null);
+            desalojadas.incrementAndGet();
+        }
+    }
+
+    // SHA-256 en hexadecimal a bytes; null si no lo es (imagenes sin registrar)
+    private static byte[] hashBinario(String hash) {
+        if(hash.length() != 64)
+            return null;
+
+        byte binario[] = new byte[32];
+        for(int i = 0; i < binario.length; i++){
+            int alto = Character.digit(hash.charAt(i * 2), 16);
+            int bajo = Character.digit(hash.charAt((i * 2) + 1), 16);
+            if(alto < 0 || bajo < 0)
+                return null;
+            binario[i] = (byte)((alto << 4) | bajo);
+        }
+        return binario;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "%s: %d aciertos, %d fallos, %d descartadas, %d guardadas, %d desalojadas",
+                directorio, getAciertos(), getFallos(), getDescartadas(),
+                getGuardadas(), getDesalojadas()
+        );
+    }
+
+    /*
+    * Dos sesiones seguidas de cada ROM con la misma cache: la primera
+    * analiza y guarda, la segunda deberia precargar todo.
+    */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2){
+            System.out.println("Uso: CacheTraduccion <directorio de cache> <rom>...");
+            return;
+        }
+
+        CacheTraduccion cache = new CacheTraduccion(Paths.get(args[0]), 16L << 20);
+        BibliotecaRoms biblioteca = new BibliotecaRoms();
+        int teclado[] = new int[16];
+
+        for(int i = 1; i < args.length; i++){
+            ImagenRom imagen = biblioteca.cargar(Paths.get(args[i]));
+            StringBuilder linea = new StringBuilder(Paths.get(args[i]).getFileName().toString());
+
+            for(int sesion = 0; sesion < 2; sesion++){
+                NucleoFusion nucleo = new NucleoFusion(cache);
+                Chip8 chip = new Chip8(false);
+                chip.setNucleo(nucleo);
+                chip.init();
+                chip.setSemilla(1);
+                chip.cargarJuego(imagen);
+
+                for(int frame = 0; frame < 3600 && chip.RUNNING; frame++){
+                    teclado[(frame / 30) % 16] = (frame % 60) < 30 ? 1 : 0;
+                    chip.setKeyPad(teclado);
+                    chip.emularFrame();
+                }
+                nucleo.guardarTraduccion();
+                linea.append(sesion == 0 ? ": analisis en frio " : ", precargada ").append(nucleo.getAnalisis());
+            }
+            System.out.println(linea);
+        }
+        System.out.println(cache);
+    }
+}
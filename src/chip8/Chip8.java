@@ -6,11 +6,11 @@ package chip8;
  */
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Random;
 
 public class Chip8 {
@@ -40,66 +40,84 @@ public class Chip8 {
      **************************/
 
     // Font set del Chip-8. Cada numero/caracter es 4x5 unidades
-    final private int chipFontset[] = {
-            0xF0, 0x90, 0x90, 0x90, 0xF0, // 0
+    final static byte chipFontset[] = {
+            (byte)0xF0, (byte)0x90, (byte)0x90, (byte)0x90, (byte)0xF0, // 0
             0x20, 0x60, 0x20, 0x20, 0x70, // 1
-            0xF0, 0x10, 0xF0, 0x80, 0xF0, // 2
-            0xF0, 0x10, 0xF0, 0x10, 0xF0, // 3
-            0x90, 0x90, 0xF0, 0x10, 0x10, // 4
-            0xF0, 0x80, 0xF0, 0x10, 0xF0, // 5
-            0xF0, 0x80, 0xF0, 0x90, 0xF0, // 6
-            0xF0, 0x10, 0x20, 0x40, 0x40, // 7
-            0xF0, 0x90, 0xF0, 0x90, 0xF0, // 8
-            0xF0, 0x90, 0xF0, 0x10, 0xF0, // 9
-            0xF0, 0x90, 0xF0, 0x90, 0x90, // A
-            0xE0, 0x90, 0xE0, 0x90, 0xE0, // B
-            0xF0, 0x80, 0x80, 0x80, 0xF0, // C
-            0xE0, 0x90, 0x90, 0x90, 0xE0, // D
-            0xF0, 0x80, 0xF0, 0x80, 0xF0, // E
-            0xF0, 0x80, 0xF0, 0x80, 0x80  // F
+            (byte)0xF0, 0x10, (byte)0xF0, (byte)0x80, (byte)0xF0, // 2
+            (byte)0xF0, 0x10, (byte)0xF0, 0x10, (byte)0xF0, // 3
+            (byte)0x90, (byte)0x90, (byte)0xF0, 0x10, 0x10, // 4
+            (byte)0xF0, (byte)0x80, (byte)0xF0, 0x10, (byte)0xF0, // 5
+            (byte)0xF0, (byte)0x80, (byte)0xF0, (byte)0x90, (byte)0xF0, // 6
+            (byte)0xF0, 0x10, 0x20, 0x40, 0x40, // 7
+            (byte)0xF0, (byte)0x90, (byte)0xF0, (byte)0x90, (byte)0xF0, // 8
+            (byte)0xF0, (byte)0x90, (byte)0xF0, 0x10, (byte)0xF0, // 9
+            (byte)0xF0, (byte)0x90, (byte)0xF0, (byte)0x90, (byte)0x90, // A
+            (byte)0xE0, (byte)0x90, (byte)0xE0, (byte)0x90, (byte)0xE0, // B
+            (byte)0xF0, (byte)0x80, (byte)0x80, (byte)0x80, (byte)0xF0, // C
+            (byte)0xE0, (byte)0x90, (byte)0x90, (byte)0x90, (byte)0xE0, // D
+            (byte)0xF0, (byte)0x80, (byte)0xF0, (byte)0x80, (byte)0xF0, // E
+            (byte)0xF0, (byte)0x80, (byte)0xF0, (byte)0x80, (byte)0x80  // F
     };
 
     // Memoria del el chip: 0x1000 memory locations (4k)
-    final private int memory[] = new int[4096];
+    //   Dividida en 16 paginas de 256 bytes (ver ImagenRom). Una pagina
+    //   puede ser compartida con una imagen, un EstadoChip8 u otro Chip8, y
+    //   se copia la primera vez que se escribe en ella. Se guarda en bytes;
+    //   cada lectura se convierte a unsigned con & 0xFF. En XO-CHIP son
+    //   256 paginas (64 KB)
+    byte paginas[][] = ImagenRom.paginasEnCero();
+
+    // Bit n encendido: la pagina n es propia y se puede escribir sin copiar
+    final private long paginasPropias[] = new long[ImagenRom.PAGINAS_XO / 64];
 
     // Registros del CPU(V0,V1,V2...VF)
-    final private int V[] = new int[16];
+    final int V[] = new int[16];
 
     // Indice de registros(0x000 - 0xFFF)
-    private int I;
+    int I;
 
     // Contador (program counter)
     public int pc;
 
-    private Opcode opcode;
+    // Opcode en ejecucion: se decodifica cada ciclo sobre la misma instancia
+    final private Opcode opcode = new Opcode(0);
 
     // Graficas del Chip8:
     //   Blanco y negro.
-    //   Pantalla de 2048 pixeles (64*32).
-    final public int gfx[] = new int[64*32];
+    //   Pantalla de 2048 pixeles (64*32), empaquetada: un long por fila,
+    //   el pixel x de la fila es el bit (63 - x).
+    final long gfx[] = new long[32];
+
+    // Estado de XO-CHIP (planos, audio...); null en CHIP-8 (ver NucleoXoChip)
+    EstadoXoChip xo;
+
+    // Motor de CHIP-8 mientras esta cargada una imagen XO-CHIP
+    private NucleoCpu nucleoChip8;
 
     // Registros del timer
     //  Los timers trabajan a 60 Hz
-    private int delayTimer;
-    private int soundTimer;
+    int delayTimer;
+    int soundTimer;
 
     // STACK del sistema: posee 16 niveles
-    final private int stack[] = new int[16];
+    final int stack[] = new int[16];
 
     //STACK pointer
-    private int sp;
+    int sp;
 
-    // Variable usada para generar numeros random en algunos opcodes
-    final private Random rand = new Random();
+    // Estado del generador de numeros random usado en CXNN (xorshift de
+    // 32 bits). Con setSemilla la ejecucion es reproducible.
+    int semillaRng = new Random().nextInt() | 1;
 
     // keypad basado en HEX (0x0 - 0xF)
     final public int key[] = new int[16];
 
-    // Bandera para marcar una accion en pantalla pendiente
+    // Bandera para marcar una accion en pantalla pendiente. Como el resto
+    // del estado, no es volatile: desde otro hilo ver ControladorChip8
     public boolean drawFlag;
 
     // Arreglos de referencias de metodos
-    final private CicloChip8 tablaChip8[] = {
+    final CicloChip8 tablaChip8[] = {
             this::ejecutar00,   this::ejecutar1NNN, this::ejecutar2NNN,
             this::ejecutar3XNN, this::ejecutar4XNN, this::ejecutar5XY0,
             this::ejecutar6XNN, this::ejecutar7XNN, this::ejecutarOpAritmetica,
@@ -113,112 +131,456 @@ public class Chip8 {
             this::ejecutar8XY3, this::ejecutar8XY4, this::ejecutar8XY5,
             this::ejecutar8XY6, this::ejecutar8XY7, this::opcodeUndefined,
             this::opcodeUndefined, this::opcodeUndefined, this::opcodeUndefined,
-            this::opcodeUndefined, this::opcodeUndefined, this::ejecutar8XYE
+            this::opcodeUndefined, this::opcodeUndefined, this::ejecutar8XYE,
+            this::opcodeUndefined
     };
 
-    // Mapa de Opcodes FX
-    private Map<Integer, CicloChip8> opcodeFxMap = new HashMap<>();
+    // Tabla de Opcodes FX, indexada por el byte bajo del opcode
+    final private CicloChip8 tablaFxChip8[] = new CicloChip8[256];
 
     // Bandera para despliegue de informacion en ejecucion
     private boolean debugMode;
 
+    // Motor que ejecuta cada instruccion (ver NucleoCpu)
+    private NucleoCpu nucleo = NucleoCpu.REFERENCIA;
+
+    // Observador opcional de cada ciclo (perfilador, cobertura...)
+    private MonitorCiclo monitor;
+
+    // Destino del tono: se notifica solo al encender o apagar el sonido
+    SalidaSonido sonido = SalidaSonido.NULA;
+
     // Bandera del estado del chip
     public boolean RUNNING;
 
+    // Marca que el ultimo ciclo fue un FX0A sin tecla presionada
+    boolean esperandoTecla;
+
+    // Contadores desde el ultimo init()
+    private long ciclosEjecutados;
+    private long opcodesIndefinidos;
+
     // Periodo de ejecucion del CPU: 500hz - 1000hz
     public long period;
 
+    // Instrucciones por frame de 60 Hz fijadas (por ejemplo desde la linea
+    // de comandos); 0 usa las de la ROM o las calcula a partir de period
+    private int ciclosFrame;
+
+    // Configuracion de la ROM cargada (ver ConfiguracionRom), o null
+    private ConfiguracionRom configuracion;
+
+    // Peculiaridades de la ROM (ConfiguracionRom.DESPLAZAR_VY, CONSERVAR_I)
+    int peculiaridades;
+
     /****************************************************************
      * Constructores
      ****************************************************************/
     public Chip8(){
-        // Llenado de mapa de funciones FX
-        llenarOpcodeFxMap();
+        // Llenado de tabla de funciones FX
+        llenarTablaFx();
         debugMode = true;
         RUNNING = true;
         period = 3;
     }
 
     public Chip8(boolean debug){
-        // Llenado de mapa de funciones FX
-        llenarOpcodeFxMap();
+        // Llenado de tabla de funciones FX
+        llenarTablaFx();
         debugMode = debug;
         RUNNING = true;
+        period = 3;
     }
 
-    private void llenarOpcodeFxMap(){
-        opcodeFxMap.put(0x07, this::ejecutarFX07);
-        opcodeFxMap.put(0x0A, this::ejecutarFX0A);
-        opcodeFxMap.put(0x15, this::ejecutarFX15);
-        opcodeFxMap.put(0x18, this::ejecutarFX18);
-        opcodeFxMap.put(0x1E, this::ejecutarFX1E);
-        opcodeFxMap.put(0x29, this::ejecutarFX29);
-        opcodeFxMap.put(0x33, this::ejecutarFX33);
-        opcodeFxMap.put(0x55, this::ejecutarFX55);
-        opcodeFxMap.put(0x65, this::ejecutarFX65);
+    private void llenarTablaFx(){
+        Arrays.fill(tablaFxChip8, (CicloChip8)this::opcodeUndefined);
+        tablaFxChip8[0x07] = this::ejecutarFX07;
+        tablaFxChip8[0x0A] = this::ejecutarFX0A;
+        tablaFxChip8[0x15] = this::ejecutarFX15;
+        tablaFxChip8[0x18] = this::ejecutarFX18;
+        tablaFxChip8[0x1E] = this::ejecutarFX1E;
+        tablaFxChip8[0x29] = this::ejecutarFX29;
+        tablaFxChip8[0x33] = this::ejecutarFX33;
+        tablaFxChip8[0x55] = this::ejecutarFX55;
+        tablaFxChip8[0x65] = this::ejecutarFX65;
     }
 
     /****************************************************************
      * Funciones principales del Chip8
      ****************************************************************/
     public void init(){
-        // Reset de memoria
-        for(int i = 0; i < memory.length; i++) memory[i] = 0;
+        // Reset de memoria: font set y el resto en cero, compartidos
+        cargarJuego(ImagenRom.VACIA);
 
         // Reset de registros
-        for(int i = 0; i < V.length; i++) V[i] = 0;
+        Arrays.fill(V, 0);
 
         // Reset de keypad
-        for(int i = 0; i < key.length; i++) key[i] = 0;
+        Arrays.fill(key, 0);
 
         // Reset de graficas
-        for(int i = 0; i < gfx.length; i++) gfx[i] = 0;
+        Arrays.fill(gfx, 0);
 
         // Reset del Stack
-        for(int i = 0; i < stack.length; i++) stack[i] = 0;
-
-        // Carga del fontSet a memoria
-        System.arraycopy(chipFontset, 0, memory, 0, 80);
+        Arrays.fill(stack, 0);
 
         // Set del program counter: Los programas en el Chip-8 inician en esta direccion
         pc = 0x200;
 
         // Reset del indice, opcode y stack pointer
-        opcode = null;
+        opcode.decodificar(0);
         sp = 0;
         I = 0;
+        esperandoTecla = false;
+        ciclosEjecutados = 0;
+        opcodesIndefinidos = 0;
 
         // Reset de timers
         delayTimer = 0;
         soundTimer = 0;
+        sonido.setActivo(false);
 
         // Se marca para actualizar vista
         drawFlag = true;
     }
 
     public void cargarJuego(String juego) throws IOException{
-        Path p = FileSystems.getDefault().getPath("", juego);
-        byte buffer[] = Files.readAllBytes(p);
+        cargarJuego(FileSystems.getDefault().getPath("", juego));
+    }
+
+    public void cargarJuego(Path juego) throws IOException{
+        cargarJuego(Files.readAllBytes(juego));
+    }
+
+    public void cargarJuego(byte[] buffer) throws IOException{
+        if(buffer.length > 4096 - 512)
+            throw new IOException("ROM demasiado grande: " + buffer.length + " bytes");
 
         for(int i=0; i < buffer.length; i++){
             // Los datos del programa en el Chip-8 empiezan en la direccion 0x200 (512)
-            memory[512+i] = (buffer[i] & 0xFF); // Se convierte a Unsigned
+            escribirMemoria(512+i, buffer[i]);
         }
+        aplicarConfiguracion(ConfiguracionRom.buscar(ImagenRom.huella(buffer)));
+    }
+
+    /*
+    * Reemplaza toda la memoria por la imagen (font set + ROM) sin copiarla:
+    * las paginas se comparten hasta que el programa escribe en ellas.
+    */
+    public void cargarJuego(ImagenRom imagen){
+        setModoXo(imagen.isXo());
+        if(xo != null)
+            xo.reiniciar();
+
+        copiarPaginas(imagen.paginas);
+        nucleo.juegoCargado(imagen);
+
+        // La memoria vacia de init() no necesita leer la base
+        aplicarConfiguracion(imagen.getTamano() > 0 ? ConfiguracionRom.buscar(imagen.getHuella()) : null);
+    }
+
+    // Ciclos y peculiaridades del juego; null regresa a los predeterminados
+    private void aplicarConfiguracion(ConfiguracionRom configuracion){
+        this.configuracion = configuracion;
+        peculiaridades = configuracion != null ? configuracion.getPeculiaridades() : 0;
+    }
+
+    public ConfiguracionRom getConfiguracion(){
+        return configuracion;
+    }
+
+    /*
+    * Una imagen XO-CHIP cambia la maquina a 64 KB, crea su estado extra y
+    * usa NucleoXoChip; una de CHIP-8 regresa al motor anterior.
+    */
+    private void setModoXo(boolean activo){
+        if(activo && xo == null){
+            xo = new EstadoXoChip();
+            nucleoChip8 = nucleo;
+            nucleo = NucleoXoChip.INSTANCIA;
+        }
+        else if(!activo && xo != null){
+            xo = null;
+            nucleo = nucleoChip8;
+            nucleoChip8 = null;
+        }
+    }
+
+    public boolean isXo(){
+        return xo != null;
+    }
+
+    public EstadoXoChip getEstadoXo(){
+        return xo;
+    }
+
+    // Comparte las paginas dadas; ninguna queda como propia
+    private void copiarPaginas(byte[][] origen){
+        if(paginas.length != origen.length)
+            paginas = new byte[origen.length][];
+        System.arraycopy(origen, 0, paginas, 0, origen.length);
+        Arrays.fill(paginasPropias, 0);
+    }
+
+    public int leerMemoria(int direccion){
+        return paginas[direccion >>> 8][direccion & 0xFF] & 0xFF;
+    }
+
+    // Copia la pagina antes de la primera escritura si es compartida
+    void escribirMemoria(int direccion, int valor){
+        int pagina = direccion >>> 8;
+
+        // Reescribir el mismo valor (un marcador que no cambio) no copia ni invalida nada
+        if(paginas[pagina][direccion & 0xFF] == (byte)valor)
+            return;
+
+        if((paginasPropias[pagina >>> 6] & (1L << pagina)) == 0){
+            paginas[pagina] = paginas[pagina].clone();
+            paginasPropias[pagina >>> 6] |= 1L << pagina;
+        }
+        paginas[pagina][direccion & 0xFF] = (byte)valor;
+        nucleo.memoriaEscrita(direccion);
+    }
+
+    // Paginas que esta maquina ya copio (memoria que no comparte)
+    public int getPaginasPropias(){
+        int total = 0;
+        for(long bits: paginasPropias)
+            total += Long.bitCount(bits);
+        return total;
+    }
+
+    // Fija la semilla de CXNN para obtener ejecuciones reproducibles
+    public void setSemilla(long semilla) {
+        semillaRng = (int)(semilla ^ (semilla >>> 32)) | 1;
+    }
+
+    public long getCiclosEjecutados() {
+        return ciclosEjecutados;
+    }
+
+    public long getOpcodesIndefinidos() {
+        return opcodesIndefinidos;
+    }
+
+    /*
+    * Hash (FNV-1a de 64 bits) de todo el estado de la maquina: memoria,
+    * registros, stack, timers, pantalla y generador random.
+    */
+    public long hashEstado() {
+        long hash = 0xCBF29CE484222325L;
+        for(byte pagina[]: paginas)
+            for(byte valor: pagina) hash = (hash ^ (valor & 0xFF)) * 0x100000001B3L;
+        for(int valor: V) hash = (hash ^ valor) * 0x100000001B3L;
+        for(int valor: stack) hash = (hash ^ valor) * 0x100000001B3L;
+        for(long fila: gfx) hash = (hash ^ fila) * 0x100000001B3L;
+        hash = (hash ^ I) * 0x100000001B3L;
+        hash = (hash ^ pc) * 0x100000001B3L;
+        hash = (hash ^ sp) * 0x100000001B3L;
+        hash = (hash ^ delayTimer) * 0x100000001B3L;
+        hash = (hash ^ soundTimer) * 0x100000001B3L;
+        hash = (hash ^ semillaRng) * 0x100000001B3L;
+        return xo != null ? xo.hash(hash) : hash;
+    }
+
+    /****************************************************************
+     * Estado de la maquina: copia completa para restaurar rapidamente
+     *  (por ejemplo, partir de una plantilla en lugar de llamar a init)
+     *
+     *  La memoria no se copia: el estado y la maquina comparten las
+     *  paginas, y la maquina vuelve a copiar la que escriba despues.
+     ****************************************************************/
+    public void guardarEstado(EstadoChip8 estado) {
+        if(estado.paginas.length != paginas.length)
+            estado.paginas = new byte[paginas.length][];
+        System.arraycopy(paginas, 0, estado.paginas, 0, paginas.length);
+        Arrays.fill(paginasPropias, 0);
+
+        if(xo != null){
+            if(estado.xo == null)
+                estado.xo = new EstadoXoChip();
+            xo.copiarEn(estado.xo);
+        }
+        else
+            estado.xo = null;
+
+        System.arraycopy(V, 0, estado.V, 0, V.length);
+        System.arraycopy(stack, 0, estado.stack, 0, stack.length);
+        System.arraycopy(gfx, 0, estado.gfx, 0, gfx.length);
+        System.arraycopy(key, 0, estado.key, 0, key.length);
+        estado.I = I;
+        estado.pc = pc;
+        estado.sp = sp;
+        estado.delayTimer = delayTimer;
+        estado.soundTimer = soundTimer;
+        estado.semillaRng = semillaRng;
+        estado.esperandoTecla = esperandoTecla;
+        estado.drawFlag = drawFlag;
+        estado.configuracion = configuracion;
+        estado.ciclosEjecutados = ciclosEjecutados;
+        estado.opcodesIndefinidos = opcodesIndefinidos;
+    }
+
+    public void restaurarEstado(EstadoChip8 estado) {
+        setModoXo(estado.xo != null);
+        if(xo != null)
+            estado.xo.copiarEn(xo);
+        copiarPaginas(estado.paginas);
+
+        System.arraycopy(estado.V, 0, V, 0, V.length);
+        System.arraycopy(estado.stack, 0, stack, 0, stack.length);
+        System.arraycopy(estado.gfx, 0, gfx, 0, gfx.length);
+        System.arraycopy(estado.key, 0, key, 0, key.length);
+        I = estado.I;
+        pc = estado.pc;
+        sp = estado.sp;
+        delayTimer = estado.delayTimer;
+        soundTimer = estado.soundTimer;
+        semillaRng = estado.semillaRng;
+        esperandoTecla = estado.esperandoTecla;
+        drawFlag = estado.drawFlag;
+        aplicarConfiguracion(estado.configuracion);
+        ciclosEjecutados = estado.ciclosEjecutados;
+        opcodesIndefinidos = estado.opcodesIndefinidos;
+        notificarSonido();
+    }
+
+    // Estado actual del tono (y en XO-CHIP su patron) para la salida
+    private void notificarSonido() {
+        if(xo != null)
+            sonido.setPatron(xo.patron, xo.tono);
+        sonido.setActivo(soundTimer > 0);
+    }
+
+    /*
+    * Copia de la maquina en ejecucion. Cuesta lo mismo que guardarEstado:
+    * las dos maquinas comparten la memoria hasta que alguna escribe.
+    * La copia no hereda el monitor ni la salida de sonido.
+    */
+    public Chip8 fork() {
+        EstadoChip8 estado = new EstadoChip8();
+        guardarEstado(estado);
+
+        Chip8 copia = new Chip8(debugMode);
+        copia.period = period;
+        copia.ciclosFrame = ciclosFrame;
+        copia.nucleo = nucleo.copiar();
+        copia.RUNNING = RUNNING;
+        copia.restaurarEstado(estado);
+        if(nucleoChip8 != null){
+            copia.nucleo = nucleo.copiar();
+            copia.nucleoChip8 = nucleoChip8.copiar();
+        }
+        return copia;
     }
 
     public void setKeyPad(int[] keyBuffer) {
         System.arraycopy(keyBuffer, 0, key, 0, key.length);
     }
 
+    public void setTecla(int tecla, boolean presionada) {
+        key[tecla] = presionada ? 1 : 0;
+    }
+
+    /*
+    * Copia la pantalla a 32 longs, uno por fila: el pixel x de la fila
+    * queda en el bit (63 - x). Es la forma compacta usada para grabar,
+    * comparar y transmitir frames.
+    */
+    public void empaquetarGfx(long[] filas, int desde) {
+        if(xo != null){
+            for(int fila = 0; fila < gfx.length; fila++)
+                filas[desde + fila] = xo.filaReducida(fila);
+            return;
+        }
+        System.arraycopy(gfx, 0, filas, desde, gfx.length);
+    }
+
+    public void empaquetarGfx(long[] filas) {
+        empaquetarGfx(filas, 0);
+    }
+
+    public int getPixel(int x, int y) {
+        long fila = xo != null ? xo.filaReducida(y) : gfx[y];
+        return (int)(fila >>> (63 - x)) & 1;
+    }
+
+    /*
+    * Pantalla a presentar: las 32 filas de empaquetarGfx en CHIP-8, o los
+    * dos planos de XO-CHIP en 128x64 (EstadoXoChip.TAM_PANTALLA longs).
+    * Regresa cuantos longs escribio.
+    */
+    public int empaquetarPantalla(long[] destino) {
+        if(xo != null){
+            xo.empaquetar(destino);
+            return EstadoXoChip.TAM_PANTALLA;
+        }
+        System.arraycopy(gfx, 0, destino, 0, gfx.length);
+        return gfx.length;
+    }
+
+    /*
+    * Escribe la pantalla en 256 bytes del buffer a partir de la posicion
+    * dada, sin mover su position: 8 bytes por fila, el pixel 0 de cada
+    * fila en el bit mas alto del primer byte.
+    */
+    public void escribirPantalla(ByteBuffer destino, int posicion) {
+        for(int fila = 0; fila < gfx.length; fila++)
+            destino.putLong(posicion + (fila * 8), xo != null ? xo.filaReducida(fila) : gfx[fila]);
+    }
+
+    // Registro Vx, para leer el estado del juego desde fuera
+    public int getRegistro(int x) {
+        return V[x];
+    }
+
+    public int getI() {
+        return I;
+    }
+
+    public void setI(int valor) {
+        I = valor;
+    }
+
+    public NucleoCpu getNucleo() {
+        return nucleo;
+    }
+
+    public void setNucleo(NucleoCpu nucleo) {
+        this.nucleo = nucleo;
+    }
+
+    public MonitorCiclo getMonitor() {
+        return monitor;
+    }
+
+    public void setMonitor(MonitorCiclo monitor) {
+        this.monitor = monitor;
+    }
+
+    public SalidaSonido getSalidaSonido() {
+        return sonido;
+    }
+
+    // La nueva salida recibe de inmediato el estado actual del tono
+    public void setSalidaSonido(SalidaSonido sonido) {
+        this.sonido = sonido;
+        notificarSonido();
+    }
+
     public void emularCiclo(){
         // Obtener opcode: Compuesto de dos bytes, empezando desde 0x200
-        int i_opcode = (memory[pc] << 8) | memory[pc+1];
+        int i_opcode = (leerMemoria(pc) << 8) | leerMemoria(pc+1);
+
+        if(monitor != null)
+            monitor.antesDeCiclo(pc, i_opcode);
 
         // Desifrar opcode
-        opcode = new Opcode(i_opcode);
+        opcode.decodificar(i_opcode);
+        ciclosEjecutados++;
 
         // Ejecutar opcode
-        ejecutarCiclo(tablaChip8[opcode.header]);
+        nucleo.ejecutar(this, opcode);
 
         // Operaciones con timers
         actualizarTimers();
@@ -228,14 +590,82 @@ public class Chip8 {
             imprimirResultados();
     }
 
+    /*
+    * Verdadero mientras el programa esta detenido en un FX0A: hasta que
+    * cambie el teclado, emular mas ciclos no produce ningun efecto.
+    */
+    public boolean isEsperandoTecla(){
+        return esperandoTecla && (leerMemoria(pc) & 0xF0) == 0xF0 && leerMemoria(pc+1) == 0x0A;
+    }
+
+    // Ciclos de CPU que caben en un frame de 60 Hz con el periodo actual
+    public int ciclosPorFrame(){
+        if(ciclosFrame > 0)
+            return ciclosFrame;
+        if(configuracion != null && configuracion.getCiclos() > 0)
+            return configuracion.getCiclos();
+        return (int)Math.max(1, Math.round(1000.0 / (60 * period)));
+    }
+
+    public void setCiclosPorFrame(int ciclos){
+        ciclosFrame = Math.max(0, ciclos);
+    }
+
+    // Emula un frame completo de 60 Hz sin depender del reloj de pared
+    public void emularFrame(){
+        int ciclos = ciclosPorFrame();
+        for(int i = 0; i < ciclos && RUNNING; )
+            i += emularBloque(ciclos - i);
+    }
+
+    /*
+    * Ejecuta de 1 a "maximo" instrucciones en un solo despacho si el
+    * motor tiene una secuencia fusionada en el pc (ver NucleoFusion), o
+    * una instruccion normal si no. Regresa cuantas se ejecutaron. Con
+    * monitor o en modo debug siempre se ejecuta una por una.
+    */
+    public int emularBloque(int maximo){
+        if(maximo > 1 && monitor == null && !debugMode){
+            int ejecutadas = nucleo.ejecutarBloque(this, maximo);
+            if(ejecutadas > 0){
+                ciclosEjecutados += ejecutadas;
+
+                // Ninguna secuencia fusionada lee los timers, asi que
+                // pueden avanzar al final del bloque
+                for(int i = 0; i < ejecutadas; i++)
+                    actualizarTimers();
+                return ejecutadas;
+            }
+        }
+
+        emularCiclo();
+        return 1;
+    }
+
+    /*
+    * Avanza los timers como si se ejecutaran "ciclos" instrucciones, sin
+    * ejecutarlas: el reposo de ControladorChip8 con la ventana oculta.
+    */
+    public void avanzarTimers(long ciclos){
+        delayTimer = (int)Math.max(0, delayTimer - ciclos);
+
+        if(soundTimer > 0){
+            soundTimer = (int)Math.max(0, soundTimer - ciclos);
+            if(soundTimer == 0)
+                sonido.setActivo(false);
+        }
+    }
+
     private void actualizarTimers(){
         if(delayTimer > 0)
             delayTimer--;
 
         if(soundTimer > 0){
-            if(soundTimer == 1)
-                System.out.print("BEEP!\n");
             soundTimer--;
+
+            // El tono suena mientras el timer de sonido sea mayor a cero
+            if(soundTimer == 0)
+                sonido.setActivo(false);
         }
     }
 
@@ -248,9 +678,12 @@ public class Chip8 {
      *  los Opcodes durante cada ciclo de emulacion.
      ****************************************************************/
     public void opcodeUndefined(){
-        System.out.print("    Opcode no definido: ");
-        System.out.printf("0x%04X\n", opcode.hex_opcode);
-        opcode.assembly = "UNDEFINED";
+        opcodesIndefinidos++;
+
+        if(debugMode){
+            System.out.print("    Opcode no definido: ");
+            System.out.printf("0x%04X\n", opcode.hex_opcode);
+        }
     }
 
     public void ejecutarOpAritmetica(){
@@ -282,20 +715,16 @@ public class Chip8 {
 
     public void ejecutarFX(){
         int _byte = opcode._byte;
-        ejecutarCiclo(opcodeFxMap.getOrDefault(_byte, this::opcodeUndefined));
+        ejecutarCiclo(tablaFxChip8[_byte]);
     }
 
     public void ejecutar00E0(){
         /* Documentacion: 00E0 - CLS
         * Clear the display
         */
-        opcode.identificador = "00E0";
-        opcode.assembly = "CLS";
 
         // Limpiado de pantalla
-        for(int i = 0; i < 2048; i++){
-            gfx[i] = 0x0;
-        }
+        Arrays.fill(gfx, 0);
 
         drawFlag = true;
         pc += 2;
@@ -308,8 +737,6 @@ public class Chip8 {
         * The interpreter sets the program counter to the address at the top of
         * the stack, then subtracts 1 from the stack pointer.
         */
-        opcode.identificador = "00EE";
-        opcode.assembly = "RET";
 
         // Primero se resta para evitar sobre-escrituras
         sp--;
@@ -323,8 +750,6 @@ public class Chip8 {
         *
         * The interpreter sets the program counter to nnn.
         */
-        opcode.identificador = "1nnn";
-        opcode.assembly = String.format("JP %03X", opcode.address);
 
         pc = opcode.address;
     }
@@ -336,8 +761,6 @@ public class Chip8 {
         * The interpreter increments the stack pointer, then puts the current
         * PC on the top of the stack. The PC is then set to nnn.
         */
-        opcode.identificador = "2nnn";
-        opcode.assembly = String.format("CALL %03X", opcode.address);
 
         stack[sp] = pc;
         sp++;
@@ -351,8 +774,6 @@ public class Chip8 {
         * The interpreter compares register Vx to kk, and if they are equal,
         * increments the program counter by 2.
         */
-        opcode.identificador = "3xkk";
-        opcode.assembly = String.format("SE V%01X %02X", opcode.vx, opcode._byte);
 
         if(V[opcode.vx] == opcode._byte)
             pc += 4;
@@ -367,8 +788,6 @@ public class Chip8 {
         * The interpreter compares register Vx to kk, and if they are not
         * equal, increments the program counter by 2.
         */
-        opcode.identificador = "4xkk";
-        opcode.assembly = String.format("SNE V%01X %02X", opcode.vx, opcode._byte);
 
         if(V[opcode.vx] != opcode._byte)
             pc += 4;
@@ -383,8 +802,6 @@ public class Chip8 {
         * The interpreter compares register Vx to register Vy, and if they
         * are equal, increments the program counter by 2.
         */
-        opcode.identificador = "5xy0";
-        opcode.assembly = String.format("SE V%01X V%01X", opcode.vx, opcode.vy);
 
         if(V[opcode.vx] == V[opcode.vy])
             pc += 4;
@@ -398,8 +815,6 @@ public class Chip8 {
         *
         * The interpreter puts the value kk into register Vx.
         */
-        opcode.identificador = "6xkk";
-        opcode.assembly = String.format("LD V%01X %02X", opcode.vx, opcode._byte);
 
         V[opcode.vx] = opcode._byte;
         pc += 2;
@@ -412,8 +827,6 @@ public class Chip8 {
         * Adds the value kk to the value of register Vx, then stores the
         *¨result in Vx.
         */
-        opcode.identificador = "7xkk";
-        opcode.assembly = String.format("ADD V%01X %02X", opcode.vx, opcode._byte);
 
         int suma = V[opcode.vx] + opcode._byte;
         V[opcode.vx] = (suma & 0xFF);
@@ -427,8 +840,6 @@ public class Chip8 {
         *
         * Stores the value of register Vy in register Vx.
         */
-        opcode.identificador = "8xy0";
-        opcode.assembly = String.format("LD V%01X V%01X", opcode.vx, opcode.vy);
 
         V[opcode.vx] = V[opcode.vy];
         pc += 2;
@@ -443,8 +854,6 @@ public class Chip8 {
         * values, and if either bit is 1, then the same bit in the result is
         * also 1. Otherwise, it is 0.
         */
-        opcode.identificador = "8xy1";
-        opcode.assembly = String.format("OR V%01X V%01X", opcode.vx, opcode.vy);
 
         V[opcode.vx] |= V[opcode.vy];
         pc += 2;
@@ -459,8 +868,6 @@ public class Chip8 {
         * values, and if both bits are 1, then the same bit in the result is
         * also 1. Otherwise, it is 0.
         */
-        opcode.identificador = "8xy2";
-        opcode.assembly = String.format("ADD V%01X V%01X", opcode.vx, opcode.vy);
 
         V[opcode.vx] &= V[opcode.vy];
         pc += 2;
@@ -475,8 +882,6 @@ public class Chip8 {
         * bits from two values, and if the bits are not both the same, then
         * the corresponding bit in the result is set to 1. Otherwise, it is 0.
         */
-        opcode.identificador = "8xy3";
-        opcode.assembly = String.format("XOR V%01X V%01X", opcode.vx, opcode.vy);
 
         V[opcode.vx] ^= V[opcode.vy];
         pc += 2;
@@ -490,8 +895,6 @@ public class Chip8 {
         * than 8 bits (i.e., > 255,) VF is set to 1, otherwise 0.
         * Only the lowest 8 bits of the result are kept, and stored in Vx.
         */
-        opcode.identificador = "8xy4";
-        opcode.assembly = String.format("ADD V%01X V%01X", opcode.vx, opcode.vy);
 
         // Si la suma de Vx y Vy es mayor a 255, el registro VF se le
         // marca un carry
@@ -519,8 +922,6 @@ public class Chip8 {
         * If Vx > Vy, then VF is set to 1, otherwise 0. Then Vy is subtracted
         * from Vx, and the results stored in Vx.
         */
-        opcode.identificador = "8xy5";
-        opcode.assembly = String.format("SUB V%01X V%01X", opcode.vx, opcode.vy);
 
         if(V[opcode.vx] > V[opcode.vy])
             V[0xF] = 1;
@@ -539,8 +940,10 @@ public class Chip8 {
         * If the least-significant bit of Vx is 1, then VF is set to 1,
         * otherwise 0. Then Vx is divided by 2.
         */
-        opcode.identificador = "8xy6";
-        opcode.assembly = String.format("SHR V%01X { V%01X }", opcode.vx, opcode.vy);
+
+        // En el COSMAC VIP se desplaza Vy (ver ConfiguracionRom)
+        if((peculiaridades & ConfiguracionRom.DESPLAZAR_VY) != 0)
+            V[opcode.vx] = V[opcode.vy];
 
         // El bit menos significante es el de la derecha
         V[0xF] = V[opcode.vx] & 0x1; // Mascara del ultimo bit
@@ -557,8 +960,6 @@ public class Chip8 {
         * If Vy > Vx, then VF is set to 1, otherwise 0. Then Vx is subtracted
         * from Vy, and the results stored in Vx.
         */
-        opcode.identificador = "8xy7";
-        opcode.assembly = String.format("SUBN V%01X V%01X", opcode.vx, opcode.vy);
 
         if(V[opcode.vx] > V[opcode.vy])
             V[0xF] = 0;
@@ -577,8 +978,9 @@ public class Chip8 {
         * If the most-significant bit of Vx is 1, then VF is set to 1,
         * otherwise to 0. Then Vx is multiplied by 2.
         */
-        opcode.identificador = "8xyE";
-        opcode.assembly = String.format("SHL V%01X { V%01X }", opcode.vx, opcode.vy);
+
+        if((peculiaridades & ConfiguracionRom.DESPLAZAR_VY) != 0)
+            V[opcode.vx] = V[opcode.vy];
 
         // El bit mas significativo es el de la izquierda
         V[0xF] = V[opcode.vx] >> 7; // El shift solo deja al bit necesario
@@ -595,8 +997,6 @@ public class Chip8 {
         * The values of Vx and Vy are compared, and if they are not equal,
         * the program counter is increased by 2.
         */
-        opcode.identificador = "9xy0";
-        opcode.assembly = String.format("SNE V%01X V%01X", opcode.vx, opcode.vy);
 
         if(V[opcode.vx] != V[opcode.vy])
             pc += 4;
@@ -610,8 +1010,6 @@ public class Chip8 {
         *
         * The value of register I is set to nnn.
         */
-        opcode.identificador = "Annn";
-        opcode.assembly = String.format("LD I %02X", opcode.address);
 
         I = opcode.address;
         pc += 2;
@@ -623,8 +1021,6 @@ public class Chip8 {
         *
         * The program counter is set to nnn plus the value of V0.
         */
-        opcode.identificador = "Bnnn";
-        opcode.assembly = String.format("JP V0 %02X", opcode.address);
 
         pc = opcode.address + V[0];
     }
@@ -637,11 +1033,12 @@ public class Chip8 {
         * then ANDed with the value kk. The results are stored in Vx. See
         * instruction 8xy2 for more information on AND.
         */
-        opcode.identificador = "Cxkk";
-        opcode.assembly = String.format("RND V%01X %02X", opcode.vx, opcode._byte);
 
-        // Numero random con valores de 0 - 255
-        int n_rand = rand.nextInt(256);
+        // Numero random con valores de 0 - 255 (xorshift32)
+        semillaRng ^= semillaRng << 13;
+        semillaRng ^= semillaRng >>> 17;
+        semillaRng ^= semillaRng << 5;
+        int n_rand = semillaRng & 0xFF;
         V[opcode.vx] = opcode._byte & n_rand;
 
         pc += 2;
@@ -662,48 +1059,32 @@ public class Chip8 {
         * and section 2.4, Display, for more information on the Chip-8
         * screen and sprites
         */
-        opcode.identificador = "Dxyn";
-        opcode.assembly = String.format(
-                "DRW V%01X V%01X %01X", opcode.vx, opcode.vy, opcode.nibble
-        );
 
         // Posicion x,y del sprite a dibujar
         int x = V[opcode.vx];
         int y = V[opcode.vy];
 
-        int pixel;
-
         V[0xF] = 0;
         // Loop de las filas del sprite
         for(int ejeY=0; ejeY < opcode.nibble; ejeY++){
-            pixel = memory[I+ejeY];
+            long pixel = leerMemoria(I+ejeY);
 
-            // Loop de los 8 bits de la fila
-            for(int ejeX=0; ejeX < 8; ejeX++){
-                // Se comprueba si el bit actual se debera de pintar.
-                // Se usa 0x80 (1000 0000 en binario) para ir recorriendo los bits de la fila del sprite
-                int masked_pixel = (pixel & (0x80 >> ejeX));
+            // Los 8 bits de la fila se colocan en los bits mas altos y se
+            // rotan a la columna x: la rotacion hace el warp tras superar
+            // 0x3F(63), igual que tomar los 6 bits de la izq de cada columna
+            long sprite = Long.rotateRight(pixel << 56, x);
 
-                if(masked_pixel != 0){
-                    // Los valores posicionales x,y haran
-                    // warp de valores tras superar 0x3F(63) y 0x1F(31) respectivamente
+            // Solo se toman los 5 bits de la izq
+            int cordenadaY = (y + ejeY) & 0x1F;
 
-                    // Solo se toman los 6 bits de la izq
-                    int cordenadaX = (x + ejeX) & 0x3F;
-
-                    // Solo se toman los 5 bits de la izq
-                    int cordenadaY = (y + ejeY) & 0x1F;
-
-                    // Si el pixel a pintar ya esta activo, se asigna 1 al
-                    // registro VF, normalmente usado para detectar colision
-                    if(gfx[(cordenadaX + ((cordenadaY)*64))] == 1){
-                        V[0xF] = 1;
-                    }
-
-                    // El nuevo valor en pantalla se define con una operacion XOR
-                    gfx[(cordenadaX + ((cordenadaY)*64))] ^= 1;
-                }
+            // Si algun pixel a pintar ya esta activo, se asigna 1 al
+            // registro VF, normalmente usado para detectar colision
+            if((gfx[cordenadaY] & sprite) != 0){
+                V[0xF] = 1;
             }
+
+            // El nuevo valor en pantalla se define con una operacion XOR
+            gfx[cordenadaY] ^= sprite;
         }
 
         // La pantalla se marca para una actualizacion
@@ -718,8 +1099,6 @@ public class Chip8 {
         * Checks the keyboard, and if the key corresponding to the value of
         * Vx is currently in the down position, PC is increased by 2.
         */
-        opcode.identificador = "Ex9E";
-        opcode.assembly = String.format("SKP V%01X", opcode.vx);
 
         // Si la tecla almacenada en Vx esta presionada, se salta la siguiente instruccion
         if(key[V[opcode.vx]] != 0)
@@ -735,8 +1114,6 @@ public class Chip8 {
         * Checks the keyboard, and if the key corresponding to the value of Vx
         * is currently in the up position, PC is increased by 2.
         */
-        opcode.identificador = "ExA1";
-        opcode.assembly = String.format("SKNP V%01X", opcode.vx);
 
         // Lo inverso a EX9E
         if(key[V[opcode.vx]] == 0)
@@ -750,8 +1127,6 @@ public class Chip8 {
         * Set Vx = delay timer value.
         *
         * The value of DT is placed into Vx.*/
-        opcode.identificador = "Fx07";
-        opcode.assembly = String.format("LD V%01X DT", opcode.vx);
 
         V[opcode.vx] = delayTimer;
         pc += 2;
@@ -764,8 +1139,6 @@ public class Chip8 {
         * All execution stops until a key is pressed, then the value of that
         * key is stored in Vx.
         */
-        opcode.identificador = "Fx0A";
-        opcode.assembly = String.format("LD V%01X K", opcode.vx);
 
         boolean keyPressed = false;
 
@@ -777,6 +1150,7 @@ public class Chip8 {
         }
 
         // Si no se encontro una tecla presionada, se termina la ejecucion y se intenta otra vez.
+        esperandoTecla = !keyPressed;
         if(!keyPressed) return;
 
         pc += 2;
@@ -788,8 +1162,6 @@ public class Chip8 {
         *
         * DT is set equal to the value of Vx.
         */
-        opcode.identificador = "Fx15";
-        opcode.assembly = String.format("LD DT V%01X", opcode.vx);
 
         delayTimer = V[opcode.vx];
         pc += 2;
@@ -801,10 +1173,9 @@ public class Chip8 {
         *
         * ST is set equal to the value of Vx.
         */
-        opcode.identificador = "Fx18";
-        opcode.assembly = String.format("LD ST V%01X", opcode.vx);
 
         soundTimer = V[opcode.vx];
+        sonido.setActivo(soundTimer > 0);
         pc += 2;
     }
 
@@ -814,8 +1185,6 @@ public class Chip8 {
         *
         * The values of I and Vx are added, and the results are stored in I.
         */
-        opcode.identificador = "Fx1E";
-        opcode.assembly = String.format("ADD I V%01X", opcode.vx);
 
         // Se coloca una bandera en VF si en I existe un range overflow
         if((I + V[opcode.vx]) > 0xFFF)
@@ -835,8 +1204,6 @@ public class Chip8 {
         * corresponding to the value of Vx. See section 2.4, Display, for more
         * information on the Chip-8 hexadecimal font.
         */
-        opcode.identificador = "Fx29";
-        opcode.assembly = String.format("LD F V%01X", opcode.vx);
 
         I = V[opcode.vx] * 0x5;
         pc += 2;
@@ -850,17 +1217,15 @@ public class Chip8 {
         * hundreds digit in memory at location in I, the tens digit at
         * location I+1, and the ones digit at location I+2.
         */
-        opcode.identificador = "Fx33";
-        opcode.assembly = String.format("LD B V%01X", opcode.vx);
 
         // Representacion decimal (centenas) en I
-        memory[I] = (V[opcode.vx]/100);
+        escribirMemoria(I, V[opcode.vx]/100);
 
         // Representacion decimal (decenas) en I+1
-        memory[I+1] = (V[opcode.vx]/10)%10;
+        escribirMemoria(I+1, (V[opcode.vx]/10)%10);
 
         // Representacion decimal (unidades) en I+2
-        memory[I+2] = (V[opcode.vx]%100)%10;
+        escribirMemoria(I+2, (V[opcode.vx]%100)%10);
 
         pc += 2;
     }
@@ -873,16 +1238,15 @@ public class Chip8 {
         * The interpreter copies the values of registers V0 through Vx into
         * memory, starting at the address in I.
         */
-        opcode.identificador = "Fx55";
-        opcode.assembly = String.format("LD [I] V%01X", opcode.vx);
 
         for(int i=0; i<= opcode.vx; i++){
-            memory[I + i] = V[i];
+            escribirMemoria(I + i, V[i]);
         }
 
         // En el interprete original del Chip-8, tras terminar esta operacion,
-        // se asigna I = I + X + 1
-        I += (opcode.vx + 1);
+        // se asigna I = I + X + 1 (en CHIP-48 no, ver ConfiguracionRom)
+        if((peculiaridades & ConfiguracionRom.CONSERVAR_I) == 0)
+            I += (opcode.vx + 1);
 
         pc += 2;
     }
@@ -895,16 +1259,15 @@ public class Chip8 {
         * The interpreter reads values from memory starting at location I
         * into registers V0 through Vx.
         */
-        opcode.identificador = "Fx65";
-        opcode.assembly = String.format("LD V%01X [I]", opcode.vx);
 
         for(int i=0; i<= opcode.vx; i++){
-            V[i] = memory[I + i];
+            V[i] = leerMemoria(I + i);
         }
 
         // En el interprete original del Chip-8, tras terminar esta operacion,
-        // se asigna I = I + X + 1
-        I += (opcode.vx + 1);
+        // se asigna I = I + X + 1 (en CHIP-48 no, ver ConfiguracionRom)
+        if((peculiaridades & ConfiguracionRom.CONSERVAR_I) == 0)
+            I += (opcode.vx + 1);
 
         pc += 2;
     }
@@ -914,19 +1277,19 @@ public class Chip8 {
      *******************************************************************/
     @SuppressWarnings("unused")
     public void imprimirMemoriaRaw(){
-        for(int i: memory){
-            System.out.print(String.format("%02X ", i));
+        for(int i = 0; i < 4096; i++){
+            System.out.print(String.format("%02X ", leerMemoria(i)));
         }
     }
 
     public void imprimirMemoria(){
         int contador = 32;
         System.out.println("Memory Dump");
-        for (int i = 0; i < memory.length; i++){
+        for (int i = 0; i < 4096; i++){
             if (contador == 32)
                 System.out.print(String.format("0x%04X: ", i));
 
-            System.out.print(String.format("%02X ", memory[i]));
+            System.out.print(String.format("%02X ", leerMemoria(i)));
             contador--;
 
             if (contador == 0){
@@ -938,11 +1301,11 @@ public class Chip8 {
     }
 
     public void imprimirResultados(){
-        System.out.printf("Instruccion en 0x%04X: %s\n", pc, opcode.assembly);
+        System.out.printf("Instruccion en 0x%04X: %s\n", pc, opcode.getAssembly());
         System.out.printf(
                 "\tEn base al opcode: %04X -- id: %s\n",
                 opcode.hex_opcode,
-                opcode.identificador
+                opcode.getIdentificador()
         );
     }
 
@@ -962,7 +1325,7 @@ public class Chip8 {
         // Dibujar con texto el gfx[]
         for(int y = 0; y < 32; y++){
             for(int x = 0; x < 64; x++){
-                if(gfx[(y*64) + x] == 0)
+                if(getPixel(x, y) == 0)
                     System.out.print("O");
 
                 else
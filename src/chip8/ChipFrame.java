@@ -7,16 +7,36 @@ package chip8;
 
 import java.awt.BorderLayout;
 import java.awt.Dimension;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
 
 public class ChipFrame extends JFrame implements KeyListener {
     private static final long serialVersionUID = 1L;
 
     private int[] keyBuffer;
     private int[] keyIdToKey;
+    private ChipPanel panel;
+
+    // Si existe, recibe cada tecla en cuanto se presiona (ver ControladorChip8)
+    private volatile ControladorChip8 controlador;
+
+    // Estado de la ventana y que hacer cuando esta oculta o sin foco; los
+    // eventos llegan en el hilo de Swing
+    private boolean minimizada;
+    private boolean escondida;
+    private boolean enfocada = true;
+    private int politicaOculta = ControladorChip8.POLITICA_TIMERS;
+    private int politicaSinFoco = ControladorChip8.POLITICA_NORMAL;
 
     public ChipFrame(Chip8 c) {
         setPreferredSize(new Dimension(640, 320));
@@ -29,7 +49,7 @@ public class ChipFrame extends JFrame implements KeyListener {
                 )
         );
 
-        ChipPanel panel = new ChipPanel(c);
+        panel = new ChipPanel(c);
 
         setLayout(new BorderLayout());
         add(panel, BorderLayout.CENTER);
@@ -39,10 +59,77 @@ public class ChipFrame extends JFrame implements KeyListener {
 
         setVisible(true);
         addKeyListener(this);
+        escucharVisibilidad();
 
         keyIdToKey = new int[256];
         keyBuffer = new int[16];
         fillKeyIds();
+        agregarTeclasRom(c.getConfiguracion());
+    }
+
+    /*
+    * Minimizada o escondida no se presenta nada y la maquina queda en la
+    * politica de ventana oculta; sin foco, en la de ventana sin foco. Una
+    * ventana tapada por otra no produce eventos y sigue normal.
+    */
+    private void escucharVisibilidad() {
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowIconified(WindowEvent e) {
+                minimizada = true;
+                aplicarVisibilidad();
+            }
+
+            @Override
+            public void windowDeiconified(WindowEvent e) {
+                minimizada = false;
+                aplicarVisibilidad();
+            }
+
+            @Override
+            public void windowActivated(WindowEvent e) {
+                enfocada = true;
+                aplicarVisibilidad();
+            }
+
+            @Override
+            public void windowDeactivated(WindowEvent e) {
+                enfocada = false;
+                aplicarVisibilidad();
+            }
+        });
+
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentShown(ComponentEvent e) {
+                escondida = false;
+                aplicarVisibilidad();
+            }
+
+            @Override
+            public void componentHidden(ComponentEvent e) {
+                escondida = true;
+                aplicarVisibilidad();
+            }
+        });
+    }
+
+    private void aplicarVisibilidad() {
+        boolean oculta = minimizada || escondida;
+        panel.setSuspendido(oculta);
+
+        ControladorChip8 destino = controlador;
+        if(destino != null)
+            destino.setReposo(oculta ? politicaOculta
+                    : !enfocada ? politicaSinFoco
+                    : ControladorChip8.POLITICA_NORMAL);
+    }
+
+    // Politicas de ControladorChip8 para la ventana oculta y sin foco
+    public void setPoliticas(int oculta, int sinFoco) {
+        politicaOculta = oculta;
+        politicaSinFoco = sinFoco;
+        SwingUtilities.invokeLater(this::aplicarVisibilidad);
     }
 
     private void fillKeyIds() {
@@ -67,10 +154,28 @@ public class ChipFrame extends JFrame implements KeyListener {
         keyIdToKey['V'] = 0xF;
     }
 
+    // Teclas extra del juego (ver ConfiguracionRom), ademas de las de siempre
+    private void agregarTeclasRom(ConfiguracionRom configuracion) {
+        if(configuracion == null)
+            return;
+
+        for(Map.Entry<Integer, String> tecla: configuracion.getTeclas().entrySet()){
+            try {
+                int codigo = KeyEvent.class.getField("VK_" + tecla.getValue()).getInt(null);
+                if(codigo < keyIdToKey.length)
+                    keyIdToKey[codigo] = tecla.getKey();
+            } catch (NoSuchFieldException | IllegalAccessException ex) {
+                Logger.getLogger(ChipFrame.class.getName())
+                        .log(Level.WARNING, "Tecla desconocida en la configuracion: {0}", tecla.getValue());
+            }
+        }
+    }
+
     @Override
     public void keyPressed(KeyEvent e) {
         if(keyIdToKey[e.getKeyCode()] != -1) {
             keyBuffer[keyIdToKey[e.getKeyCode()]] = 1;
+            notificarTecla(keyIdToKey[e.getKeyCode()], true);
         }
     }
 
@@ -78,13 +183,29 @@ public class ChipFrame extends JFrame implements KeyListener {
     public void keyReleased(KeyEvent e) {
         if(keyIdToKey[e.getKeyCode()] != -1) {
             keyBuffer[keyIdToKey[e.getKeyCode()]] = 0;
+            notificarTecla(keyIdToKey[e.getKeyCode()], false);
         }
     }
 
+    private void notificarTecla(int tecla, boolean presionada) {
+        ControladorChip8 destino = controlador;
+        if(destino != null)
+            destino.setTecla(tecla, presionada);
+    }
+
     @Override
     public void keyTyped(KeyEvent e) {}
 
     public int[] getKeyBuffer() {
         return keyBuffer;
     }
+
+    public void setControlador(ControladorChip8 controlador) {
+        this.controlador = controlador;
+        SwingUtilities.invokeLater(this::aplicarVisibilidad);
+    }
+
+    public ChipPanel getPanel() {
+        return panel;
+    }
 }
@@ -4,30 +4,237 @@ package chip8;
  * Creado por luismario
  * Fecha: 15/07/15.
  */
-import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
 
 import javax.swing.JPanel;
 
 public class ChipPanel extends JPanel {
+    /***********************
+     * Presentacion de la pantalla, una vez por frame de 60 Hz.
+     *
+     *   Los juegos mueven sprites dibujandolos dos veces con XOR (borrar y
+     *   volver a dibujar); si se pinta en cada DXYN se ve el sprite
+     *   desaparecer. El host entrega un solo frame terminado con
+     *   presentar() y los frames iguales al ultimo no se repintan.
+     *
+     *   Con persistencia, un pixel que estaba encendido en el frame
+     *   anterior y ya no lo esta se pinta atenuado, lo que oculta el
+     *   parpadeo de los sprites que se borran en un frame y se dibujan en
+     *   el siguiente. Los colores salen de una tabla precalculada indexada
+     *   por 4 pixeles del frame actual y 4 del anterior.
+     *
+     *   En XO-CHIP la pantalla es de 128x64 con dos planos (ver
+     *   EstadoXoChip.empaquetar) y cada pixel toma uno de 4 colores con la
+     *   misma clase de tabla, indexada por 4 pixeles de cada plano. No hay
+     *   persistencia en ese modo.
+     **************************/
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int NEGRO = 0x000000;
+    private static final int BLANCO = 0xFFFFFF;
+    private static final int RASTRO = 0x5A5A5A;
+
+    // XO-CHIP: ningun plano, plano 1, plano 2, los dos
+    private static final int COLORES_XO[] = {0x000000, 0xFFFFFF, 0xFF6600, 0x662200};
+
     private final Chip8 chip;
+    private final long filas[] = new long[32];
+    private final long rastro[] = new long[32];
+
+    // Pantalla entregada con presentar() y la presentada antes de ella;
+    // si es null se pinta la del chip
+    private long presentada[];
+    private final long anterior[] = new long[32];
+
+    // Ultima pantalla XO-CHIP entregada; xo indica que es la que se pinta
+    private final long presentadaXo[] = new long[EstadoXoChip.TAM_PANTALLA];
+    private final long filasXo[] = new long[EstadoXoChip.TAM_PANTALLA];
+    private boolean xo;
+
+    private volatile boolean persistencia;
+
+    // Con la ventana oculta no se presenta nada
+    private volatile boolean suspendido;
+
+    // 4 colores por cada (nibble actual << 4 | nibble anterior)
+    private static final int TABLA[] = new int[256 * 4];
+
+    static {
+        for(int indice = 0; indice < 256; indice++){
+            for(int k = 0; k < 4; k++){
+                int bit = 3 - k;
+                boolean encendido = ((indice >> (4 + bit)) & 1) != 0;
+                boolean estaba = ((indice >> bit) & 1) != 0;
+                TABLA[(indice * 4) + k] = encendido ? BLANCO : estaba ? RASTRO : NEGRO;
+            }
+        }
+    }
+
+    // 4 colores por cada (nibble del plano 1 << 4 | nibble del plano 2)
+    private static final int TABLA_XO[] = new int[256 * 4];
+
+    static {
+        for(int indice = 0; indice < 256; indice++){
+            for(int k = 0; k < 4; k++){
+                int bit = 3 - k;
+                int color = ((indice >> (4 + bit)) & 1) | (((indice >> bit) & 1) << 1);
+                TABLA_XO[(indice * 4) + k] = COLORES_XO[color];
+            }
+        }
+    }
+
+    private final BufferedImage imagen = new BufferedImage(64, 32, BufferedImage.TYPE_INT_RGB);
+    private final int pixeles[] = ((DataBufferInt)imagen.getRaster().getDataBuffer()).getData();
+
+    private final BufferedImage imagenXo = new BufferedImage(
+            EstadoXoChip.ANCHO, EstadoXoChip.ALTO, BufferedImage.TYPE_INT_RGB
+    );
+    private final int pixelesXo[] = ((DataBufferInt)imagenXo.getRaster().getDataBuffer()).getData();
+
+    private long presentados;
+    private long omitidos;
+    private long pintados;
+    private long suspendidos;
 
     public ChipPanel(Chip8 chip) {
         this.chip = chip;
     }
 
+    public void setPersistencia(boolean persistencia) {
+        this.persistencia = persistencia;
+        repaint();
+    }
+
+    public void setSuspendido(boolean suspendido) {
+        this.suspendido = suspendido;
+    }
+
+    public long getSuspendidos() {
+        return suspendidos;
+    }
+
+    public long getPresentados() {
+        return presentados;
+    }
+
+    public long getOmitidos() {
+        return omitidos;
+    }
+
+    public long getPintados() {
+        return pintados;
+    }
+
+    /*
+    * Pinta un frame terminado: el del chip al final del frame, o uno
+    * distinto (por ejemplo el frame futuro de EjecucionAdelantada).
+    * Regresa false si se veria igual que lo que ya esta en pantalla o si
+    * la presentacion esta suspendida.
+    */
+    public boolean presentar(long[] pantalla) {
+        if(suspendido){
+            suspendidos++;
+            return false;
+        }
+
+        if(pantalla.length == EstadoXoChip.TAM_PANTALLA)
+            return presentarXo(pantalla);
+
+        synchronized(filas) {
+            // Despues de una pantalla XO-CHIP la de 64x32 siempre se pinta
+            boolean eraXo = xo;
+            xo = false;
+            if(presentada == null)
+                presentada = new long[32];
+
+            else if(!eraXo && Arrays.equals(pantalla, presentada)
+                    && (!persistencia || Arrays.equals(presentada, anterior))){
+                omitidos++;
+                return false;
+            }
+
+            System.arraycopy(presentada, 0, anterior, 0, 32);
+            System.arraycopy(pantalla, 0, presentada, 0, 32);
+            presentados++;
+        }
+        repaint();
+        return true;
+    }
+
+    private boolean presentarXo(long[] pantalla) {
+        synchronized(filas) {
+            if(xo && Arrays.equals(pantalla, presentadaXo)){
+                omitidos++;
+                return false;
+            }
+            xo = true;
+            System.arraycopy(pantalla, 0, presentadaXo, 0, pantalla.length);
+            presentados++;
+        }
+        repaint();
+        return true;
+    }
+
     @Override
     public void paint(Graphics g) {
-        for(int i = 0; i < chip.gfx.length; i++) {
-            if(chip.gfx[i] == 0)
-                g.setColor(Color.BLACK);
-            else
-                g.setColor(Color.WHITE);
+        boolean pintarXo;
+        synchronized(filas) {
+            pintarXo = xo || (presentada == null && chip.isXo());
+            if(xo)
+                System.arraycopy(presentadaXo, 0, filasXo, 0, filasXo.length);
+            else if(pintarXo)
+                chip.empaquetarPantalla(filasXo);
+            else if(presentada != null){
+                System.arraycopy(presentada, 0, filas, 0, 32);
+                System.arraycopy(anterior, 0, rastro, 0, 32);
+            }
+            else{
+                chip.empaquetarGfx(filas);
+                Arrays.fill(rastro, 0);
+            }
+        }
+        pintados++;
+
+        if(pintarXo){
+            pintarXo(g);
+            return;
+        }
 
-            int x = (i % 64);
-            int y = (int)Math.floor(i / 64);
+        boolean conRastro = persistencia;
+        for(int y = 0; y < 32; y++) {
+            long actual = filas[y];
+            long previa = conRastro ? rastro[y] : actual;
 
-            g.fillRect(x * 10, y * 10, 10, 10);
+            for(int n = 0; n < 16; n++) {
+                int corrimiento = 60 - (n * 4);
+                int indice = (int)(((actual >>> corrimiento) & 0xF) << 4)
+                        | (int)((previa >>> corrimiento) & 0xF);
+                System.arraycopy(TABLA, indice * 4, pixeles, (y * 64) + (n * 4), 4);
+            }
         }
+
+        g.drawImage(imagen, 0, 0, getWidth(), getHeight(), null);
+    }
+
+    private void pintarXo(Graphics g) {
+        int plano2 = EstadoXoChip.TAM_PANTALLA / 2;
+        for(int palabra = 0; palabra < plano2; palabra++) {
+            long primero = filasXo[palabra];
+            long segundo = filasXo[plano2 + palabra];
+            int base = palabra * 64;
+
+            for(int n = 0; n < 16; n++) {
+                int corrimiento = 60 - (n * 4);
+                int indice = (int)(((primero >>> corrimiento) & 0xF) << 4)
+                        | (int)((segundo >>> corrimiento) & 0xF);
+                System.arraycopy(TABLA_XO, indice * 4, pixelesXo, base + (n * 4), 4);
+            }
+        }
+
+        g.drawImage(imagenXo, 0, 0, getWidth(), getHeight(), null);
     }
 }
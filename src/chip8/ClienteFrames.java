@@ -0,0 +1,67 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+public class ClienteFrames {
+    /***********************
+     * Cliente bloqueante del protocolo de ServidorFrames. Mantiene una copia
+     * local de la pantalla aplicando cada delta recibido.
+     **************************/
+
+    final private SocketChannel canal;
+    final private ByteBuffer entrada =
+            ByteBuffer.allocate(ServidorFrames.ENCABEZADO + CodecDelta.MAX_DELTA);
+    final private ByteBuffer salida = ByteBuffer.allocate(2);
+
+    // Pantalla empaquetada, en el formato de Chip8.empaquetarGfx
+    final public long frame[] = new long[32];
+
+    public ClienteFrames(String host, int puerto) throws IOException {
+        canal = SocketChannel.open(new InetSocketAddress(host, puerto));
+        canal.socket().setTcpNoDelay(true);
+    }
+
+    // Bloquea hasta recibir un delta; regresa su largo en bytes
+    public int recibirFrame() throws IOException {
+        leer(ServidorFrames.ENCABEZADO);
+        int largo = entrada.getShort(0) & 0xFFFF;
+
+        leer(largo);
+        CodecDelta.aplicar(entrada, largo, frame);
+        return largo;
+    }
+
+    public void enviarTecla(int tecla, boolean presionada) throws IOException {
+        salida.clear();
+        salida.put((byte)tecla);
+        salida.put((byte)(presionada ? 1 : 0));
+        salida.flip();
+
+        while(salida.hasRemaining())
+            canal.write(salida);
+    }
+
+    public void cerrar() throws IOException {
+        canal.close();
+    }
+
+    private void leer(int bytes) throws IOException {
+        entrada.clear();
+        entrada.limit(bytes);
+
+        while(entrada.hasRemaining()){
+            if(canal.read(entrada) == -1)
+                throw new EOFException();
+        }
+        entrada.flip();
+    }
+}
@@ -0,0 +1,104 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.nio.ByteBuffer;
+
+public final class CodecDelta {
+    /***********************
+     * Codificacion delta de frames empaquetados (ver Chip8.empaquetarGfx).
+     *
+     *   El frame nuevo se combina con XOR contra el anterior, lo que deja en
+     *   cero todo lo que no cambio. Los 256 bytes resultantes se codifican
+     *   por corridas:
+     *
+     *      [ceros][literales][byte literal x literales] ...
+     *
+     *   ceros y literales ocupan un byte (0 - 255). Los ceros al final del
+     *   frame se omiten, asi que un frame sin cambios produce 0 bytes.
+     *
+     *   Una corrida de literales absorbe los huecos de uno o dos ceros: se
+     *   envian como literales, que cuestan lo mismo o menos que abrir otra
+     *   corrida. Asi cada encabezado nuevo ahorra al menos tres ceros, salvo
+     *   cuando la corrida anterior se corto en 255, y ningun delta pasa de
+     *   los 256 bytes en dos corridas (255 + 1) con sus encabezados.
+     **************************/
+
+    public static final int BYTES_FRAME = 32 * 8;
+
+    // Huecos de ceros que una corrida de literales absorbe
+    private static final int HUECO_MAXIMO = 2;
+
+    // Peor caso: 256 literales en dos corridas con sus encabezados
+    public static final int MAX_DELTA = BYTES_FRAME + 4;
+
+    private CodecDelta() {}
+
+    private static int byteXor(long[] anterior, long[] actual, int i){
+        int desplazamiento = 56 - ((i & 7) << 3);
+        return (int)(((anterior[i >> 3] ^ actual[i >> 3]) >>> desplazamiento) & 0xFF);
+    }
+
+    // Regresa el numero de bytes escritos en destino
+    public static int codificar(long[] anterior, long[] actual, ByteBuffer destino){
+        int inicio = destino.position();
+
+        // Se codifica solo hasta el ultimo byte que cambio
+        int fin = BYTES_FRAME;
+        while(fin > 0 && byteXor(anterior, actual, fin - 1) == 0)
+            fin--;
+
+        int i = 0;
+        while(i < fin){
+            int ceros = 0;
+            while(ceros < 255 && byteXor(anterior, actual, i) == 0){
+                ceros++;
+                i++;
+            }
+
+            // Corrida de literales hasta un hueco de mas de HUECO_MAXIMO
+            // ceros o 255 bytes. El ultimo byte (fin - 1) nunca es cero, asi
+            // que un hueco dentro de [i, fin) siempre termina antes de fin.
+            int inicioLiterales = i;
+            while(i < fin && (i - inicioLiterales) < 255){
+                if(byteXor(anterior, actual, i) != 0){
+                    i++;
+                    continue;
+                }
+
+                int hueco = 0;
+                while(hueco <= HUECO_MAXIMO && byteXor(anterior, actual, i + hueco) == 0)
+                    hueco++;
+                if(hueco > HUECO_MAXIMO || (i - inicioLiterales) + hueco >= 255)
+                    break;
+                i += hueco;
+            }
+
+            destino.put((byte)ceros);
+            destino.put((byte)(i - inicioLiterales));
+            for(int j = inicioLiterales; j < i; j++)
+                destino.put((byte)byteXor(anterior, actual, j));
+        }
+
+        return destino.position() - inicio;
+    }
+
+    // Aplica sobre frame un delta de largo bytes leido de origen
+    public static void aplicar(ByteBuffer origen, int largo, long[] frame){
+        int fin = origen.position() + largo;
+        int i = 0;
+
+        while(origen.position() < fin){
+            i += origen.get() & 0xFF;
+            int literales = origen.get() & 0xFF;
+
+            for(int j = 0; j < literales; j++, i++){
+                long valor = origen.get() & 0xFFL;
+                frame[i >> 3] ^= valor << (56 - ((i & 7) << 3));
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+
+/*
+* Formato de salida del grabador de frames. Recibe la pantalla empaquetada
+* (32 longs, ver Chip8.empaquetarGfx) junto con el instante de captura.
+*/
+public interface CodificadorFrames {
+    void escribir(long[] filas, long nanos) throws IOException;
+
+    void cerrar() throws IOException;
+}
@@ -0,0 +1,273 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+public class CodificadorGif implements CodificadorFrames {
+    /***********************
+     * Codificador de GIF animado (GIF89a) para la pantalla del Chip-8.
+     *
+     *   - Paleta global de dos colores (apagado/encendido).
+     *   - Los frames identicos se agrupan en uno solo alargando su retardo.
+     *   - Los frames que duran menos de 2 centesimas (el minimo que respetan
+     *     los visores) se reemplazan por el siguiente, lo que elimina el
+     *     parpadeo del borrado/redibujado de sprites.
+     *   - Los pixeles se comprimen con LZW y se escriben con un FileChannel.
+     **************************/
+
+    private static final int RETARDO_MINIMO = 2;
+
+    // Codigos LZW para un tamaño minimo de 2 bits (4 colores)
+    private static final int TAM_MINIMO = 2;
+    private static final int CODIGO_LIMPIAR = 1 << TAM_MINIMO;
+    private static final int CODIGO_FIN = CODIGO_LIMPIAR + 1;
+    private static final int MAX_CODIGOS = 4096;
+
+    final private FileChannel canal;
+    final private ByteBuffer salida = ByteBuffer.allocate(64 * 1024);
+
+    final private int escala;
+    final private int ancho;
+    final private int alto;
+
+    // Indices de color del frame escalado
+    final private byte indices[];
+
+    // Tabla LZW: (prefijo * 4 + simbolo) -> codigo
+    final private int tablaLzw[] = new int[MAX_CODIGOS * 4];
+
+    // Estado del empaquetado de codigos en bits
+    private int bits;
+    private int bitsPendientes;
+    final private byte subBloque[] = new byte[255];
+    private int largoSubBloque;
+
+    // Frame pendiente: se escribe cuando se conoce su duracion
+    final private long pendiente[] = new long[32];
+    private long inicioPendiente;
+    private boolean hayPendiente;
+
+    public CodificadorGif(Path archivo, int escala, int colorApagado, int colorEncendido)
+            throws IOException {
+        this.escala = escala;
+        this.ancho = 64 * escala;
+        this.alto = 32 * escala;
+        this.indices = new byte[ancho * alto];
+
+        canal = FileChannel.open(
+                archivo,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+        );
+
+        escribirEncabezado(colorApagado, colorEncendido);
+    }
+
+    @Override
+    public void escribir(long[] filas, long nanos) throws IOException {
+        if(!hayPendiente){
+            System.arraycopy(filas, 0, pendiente, 0, 32);
+            inicioPendiente = nanos;
+            hayPendiente = true;
+            return;
+        }
+
+        // Frame identico: solo se alarga el retardo del pendiente
+        if(Arrays.equals(filas, pendiente))
+            return;
+
+        int centesimas = (int)((nanos - inicioPendiente) / 10000000L);
+        if(centesimas >= RETARDO_MINIMO){
+            escribirFrame(pendiente, centesimas);
+            inicioPendiente = nanos;
+        }
+
+        System.arraycopy(filas, 0, pendiente, 0, 32);
+    }
+
+    @Override
+    public void cerrar() throws IOException {
+        if(hayPendiente)
+            escribirFrame(pendiente, RETARDO_MINIMO);
+
+        // Trailer del GIF
+        asegurar(1);
+        salida.put((byte)0x3B);
+        vaciar();
+        canal.close();
+    }
+
+    /****************************************************************
+     * Estructura del archivo
+     ****************************************************************/
+    private void escribirEncabezado(int colorApagado, int colorEncendido) throws IOException {
+        asegurar(64);
+        salida.put(new byte[]{'G', 'I', 'F', '8', '9', 'a'});
+
+        // Logical Screen Descriptor: tabla global de 2^(0+1) colores
+        escribirCorto(ancho);
+        escribirCorto(alto);
+        salida.put((byte)0x80);
+        salida.put((byte)0);
+        salida.put((byte)0);
+
+        escribirColor(colorApagado);
+        escribirColor(colorEncendido);
+
+        // Extension NETSCAPE2.0: repetir indefinidamente
+        salida.put(new byte[]{0x21, (byte)0xFF, 0x0B});
+        salida.put(new byte[]{'N', 'E', 'T', 'S', 'C', 'A', 'P', 'E', '2', '.', '0'});
+        salida.put(new byte[]{0x03, 0x01, 0x00, 0x00, 0x00});
+    }
+
+    private void escribirFrame(long[] filas, int centesimas) throws IOException {
+        asegurar(32);
+
+        // Graphic Control Extension con el retardo del frame
+        salida.put(new byte[]{0x21, (byte)0xF9, 0x04, 0x00});
+        escribirCorto(centesimas);
+        salida.put((byte)0);
+        salida.put((byte)0);
+
+        // Image Descriptor: frame completo, sin tabla local
+        salida.put((byte)0x2C);
+        escribirCorto(0);
+        escribirCorto(0);
+        escribirCorto(ancho);
+        escribirCorto(alto);
+        salida.put((byte)0);
+
+        // Mapeo a paleta con escalado
+        int i = 0;
+        for(int y = 0; y < alto; y++){
+            long fila = filas[y / escala];
+            for(int x = 0; x < ancho; x++){
+                indices[i++] = (byte)((fila >>> (63 - (x / escala))) & 1);
+            }
+        }
+
+        asegurar(1);
+        salida.put((byte)TAM_MINIMO);
+        comprimirLzw();
+    }
+
+    /****************************************************************
+     * Compresion LZW de los indices del frame
+     ****************************************************************/
+    private void comprimirLzw() throws IOException {
+        int siguiente = reiniciarTabla();
+        int anchoCodigo = TAM_MINIMO + 1;
+
+        bits = 0;
+        bitsPendientes = 0;
+        largoSubBloque = 0;
+
+        emitir(CODIGO_LIMPIAR, anchoCodigo);
+
+        int prefijo = indices[0];
+        for(int i = 1; i < indices.length; i++){
+            int simbolo = indices[i];
+            int codigo = tablaLzw[(prefijo << 2) | simbolo];
+
+            if(codigo != -1){
+                prefijo = codigo;
+                continue;
+            }
+
+            emitir(prefijo, anchoCodigo);
+
+            if(siguiente < MAX_CODIGOS){
+                tablaLzw[(prefijo << 2) | simbolo] = siguiente++;
+                if(siguiente > (1 << anchoCodigo) && anchoCodigo < 12)
+                    anchoCodigo++;
+            }
+            else{
+                // Tabla llena: se reinicia el diccionario
+                emitir(CODIGO_LIMPIAR, anchoCodigo);
+                siguiente = reiniciarTabla();
+                anchoCodigo = TAM_MINIMO + 1;
+            }
+            prefijo = simbolo;
+        }
+
+        emitir(prefijo, anchoCodigo);
+        emitir(CODIGO_FIN, anchoCodigo);
+
+        if(bitsPendientes > 0)
+            agregarByte(bits & 0xFF);
+        cerrarSubBloque();
+
+        // Terminador de bloques
+        asegurar(1);
+        salida.put((byte)0);
+    }
+
+    private int reiniciarTabla(){
+        Arrays.fill(tablaLzw, -1);
+        return CODIGO_FIN + 1;
+    }
+
+    // Los codigos se empaquetan empezando por el bit menos significativo
+    private void emitir(int codigo, int anchoCodigo) throws IOException {
+        bits |= codigo << bitsPendientes;
+        bitsPendientes += anchoCodigo;
+
+        while(bitsPendientes >= 8){
+            agregarByte(bits & 0xFF);
+            bits >>>= 8;
+            bitsPendientes -= 8;
+        }
+    }
+
+    private void agregarByte(int valor) throws IOException {
+        subBloque[largoSubBloque++] = (byte)valor;
+        if(largoSubBloque == subBloque.length)
+            cerrarSubBloque();
+    }
+
+    private void cerrarSubBloque() throws IOException {
+        if(largoSubBloque == 0)
+            return;
+
+        asegurar(largoSubBloque + 1);
+        salida.put((byte)largoSubBloque);
+        salida.put(subBloque, 0, largoSubBloque);
+        largoSubBloque = 0;
+    }
+
+    /****************************************************************
+     * Escritura
+     ****************************************************************/
+    private void escribirCorto(int valor){
+        salida.put((byte)(valor & 0xFF));
+        salida.put((byte)((valor >> 8) & 0xFF));
+    }
+
+    private void escribirColor(int rgb){
+        salida.put((byte)((rgb >> 16) & 0xFF));
+        salida.put((byte)((rgb >> 8) & 0xFF));
+        salida.put((byte)(rgb & 0xFF));
+    }
+
+    private void asegurar(int bytes) throws IOException {
+        if(salida.remaining() < bytes)
+            vaciar();
+    }
+
+    private void vaciar() throws IOException {
+        salida.flip();
+        while(salida.hasRemaining())
+            canal.write(salida);
+        salida.clear();
+    }
+}
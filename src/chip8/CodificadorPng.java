@@ -0,0 +1,148 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+public class CodificadorPng implements CodificadorFrames {
+    /***********************
+     * Secuencia de imagenes PNG, una por frame (frame_00000.png, ...).
+     *
+     *   Cada imagen usa paleta de 1 bit: el frame empaquetado ya tiene el
+     *   formato de las filas del PNG, solo se escala si es necesario.
+     *   Se reutilizan el Deflater y los buffers entre frames.
+     **************************/
+
+    private static final byte FIRMA[] = {
+            (byte)0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A
+    };
+
+    final private Path directorio;
+    final private int escala;
+    final private int ancho;
+    final private int alto;
+    final private byte paleta[];
+
+    // Filas del PNG: un byte de filtro seguido de los pixeles a 1 bit
+    final private int bytesPorFila;
+    final private byte crudo[];
+
+    // comprimido y salida crecen si algun frame no cabe
+    final private Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte comprimido[];
+    final private CRC32 crc = new CRC32();
+    private ByteBuffer salida;
+    private int inicioChunk;
+
+    private int numeroFrame;
+
+    public CodificadorPng(Path directorio, int escala, int colorApagado, int colorEncendido)
+            throws IOException {
+        this.directorio = Files.createDirectories(directorio);
+        this.escala = escala;
+        this.ancho = 64 * escala;
+        this.alto = 32 * escala;
+
+        paleta = new byte[]{
+                (byte)(colorApagado >> 16), (byte)(colorApagado >> 8), (byte)colorApagado,
+                (byte)(colorEncendido >> 16), (byte)(colorEncendido >> 8), (byte)colorEncendido
+        };
+
+        bytesPorFila = 1 + (ancho + 7) / 8;
+        crudo = new byte[bytesPorFila * alto];
+        comprimido = new byte[crudo.length + 1024];
+        salida = ByteBuffer.allocate(comprimido.length + 128);
+    }
+
+    @Override
+    public void escribir(long[] filas, long nanos) throws IOException {
+        // Filas escaladas; el byte de filtro (0 = ninguno) ya esta en cero
+        for(int y = 0; y < alto; y++){
+            long fila = filas[y / escala];
+            int base = y * bytesPorFila + 1;
+            for(int x = 0; x < ancho; x++){
+                int pixel = (int)((fila >>> (63 - (x / escala))) & 1);
+                crudo[base + (x >> 3)] |= pixel << (7 - (x & 7));
+            }
+        }
+
+        deflater.reset();
+        deflater.setInput(crudo);
+        deflater.finish();
+        int largo = 0;
+        while(!deflater.finished()){
+            if(largo == comprimido.length)
+                comprimido = Arrays.copyOf(comprimido, comprimido.length * 2);
+            largo += deflater.deflate(comprimido, largo, comprimido.length - largo);
+        }
+
+        if(salida.capacity() < largo + 128)
+            salida = ByteBuffer.allocate(comprimido.length + 128);
+        salida.clear();
+        salida.put(FIRMA);
+
+        // IHDR: ancho, alto, 1 bit por pixel, color indexado
+        iniciarChunk('I', 'H', 'D', 'R');
+        salida.putInt(ancho);
+        salida.putInt(alto);
+        salida.put(new byte[]{1, 3, 0, 0, 0});
+        cerrarChunk();
+
+        iniciarChunk('P', 'L', 'T', 'E');
+        salida.put(paleta);
+        cerrarChunk();
+
+        iniciarChunk('I', 'D', 'A', 'T');
+        salida.put(comprimido, 0, largo);
+        cerrarChunk();
+
+        iniciarChunk('I', 'E', 'N', 'D');
+        cerrarChunk();
+
+        salida.flip();
+        Path archivo = directorio.resolve(String.format("frame_%05d.png", numeroFrame++));
+        try(FileChannel canal = FileChannel.open(
+                archivo,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)){
+            while(salida.hasRemaining())
+                canal.write(salida);
+        }
+
+        Arrays.fill(crudo, (byte)0);
+    }
+
+    @Override
+    public void cerrar() {
+        deflater.end();
+    }
+
+    // Deja espacio para el largo del chunk, que se escribe al cerrarlo
+    private void iniciarChunk(char a, char b, char c, char d){
+        inicioChunk = salida.position();
+        salida.putInt(0);
+        salida.put((byte)a).put((byte)b).put((byte)c).put((byte)d);
+    }
+
+    private void cerrarChunk(){
+        int fin = salida.position();
+        salida.putInt(inicioChunk, fin - inicioChunk - 8);
+
+        // El CRC cubre el tipo y los datos del chunk
+        crc.reset();
+        crc.update(salida.array(), inicioChunk + 4, fin - inicioChunk - 4);
+        salida.putInt((int)crc.getValue());
+    }
+}
@@ -0,0 +1,229 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public final class ConfiguracionRom {
+    /***********************
+     * Configuracion por juego, de la base incluida en roms.cfg (junto a
+     * esta clase). Chip8.cargarJuego la busca por la huella de la ROM
+     * (ImagenRom.huella, FNV-1a de 64 bits del contenido) y la aplica:
+     *
+     *      ciclos=<n>                  instrucciones por frame de 60 Hz
+     *      peculiaridades=<a>,<b>      desplazarVy, conservarI
+     *      teclas=<t>:<tecla>,...      teclas extra de la ventana (KeyEvent.VK_*)
+     *
+     *   Cada linea es "<huella en hex> <nombre> [opciones]"; "#" inicia un
+     *   comentario. La base se lee una sola vez, al cargar la primera ROM,
+     *   en un arreglo ordenado de huellas que se recorre con busqueda
+     *   binaria. Para agregar un juego: ConfiguracionRom <rom>... imprime
+     *   sus lineas.
+     *
+     *   El numero de ciclos es el menor con el que el juego se ve y
+     *   responde bien; con los timers por instruccion de Chip8, mas ciclos
+     *   solo aceleran todo y gastan CPU. Los ciclos fijados a mano (Main
+     *   -hz, setCiclosPorFrame) tienen prioridad.
+     **************************/
+
+    // 8XY6 / 8XYE desplazan VY y guardan el resultado en VX (COSMAC VIP)
+    public static final int DESPLAZAR_VY = 1;
+
+    // FX55 / FX65 no modifican I (CHIP-48 y SUPER-CHIP)
+    public static final int CONSERVAR_I = 2;
+
+    private static final String PECULIARIDADES[] = {"desplazarVy", "conservarI"};
+
+    private static final String ARCHIVO = "roms.cfg";
+
+    final private String nombre;
+    final private int ciclos;
+    final private int peculiaridades;
+    final private Map<Integer, String> teclas;
+
+    private ConfiguracionRom(String nombre, int ciclos, int peculiaridades, Map<Integer, String> teclas) {
+        this.nombre = nombre;
+        this.ciclos = ciclos;
+        this.peculiaridades = peculiaridades;
+        this.teclas = Collections.unmodifiableMap(teclas);
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    // Ciclos por frame, o 0 para dejar los de Chip8.period
+    public int getCiclos() {
+        return ciclos;
+    }
+
+    public int getPeculiaridades() {
+        return peculiaridades;
+    }
+
+    // Tecla del Chip-8 -> nombre de KeyEvent sin "VK_" (LEFT, SPACE...)
+    public Map<Integer, String> getTeclas() {
+        return teclas;
+    }
+
+    /****************************************************************
+     * Base de configuraciones
+     ****************************************************************/
+
+    // Carga perezosa y unica: la clase interna se inicializa al primer uso
+    private static final class Base {
+        static final long HUELLAS[];
+        static final ConfiguracionRom CONFIGURACIONES[];
+
+        static {
+            List<long[]> orden = new ArrayList<>();
+            List<ConfiguracionRom> leidas = new ArrayList<>();
+
+            try(InputStream in = ConfiguracionRom.class.getResourceAsStream(ARCHIVO)){
+                if(in == null)
+                    throw new IOException("No se encontro " + ARCHIVO);
+                leer(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)), orden, leidas);
+            } catch (IOException | RuntimeException ex) {
+                // Un roms.cfg mal escrito no debe impedir cargar la clase
+                Logger.getLogger(ConfiguracionRom.class.getName())
+                        .log(Level.WARNING, "Sin configuraciones por ROM", ex);
+                orden.clear();
+                leidas.clear();
+            }
+
+            // Ordenadas por huella, con el indice de su configuracion
+            orden.sort((a, b) -> Long.compare(a[0], b[0]));
+            HUELLAS = new long[orden.size()];
+            CONFIGURACIONES = new ConfiguracionRom[orden.size()];
+            for(int i = 0; i < orden.size(); i++){
+                HUELLAS[i] = orden.get(i)[0];
+                CONFIGURACIONES[i] = leidas.get((int)orden.get(i)[1]);
+            }
+        }
+    }
+
+    // Configuracion de la ROM con esa huella, o null si no esta en la base
+    public static ConfiguracionRom buscar(long huella) {
+        int indice = Arrays.binarySearch(Base.HUELLAS, huella);
+        return indice >= 0 ? Base.CONFIGURACIONES[indice] : null;
+    }
+
+    // Juegos en la base
+    public static int getTotal() {
+        return Base.HUELLAS.length;
+    }
+
+    static void leer(BufferedReader entrada, List<long[]> huellas, List<ConfiguracionRom> configuraciones)
+            throws IOException {
+        String linea;
+        while((linea = entrada.readLine()) != null){
+            int comentario = linea.indexOf('#');
+            if(comentario >= 0)
+                linea = linea.substring(0, comentario);
+            linea = linea.trim();
+            if(linea.isEmpty())
+                continue;
+
+            String partes[] = linea.split("\\s+");
+            if(partes.length < 2)
+                throw new IllegalArgumentException("Linea incompleta: " + linea);
+
+            huellas.add(new long[]{Long.parseUnsignedLong(partes[0], 16), configuraciones.size()});
+            configuraciones.add(interpretar(partes));
+        }
+    }
+
+    private static ConfiguracionRom interpretar(String[] partes) {
+        int ciclos = 0;
+        int peculiaridades = 0;
+        Map<Integer, String> teclas = new LinkedHashMap<>();
+
+        for(int i = 2; i < partes.length; i++){
+            int igual = partes[i].indexOf('=');
+            if(igual < 0)
+                throw new IllegalArgumentException("Opcion invalida: " + partes[i]);
+            String valor = partes[i].substring(igual + 1);
+
+            switch(partes[i].substring(0, igual)){
+                case "ciclos":
+                    ciclos = Integer.parseInt(valor);
+                    break;
+                case "peculiaridades":
+                    for(String nombre: valor.split(",")){
+                        int indice = Arrays.asList(PECULIARIDADES).indexOf(nombre);
+                        if(indice < 0)
+                            throw new IllegalArgumentException("Peculiaridad desconocida: " + nombre);
+                        peculiaridades |= 1 << indice;
+                    }
+                    break;
+                case "teclas":
+                    for(String par: valor.split(",")){
+                        String tecla[] = par.split(":");
+                        if(tecla.length != 2 || tecla[1].isEmpty())
+                            throw new IllegalArgumentException("Tecla invalida: " + par);
+                        int indice = Integer.parseInt(tecla[0], 16);
+                        if((indice & ~0xF) != 0)
+                            throw new IllegalArgumentException("Tecla invalida: " + par);
+                        teclas.put(indice, tecla[1]);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Opcion invalida: " + partes[i]);
+            }
+        }
+        return new ConfiguracionRom(partes[1], ciclos, peculiaridades, teclas);
+    }
+
+    /*
+    * Uso: ConfiguracionRom <rom>...
+    * Imprime la linea de roms.cfg de cada ROM, con su configuracion actual
+    * si ya esta en la base.
+    */
+    public static void main(String[] args) throws IOException {
+        for(String archivo: args){
+            long huella = ImagenRom.huella(Files.readAllBytes(Paths.get(archivo)));
+            ConfiguracionRom actual = buscar(huella);
+            System.out.printf("%016x %s%s%n", huella, Paths.get(archivo).getFileName(),
+                    actual != null ? "    # ya registrada: " + actual : "");
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder texto = new StringBuilder(nombre);
+        if(ciclos > 0)
+            texto.append(" ciclos=").append(ciclos);
+
+        List<String> nombres = new ArrayList<>();
+        for(int i = 0; i < PECULIARIDADES.length; i++){
+            if((peculiaridades & (1 << i)) != 0)
+                nombres.add(PECULIARIDADES[i]);
+        }
+        if(!nombres.isEmpty())
+            texto.append(" peculiaridades=").append(String.join(",", nombres));
+
+        List<String> pares = new ArrayList<>();
+        for(Map.Entry<Integer, String> tecla: teclas.entrySet())
+            pares.add(String.format("%X:%s", tecla.getKey(), tecla.getValue()));
+        if(!pares.isEmpty())
+            texto.append(" teclas=").append(String.join(",", pares));
+        return texto.toString();
+    }
+}
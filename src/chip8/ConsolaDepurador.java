@@ -0,0 +1,193 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+
+public class ConsolaDepurador {
+    /***********************
+     * Interfaz de texto del Depurador, una orden por linea. Lee de
+     * cualquier entrada, asi que una sesion se puede guardar en un archivo
+     * y repetir (Main -modo pasos rom < sesion.txt).
+     *
+     *      p, paso [n]                 una instruccion (n veces)
+     *      s, sobre                    un 2NNN completo hasta su 00EE
+     *      f, fuera                    hasta salir de la subrutina actual
+     *      c, continuar [n]            hasta una parada o n instrucciones
+     *      b <dir>                     punto de parada
+     *      q <dir>                     quita el punto de parada
+     *      si <reg> <op> <valor> [en <dir>]    parada condicional
+     *      vigilar <dir>[:<hasta>] [l|e|le]    vigilancia de memoria
+     *      vigilar I [l|e|le]                  vigilancia de I
+     *      limpiar                     quita puntos y vigilancias
+     *      tecla <t> <0|1>             presiona o suelta una tecla
+     *      regs, mem <dir> [n], pantalla
+     *      salir
+     *
+     *   Una linea vacia es un paso y "#" inicia un comentario. Los numeros
+     *   aceptan 0x para hexadecimal; los registros son V0-VF, I, DT, ST, SP
+     *   y los operadores ==, !=, <, <=, >, >=.
+     **************************/
+
+    private static final long MAXIMO_CONTINUAR = 10000000;
+
+    final private Depurador depurador;
+    final private Chip8 chip;
+    final private BufferedReader entrada;
+    final private PrintStream salida;
+
+    public ConsolaDepurador(Depurador depurador, BufferedReader entrada, PrintStream salida) {
+        this.depurador = depurador;
+        this.chip = depurador.getChip();
+        this.entrada = entrada;
+        this.salida = salida;
+    }
+
+    // Atiende ordenes hasta "salir" o el fin de la entrada
+    public void ejecutar() throws IOException {
+        salida.println(depurador.instruccionActual());
+
+        String linea;
+        while((linea = entrada.readLine()) != null){
+            int comentario = linea.indexOf('#');
+            if(comentario >= 0)
+                linea = linea.substring(0, comentario);
+
+            String partes[] = linea.trim().split("\\s+");
+            if(partes[0].equals("salir"))
+                return;
+
+            try {
+                atender(partes);
+            } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+                salida.println("Error: " + (ex.getMessage() != null ? ex.getMessage() : linea.trim()));
+            }
+        }
+    }
+
+    private void atender(String[] partes) {
+        switch(partes[0]){
+            case "":
+            case "p":
+            case "paso":
+                int veces = partes.length > 1 ? numero(partes[1]) : 1;
+                String parada = null;
+                for(int i = 0; i < veces; i++){
+                    parada = depurador.paso();
+                    if(depurador.getMotivo() != Depurador.PARADA_PASO)
+                        break;
+                }
+                salida.println(parada);
+                break;
+            case "s":
+            case "sobre":
+                salida.println(depurador.pasoSobre());
+                break;
+            case "f":
+            case "fuera":
+                salida.println(depurador.pasoFuera());
+                break;
+            case "c":
+            case "continuar":
+                salida.println(depurador.continuar(
+                        partes.length > 1 ? numero(partes[1]) : MAXIMO_CONTINUAR
+                ));
+                break;
+            case "b":
+                depurador.agregarPunto(numero(partes[1]));
+                break;
+            case "q":
+                depurador.quitarPunto(numero(partes[1]));
+                break;
+            case "si":
+                depurador.agregarCondicion(
+                        registro(partes[1]), partes[2], numero(partes[3]),
+                        partes.length > 5 && partes[4].equals("en") ? numero(partes[5]) : -1
+                );
+                break;
+            case "vigilar":
+                vigilar(partes);
+                break;
+            case "limpiar":
+                depurador.limpiar();
+                break;
+            case "tecla":
+                chip.setTecla(numero(partes[1]), numero(partes[2]) != 0);
+                break;
+            case "regs":
+                imprimirRegistros();
+                break;
+            case "mem":
+                imprimirMemoria(numero(partes[1]), partes.length > 2 ? numero(partes[2]) : 16);
+                break;
+            case "pantalla":
+                imprimirPantalla();
+                break;
+            default:
+                throw new IllegalArgumentException("Orden desconocida: " + partes[0]);
+        }
+    }
+
+    private void vigilar(String[] partes) {
+        String modo = partes.length > 2 ? partes[2] : "e";
+        boolean lectura = modo.indexOf('l') >= 0;
+        boolean escritura = modo.indexOf('e') >= 0;
+
+        if(partes[1].equalsIgnoreCase("I")){
+            depurador.vigilarI(lectura, escritura);
+            return;
+        }
+
+        int separador = partes[1].indexOf(':');
+        int desde = numero(separador < 0 ? partes[1] : partes[1].substring(0, separador));
+        int hasta = separador < 0 ? desde : numero(partes[1].substring(separador + 1));
+        depurador.vigilarMemoria(desde, hasta, lectura, escritura);
+    }
+
+    private static int numero(String texto) {
+        return Integer.decode(texto);
+    }
+
+    private static int registro(String nombre) {
+        int registro = Depurador.registro(nombre);
+        if(registro < 0)
+            throw new IllegalArgumentException("Registro desconocido: " + nombre);
+        return registro;
+    }
+
+    private void imprimirRegistros() {
+        StringBuilder texto = new StringBuilder();
+        for(int x = 0; x < 16; x++)
+            texto.append(String.format("V%X=%02X ", x, depurador.leerRegistro(x)));
+        texto.append(String.format("%nI=%04X DT=%02X ST=%02X SP=%X PC=%04X",
+                chip.getI(), depurador.leerRegistro(Depurador.REGISTRO_DT),
+                depurador.leerRegistro(Depurador.REGISTRO_ST),
+                depurador.leerRegistro(Depurador.REGISTRO_SP), chip.pc));
+        salida.println(texto);
+    }
+
+    private void imprimirMemoria(int desde, int bytes) {
+        StringBuilder texto = new StringBuilder();
+        for(int i = 0; i < bytes; i++){
+            if(i % 16 == 0)
+                texto.append(i > 0 ? "\n" : "").append(String.format("0x%04X:", desde + i));
+            texto.append(String.format(" %02X", chip.leerMemoria(desde + i)));
+        }
+        salida.println(texto);
+    }
+
+    private void imprimirPantalla() {
+        StringBuilder texto = new StringBuilder();
+        for(int y = 0; y < 32; y++){
+            for(int x = 0; x < 64; x++)
+                texto.append(chip.getPixel(x, y) != 0 ? '#' : '.');
+            texto.append('\n');
+        }
+        salida.print(texto);
+    }
+}
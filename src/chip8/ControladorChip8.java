@@ -0,0 +1,468 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class ControladorChip8 {
+    /***********************
+     * Ejecuta una maquina a 60 frames por segundo en un hilo propio y
+     * entrega sus eventos a los oyentes registrados (ver OyenteChip8).
+     *
+     *   Los campos publicos de Chip8 (pc, gfx, key, drawFlag, RUNNING...)
+     *   no son volatile: una vez iniciado, solo el hilo del emulador los
+     *   toca. Los demas hilos usan este controlador:
+     *
+     *      - setTecla() publica el teclado en un entero atomico que se
+     *        aplica al inicio de cada frame.
+     *      - pausar() regresa cuando el hilo ya se detuvo entre dos frames;
+     *        desde ahi y hasta reanudar() o paso(), quien pauso puede leer
+     *        y modificar el chip: la espera y el aviso pasan por el mismo
+     *        monitor, lo que ordena los accesos de ambos hilos.
+     *      - paso() ejecuta un frame con la maquina pausada y regresa al
+     *        terminar, otra vez con el chip accesible.
+     *      - setReposo() baja el consumo mientras nadie ve la pantalla.
+     *
+     *   La lista de oyentes es un arreglo que se reemplaza completo al
+     *   registrar; el recorrido de cada frame no crea objetos.
+     **************************/
+
+    private static final long PERIODO = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    // Atraso a partir del cual se deja de recuperar frames perdidos
+    private static final long ATRASO_MAXIMO = TimeUnit.SECONDS.toNanos(1);
+
+    private static final OyenteChip8 NINGUNO[] = {};
+
+    // Que hacer en reposo (ventana oculta o sin foco, ver setReposo)
+    public static final int POLITICA_NORMAL = 0;
+    public static final int POLITICA_TIMERS = 1;
+    public static final int POLITICA_PAUSA = 2;
+
+    // Intervalo entre despertares del reposo con solo los timers
+    private static final long TICK_REPOSO = TimeUnit.MILLISECONDS.toNanos(250);
+
+    final private Chip8 chip;
+    final private SalidaSonido salida;
+    final private long pantalla[] = new long[32];
+    final private long pantallaXo[] = new long[EstadoXoChip.TAM_PANTALLA];
+    final private int teclado[] = new int[16];
+    final private AtomicInteger teclas = new AtomicInteger();
+
+    private volatile OyenteChip8 oyentes[] = NINGUNO;
+    private volatile EjecucionAdelantada adelanto;
+
+    // Estado de control; se escribe dentro de "control" y el hilo del
+    // emulador lo consulta sin bloquear mientras espera el siguiente frame
+    final private Object control = new Object();
+    private volatile boolean pausado;
+    private volatile boolean terminar;
+    private volatile boolean detenido;
+    private volatile long frames;
+    private int pasosPendientes;
+    private boolean enEspera;
+    private boolean tono;
+
+    // Reposo pedido y el que ya aplico el hilo del emulador, con su consumo
+    private volatile int reposo = POLITICA_NORMAL;
+    private int estadoReposo = POLITICA_NORMAL;
+    private long inicioReposo;
+    private long cpuInicioReposo;
+    private volatile long tiempoReposo;
+    private volatile long cpuReposo;
+
+    private Thread hilo;
+
+    /*
+    * La salida de sonido del chip se envuelve para avisar a los oyentes;
+    * debe fijarse antes de crear el controlador.
+    */
+    public ControladorChip8(Chip8 chip) {
+        this.chip = chip;
+        this.salida = chip.getSalidaSonido();
+        chip.setSalidaSonido(new SalidaSonido() {
+            @Override
+            public void setActivo(boolean activo) {
+                cambiarTono(activo);
+            }
+
+            @Override
+            public void setPatron(byte[] patron, int tono) {
+                salida.setPatron(patron, tono);
+            }
+        });
+    }
+
+    public Chip8 getChip() {
+        return chip;
+    }
+
+    /****************************************************************
+     * Oyentes
+     ****************************************************************/
+    public void agregarOyente(OyenteChip8 oyente) {
+        synchronized(control) {
+            OyenteChip8 nuevos[] = Arrays.copyOf(oyentes, oyentes.length + 1);
+            nuevos[oyentes.length] = oyente;
+            oyentes = nuevos;
+        }
+    }
+
+    public void quitarOyente(OyenteChip8 oyente) {
+        synchronized(control) {
+            OyenteChip8 actuales[] = oyentes;
+            for(int i = 0; i < actuales.length; i++){
+                if(actuales[i] != oyente)
+                    continue;
+
+                OyenteChip8 nuevos[] = new OyenteChip8[actuales.length - 1];
+                System.arraycopy(actuales, 0, nuevos, 0, i);
+                System.arraycopy(actuales, i + 1, nuevos, i, nuevos.length - i);
+                oyentes = nuevos;
+                return;
+            }
+        }
+    }
+
+    // Presenta el frame futuro en lugar del real (ver EjecucionAdelantada)
+    public void setAdelanto(EjecucionAdelantada adelanto) {
+        this.adelanto = adelanto;
+    }
+
+    /****************************************************************
+     * Entrada
+     ****************************************************************/
+    public void setTecla(int tecla, boolean presionada) {
+        int bit = 1 << tecla;
+        int actual;
+        do {
+            actual = teclas.get();
+        } while(!teclas.compareAndSet(actual, presionada ? actual | bit : actual & ~bit));
+    }
+
+    // Teclas presionadas, un bit por tecla
+    public int getTeclas() {
+        return teclas.get();
+    }
+
+    /****************************************************************
+     * Control
+     ****************************************************************/
+    public void iniciar() {
+        synchronized(control) {
+            if(hilo != null)
+                return;
+            hilo = new Thread(this::ejecutar, "chip8");
+            hilo.start();
+        }
+    }
+
+    /*
+    * Detiene la maquina entre dos frames y espera a que el hilo se
+    * detenga. Llamado desde un oyente solo marca la pausa.
+    */
+    public void pausar() {
+        synchronized(control) {
+            pausado = true;
+            pasosPendientes = 0;
+            LockSupport.unpark(hilo);
+            esperar(() -> enEspera);
+        }
+    }
+
+    public void reanudar() {
+        synchronized(control) {
+            pausado = false;
+            pasosPendientes = 0;
+            control.notifyAll();
+        }
+    }
+
+    // Ejecuta un frame con la maquina pausada y espera a que termine
+    public void paso() {
+        synchronized(control) {
+            if(!pausado)
+                pausar();
+
+            long objetivo = frames + 1;
+            pasosPendientes++;
+            control.notifyAll();
+            esperar(() -> (frames >= objetivo || detenido) && enEspera);
+        }
+    }
+
+    // Termina el hilo del emulador y espera a que salga
+    public void cerrar() {
+        Thread actual;
+        synchronized(control) {
+            terminar = true;
+            actual = hilo;
+            control.notifyAll();
+        }
+        if(actual == null || actual == Thread.currentThread())
+            return;
+
+        LockSupport.unpark(actual);
+        try {
+            actual.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+    * Deja de emular mientras la ventana no se ve: POLITICA_PAUSA congela
+    * la maquina y POLITICA_TIMERS solo avanza los timers con el reloj;
+    * POLITICA_NORMAL vuelve a los 60 frames por segundo. No bloquea.
+    */
+    public void setReposo(int politica) {
+        synchronized(control) {
+            reposo = politica;
+            control.notifyAll();
+            LockSupport.unpark(hilo);
+        }
+    }
+
+    public int getReposo() {
+        return reposo;
+    }
+
+    // Nombre de la politica (normal, timers, pausa) a su valor
+    public static int politica(String nombre) {
+        switch(nombre){
+            case "normal":
+                return POLITICA_NORMAL;
+            case "timers":
+                return POLITICA_TIMERS;
+            case "pausa":
+                return POLITICA_PAUSA;
+            default:
+                throw new IllegalArgumentException("Politica desconocida: " + nombre);
+        }
+    }
+
+    // Tiempo y CPU del hilo del emulador en los periodos de reposo ya terminados
+    public long getNanosReposo() {
+        return tiempoReposo;
+    }
+
+    public long getCpuReposo() {
+        return cpuReposo;
+    }
+
+    public boolean isPausado() {
+        return pausado;
+    }
+
+    public boolean isDetenido() {
+        return detenido;
+    }
+
+    // Frames ejecutados desde iniciar()
+    public long getFrames() {
+        return frames;
+    }
+
+    private interface Condicion {
+        boolean cumplida();
+    }
+
+    // Espera dentro de "control" a que el hilo del emulador cumpla algo
+    private void esperar(Condicion condicion) {
+        if(hilo == null || hilo == Thread.currentThread())
+            return;
+
+        boolean interrumpido = false;
+        while(!condicion.cumplida() && !terminar && hilo.isAlive()){
+            try {
+                control.wait();
+            } catch (InterruptedException ex) {
+                interrumpido = true;
+            }
+        }
+        if(interrumpido)
+            Thread.currentThread().interrupt();
+    }
+
+    /****************************************************************
+     * Hilo del emulador
+     ****************************************************************/
+    private void ejecutar() {
+        long limite = System.nanoTime();
+
+        try {
+            while(true){
+                revisarReposo();
+                if(esperarTurno())
+                    limite = System.nanoTime();
+                if(terminar)
+                    return;
+
+                revisarReposo();
+                if(estadoReposo == POLITICA_TIMERS && !pausado){
+                    limite = reposar(limite);
+                    continue;
+                }
+
+                emularFrame();
+
+                synchronized(control) {
+                    frames++;
+                    control.notifyAll();
+                }
+
+                // A 60 Hz con limite absoluto: el error de un frame no se
+                // acumula en los siguientes
+                limite += PERIODO;
+                long ahora = System.nanoTime();
+                if(ahora - limite > ATRASO_MAXIMO)
+                    limite = ahora;
+
+                while(!pausado && !terminar && reposo == POLITICA_NORMAL && limite - System.nanoTime() > 0)
+                    LockSupport.parkNanos(this, limite - System.nanoTime());
+            }
+        } finally {
+            synchronized(control) {
+                enEspera = true;
+                control.notifyAll();
+            }
+        }
+    }
+
+    /*
+    * Reposo con solo los timers: el hilo despierta cada TICK_REPOSO y
+    * avanza los timers por los frames completos que pasaron. El limite
+    * conserva la fraccion de frame pendiente, asi que al salir del reposo
+    * el siguiente frame llega a tiempo y los timers valen lo mismo que si
+    * la maquina hubiera corrido.
+    */
+    private long reposar(long limite) {
+        long despertar = limite + TICK_REPOSO;
+        while(reposo == POLITICA_TIMERS && !pausado && !terminar && despertar - System.nanoTime() > 0)
+            LockSupport.parkNanos(this, despertar - System.nanoTime());
+
+        long transcurridos = (System.nanoTime() - limite) / PERIODO;
+        if(transcurridos > 0){
+            chip.avanzarTimers(transcurridos * chip.ciclosPorFrame());
+            limite += transcurridos * PERIODO;
+        }
+        return limite;
+    }
+
+    // Lleva la cuenta del tiempo y del CPU del hilo en cada periodo de reposo
+    private void revisarReposo() {
+        int politica = reposo;
+        if(politica == estadoReposo)
+            return;
+
+        long ahora = System.nanoTime();
+        long cpu = cpuHilo();
+        if(estadoReposo != POLITICA_NORMAL){
+            long tiempo = ahora - inicioReposo;
+            long gastado = cpu - cpuInicioReposo;
+            tiempoReposo += tiempo;
+            cpuReposo += gastado;
+
+            Logger.getLogger(ControladorChip8.class.getName()).log(Level.INFO, String.format(
+                    "Reposo de %.1f s: %.2f ms de CPU (%.3f%%)",
+                    tiempo / 1e9, gastado / 1e6, tiempo > 0 ? (gastado * 100.0) / tiempo : 0
+            ));
+        }
+
+        estadoReposo = politica;
+        inicioReposo = ahora;
+        cpuInicioReposo = cpu;
+    }
+
+    private static long cpuHilo() {
+        ThreadMXBean hilos = ManagementFactory.getThreadMXBean();
+        return hilos.isCurrentThreadCpuTimeSupported() ? hilos.getCurrentThreadCpuTime() : 0;
+    }
+
+    // Espera mientras la maquina este pausada, en reposo pausado o detenida;
+    // regresa true si espero
+    private boolean esperarTurno() {
+        synchronized(control) {
+            boolean espero = false;
+            while(!terminar && (detenido
+                    || ((pausado || reposo == POLITICA_PAUSA) && pasosPendientes == 0))){
+                enEspera = true;
+                espero = true;
+                control.notifyAll();
+                try {
+                    control.wait();
+                } catch (InterruptedException ex) {
+                    terminar = true;
+                }
+            }
+
+            enEspera = false;
+            if(pausado && pasosPendientes > 0)
+                pasosPendientes--;
+            return espero;
+        }
+    }
+
+    private void emularFrame() {
+        OyenteChip8 lista[] = oyentes;
+        int mascara = teclas.get();
+        for(int i = 0; i < 16; i++)
+            teclado[i] = (mascara >>> i) & 1;
+
+        long filas[] = pantalla;
+        try {
+            EjecucionAdelantada futuro = adelanto;
+            if(futuro != null){
+                futuro.emularFrame(teclado);
+                filas = futuro.getPantalla();
+            }
+            else{
+                chip.setKeyPad(teclado);
+                chip.emularFrame();
+                filas = chip.isXo() ? pantallaXo : pantalla;
+                chip.empaquetarPantalla(filas);
+            }
+        } catch (RuntimeException ex) {
+            Logger.getLogger(ControladorChip8.class.getName())
+                    .log(Level.SEVERE, "La maquina se detuvo en pc=" + chip.pc, ex);
+            detener(lista, ex);
+            return;
+        }
+
+        boolean cambio = chip.drawFlag;
+        chip.drawFlag = false;
+        for(int i = 0; i < lista.length; i++)
+            lista[i].frameCompleto(chip, filas, cambio);
+
+        if(!chip.RUNNING)
+            detener(lista, null);
+    }
+
+    private void detener(OyenteChip8[] lista, Throwable causa) {
+        detenido = true;
+        for(int i = 0; i < lista.length; i++)
+            lista[i].detenido(chip, causa);
+    }
+
+    // Salida de sonido del chip: solo los cambios reales llegan a los oyentes
+    private void cambiarTono(boolean activo) {
+        salida.setActivo(activo);
+        if(activo == tono)
+            return;
+        tono = activo;
+
+        OyenteChip8 lista[] = oyentes;
+        for(int i = 0; i < lista.length; i++)
+            lista[i].sonido(activo);
+    }
+}
@@ -0,0 +1,476 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class Depurador {
+    /***********************
+     * Puntos de parada y vigilancia para una maquina, sin costo para la
+     * ejecucion normal.
+     *
+     *   Chip8 no revisa nada de esto: mientras se depura, el depurador
+     *   ejecuta una instruccion a la vez y revisa el pc y las condiciones
+     *   antes de cada una. Las vigilancias de memoria y de I necesitan ver
+     *   el opcode, asi que solo mientras existe alguna se instala un motor
+     *   instrumentado (ver NucleoCpu) que envuelve al de la maquina y se
+     *   quita al regresar. Sin puntos ni vigilancias, continuar() usa el
+     *   despacho normal por bloques.
+     *
+     *   Las vigilancias se reportan despues de ejecutar la instruccion que
+     *   hizo el acceso, como las de un procesador real.
+     **************************/
+
+    // Motivos de la ultima parada
+    public static final int PARADA_PASO = 0;
+    public static final int PARADA_PUNTO = 1;
+    public static final int PARADA_CONDICION = 2;
+    public static final int PARADA_LECTURA = 3;
+    public static final int PARADA_ESCRITURA = 4;
+    public static final int PARADA_ESPERA_TECLA = 5;
+    public static final int PARADA_DETENIDO = 6;
+    public static final int PARADA_LIMITE = 7;
+
+    // Registros para las condiciones, ademas de V0-VF (0-15)
+    public static final int REGISTRO_I = 16;
+    public static final int REGISTRO_DT = 17;
+    public static final int REGISTRO_ST = 18;
+    public static final int REGISTRO_SP = 19;
+
+    private static final String OPERADORES[] = {"==", "!=", "<", "<=", ">", ">="};
+
+    private static final int LECTURA = 1;
+    private static final int ESCRITURA = 2;
+
+    // Modos de ejecutar()
+    private static final int CONTINUAR = 0;
+    private static final int PASO = 1;
+    private static final int SOBRE = 2;
+    private static final int FUERA = 3;
+
+    private static final int MASCARA = 0xFFFF;
+
+    final private Chip8 chip;
+
+    final private boolean puntos[] = new boolean[MASCARA + 1];
+    private int totalPuntos;
+
+    final private List<Condicion> condiciones = new ArrayList<>();
+
+    // LECTURA | ESCRITURA por direccion de memoria y para I
+    final private byte vigilancia[] = new byte[MASCARA + 1];
+    private int totalVigilancias;
+    private int vigilanciaI;
+
+    final private NucleoCpu instrumentado = new Instrumentado();
+    private NucleoCpu original;
+
+    // Acceso vigilado de la instruccion en curso, o -1
+    private int motivoAcceso;
+    private String detalleAcceso;
+
+    private int motivo;
+    private long ciclos;
+    private long limite = 10000000;
+
+    private static final class Condicion {
+        final int registro;
+        final int operador;
+        final int valor;
+        final int direccion;
+
+        Condicion(int registro, int operador, int valor, int direccion) {
+            this.registro = registro;
+            this.operador = operador;
+            this.valor = valor;
+            this.direccion = direccion;
+        }
+    }
+
+    public Depurador(Chip8 chip) {
+        this.chip = chip;
+    }
+
+    public Chip8 getChip() {
+        return chip;
+    }
+
+    /****************************************************************
+     * Puntos de parada y vigilancias
+     ****************************************************************/
+    public void agregarPunto(int direccion) {
+        if(!puntos[direccion & MASCARA]){
+            puntos[direccion & MASCARA] = true;
+            totalPuntos++;
+        }
+    }
+
+    public void quitarPunto(int direccion) {
+        if(puntos[direccion & MASCARA]){
+            puntos[direccion & MASCARA] = false;
+            totalPuntos--;
+        }
+    }
+
+    /*
+    * Se detiene antes de ejecutar una instruccion si "registro operador
+    * valor" se cumple; con direccion >= 0 solo se revisa en ese pc.
+    */
+    public void agregarCondicion(int registro, String operador, int valor, int direccion) {
+        int indice = Arrays.asList(OPERADORES).indexOf(operador);
+        if(indice < 0)
+            throw new IllegalArgumentException("Operador desconocido: " + operador);
+        if(registro < 0 || registro > REGISTRO_SP)
+            throw new IllegalArgumentException("Registro desconocido: " + registro);
+
+        condiciones.add(new Condicion(registro, indice, valor, direccion));
+    }
+
+    // Vigila los bytes de "desde" a "hasta", inclusive
+    public void vigilarMemoria(int desde, int hasta, boolean lectura, boolean escritura) {
+        int tipo = (lectura ? LECTURA : 0) | (escritura ? ESCRITURA : 0);
+        for(int direccion = desde; direccion <= hasta; direccion++){
+            int actual = vigilancia[direccion & MASCARA];
+            if(actual == 0 && tipo != 0)
+                totalVigilancias++;
+            else if(actual != 0 && tipo == 0)
+                totalVigilancias--;
+            vigilancia[direccion & MASCARA] = (byte)tipo;
+        }
+    }
+
+    public void vigilarI(boolean lectura, boolean escritura) {
+        vigilanciaI = (lectura ? LECTURA : 0) | (escritura ? ESCRITURA : 0);
+    }
+
+    public void limpiar() {
+        Arrays.fill(puntos, false);
+        Arrays.fill(vigilancia, (byte)0);
+        totalPuntos = 0;
+        totalVigilancias = 0;
+        vigilanciaI = 0;
+        condiciones.clear();
+    }
+
+    // Nombre de registro (V0-VF, I, DT, ST, SP) a su indice, o -1
+    public static int registro(String nombre) {
+        String mayusculas = nombre.toUpperCase();
+        if(mayusculas.length() == 2 && mayusculas.charAt(0) == 'V'){
+            int x = Character.digit(mayusculas.charAt(1), 16);
+            if(x >= 0)
+                return x;
+        }
+
+        switch(mayusculas){
+            case "I":  return REGISTRO_I;
+            case "DT": return REGISTRO_DT;
+            case "ST": return REGISTRO_ST;
+            case "SP": return REGISTRO_SP;
+            default:   return -1;
+        }
+    }
+
+    public int leerRegistro(int registro) {
+        switch(registro){
+            case REGISTRO_I:  return chip.I;
+            case REGISTRO_DT: return chip.delayTimer;
+            case REGISTRO_ST: return chip.soundTimer;
+            case REGISTRO_SP: return chip.sp;
+            default:          return chip.V[registro];
+        }
+    }
+
+    /****************************************************************
+     * Ejecucion
+     ****************************************************************/
+
+    // Una instruccion, entrando a las subrutinas
+    public String paso() {
+        return ejecutar(1, PASO, 0, 0);
+    }
+
+    // Una instruccion; un 2NNN se ejecuta completo hasta su 00EE
+    public String pasoSobre() {
+        int opcode = (chip.leerMemoria(chip.pc) << 8) | chip.leerMemoria(chip.pc + 1);
+        if((opcode & 0xF000) != 0x2000)
+            return paso();
+        return ejecutar(limite, SOBRE, chip.sp, chip.pc + 2);
+    }
+
+    // Hasta regresar de la subrutina actual
+    public String pasoFuera() {
+        if(chip.sp == 0)
+            return parar(PARADA_PASO, "No hay subrutina de la cual salir");
+        return ejecutar(limite, FUERA, chip.sp, 0);
+    }
+
+    // Hasta un punto, una vigilancia o "maximo" instrucciones
+    public String continuar(long maximo) {
+        return ejecutar(maximo, CONTINUAR, 0, 0);
+    }
+
+    // Instrucciones maximas de pasoSobre() y pasoFuera(), por si la subrutina no regresa
+    public void setLimite(long limite) {
+        this.limite = limite;
+    }
+
+    public int getMotivo() {
+        return motivo;
+    }
+
+    // Instrucciones ejecutadas por el depurador
+    public long getCiclos() {
+        return ciclos;
+    }
+
+    private String ejecutar(long maximo, int modo, int profundidad, int destino) {
+        if(modo == CONTINUAR && totalPuntos == 0 && condiciones.isEmpty()
+                && totalVigilancias == 0 && vigilanciaI == 0)
+            return continuarSinRevisar(maximo);
+
+        boolean instrumentar = totalVigilancias > 0 || vigilanciaI != 0;
+        if(instrumentar){
+            original = chip.getNucleo();
+            chip.setNucleo(instrumentado);
+        }
+
+        try {
+            for(long n = 0; n < maximo; n++){
+                if(!chip.RUNNING)
+                    return parar(PARADA_DETENIDO, "Maquina detenida");
+
+                // La instruccion donde ya se esta detenido no vuelve a parar
+                if(n > 0){
+                    String parada = revisarPc();
+                    if(parada != null)
+                        return parada;
+
+                    if(chip.isEsperandoTecla())
+                        return parar(PARADA_ESPERA_TECLA, "Esperando tecla");
+                }
+
+                motivoAcceso = -1;
+                chip.emularCiclo();
+                ciclos++;
+
+                if(motivoAcceso >= 0)
+                    return parar(motivoAcceso, detalleAcceso);
+
+                if(modo == PASO
+                        || (modo == SOBRE && chip.sp == profundidad && chip.pc == destino)
+                        || (modo == FUERA && chip.sp < profundidad))
+                    return parar(PARADA_PASO, null);
+            }
+            return parar(PARADA_LIMITE, "Limite de instrucciones");
+
+        } finally {
+            if(instrumentar)
+                chip.setNucleo(original);
+        }
+    }
+
+    // Sin nada que revisar: el despacho normal, con bloques si el motor los tiene
+    private String continuarSinRevisar(long maximo) {
+        long n = 0;
+        while(n < maximo && chip.RUNNING){
+            if(n > 0 && chip.isEsperandoTecla())
+                return parar(PARADA_ESPERA_TECLA, "Esperando tecla");
+            n += chip.emularBloque((int)Math.min(maximo - n, 64));
+        }
+        ciclos += n;
+        return chip.RUNNING
+                ? parar(PARADA_LIMITE, "Limite de instrucciones")
+                : parar(PARADA_DETENIDO, "Maquina detenida");
+    }
+
+    private String revisarPc() {
+        int pc = chip.pc;
+        if(puntos[pc & MASCARA])
+            return parar(PARADA_PUNTO, String.format("Punto de parada en 0x%04X", pc));
+
+        for(int i = 0; i < condiciones.size(); i++){
+            Condicion condicion = condiciones.get(i);
+            if(condicion.direccion >= 0 && condicion.direccion != pc)
+                continue;
+
+            if(cumple(leerRegistro(condicion.registro), condicion.operador, condicion.valor))
+                return parar(PARADA_CONDICION, String.format(
+                        "Condicion %s %s 0x%X en 0x%04X",
+                        nombreRegistro(condicion.registro), OPERADORES[condicion.operador],
+                        condicion.valor, pc
+                ));
+        }
+        return null;
+    }
+
+    private static boolean cumple(int valor, int operador, int referencia) {
+        switch(operador){
+            case 0:  return valor == referencia;
+            case 1:  return valor != referencia;
+            case 2:  return valor < referencia;
+            case 3:  return valor <= referencia;
+            case 4:  return valor > referencia;
+            default: return valor >= referencia;
+        }
+    }
+
+    public static String nombreRegistro(int registro) {
+        switch(registro){
+            case REGISTRO_I:  return "I";
+            case REGISTRO_DT: return "DT";
+            case REGISTRO_ST: return "ST";
+            case REGISTRO_SP: return "SP";
+            default:          return String.format("V%X", registro);
+        }
+    }
+
+    // Regresa la descripcion de la parada: la instruccion siguiente y el motivo
+    private String parar(int motivo, String detalle) {
+        this.motivo = motivo;
+        String instruccion = instruccionActual();
+        return detalle == null ? instruccion : detalle + "\n" + instruccion;
+    }
+
+    // La instruccion en el pc, desensamblada
+    public String instruccionActual() {
+        int pc = chip.pc;
+        int opcode = (chip.leerMemoria(pc) << 8) | chip.leerMemoria(pc + 1);
+        return String.format("0x%04X: %04X  %s", pc, opcode, Opcode.desensamblar(opcode));
+    }
+
+    /****************************************************************
+     * Motor instrumentado
+     ****************************************************************/
+
+    // Revisa los accesos de la instruccion con el I anterior a ejecutarla
+    private void revisarAccesos(Opcode opcode) {
+        int lecturaI = 0;
+        int escrituraI = 0;
+        int desde = 0;
+        int bytes = 0;
+        int tipo = 0;
+
+        switch(opcode.header){
+            case 0x5:
+                // XO-CHIP: 5XY2 / 5XY3 en bloque desde I
+                if(opcode.nibble == 0x2 || opcode.nibble == 0x3){
+                    lecturaI = LECTURA;
+                    desde = chip.I;
+                    bytes = Math.abs(opcode.vy - opcode.vx) + 1;
+                    tipo = opcode.nibble == 0x2 ? ESCRITURA : LECTURA;
+                }
+                break;
+            case 0xA:
+                escrituraI = ESCRITURA;
+                break;
+            case 0xD:
+                lecturaI = LECTURA;
+                desde = chip.I;
+                bytes = opcode.nibble;
+                // XO-CHIP: DXY0 es de 16x16 y se lee un sprite por cada
+                // plano seleccionado (ver EstadoXoChip.dibujar)
+                if(chip.isXo()){
+                    if(bytes == 0)
+                        bytes = 32;
+                    bytes *= Integer.bitCount(chip.xo.seleccion & 3);
+                }
+                tipo = LECTURA;
+                break;
+            case 0xF:
+                switch(opcode._byte){
+                    case 0x00:
+                        escrituraI = ESCRITURA;
+                        break;
+                    case 0x02:
+                        lecturaI = LECTURA;
+                        desde = chip.I;
+                        bytes = 16;
+                        tipo = LECTURA;
+                        break;
+                    case 0x1E:
+                        lecturaI = LECTURA;
+                        escrituraI = ESCRITURA;
+                        break;
+                    case 0x29:
+                    case 0x30:
+                        escrituraI = ESCRITURA;
+                        break;
+                    case 0x33:
+                        lecturaI = LECTURA;
+                        desde = chip.I;
+                        bytes = 3;
+                        tipo = ESCRITURA;
+                        break;
+                    case 0x55:
+                    case 0x65:
+                        lecturaI = LECTURA;
+                        escrituraI = ESCRITURA;
+                        desde = chip.I;
+                        bytes = opcode.vx + 1;
+                        tipo = opcode._byte == 0x55 ? ESCRITURA : LECTURA;
+                        break;
+                    default:
+                        break;
+                }
+                break;
+            default:
+                break;
+        }
+
+        int pc = chip.pc;
+        if((vigilanciaI & escrituraI) != 0)
+            acceso(PARADA_ESCRITURA, String.format("Escritura de I desde 0x%04X", pc));
+        else if((vigilanciaI & lecturaI) != 0)
+            acceso(PARADA_LECTURA, String.format("Lectura de I desde 0x%04X", pc));
+
+        for(int i = 0; i < bytes && totalVigilancias > 0; i++){
+            int direccion = (desde + i) & MASCARA;
+            if((vigilancia[direccion] & tipo) != 0){
+                acceso(
+                        tipo == ESCRITURA ? PARADA_ESCRITURA : PARADA_LECTURA,
+                        String.format(
+                                "%s en 0x%04X desde 0x%04X",
+                                tipo == ESCRITURA ? "Escritura" : "Lectura", direccion, pc
+                        )
+                );
+                return;
+            }
+        }
+    }
+
+    // Se reporta el primer acceso de la instruccion
+    private void acceso(int motivo, String detalle) {
+        if(motivoAcceso < 0){
+            motivoAcceso = motivo;
+            detalleAcceso = detalle;
+        }
+    }
+
+    private final class Instrumentado implements NucleoCpu {
+        @Override
+        public void ejecutar(Chip8 chip, Opcode opcode) {
+            revisarAccesos(opcode);
+            original.ejecutar(chip, opcode);
+        }
+
+        @Override
+        public void memoriaEscrita(int direccion) {
+            original.memoriaEscrita(direccion);
+        }
+
+        @Override
+        public void juegoCargado(ImagenRom imagen) {
+            original.juegoCargado(imagen);
+        }
+
+        @Override
+        public NucleoCpu copiar() {
+            return original.copiar();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+public class EjecucionAdelantada {
+    /***********************
+     * Ejecucion adelantada (run-ahead) para ocultar el retraso de entrada
+     * propio del juego.
+     *
+     *   Cada frame se emula normalmente con el teclado actual; despues se
+     *   guarda el estado, se emulan N frames mas con el mismo teclado, se
+     *   toma esa pantalla futura para presentarla y se restaura el estado.
+     *   Un juego que tarda N frames en reaccionar a una tecla se ve
+     *   reaccionar en el siguiente frame.
+     *
+     *   Los frames especulativos no llegan al sonido ni al monitor. El
+     *   costo es N frames extra + guardar/restaurar en cada frame; se mide
+     *   para saber que N cabe en los 16.6 ms de un frame.
+     **************************/
+
+    public static final long PRESUPUESTO_FRAME = 1000000000L / 60;
+
+    final private Chip8 chip;
+    final private EstadoChip8 estado = new EstadoChip8();
+    final private long pantalla[] = new long[32];
+
+    private int adelanto;
+
+    // Metricas
+    private long frames;
+    private long nanosTotales;
+    private long nanosAdelanto;
+    private long nanosMaximo;
+    private long framesExcedidos;
+
+    public EjecucionAdelantada(Chip8 chip, int adelanto) {
+        this.chip = chip;
+        setAdelanto(adelanto);
+    }
+
+    public void setAdelanto(int adelanto) {
+        if(adelanto < 0)
+            throw new IllegalArgumentException("Adelanto negativo: " + adelanto);
+        this.adelanto = adelanto;
+    }
+
+    public int getAdelanto() {
+        return adelanto;
+    }
+
+    /*
+    * Emula un frame real y deja en "pantalla" el frame a presentar
+    * (el real si el adelanto es 0).
+    */
+    public void emularFrame(int[] teclado) {
+        long inicio = System.nanoTime();
+
+        chip.setKeyPad(teclado);
+        chip.emularFrame();
+        long finReal = System.nanoTime();
+
+        if(adelanto > 0 && chip.RUNNING){
+            MonitorCiclo monitor = chip.getMonitor();
+            SalidaSonido sonido = chip.getSalidaSonido();
+            chip.setMonitor(null);
+            chip.setSalidaSonido(SalidaSonido.NULA);
+
+            chip.guardarEstado(estado);
+            for(int i = 0; i < adelanto && chip.RUNNING; i++)
+                chip.emularFrame();
+            chip.empaquetarGfx(pantalla);
+
+            // Se restaura con la salida muda todavia puesta: al reinstalar la
+            // real solo recibe el estado del frame real, nunca el futuro.
+            // RUNNING no es parte del estado: un alto futuro (00FD) no debe
+            // detener la maquina real antes de tiempo
+            chip.restaurarEstado(estado);
+            chip.RUNNING = true;
+            chip.setMonitor(monitor);
+            chip.setSalidaSonido(sonido);
+        }
+        else
+            chip.empaquetarGfx(pantalla);
+
+        long fin = System.nanoTime();
+        frames++;
+        nanosTotales += fin - inicio;
+        nanosAdelanto += fin - finReal;
+        nanosMaximo = Math.max(nanosMaximo, fin - inicio);
+        if(fin - inicio > PRESUPUESTO_FRAME)
+            framesExcedidos++;
+    }
+
+    // Pantalla a presentar del ultimo frame emulado
+    public long[] getPantalla() {
+        return pantalla;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    // Costo promedio del frame completo, en nanosegundos
+    public long getNanosPorFrame() {
+        return frames == 0 ? 0 : nanosTotales / frames;
+    }
+
+    // Costo promedio agregado por el adelanto (estado + frames extra)
+    public long getNanosAdelantoPorFrame() {
+        return frames == 0 ? 0 : nanosAdelanto / frames;
+    }
+
+    public long getNanosMaximo() {
+        return nanosMaximo;
+    }
+
+    // Frames que no cupieron en el presupuesto de 60 Hz
+    public long getFramesExcedidos() {
+        return framesExcedidos;
+    }
+
+    public void reiniciarMetricas() {
+        frames = 0;
+        nanosTotales = 0;
+        nanosAdelanto = 0;
+        nanosMaximo = 0;
+        framesExcedidos = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "adelanto=%d frames=%d frame=%.1fus extra=%.1fus max=%.1fus presupuesto=%.2f%% excedidos=%d",
+                adelanto, frames, getNanosPorFrame() / 1000.0,
+                getNanosAdelantoPorFrame() / 1000.0, nanosMaximo / 1000.0,
+                100.0 * getNanosPorFrame() / PRESUPUESTO_FRAME, framesExcedidos
+        );
+    }
+
+    /*
+    * Mide el costo de cada adelanto de 0 a maxAdelanto sobre la misma ROM,
+    * con teclas que cambian cada medio segundo.
+    */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1){
+            System.out.println("Uso: EjecucionAdelantada <rom> [adelanto maximo] [frames]");
+            return;
+        }
+
+        byte rom[] = Files.readAllBytes(Paths.get(args[0]));
+        int maxAdelanto = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int totalFrames = args.length > 2 ? Integer.parseInt(args[2]) : 6000;
+        int teclado[] = new int[16];
+
+        for(int n = 0; n <= maxAdelanto; n++){
+            Chip8 chip = new Chip8(false);
+            chip.init();
+            chip.setSemilla(1);
+            chip.cargarJuego(rom);
+            EjecucionAdelantada ejecucion = new EjecucionAdelantada(chip, n);
+
+            // Calentamiento del JIT antes de medir
+            for(int frame = 0; frame < totalFrames; frame++){
+                if(frame == totalFrames / 2)
+                    ejecucion.reiniciarMetricas();
+
+                teclado[(frame / 30) % 16] = (frame % 60) < 30 ? 1 : 0;
+                ejecucion.emularFrame(teclado);
+            }
+            System.out.println(ejecucion);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class EjecutorLotes {
+    /***********************
+     * Ejecucion fuera de linea de un directorio de ROMs.
+     *
+     *   Cada ROM corre un numero fijo de frames con un guion de teclado y
+     *   una semilla fija, de modo que el resultado es reproducible. Los
+     *   trabajos se reparten en un ForkJoinPool; cada hilo reutiliza su
+     *   propio Chip8 (init() en lugar de una instancia nueva por ROM).
+     **************************/
+
+    public static class Resultado {
+        public final String rom;
+        public final long hashEstado;
+        public final long instrucciones;
+        public final long opcodesIndefinidos;
+
+        // Mensaje de la excepcion si el interprete fallo, o null
+        public final String error;
+
+        Resultado(String rom, long hashEstado, long instrucciones,
+                  long opcodesIndefinidos, String error) {
+            this.rom = rom;
+            this.hashEstado = hashEstado;
+            this.instrucciones = instrucciones;
+            this.opcodesIndefinidos = opcodesIndefinidos;
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%s,%016X,%d,%d,%s",
+                    rom, hashEstado, instrucciones, opcodesIndefinidos,
+                    error == null ? "" : error
+            );
+        }
+    }
+
+    // Semilla de CXNN por defecto; FuzzerChip8 usa la misma para que sus
+    // casos se reproduzcan aqui
+    public static final long SEMILLA = 0x5EED;
+
+    final private ForkJoinPool pool;
+    final private ThreadLocal<Chip8> chips = ThreadLocal.withInitial(() -> new Chip8(false));
+
+    final private int frames;
+    final private GuionEntrada guion;
+    final private long semilla;
+
+    public EjecutorLotes(ForkJoinPool pool, int frames, GuionEntrada guion, long semilla) {
+        this.pool = pool;
+        this.frames = frames;
+        this.guion = guion;
+        this.semilla = semilla;
+    }
+
+    public EjecutorLotes(int frames, GuionEntrada guion) {
+        this(ForkJoinPool.commonPool(), frames, guion, SEMILLA);
+    }
+
+    // Ejecuta todos los archivos regulares del directorio
+    public List<Resultado> ejecutar(Path directorio) throws IOException {
+        List<Path> roms = new ArrayList<>();
+        try(DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio)){
+            for(Path archivo: archivos){
+                if(Files.isRegularFile(archivo))
+                    roms.add(archivo);
+            }
+        }
+        roms.sort(null);
+
+        String nombres[] = new String[roms.size()];
+        byte contenidos[][] = new byte[roms.size()][];
+        for(int i = 0; i < nombres.length; i++){
+            nombres[i] = roms.get(i).getFileName().toString();
+            contenidos[i] = Files.readAllBytes(roms.get(i));
+        }
+
+        return ejecutar(nombres, contenidos);
+    }
+
+    public List<Resultado> ejecutar(String[] nombres, byte[][] contenidos) {
+        Resultado resultados[] = new Resultado[nombres.length];
+        pool.invoke(new Trabajo(nombres, contenidos, resultados, 0, nombres.length));
+
+        List<Resultado> lista = new ArrayList<>(resultados.length);
+        for(Resultado resultado: resultados)
+            lista.add(resultado);
+        return lista;
+    }
+
+    // Divide el rango de ROMs a la mitad hasta llegar a una sola
+    private class Trabajo extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final String nombres[];
+        final byte contenidos[][];
+        final Resultado resultados[];
+        final int desde;
+        final int hasta;
+
+        Trabajo(String[] nombres, byte[][] contenidos, Resultado[] resultados,
+                int desde, int hasta) {
+            this.nombres = nombres;
+            this.contenidos = contenidos;
+            this.resultados = resultados;
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected void compute() {
+            if(hasta - desde <= 1){
+                if(hasta > desde)
+                    resultados[desde] = ejecutarRom(nombres[desde], contenidos[desde]);
+                return;
+            }
+
+            int mitad = (desde + hasta) >>> 1;
+            invokeAll(
+                    new Trabajo(nombres, contenidos, resultados, desde, mitad),
+                    new Trabajo(nombres, contenidos, resultados, mitad, hasta)
+            );
+        }
+    }
+
+    private Resultado ejecutarRom(String nombre, byte[] rom) {
+        Chip8 chip = chips.get();
+        int teclado[] = new int[16];
+
+        chip.init();
+        chip.setSemilla(semilla);
+        String error = null;
+
+        try {
+            chip.cargarJuego(rom);
+
+            int entrada = 0;
+            for(int frame = 0; frame < frames && chip.RUNNING; frame++){
+                entrada = guion.aplicar(frame, entrada, teclado);
+                chip.setKeyPad(teclado);
+                chip.emularFrame();
+            }
+        } catch (IOException | RuntimeException ex) {
+            error = ex.toString();
+        }
+
+        return new Resultado(
+                nombre, chip.hashEstado(), chip.getCiclosEjecutados(),
+                chip.getOpcodesIndefinidos(), error
+        );
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2){
+            System.out.println("Uso: EjecutorLotes <directorio> <frames> [guion]");
+            return;
+        }
+
+        GuionEntrada guion = args.length > 2
+                ? GuionEntrada.leer(Paths.get(args[2]))
+                : GuionEntrada.VACIO;
+
+        EjecutorLotes ejecutor = new EjecutorLotes(Integer.parseInt(args[1]), guion);
+
+        System.out.println("rom,hash,instrucciones,opcodes_indefinidos,error");
+        for(Resultado resultado: ejecutor.ejecutar(Paths.get(args[0])))
+            System.out.println(resultado);
+    }
+}
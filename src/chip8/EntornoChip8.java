@@ -0,0 +1,177 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Paths;
+import java.util.function.Supplier;
+
+public class EntornoChip8 {
+    /***********************
+     * Entorno por lotes para entrenar agentes (estilo Gym "vector env").
+     *
+     *   K instancias de la misma ROM, sin ventana. Cada llamada a paso()
+     *   aplica una accion (mascara de 16 teclas) a cada instancia y emula
+     *   un frame de 60 Hz en cada una.
+     *
+     *   Los resultados quedan en buffers directos que se crean una sola
+     *   vez, de modo que un paso no copia a otro lado ni crea objetos:
+     *      observaciones: K * 256 bytes, la pantalla a 1 bit por pixel
+     *                     (ver Chip8.escribirPantalla)
+     *      recompensas:   K floats en el orden nativo
+     *      terminados:    K bytes (1 si el episodio termino en este paso)
+     *
+     *   Una instancia cuyo episodio termina se reinicia en el mismo paso:
+     *   su observacion ya es la del nuevo episodio.
+     **************************/
+
+    public static final int BYTES_OBSERVACION = 256;
+
+    final private Chip8 chips[];
+    final private ExtractorRecompensa extractores[];
+    final private long episodios[];
+
+    // Maquina recien cargada, compartida por todas las instancias
+    final private EstadoChip8 plantilla = new EstadoChip8();
+    final private long semilla;
+    final private int teclado[] = new int[16];
+
+    final private ByteBuffer observaciones;
+    final private ByteBuffer recompensas;
+    final private ByteBuffer terminados;
+
+    private long pasos;
+
+    public EntornoChip8(ImagenRom imagen, int instancias,
+                        Supplier<ExtractorRecompensa> extractor, long semilla) {
+        this.semilla = semilla;
+        chips = new Chip8[instancias];
+        extractores = new ExtractorRecompensa[instancias];
+        episodios = new long[instancias];
+
+        observaciones = ByteBuffer.allocateDirect(instancias * BYTES_OBSERVACION);
+        recompensas = ByteBuffer.allocateDirect(instancias * 4).order(ByteOrder.nativeOrder());
+        terminados = ByteBuffer.allocateDirect(instancias);
+
+        Chip8 base = new Chip8(false);
+        base.init();
+        base.cargarJuego(imagen);
+        base.guardarEstado(plantilla);
+
+        for(int i = 0; i < instancias; i++){
+            chips[i] = new Chip8(false);
+            extractores[i] = extractor.get();
+            reiniciar(i);
+        }
+    }
+
+    public int getInstancias() {
+        return chips.length;
+    }
+
+    // La instancia i, para extractores o depuracion; no se debe emular aparte
+    public Chip8 getChip(int i) {
+        return chips[i];
+    }
+
+    public ByteBuffer getObservaciones() {
+        return observaciones;
+    }
+
+    public ByteBuffer getRecompensas() {
+        return recompensas;
+    }
+
+    public ByteBuffer getTerminados() {
+        return terminados;
+    }
+
+    public long getEpisodios(int i) {
+        return episodios[i];
+    }
+
+    public long getPasos() {
+        return pasos;
+    }
+
+    /*
+    * Inicia un episodio nuevo en la instancia i. La semilla de CXNN depende
+    * de la instancia y del episodio, asi que todo el lote es reproducible.
+    */
+    public void reiniciar(int i) {
+        Chip8 chip = chips[i];
+        chip.restaurarEstado(plantilla);
+        chip.setSemilla(semilla + (i * 0x9E3779B97F4A7C15L) + episodios[i]);
+        chip.RUNNING = true;
+
+        extractores[i].reiniciar(chip);
+        chip.escribirPantalla(observaciones, i * BYTES_OBSERVACION);
+        episodios[i]++;
+    }
+
+    public void reiniciarTodos() {
+        for(int i = 0; i < chips.length; i++)
+            reiniciar(i);
+    }
+
+    // acciones[i]: mascara de teclas de la instancia i (bit n = tecla n)
+    public void paso(int[] acciones) {
+        for(int i = 0; i < chips.length; i++){
+            Chip8 chip = chips[i];
+            ExtractorRecompensa extractor = extractores[i];
+
+            int accion = acciones[i];
+            for(int tecla = 0; tecla < 16; tecla++)
+                teclado[tecla] = (accion >> tecla) & 1;
+            chip.setKeyPad(teclado);
+            chip.emularFrame();
+
+            boolean terminado = extractor.terminado(chip) || !chip.RUNNING;
+            recompensas.putFloat(i * 4, extractor.recompensa(chip));
+            terminados.put(i, (byte)(terminado ? 1 : 0));
+
+            if(terminado)
+                reiniciar(i);
+            else
+                chip.escribirPantalla(observaciones, i * BYTES_OBSERVACION);
+        }
+        pasos++;
+    }
+
+    // Mide pasos por segundo con acciones aleatorias
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1){
+            System.out.println("Uso: EntornoChip8 <rom> [instancias] [pasos]");
+            return;
+        }
+
+        int instancias = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int totalPasos = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+
+        ImagenRom imagen = new BibliotecaRoms().cargar(Paths.get(args[0]));
+        EntornoChip8 entorno = new EntornoChip8(imagen, instancias, () -> ExtractorRecompensa.NINGUNO, 1);
+
+        int acciones[] = new int[instancias];
+        int aleatorio = 1;
+        long inicio = System.nanoTime();
+        for(int paso = 0; paso < totalPasos; paso++){
+            for(int i = 0; i < instancias; i++){
+                aleatorio = (aleatorio * 1103515245) + 12345;
+                acciones[i] = 1 << ((aleatorio >>> 16) & 0xF);
+            }
+            entorno.paso(acciones);
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        System.out.printf(
+                "%d instancias, %d pasos: %.0f frames/s (%.1f x tiempo real)%n",
+                instancias, totalPasos, instancias * totalPasos / segundos,
+                instancias * totalPasos / segundos / 60
+        );
+    }
+}
@@ -0,0 +1,41 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+/*
+* Copia completa del estado de un Chip8 (ver Chip8.guardarEstado y
+* Chip8.restaurarEstado). Se reutiliza entre capturas, asi que guardar o
+* restaurar no crea objetos.
+*
+* La memoria se guarda como referencias a las paginas de la maquina, que
+* nunca se modifican una vez compartidas (ver ImagenRom).
+*/
+public class EstadoChip8 {
+    // 16 paginas, o 256 si se guardo una maquina XO-CHIP
+    byte paginas[][] = ImagenRom.paginasEnCero();
+    final int V[] = new int[16];
+    final int stack[] = new int[16];
+    final long gfx[] = new long[32];
+    final int key[] = new int[16];
+
+    int I;
+    int pc;
+    int sp;
+    int delayTimer;
+    int soundTimer;
+    int semillaRng;
+    boolean esperandoTecla;
+    boolean drawFlag;
+
+    // Solo con una maquina XO-CHIP
+    EstadoXoChip xo;
+
+    // Configuracion de la ROM (ciclos y peculiaridades), o null
+    ConfiguracionRom configuracion;
+
+    long ciclosEjecutados;
+    long opcodesIndefinidos;
+}
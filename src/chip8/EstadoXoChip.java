@@ -0,0 +1,314 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.util.Arrays;
+
+public final class EstadoXoChip {
+    /***********************
+     * Estado que solo existe en modo XO-CHIP (ver NucleoXoChip): los dos
+     * planos de la pantalla, los planos seleccionados con FN01, el patron
+     * de audio de F002, el tono de FX3A y los registros de FX75/FX85.
+     *
+     *   Cada plano se guarda empaquetado como Chip8.gfx: el pixel x de una
+     *   fila es el bit (63 - x) de su palabra. En baja resolucion (64x32)
+     *   cada fila es un long; en alta (128x64) son dos, la izquierda
+     *   primero. Dibujar y desplazar trabajan sobre palabras completas.
+     *
+     *   La pantalla para presentar (empaquetar) siempre es de 128x64: 128
+     *   longs del plano 1 seguidos de 128 del plano 2; en baja resolucion
+     *   cada pixel se duplica. Para quien solo entiende 64x32 (terminal,
+     *   grabador, servidor de frames) filaReducida junta los dos planos y,
+     *   en alta resolucion, cada bloque de 2x2 pixeles.
+     **************************/
+
+    public static final int ANCHO = 128;
+    public static final int ALTO = 64;
+
+    // Longs de empaquetar(): dos planos de 128x64
+    public static final int TAM_PANTALLA = 2 * ALTO * 2;
+
+    // Planos indexados por plano y (fila * palabras + palabra)
+    final long planos[][] = new long[2][ALTO * 2];
+    boolean hires;
+    int seleccion = 1;
+
+    final byte patron[] = new byte[16];
+    int tono = 64;
+    final int banderas[] = new int[16];
+
+    // Un byte con cada bit duplicado (para escalar la baja resolucion)
+    private static final int DOBLE[] = new int[256];
+
+    static {
+        for(int valor = 0; valor < 256; valor++){
+            int doble = 0;
+            for(int bit = 0; bit < 8; bit++){
+                if((valor & (1 << bit)) != 0)
+                    doble |= 3 << (bit * 2);
+            }
+            DOBLE[valor] = doble;
+        }
+    }
+
+    void reiniciar() {
+        Arrays.fill(planos[0], 0);
+        Arrays.fill(planos[1], 0);
+        hires = false;
+        seleccion = 1;
+        Arrays.fill(patron, (byte)0);
+        tono = 64;
+        Arrays.fill(banderas, 0);
+    }
+
+    void copiarEn(EstadoXoChip destino) {
+        System.arraycopy(planos[0], 0, destino.planos[0], 0, planos[0].length);
+        System.arraycopy(planos[1], 0, destino.planos[1], 0, planos[1].length);
+        destino.hires = hires;
+        destino.seleccion = seleccion;
+        System.arraycopy(patron, 0, destino.patron, 0, patron.length);
+        destino.tono = tono;
+        System.arraycopy(banderas, 0, destino.banderas, 0, banderas.length);
+    }
+
+    long hash(long hash) {
+        for(long planos[]: planos)
+            for(long palabra: planos) hash = (hash ^ palabra) * 0x100000001B3L;
+        for(byte valor: patron) hash = (hash ^ (valor & 0xFF)) * 0x100000001B3L;
+        for(int valor: banderas) hash = (hash ^ valor) * 0x100000001B3L;
+        hash = (hash ^ (hires ? 1 : 0)) * 0x100000001B3L;
+        hash = (hash ^ seleccion) * 0x100000001B3L;
+        hash = (hash ^ tono) * 0x100000001B3L;
+        return hash;
+    }
+
+    public boolean isHires() {
+        return hires;
+    }
+
+    public int getTono() {
+        return tono;
+    }
+
+    public byte[] getPatron() {
+        return patron;
+    }
+
+    private int palabras() {
+        return hires ? 2 : 1;
+    }
+
+    private int alto() {
+        return hires ? ALTO : 32;
+    }
+
+    /****************************************************************
+     * Operaciones de pantalla, sobre los planos seleccionados
+     ****************************************************************/
+
+    // 00FE / 00FF: cambiar de resolucion borra los dos planos
+    void setHires(boolean hires) {
+        this.hires = hires;
+        Arrays.fill(planos[0], 0);
+        Arrays.fill(planos[1], 0);
+    }
+
+    void limpiar() {
+        for(int plano = 0; plano < 2; plano++){
+            if((seleccion & (1 << plano)) != 0)
+                Arrays.fill(planos[plano], 0);
+        }
+    }
+
+    /*
+    * DXYN: un sprite de 8xN (16x16 si N es 0) por cada plano
+    * seleccionado, uno tras otro a partir de I; la pantalla da la vuelta
+    * en los dos ejes. Regresa 1 si se borro algun pixel.
+    */
+    int dibujar(Chip8 chip, int x, int y, int n) {
+        int ancho = hires ? ANCHO : 64;
+        int alto = alto();
+        x %= ancho;
+        y %= alto;
+
+        int filas = n == 0 ? 16 : n;
+        int bytesFila = n == 0 ? 2 : 1;
+        int direccion = chip.I;
+        int choque = 0;
+
+        for(int plano = 0; plano < 2; plano++){
+            if((seleccion & (1 << plano)) == 0)
+                continue;
+            long pantalla[] = planos[plano];
+
+            for(int fila = 0; fila < filas; fila++){
+                long sprite = chip.leerMemoria(direccion & 0xFFFF);
+                if(bytesFila == 2)
+                    sprite = (sprite << 8) | chip.leerMemoria((direccion + 1) & 0xFFFF);
+                direccion += bytesFila;
+
+                int destino = (y + fila) % alto;
+                // Sprite alineado a la izquierda de la palabra
+                sprite <<= bytesFila == 2 ? 48 : 56;
+
+                if(!hires){
+                    long bits = Long.rotateRight(sprite, x);
+                    choque |= (pantalla[destino] & bits) != 0 ? 1 : 0;
+                    pantalla[destino] ^= bits;
+                    continue;
+                }
+
+                // Rotacion de 128 bits: el sprite empieza en la palabra izquierda
+                long izquierda = sprite;
+                long derecha = 0;
+                int corrimiento = x;
+                if(corrimiento >= 64){
+                    derecha = izquierda;
+                    izquierda = 0;
+                    corrimiento -= 64;
+                }
+                if(corrimiento > 0){
+                    long salidaIzquierda = izquierda << (64 - corrimiento);
+                    long salidaDerecha = derecha << (64 - corrimiento);
+                    izquierda = (izquierda >>> corrimiento) | salidaDerecha;
+                    derecha = (derecha >>> corrimiento) | salidaIzquierda;
+                }
+
+                int indice = destino * 2;
+                choque |= ((pantalla[indice] & izquierda) | (pantalla[indice + 1] & derecha)) != 0 ? 1 : 0;
+                pantalla[indice] ^= izquierda;
+                pantalla[indice + 1] ^= derecha;
+            }
+        }
+        return choque;
+    }
+
+    // 00CN: baja n filas
+    void bajar(int n) {
+        int palabras = palabras();
+        int total = alto() * palabras;
+        int corrimiento = Math.min(n * palabras, total);
+
+        for(int plano = 0; plano < 2; plano++){
+            if((seleccion & (1 << plano)) == 0)
+                continue;
+            long pantalla[] = planos[plano];
+            System.arraycopy(pantalla, 0, pantalla, corrimiento, total - corrimiento);
+            Arrays.fill(pantalla, 0, corrimiento, 0);
+        }
+    }
+
+    // 00DN: sube n filas
+    void subir(int n) {
+        int palabras = palabras();
+        int total = alto() * palabras;
+        int corrimiento = Math.min(n * palabras, total);
+
+        for(int plano = 0; plano < 2; plano++){
+            if((seleccion & (1 << plano)) == 0)
+                continue;
+            long pantalla[] = planos[plano];
+            System.arraycopy(pantalla, corrimiento, pantalla, 0, total - corrimiento);
+            Arrays.fill(pantalla, total - corrimiento, total, 0);
+        }
+    }
+
+    // 00FB: 4 pixeles a la derecha
+    void derecha() {
+        for(int plano = 0; plano < 2; plano++){
+            if((seleccion & (1 << plano)) == 0)
+                continue;
+            long pantalla[] = planos[plano];
+
+            if(!hires){
+                for(int fila = 0; fila < 32; fila++)
+                    pantalla[fila] >>>= 4;
+                continue;
+            }
+            for(int indice = 0; indice < ALTO * 2; indice += 2){
+                pantalla[indice + 1] = (pantalla[indice + 1] >>> 4) | (pantalla[indice] << 60);
+                pantalla[indice] >>>= 4;
+            }
+        }
+    }
+
+    // 00FC: 4 pixeles a la izquierda
+    void izquierda() {
+        for(int plano = 0; plano < 2; plano++){
+            if((seleccion & (1 << plano)) == 0)
+                continue;
+            long pantalla[] = planos[plano];
+
+            if(!hires){
+                for(int fila = 0; fila < 32; fila++)
+                    pantalla[fila] <<= 4;
+                continue;
+            }
+            for(int indice = 0; indice < ALTO * 2; indice += 2){
+                pantalla[indice] = (pantalla[indice] << 4) | (pantalla[indice + 1] >>> 60);
+                pantalla[indice + 1] <<= 4;
+            }
+        }
+    }
+
+    /****************************************************************
+     * Presentacion
+     ****************************************************************/
+
+    // Los dos planos en 128x64 (TAM_PANTALLA longs), ver el encabezado
+    public void empaquetar(long[] destino) {
+        for(int plano = 0; plano < 2; plano++){
+            long pantalla[] = planos[plano];
+            int base = plano * ALTO * 2;
+
+            if(hires){
+                System.arraycopy(pantalla, 0, destino, base, ALTO * 2);
+                continue;
+            }
+            for(int fila = 0; fila < 32; fila++){
+                long izquierda = expandir((int)(pantalla[fila] >>> 32));
+                long derecha = expandir((int)pantalla[fila]);
+                int indice = base + (fila * 4);
+                destino[indice] = izquierda;
+                destino[indice + 1] = derecha;
+                destino[indice + 2] = izquierda;
+                destino[indice + 3] = derecha;
+            }
+        }
+    }
+
+    // 32 pixeles a 64, cada uno duplicado
+    private static long expandir(int valor) {
+        return ((long)DOBLE[valor >>> 24] << 48)
+                | ((long)DOBLE[(valor >>> 16) & 0xFF] << 32)
+                | ((long)DOBLE[(valor >>> 8) & 0xFF] << 16)
+                | DOBLE[valor & 0xFF];
+    }
+
+    // Fila de 64x32 con los dos planos juntos (ver el encabezado)
+    public long filaReducida(int fila) {
+        if(!hires)
+            return planos[0][fila] | planos[1][fila];
+
+        int indice = fila * 4;
+        long izquierda = planos[0][indice] | planos[1][indice]
+                | planos[0][indice + 2] | planos[1][indice + 2];
+        long derecha = planos[0][indice + 1] | planos[1][indice + 1]
+                | planos[0][indice + 3] | planos[1][indice + 3];
+        return ((long)compactar(izquierda) << 32) | (compactar(derecha) & 0xFFFFFFFFL);
+    }
+
+    // 64 pixeles a 32: cada par encendido si alguno de los dos lo esta
+    private static int compactar(long palabra) {
+        palabra = ((palabra | (palabra << 1)) >>> 1) & 0x5555555555555555L;
+        palabra = (palabra | (palabra >>> 1)) & 0x3333333333333333L;
+        palabra = (palabra | (palabra >>> 2)) & 0x0F0F0F0F0F0F0F0FL;
+        palabra = (palabra | (palabra >>> 4)) & 0x00FF00FF00FF00FFL;
+        palabra = (palabra | (palabra >>> 8)) & 0x0000FFFF0000FFFFL;
+        palabra = (palabra | (palabra >>> 16)) & 0x00000000FFFFFFFFL;
+        return (int)palabra;
+    }
+}
@@ -0,0 +1,71 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+/*
+* Recompensa y fin de episodio de un juego para EntornoChip8. Se lee del
+* estado de la maquina (memoria o registros) despues de cada frame. Cada
+* instancia del entorno tiene su propio extractor, asi que puede guardar
+* el valor anterior para regresar la diferencia.
+*/
+public interface ExtractorRecompensa {
+    // Sin recompensa y sin fin de episodio
+    ExtractorRecompensa NINGUNO = new ExtractorRecompensa() {
+        @Override
+        public float recompensa(Chip8 chip) {
+            return 0;
+        }
+    };
+
+    // Llamado al iniciar cada episodio, con la maquina ya reiniciada
+    default void reiniciar(Chip8 chip) {}
+
+    float recompensa(Chip8 chip);
+
+    default boolean terminado(Chip8 chip) {
+        return false;
+    }
+
+    // Cambio del byte de memoria en la direccion (por ejemplo, el puntaje)
+    static ExtractorRecompensa deltaMemoria(int direccion) {
+        return new ExtractorRecompensa() {
+            int anterior;
+
+            @Override
+            public void reiniciar(Chip8 chip) {
+                anterior = chip.leerMemoria(direccion);
+            }
+
+            @Override
+            public float recompensa(Chip8 chip) {
+                int actual = chip.leerMemoria(direccion);
+                int delta = actual - anterior;
+                anterior = actual;
+                return delta;
+            }
+        };
+    }
+
+    // Cambio del registro Vx entre frames
+    static ExtractorRecompensa deltaRegistro(int x) {
+        return new ExtractorRecompensa() {
+            int anterior;
+
+            @Override
+            public void reiniciar(Chip8 chip) {
+                anterior = chip.getRegistro(x);
+            }
+
+            @Override
+            public float recompensa(Chip8 chip) {
+                int actual = chip.getRegistro(x);
+                int delta = actual - anterior;
+                anterior = actual;
+                return delta;
+            }
+        };
+    }
+}
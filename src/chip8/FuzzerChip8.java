@@ -0,0 +1,328 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class FuzzerChip8 {
+    /***********************
+     * Fuzzer guiado por cobertura para el interprete.
+     *
+     *   Cada caso es una ROM mas un flujo de teclado (una mascara de 16 bits
+     *   por frame). Los hilos toman un caso del corpus, lo mutan y lo
+     *   ejecutan sin interfaz, partiendo de una plantilla de estado
+     *   (restaurarEstado) en lugar de llamar a init().
+     *
+     *   La cobertura son aristas (pc anterior, pc actual + tipo de opcode)
+     *   en un mapa compartido de 64K entradas. Un caso que toca una arista
+     *   nueva entra al corpus. Las excepciones del interprete se agrupan
+     *   por tipo y por instruccion, guardando el primer caso que las produjo.
+     *
+     *   Cada caso corre como lo hace EjecutorLotes (semilla, emularFrame,
+     *   alto con RUNNING), asi que un fallo guardado se reproduce con
+     *   "EjecutorLotes <directorio> <frames> <guion>" si se fuzzeo con los
+     *   ciclos por frame de Chip8 (los de main).
+     **************************/
+
+    private static final int TAM_MAPA = 1 << 16;
+    private static final int MAX_ROM = 4096 - 512;
+
+    public static class Caso {
+        public final byte rom[];
+        public final short teclas[];
+
+        public Caso(byte[] rom, short[] teclas) {
+            this.rom = rom;
+            this.teclas = teclas;
+        }
+    }
+
+    // Mapa de cobertura compartido: las escrituras con carrera solo pueden
+    // causar que un caso interesante se agregue dos veces
+    final private byte cobertura[] = new byte[TAM_MAPA];
+    final private AtomicLong aristasCubiertas = new AtomicLong();
+
+    final private List<Caso> corpus = new ArrayList<>();
+    final private Map<String, Caso> fallos = new ConcurrentHashMap<>();
+    final private AtomicLong ejecuciones = new AtomicLong();
+
+    final private int ciclosPorFrame;
+
+    public FuzzerChip8(List<byte[]> semillas, int frames, int ciclosPorFrame) {
+        this.ciclosPorFrame = ciclosPorFrame;
+        for(byte[] rom: semillas)
+            corpus.add(new Caso(Arrays.copyOf(rom, Math.min(rom.length, MAX_ROM)), new short[frames]));
+
+        // Sin semillas se parte de una ROM vacia
+        if(corpus.isEmpty())
+            corpus.add(new Caso(new byte[64], new short[frames]));
+    }
+
+    public long getEjecuciones() {
+        return ejecuciones.get();
+    }
+
+    public long getAristasCubiertas() {
+        return aristasCubiertas.get();
+    }
+
+    public synchronized int getTamCorpus() {
+        return corpus.size();
+    }
+
+    public Map<String, Caso> getFallos() {
+        return fallos;
+    }
+
+    /*
+    * Ejecuta el fuzzer con varios hilos durante el tiempo indicado.
+    * Cada hilo usa su propia semilla, derivada de la dada.
+    */
+    public void ejecutar(int hilos, long duracion, TimeUnit unidad, long semilla)
+            throws InterruptedException {
+        long fin = System.nanoTime() + unidad.toNanos(duracion);
+
+        Thread trabajadores[] = new Thread[hilos];
+        for(int i = 0; i < hilos; i++){
+            Random random = new Random(semilla + i);
+            trabajadores[i] = new Thread(() -> trabajar(random, fin), "chip8-fuzzer-" + i);
+            trabajadores[i].start();
+        }
+        for(Thread trabajador: trabajadores)
+            trabajador.join();
+    }
+
+    /****************************************************************
+     * Ejecucion de casos
+     ****************************************************************/
+    private static class MonitorCobertura implements MonitorCiclo {
+        final byte local[] = new byte[TAM_MAPA];
+        final int tocadas[];
+        int totalTocadas;
+        int previo;
+
+        // Ultimo opcode ejecutado, para clasificar los fallos
+        int ultimoOpcode;
+
+        MonitorCobertura(int maxCiclos){
+            tocadas = new int[maxCiclos];
+        }
+
+        @Override
+        public void antesDeCiclo(int pc, int opcode){
+            ultimoOpcode = opcode;
+            int actual = (((pc << 4) | (opcode >>> 12)) * 0x9E3779B1) >>> 16;
+            int arista = actual ^ previo;
+            previo = actual >>> 1;
+
+            if(local[arista] == 0){
+                local[arista] = 1;
+                tocadas[totalTocadas++] = arista;
+            }
+        }
+
+        void reiniciar(){
+            for(int i = 0; i < totalTocadas; i++)
+                local[tocadas[i]] = 0;
+            totalTocadas = 0;
+            previo = 0;
+        }
+    }
+
+    private void trabajar(Random random, long fin) {
+        Chip8 chip = new Chip8(false);
+        chip.init();
+
+        // Plantilla: maquina recien inicializada, sin ROM
+        EstadoChip8 plantilla = new EstadoChip8();
+        chip.guardarEstado(plantilla);
+
+        int frames = corpus.get(0).teclas.length;
+        MonitorCobertura monitor = new MonitorCobertura(frames * ciclosPorFrame);
+        chip.setMonitor(monitor);
+        int teclado[] = new int[16];
+
+        while(System.nanoTime() < fin){
+            Caso caso = mutar(elegir(random), random);
+
+            chip.restaurarEstado(plantilla);
+            chip.setSemilla(EjecutorLotes.SEMILLA);
+            chip.setCiclosPorFrame(ciclosPorFrame);
+            chip.RUNNING = true;
+            monitor.reiniciar();
+
+            try {
+                chip.cargarJuego(caso.rom);
+
+                for(int frame = 0; frame < caso.teclas.length && chip.RUNNING; frame++){
+                    for(int i = 0; i < 16; i++)
+                        teclado[i] = (caso.teclas[frame] >> i) & 1;
+                    chip.setKeyPad(teclado);
+                    chip.emularFrame();
+                }
+            } catch (IOException | RuntimeException ex) {
+                // Un fallo por tipo de excepcion y de instruccion
+                String firma = ex.getClass().getSimpleName() + "@"
+                        + Opcode.identificar(monitor.ultimoOpcode);
+                fallos.putIfAbsent(firma, caso);
+            }
+
+            ejecuciones.incrementAndGet();
+            registrarCobertura(monitor, caso);
+        }
+    }
+
+    private void registrarCobertura(MonitorCobertura monitor, Caso caso) {
+        boolean nueva = false;
+        for(int i = 0; i < monitor.totalTocadas; i++){
+            int arista = monitor.tocadas[i];
+            if(cobertura[arista] == 0){
+                cobertura[arista] = 1;
+                aristasCubiertas.incrementAndGet();
+                nueva = true;
+            }
+        }
+
+        if(nueva){
+            synchronized(this){
+                corpus.add(caso);
+            }
+        }
+    }
+
+    private synchronized Caso elegir(Random random) {
+        return corpus.get(random.nextInt(corpus.size()));
+    }
+
+    /****************************************************************
+     * Mutaciones
+     ****************************************************************/
+    private Caso mutar(Caso base, Random random) {
+        byte rom[] = base.rom.clone();
+        short teclas[] = base.teclas.clone();
+
+        int mutaciones = 1 + random.nextInt(4);
+        for(int m = 0; m < mutaciones; m++){
+            switch(random.nextInt(6)){
+                case 0: // Invertir un bit
+                    if(rom.length > 0)
+                        rom[random.nextInt(rom.length)] ^= (byte)(1 << random.nextInt(8));
+                    break;
+
+                case 1: // Byte aleatorio
+                    if(rom.length > 0)
+                        rom[random.nextInt(rom.length)] = (byte)random.nextInt(256);
+                    break;
+
+                case 2: // Opcode aleatorio alineado, con direccion dentro de la ROM
+                    if(rom.length > 1){
+                        int i = random.nextInt(rom.length / 2) * 2;
+                        int opcode = (random.nextInt(16) << 12)
+                                | (0x200 + random.nextInt(Math.max(1, rom.length)));
+                        rom[i] = (byte)(opcode >> 8);
+                        rom[i + 1] = (byte)opcode;
+                    }
+                    break;
+
+                case 3: // Copiar un bloque dentro de la ROM
+                    if(rom.length > 2){
+                        int largo = 1 + random.nextInt(Math.min(32, rom.length - 1));
+                        int desde = random.nextInt(rom.length - largo + 1);
+                        int hasta = random.nextInt(rom.length - largo + 1);
+                        System.arraycopy(rom, desde, rom, hasta, largo);
+                    }
+                    break;
+
+                case 4: // Empalmar con otro caso del corpus
+                    Caso otro = elegir(random);
+                    if(otro.rom.length > 0 && rom.length > 0){
+                        int corte = random.nextInt(Math.min(rom.length, otro.rom.length));
+                        System.arraycopy(otro.rom, corte, rom, corte,
+                                Math.min(rom.length, otro.rom.length) - corte);
+                    }
+                    break;
+
+                default: // Cambiar las teclas de un frame
+                    if(teclas.length > 0)
+                        teclas[random.nextInt(teclas.length)] = (short)(1 << random.nextInt(16));
+                    break;
+            }
+        }
+        return new Caso(rom, teclas);
+    }
+
+    /*
+    * Guarda cada fallo como <firma>.c8 y <firma>.guion (ver GuionEntrada).
+    * El guion empieza con los frames, ciclos y semilla con que se ejecuto.
+    */
+    public void guardarFallos(Path directorio) throws IOException {
+        Files.createDirectories(directorio);
+
+        for(Map.Entry<String, Caso> fallo: fallos.entrySet()){
+            String nombre = fallo.getKey().replace('@', '_');
+            Files.write(directorio.resolve(nombre + ".c8"), fallo.getValue().rom);
+
+            StringBuilder guion = new StringBuilder();
+            short teclas[] = fallo.getValue().teclas;
+            guion.append(String.format("# %s: %d frames, %d ciclos por frame, semilla %X%n",
+                    fallo.getKey(), teclas.length, ciclosPorFrame, EjecutorLotes.SEMILLA));
+            for(int frame = 0; frame < teclas.length; frame++)
+                guion.append(String.format("%d %04X%n", frame, teclas[frame] & 0xFFFF));
+            Files.write(directorio.resolve(nombre + ".guion"), guion.toString().getBytes());
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length < 2){
+            System.out.println("Uso: FuzzerChip8 <directorio de semillas> <segundos> [hilos] [salida]");
+            return;
+        }
+
+        List<byte[]> semillas = new ArrayList<>();
+        try(DirectoryStream<Path> archivos = Files.newDirectoryStream(Paths.get(args[0]))){
+            for(Path archivo: archivos){
+                if(Files.isRegularFile(archivo))
+                    semillas.add(Files.readAllBytes(archivo));
+            }
+        }
+
+        int hilos = args.length > 2
+                ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+        long segundos = Long.parseLong(args[1]);
+
+        // Los ciclos por frame de Chip8, los mismos con que EjecutorLotes
+        // reproduce los fallos guardados
+        FuzzerChip8 fuzzer = new FuzzerChip8(semillas, 32, new Chip8(false).ciclosPorFrame());
+        fuzzer.ejecutar(hilos, segundos, TimeUnit.SECONDS, System.nanoTime());
+
+        System.out.printf(
+                "Ejecuciones: %d (%d/s por hilo), aristas: %d, corpus: %d, fallos: %d%n",
+                fuzzer.getEjecuciones(),
+                fuzzer.getEjecuciones() / Math.max(1, segundos) / hilos,
+                fuzzer.getAristasCubiertas(),
+                fuzzer.getTamCorpus(),
+                fuzzer.getFallos().size()
+        );
+        for(String firma: fuzzer.getFallos().keySet())
+            System.out.println("  " + firma);
+
+        if(args.length > 3)
+            fuzzer.guardarFallos(Paths.get(args[3]));
+    }
+}
@@ -0,0 +1,122 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class GrabadorFrames {
+    /***********************
+     * Grabacion de la pantalla en segundo plano.
+     *
+     *   El hilo del emulador (unico productor) empaqueta la pantalla a 1 bit
+     *   por pixel en una cola circular acotada. Un hilo codificador (unico
+     *   consumidor) la vacia y hace el trabajo costoso: paleta, compresion y
+     *   escritura. Si la cola esta llena el frame se descarta y se cuenta,
+     *   el emulador nunca espera.
+     **************************/
+
+    // 32 filas empaquetadas + instante de captura
+    private static final int TAM_RANURA = 33;
+
+    final private long ranuras[];
+    final private int mascara;
+
+    // Siguiente ranura a escribir (productor) y a leer (consumidor)
+    final private AtomicLong cabeza = new AtomicLong();
+    final private AtomicLong cola = new AtomicLong();
+
+    final private AtomicLong capturados = new AtomicLong();
+    final private AtomicLong descartados = new AtomicLong();
+
+    final private CodificadorFrames codificador;
+    final private Thread hilo;
+
+    private volatile boolean grabando = true;
+
+    // La capacidad se redondea a la siguiente potencia de 2
+    public GrabadorFrames(CodificadorFrames codificador, int capacidad) {
+        int tam = Integer.highestOneBit(Math.max(2, capacidad - 1)) << 1;
+        this.ranuras = new long[tam * TAM_RANURA];
+        this.mascara = tam - 1;
+        this.codificador = codificador;
+
+        hilo = new Thread(this::codificar, "chip8-grabador");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /*
+    * Llamado desde el hilo del emulador. Regresa false si el frame se
+    * descarto por falta de espacio en la cola.
+    */
+    public boolean capturar(Chip8 chip) {
+        long h = cabeza.get();
+        if(h - cola.get() > mascara){
+            descartados.lazySet(descartados.get() + 1);
+            return false;
+        }
+
+        int base = (int)(h & mascara) * TAM_RANURA;
+        chip.empaquetarGfx(ranuras, base);
+        ranuras[base + 32] = System.nanoTime();
+
+        // Publica la ranura al consumidor
+        cabeza.lazySet(h + 1);
+        capturados.lazySet(capturados.get() + 1);
+        return true;
+    }
+
+    public long getCapturados() {
+        return capturados.get();
+    }
+
+    public long getDescartados() {
+        return descartados.get();
+    }
+
+    // Termina de codificar los frames en cola y cierra el archivo
+    public void cerrar() throws InterruptedException {
+        grabando = false;
+        LockSupport.unpark(hilo);
+        hilo.join();
+    }
+
+    private void codificar() {
+        long frame[] = new long[32];
+
+        try {
+            while(true){
+                long t = cola.get();
+
+                if(t == cabeza.get()){
+                    if(!grabando)
+                        break;
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+                    continue;
+                }
+
+                int base = (int)(t & mascara) * TAM_RANURA;
+                System.arraycopy(ranuras, base, frame, 0, 32);
+                long nanos = ranuras[base + 32];
+
+                // Libera la ranura antes de codificar
+                cola.lazySet(t + 1);
+
+                codificador.escribir(frame, nanos);
+            }
+            codificador.cerrar();
+
+        } catch (IOException ex) {
+            Logger.getLogger(GrabadorFrames.class.getName())
+                    .log(Level.SEVERE, null, ex);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GuionEntrada {
+    /***********************
+     * Guion de teclado para ejecuciones sin usuario. Cada linea indica el
+     * frame a partir del cual se mantiene una mascara de teclas (un bit por
+     * tecla, en hexadecimal):
+     *
+     *      # frame  mascara
+     *      0        0000
+     *      120      0020      <- tecla 5 presionada desde el frame 120
+     *      125      0000
+     *
+     * Es inmutable, asi que varios hilos pueden compartir el mismo guion.
+     **************************/
+
+    public static final GuionEntrada VACIO = new GuionEntrada(new int[0], new int[0]);
+
+    final private int frames[];
+    final private int mascaras[];
+
+    public GuionEntrada(int[] frames, int[] mascaras) {
+        this.frames = frames.clone();
+        this.mascaras = mascaras.clone();
+    }
+
+    public static GuionEntrada leer(Path archivo) throws IOException {
+        List<int[]> entradas = new ArrayList<>();
+
+        for(String linea: Files.readAllLines(archivo)){
+            linea = linea.trim();
+            if(linea.isEmpty() || linea.startsWith("#"))
+                continue;
+
+            String partes[] = linea.split("\\s+");
+            try {
+                entradas.add(new int[]{
+                        Integer.parseInt(partes[0]),
+                        Integer.parseInt(partes[1], 16) & 0xFFFF
+                });
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException ex) {
+                throw new IOException("Linea invalida en el guion: " + linea, ex);
+            }
+        }
+
+        entradas.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+        int frames[] = new int[entradas.size()];
+        int mascaras[] = new int[entradas.size()];
+        for(int i = 0; i < frames.length; i++){
+            frames[i] = entradas.get(i)[0];
+            mascaras[i] = entradas.get(i)[1];
+        }
+        return new GuionEntrada(frames, mascaras);
+    }
+
+    public int getEntradas() {
+        return frames.length;
+    }
+
+    public int getFrame(int entrada) {
+        return frames[entrada];
+    }
+
+    public int getMascara(int entrada) {
+        return mascaras[entrada];
+    }
+
+    /*
+    * Aplica al teclado la mascara vigente en el frame dado. Regresa el
+    * indice de la siguiente entrada, para recorrer el guion sin buscar.
+    */
+    public int aplicar(int frame, int entrada, int[] teclado) {
+        if(entrada >= frames.length || frames[entrada] > frame)
+            return entrada;
+
+        while(entrada + 1 < frames.length && frames[entrada + 1] <= frame)
+            entrada++;
+
+        for(int i = 0; i < 16; i++)
+            teclado[i] = (mascaras[entrada] >> i) & 1;
+
+        return entrada + 1;
+    }
+}
@@ -0,0 +1,180 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class ImagenRom {
+    /***********************
+     * Imagen inicial e inmutable de la memoria del Chip8: font set + ROM.
+     *
+     *   La memoria se divide en 16 paginas de 256 bytes. Todas las maquinas
+     *   que cargan la misma imagen apuntan a las mismas paginas; una maquina
+     *   solo copia una pagina la primera vez que escribe en ella (FX33,
+     *   FX55). Las paginas en cero apuntan todas a una misma pagina vacia.
+     *
+     *   Nadie debe escribir en las paginas de una imagen.
+     *
+     *   Las imagenes XO-CHIP (crearXo) tienen 256 paginas (64 KB) y la
+     *   fuente grande de FX30 despues de la normal; las que no usa la ROM
+     *   son la misma pagina vacia, asi que cuestan lo mismo que 4 KB.
+     **************************/
+
+    public static final int TAM_PAGINA = 256;
+    public static final int PAGINAS = 4096 / TAM_PAGINA;
+    public static final int PAGINAS_XO = 65536 / TAM_PAGINA;
+
+    // Fuente de 8x10 de FX30 en XO-CHIP, despues de la de 4x5
+    static final int DIRECCION_FUENTE_GRANDE = 0x50;
+
+    static final byte fuenteGrande[] = {
+            0x3C, 0x7E, (byte)0xE7, (byte)0xC3, (byte)0xC3, (byte)0xC3, (byte)0xC3, (byte)0xE7, 0x7E, 0x3C, // 0
+            0x18, 0x38, 0x58, 0x18, 0x18, 0x18, 0x18, 0x18, 0x18, 0x3C, // 1
+            0x3E, 0x7F, (byte)0xC3, 0x06, 0x0C, 0x18, 0x30, 0x60, (byte)0xFF, (byte)0xFF, // 2
+            0x3C, 0x7E, (byte)0xC3, 0x03, 0x0E, 0x0E, 0x03, (byte)0xC3, 0x7E, 0x3C, // 3
+            0x06, 0x0E, 0x1E, 0x36, 0x66, (byte)0xC6, (byte)0xFF, (byte)0xFF, 0x06, 0x06, // 4
+            (byte)0xFF, (byte)0xFF, (byte)0xC0, (byte)0xC0, (byte)0xFC, (byte)0xFE, 0x03, (byte)0xC3, 0x7E, 0x3C, // 5
+            0x3E, 0x7C, (byte)0xC0, (byte)0xC0, (byte)0xFC, (byte)0xFE, (byte)0xC3, (byte)0xC3, 0x7E, 0x3C, // 6
+            (byte)0xFF, (byte)0xFF, 0x03, 0x06, 0x0C, 0x18, 0x30, 0x60, 0x60, 0x60, // 7
+            0x3C, 0x7E, (byte)0xC3, (byte)0xC3, 0x7E, 0x7E, (byte)0xC3, (byte)0xC3, 0x7E, 0x3C, // 8
+            0x3C, 0x7E, (byte)0xC3, (byte)0xC3, 0x7F, 0x3F, 0x03, 0x03, 0x3E, 0x7C, // 9
+            0x00, 0x00, 0x3C, 0x7E, 0x03, 0x3F, 0x7F, (byte)0xC3, (byte)0xFF, 0x7F, // a
+            (byte)0xC0, (byte)0xC0, (byte)0xC0, (byte)0xDC, (byte)0xFE, (byte)0xE3, (byte)0xC3, (byte)0xE3, (byte)0xFE, (byte)0xDC, // b
+            0x00, 0x00, 0x3C, 0x7E, (byte)0xC3, (byte)0xC0, (byte)0xC0, (byte)0xC3, 0x7E, 0x3C, // c
+            0x03, 0x03, 0x03, 0x3B, 0x7F, (byte)0xC7, (byte)0xC3, (byte)0xC7, 0x7F, 0x3B, // d
+            0x00, 0x00, 0x3C, 0x7E, (byte)0xC3, (byte)0xFF, (byte)0xC0, (byte)0xC3, 0x7E, 0x3C, // e
+            0x1C, 0x3E, 0x30, 0x30, (byte)0xFC, (byte)0xFC, 0x30, 0x30, 0x30, 0x30  // f
+    };
+
+    static final byte PAGINA_CERO[] = new byte[TAM_PAGINA];
+
+    // Memoria en cero, para maquinas y estados que aun no cargan nada
+    static byte[][] paginasEnCero() {
+        return paginasEnCero(PAGINAS);
+    }
+
+    static byte[][] paginasEnCero(int total) {
+        byte paginas[][] = new byte[total][];
+        Arrays.fill(paginas, PAGINA_CERO);
+        return paginas;
+    }
+
+    // Memoria recien inicializada, sin ROM
+    public static final ImagenRom VACIA = new ImagenRom(new byte[0], "", PAGINAS);
+
+    final byte paginas[][];
+
+    // SHA-256 del contenido; con crear(byte[]) se calcula la primera vez
+    // que se pide, asi arrancar una sola maquina no paga el hash
+    private volatile String hash;
+    final private int tamano;
+
+    // FNV-1a de 64 bits del contenido, la llave de ConfiguracionRom
+    final private long huella;
+
+    private ImagenRom(byte[] rom, String hash, int total) {
+        this.hash = hash;
+        this.tamano = rom.length;
+        this.huella = huella(rom);
+        this.paginas = new byte[total][];
+
+        byte memoria[] = new byte[total * TAM_PAGINA];
+        System.arraycopy(Chip8.chipFontset, 0, memoria, 0, Chip8.chipFontset.length);
+        if(total > PAGINAS)
+            System.arraycopy(fuenteGrande, 0, memoria, DIRECCION_FUENTE_GRANDE, fuenteGrande.length);
+        // Los datos del programa en el Chip-8 empiezan en la direccion 0x200 (512)
+        System.arraycopy(rom, 0, memoria, 512, rom.length);
+
+        for(int i = 0; i < total; i++){
+            int desde = i * TAM_PAGINA;
+            boolean vacia = true;
+            for(int j = desde; j < desde + TAM_PAGINA && vacia; j++)
+                vacia = memoria[j] == 0;
+
+            if(vacia)
+                paginas[i] = PAGINA_CERO;
+            else{
+                paginas[i] = new byte[TAM_PAGINA];
+                System.arraycopy(memoria, desde, paginas[i], 0, TAM_PAGINA);
+            }
+        }
+    }
+
+    /*
+    * Crea la imagen de una ROM. El hash identifica el contenido (ver
+    * BibliotecaRoms); puede ser cualquier cadena si la imagen no se
+    * registra.
+    */
+    public static ImagenRom crear(byte[] rom, String hash) throws IOException {
+        if(rom.length > 4096 - 512)
+            throw new IOException("ROM demasiado grande: " + rom.length + " bytes");
+        return new ImagenRom(rom, hash, PAGINAS);
+    }
+
+    // Imagen XO-CHIP: 64 KB de memoria (ver NucleoXoChip)
+    public static ImagenRom crearXo(byte[] rom, String hash) throws IOException {
+        if(rom.length > 65536 - 512)
+            throw new IOException("ROM demasiado grande: " + rom.length + " bytes");
+        return new ImagenRom(rom, hash, PAGINAS_XO);
+    }
+
+    public static ImagenRom crearXo(byte[] rom) throws IOException {
+        return crearXo(rom, null);
+    }
+
+    /*
+    * Imagen de una ROM sin registrar: el hash se calcula solo si alguien
+    * lo necesita (por ejemplo CacheTraduccion).
+    */
+    public static ImagenRom crear(byte[] rom) throws IOException {
+        return crear(rom, null);
+    }
+
+    public String getHash() {
+        String valor = hash;
+        if(valor == null){
+            byte rom[] = new byte[tamano];
+            for(int i = 0; i < tamano; i++)
+                rom[i] = paginas[(512 + i) >>> 8][(512 + i) & 0xFF];
+
+            valor = BibliotecaRoms.sha256(ByteBuffer.wrap(rom));
+            hash = valor;
+        }
+        return valor;
+    }
+
+    public boolean isXo() {
+        return paginas.length > PAGINAS;
+    }
+
+    // Huella barata del contenido; se calcula siempre, a diferencia del hash
+    public static long huella(byte[] rom) {
+        long huella = 0xCBF29CE484222325L;
+        for(byte valor: rom)
+            huella = (huella ^ (valor & 0xFF)) * 0x100000001B3L;
+        return huella;
+    }
+
+    public long getHuella() {
+        return huella;
+    }
+
+    public int getTamano() {
+        return tamano;
+    }
+
+    // Paginas que ocupan memoria propia (no son la pagina vacia compartida)
+    public int getPaginasOcupadas() {
+        int total = 0;
+        for(byte pagina[]: paginas){
+            if(pagina != PAGINA_CERO)
+                total++;
+        }
+        return total;
+    }
+}
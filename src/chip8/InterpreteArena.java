@@ -0,0 +1,409 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+
+import static chip8.ArenaChip8.*;
+
+public class InterpreteArena {
+    /***********************
+     * Interprete que ejecuta las maquinas de una ArenaChip8 directamente
+     * sobre su ranura, con lecturas y escrituras absolutas del ByteBuffer
+     * (el JIT las convierte en accesos directos a memoria).
+     *
+     *   Reproduce exactamente la semantica de Chip8: timers por ciclo,
+     *   xorshift en CXNN, FX0A sin avanzar el pc, opcodes no definidos
+     *   contados. Para un mismo estado inicial y las mismas teclas,
+     *   hashEstado coincide con el de Chip8.
+     *
+     *   Los accesos fuera de la memoria o del stack lanzan
+     *   IndexOutOfBoundsException en lugar de tocar la ranura vecina.
+     **************************/
+
+    final private ArenaChip8 arena;
+    final private ByteBuffer b;
+
+    public InterpreteArena(ArenaChip8 arena) {
+        this.arena = arena;
+        this.b = arena.buffer;
+    }
+
+    public void emularFrame(int ranura, int ciclos) {
+        int base = arena.base(ranura);
+        for(int i = 0; i < ciclos; i++)
+            emularCiclo(base);
+    }
+
+    // Emula un frame en cada ranura de la arena
+    public void emularFrameTodas(int ciclos) {
+        for(int ranura = 0; ranura < arena.getInstancias(); ranura++)
+            emularFrame(ranura, ciclos);
+    }
+
+    private int leer(int base, int direccion) {
+        if((direccion & ~0xFFF) != 0)
+            throw new IndexOutOfBoundsException("Direccion " + direccion);
+        return b.get(base + MEMORIA + direccion) & 0xFF;
+    }
+
+    private void escribir(int base, int direccion, int valor) {
+        if((direccion & ~0xFFF) != 0)
+            throw new IndexOutOfBoundsException("Direccion " + direccion);
+        b.put(base + MEMORIA + direccion, (byte)valor);
+    }
+
+    private int getV(int base, int x) {
+        return b.getInt(base + REGISTROS + (x << 2));
+    }
+
+    private void setV(int base, int x, int valor) {
+        b.putInt(base + REGISTROS + (x << 2), valor);
+    }
+
+    private boolean tecla(int base, int tecla) {
+        if((tecla & ~0xF) != 0)
+            throw new IndexOutOfBoundsException("Tecla " + tecla);
+        return (b.getInt(base + TECLAS) & (1 << tecla)) != 0;
+    }
+
+    private void indefinido(int base) {
+        b.putLong(base + INDEFINIDOS, b.getLong(base + INDEFINIDOS) + 1);
+    }
+
+    private void emularCiclo(int base) {
+        int pc = b.getInt(base + PC);
+        int opcode = (leer(base, pc) << 8) | leer(base, pc + 1);
+        b.putLong(base + CICLOS, b.getLong(base + CICLOS) + 1);
+
+        int x = (opcode & 0x0F00) >> 8;
+        int y = (opcode & 0x00F0) >> 4;
+        int nn = opcode & 0x00FF;
+        int nnn = opcode & 0x0FFF;
+        int n = opcode & 0x000F;
+
+        switch(opcode >>> 12){
+            case 0x0:
+                if(n == 0x0){
+                    for(int fila = 0; fila < 32; fila++)
+                        b.putLong(base + PANTALLA + (fila << 3), 0);
+                    b.putInt(base + BANDERAS, b.getInt(base + BANDERAS) | BANDERA_DIBUJO);
+                    pc += 2;
+                }
+                else if(n == 0xE){
+                    int sp = b.getInt(base + SP) - 1;
+                    if((sp & ~0xF) != 0)
+                        throw new IndexOutOfBoundsException("Stack " + sp);
+                    b.putInt(base + SP, sp);
+                    pc = b.getInt(base + PILA + (sp << 2)) + 2;
+                }
+                else
+                    indefinido(base);
+                break;
+
+            case 0x1:
+                pc = nnn;
+                break;
+
+            case 0x2: {
+                int sp = b.getInt(base + SP);
+                if((sp & ~0xF) != 0)
+                    throw new IndexOutOfBoundsException("Stack " + sp);
+                b.putInt(base + PILA + (sp << 2), pc);
+                b.putInt(base + SP, sp + 1);
+                pc = nnn;
+                break;
+            }
+
+            case 0x3:
+                pc += getV(base, x) == nn ? 4 : 2;
+                break;
+
+            case 0x4:
+                pc += getV(base, x) != nn ? 4 : 2;
+                break;
+
+            case 0x5:
+                pc += getV(base, x) == getV(base, y) ? 4 : 2;
+                break;
+
+            case 0x6:
+                setV(base, x, nn);
+                pc += 2;
+                break;
+
+            case 0x7:
+                setV(base, x, (getV(base, x) + nn) & 0xFF);
+                pc += 2;
+                break;
+
+            case 0x8:
+                pc = ejecutarAritmetica(base, pc, x, y, n);
+                break;
+
+            case 0x9:
+                pc += getV(base, x) != getV(base, y) ? 4 : 2;
+                break;
+
+            case 0xA:
+                b.putInt(base + INDICE, nnn);
+                pc += 2;
+                break;
+
+            case 0xB:
+                pc = nnn + getV(base, 0);
+                break;
+
+            case 0xC: {
+                int semilla = b.getInt(base + SEMILLA);
+                semilla ^= semilla << 13;
+                semilla ^= semilla >>> 17;
+                semilla ^= semilla << 5;
+                b.putInt(base + SEMILLA, semilla);
+                setV(base, x, nn & semilla & 0xFF);
+                pc += 2;
+                break;
+            }
+
+            case 0xD:
+                dibujar(base, getV(base, x), getV(base, y), n);
+                pc += 2;
+                break;
+
+            case 0xE:
+                if(nn == 0x9E)
+                    pc += tecla(base, getV(base, x)) ? 4 : 2;
+                else if(nn == 0xA1)
+                    pc += tecla(base, getV(base, x)) ? 2 : 4;
+                else
+                    indefinido(base);
+                break;
+
+            default:
+                pc = ejecutarFX(base, pc, x, nn);
+                break;
+        }
+
+        b.putInt(base + PC, pc);
+
+        // Operaciones con timers
+        int delay = b.getInt(base + DELAY);
+        if(delay > 0)
+            b.putInt(base + DELAY, delay - 1);
+        int sonido = b.getInt(base + SONIDO);
+        if(sonido > 0)
+            b.putInt(base + SONIDO, sonido - 1);
+    }
+
+    private int ejecutarAritmetica(int base, int pc, int x, int y, int n) {
+        int vx = getV(base, x);
+        int vy = getV(base, y);
+
+        switch(n){
+            case 0x0: setV(base, x, vy); break;
+            case 0x1: setV(base, x, vx | vy); break;
+            case 0x2: setV(base, x, vx & vy); break;
+            case 0x3: setV(base, x, vx ^ vy); break;
+            case 0x4:
+                setV(base, 0xF, vy > (0xFF - vx) ? 1 : 0);
+                setV(base, x, (getV(base, x) + getV(base, y)) & 0xFF);
+                break;
+            case 0x5:
+                setV(base, 0xF, vx > vy ? 1 : 0);
+                setV(base, x, (getV(base, x) - getV(base, y)) & 0xFF);
+                break;
+            case 0x6:
+                setV(base, 0xF, vx & 0x1);
+                setV(base, x, getV(base, x) >> 1);
+                break;
+            case 0x7:
+                setV(base, 0xF, vx > vy ? 0 : 1);
+                setV(base, x, (getV(base, y) - getV(base, x)) & 0xFF);
+                break;
+            case 0xE:
+                setV(base, 0xF, vx >> 7);
+                setV(base, x, getV(base, x) << 1);
+                break;
+            default:
+                indefinido(base);
+                return pc;
+        }
+        return pc + 2;
+    }
+
+    private void dibujar(int base, int x, int y, int filas) {
+        int indice = b.getInt(base + INDICE);
+        setV(base, 0xF, 0);
+
+        for(int ejeY = 0; ejeY < filas; ejeY++){
+            long sprite = Long.rotateRight(((long)leer(base, indice + ejeY)) << 56, x);
+            int posicion = base + PANTALLA + (((y + ejeY) & 0x1F) << 3);
+            long fila = b.getLong(posicion);
+
+            if((fila & sprite) != 0)
+                setV(base, 0xF, 1);
+            b.putLong(posicion, fila ^ sprite);
+        }
+
+        b.putInt(base + BANDERAS, b.getInt(base + BANDERAS) | BANDERA_DIBUJO);
+    }
+
+    private int ejecutarFX(int base, int pc, int x, int nn) {
+        int indice = b.getInt(base + INDICE);
+
+        switch(nn){
+            case 0x07:
+                setV(base, x, b.getInt(base + DELAY));
+                break;
+
+            case 0x0A: {
+                int teclas = b.getInt(base + TECLAS);
+                int banderas = b.getInt(base + BANDERAS);
+                if(teclas == 0){
+                    b.putInt(base + BANDERAS, banderas | BANDERA_ESPERA);
+                    return pc;
+                }
+                // Como en Chip8, gana la tecla presionada mas alta
+                setV(base, x, 31 - Integer.numberOfLeadingZeros(teclas));
+                b.putInt(base + BANDERAS, banderas & ~BANDERA_ESPERA);
+                break;
+            }
+
+            case 0x15:
+                b.putInt(base + DELAY, getV(base, x));
+                break;
+
+            case 0x18:
+                b.putInt(base + SONIDO, getV(base, x));
+                break;
+
+            case 0x1E:
+                // Como en Chip8, si x es F se suma el VF ya actualizado
+                setV(base, 0xF, (indice + getV(base, x)) > 0xFFF ? 1 : 0);
+                b.putInt(base + INDICE, indice + getV(base, x));
+                break;
+
+            case 0x29:
+                b.putInt(base + INDICE, getV(base, x) * 0x5);
+                break;
+
+            case 0x33: {
+                int vx = getV(base, x);
+                escribir(base, indice, vx / 100);
+                escribir(base, indice + 1, (vx / 10) % 10);
+                escribir(base, indice + 2, (vx % 100) % 10);
+                break;
+            }
+
+            case 0x55:
+                for(int i = 0; i <= x; i++)
+                    escribir(base, indice + i, getV(base, i));
+                b.putInt(base + INDICE, indice + x + 1);
+                break;
+
+            case 0x65:
+                for(int i = 0; i <= x; i++)
+                    setV(base, i, leer(base, indice + i));
+                b.putInt(base + INDICE, indice + x + 1);
+                break;
+
+            default:
+                indefinido(base);
+                return pc;
+        }
+        return pc + 2;
+    }
+
+    /****************************************************************
+     * Comparacion con Chip8 (estado en el heap)
+     ****************************************************************/
+    private static long colecciones() {
+        long total = 0;
+        for(GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans())
+            total += Math.max(0, gc.getCollectionCount());
+        return total;
+    }
+
+    /*
+    * Uso: InterpreteArena <rom> [instancias] [frames]
+    * Emula las mismas maquinas con los dos disenos, verifica que terminen
+    * en el mismo estado e imprime el costo por frame de cada uno.
+    */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1){
+            System.out.println("Uso: InterpreteArena <rom> [instancias] [frames]");
+            return;
+        }
+
+        int instancias = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int frames = args.length > 2 ? Integer.parseInt(args[2]) : 600;
+        ImagenRom imagen = new BibliotecaRoms().cargar(Paths.get(args[0]));
+        int teclado[] = new int[16];
+
+        for(int ronda = 0; ronda < 3; ronda++){
+            Chip8 chips[] = new Chip8[instancias];
+            for(int i = 0; i < instancias; i++){
+                chips[i] = new Chip8(false);
+                chips[i].init();
+                chips[i].setSemilla(i);
+                chips[i].cargarJuego(imagen);
+            }
+
+            ArenaChip8 arena = ArenaChip8.crear(instancias);
+            for(int i = 0; i < instancias; i++)
+                arena.cargar(i, imagen, i);
+            InterpreteArena interprete = new InterpreteArena(arena);
+            int ciclos = chips[0].ciclosPorFrame();
+
+            long gc = colecciones();
+            long inicio = System.nanoTime();
+            for(int frame = 0; frame < frames; frame++){
+                for(int i = 0; i < instancias; i++){
+                    teclado[(frame + i) & 0xF] = (frame >> 4) & 1;
+                    chips[i].setKeyPad(teclado);
+                    teclado[(frame + i) & 0xF] = 0;
+                    chips[i].emularFrame();
+                }
+            }
+            long nanosHeap = System.nanoTime() - inicio;
+            long gcHeap = colecciones() - gc;
+
+            gc = colecciones();
+            inicio = System.nanoTime();
+            for(int frame = 0; frame < frames; frame++){
+                for(int i = 0; i < instancias; i++){
+                    arena.setTeclas(i, ((frame >> 4) & 1) << ((frame + i) & 0xF));
+                    interprete.emularFrame(i, ciclos);
+                }
+            }
+            long nanosArena = System.nanoTime() - inicio;
+            long gcArena = colecciones() - gc;
+
+            ArenaChip8 captura = ArenaChip8.crear(instancias);
+            inicio = System.nanoTime();
+            arena.copiarA(captura);
+            long nanosCaptura = System.nanoTime() - inicio;
+
+            int distintos = 0;
+            for(int i = 0; i < instancias; i++){
+                if(chips[i].hashEstado() != arena.hashEstado(i))
+                    distintos++;
+            }
+
+            System.out.printf(
+                    "heap: %.1f ns/frame (%d GC)  arena: %.1f ns/frame (%d GC)  "
+                            + "captura de %d maquinas: %.1f us  estados distintos: %d%n",
+                    (double)nanosHeap / (instancias * frames), gcHeap,
+                    (double)nanosArena / (instancias * frames), gcArena,
+                    instancias, nanosCaptura / 1000.0, distintos
+            );
+        }
+    }
+}
@@ -5,42 +5,223 @@ package chip8;
  * Fecha: 15/07/15.
  */
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import java.util.Scanner;
-
 public class Main {
+    /***********************
+     * Punto de entrada de linea de comandos:
+     *
+     *      Main [opciones] <rom>
+     *
+     *      -modo ventana|terminal|sin-pantalla|pasos   (ventana)
+     *      -hz <instrucciones por segundo>             (segun la ROM, ver ConfiguracionRom)
+     *      -nucleo referencia|switch|fusion            (referencia)
+     *      -semilla <n>                                para CXNN reproducible
+     *      -xo                XO-CHIP (tambien si la rom termina en .xo8)
+     *      -frames <n>        sin-pantalla: frames a ejecutar (0 = hasta HALT)
+     *      -guion <archivo>   sin-pantalla: teclado (ver GuionEntrada)
+     *      -tiempo-real       sin-pantalla: a 60 frames por segundo
+     *      -medir             tiempo desde el arranque hasta la primera instruccion
+     *
+     *   El modo pasos es un depurador que lee sus ordenes de la entrada
+     *   estandar, de la consola o de un archivo (ver ConsolaDepurador).
+     *
+     *   El modo sin-pantalla nunca toca clases de Swing ni de AWT: las
+     *   ventanas solo se alcanzan desde los otros modos. Para arrancar
+     *   rapido ver el objetivo "cds" de build.xml y el script chip8.sh.
+     **************************/
 
-    public static void main(String[] args) {
-        Chip8 myChip = new Chip8();
-        myChip.init();
+    private static final String USO =
+            "Uso: Main [-modo ventana|terminal|sin-pantalla|pasos] [-hz n] [-nucleo nombre]\n"
+            + "            [-semilla n] [-xo] [-frames n] [-guion archivo] [-tiempo-real] [-medir] <rom>";
+
+    private String modo = "ventana";
+    private String rom;
+    private String nucleo;
+    private String guion;
+    private int hz;
+    private long frames;
+    private long semilla;
+    private boolean conSemilla;
+    private boolean xo;
+    private boolean tiempoReal;
+    private boolean medir;
+
+    // null si los argumentos no son validos
+    private static Main leerArgumentos(String[] args) {
         try {
-            myChip.cargarJuego("invaders.c8");
-        } catch (IOException ex) {
-            Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
+            return interpretarArgumentos(args);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static Main interpretarArgumentos(String[] args) {
+        Main opciones = new Main();
+
+        for(int i = 0; i < args.length; i++){
+            boolean conValor = i + 1 < args.length;
+            switch(args[i]){
+                case "-modo":
+                    if(conValor) opciones.modo = args[++i];
+                    break;
+                case "-hz":
+                    if(conValor){
+                        opciones.hz = Integer.parseInt(args[++i]);
+                        if(opciones.hz <= 0)
+                            return null;
+                    }
+                    break;
+                case "-nucleo":
+                    if(conValor) opciones.nucleo = args[++i];
+                    break;
+                case "-semilla":
+                    if(conValor){
+                        opciones.semilla = Long.parseLong(args[++i]);
+                        opciones.conSemilla = true;
+                    }
+                    break;
+                case "-xo":
+                    opciones.xo = true;
+                    break;
+                case "-frames":
+                    if(conValor) opciones.frames = Long.parseLong(args[++i]);
+                    break;
+                case "-guion":
+                    if(conValor) opciones.guion = args[++i];
+                    break;
+                case "-tiempo-real":
+                    opciones.tiempoReal = true;
+                    break;
+                case "-medir":
+                    opciones.medir = true;
+                    break;
+                default:
+                    if(args[i].startsWith("-"))
+                        return null;
+                    opciones.rom = args[i];
+                    break;
+            }
+        }
+        return opciones.rom != null ? opciones : null;
+    }
+
+    // Maquina configurada y con la ROM cargada, igual para todos los modos
+    private Chip8 crearChip() throws IOException {
+        Chip8 chip = new Chip8(false);
+
+        // El motor va antes de cargar, para que pueda precargar su cache
+        if(nucleo != null)
+            chip.setNucleo(NucleoCpu.crear(nucleo));
+
+        chip.init();
+        if(conSemilla)
+            chip.setSemilla(semilla);
+        // Menos de 30 Hz redondearia a 0, que es "segun la ROM"
+        if(hz > 0)
+            chip.setCiclosPorFrame(Math.max(1, Math.round(hz / 60.0f)));
+
+        byte datos[] = Files.readAllBytes(Paths.get(rom));
+        chip.cargarJuego(xo || rom.endsWith(".xo8") ? ImagenRom.crearXo(datos) : ImagenRom.crear(datos));
+        return chip;
+    }
+
+    /****************************************************************
+     * Modos
+     ****************************************************************/
+    private void sinPantalla(Chip8 chip) throws IOException {
+        GuionEntrada entrada = guion != null ? GuionEntrada.leer(Paths.get(guion)) : GuionEntrada.VACIO;
+        int teclado[] = new int[16];
+        int siguiente = 0;
+
+        long periodo = TimeUnit.SECONDS.toNanos(1) / 60;
+        long limite = System.nanoTime();
+
+        long frame = 0;
+        for(; (frames == 0 || frame < frames) && chip.RUNNING; frame++){
+            siguiente = entrada.aplicar((int)frame, siguiente, teclado);
+            chip.setKeyPad(teclado);
+            chip.emularFrame();
+
+            if(frame == 0 && medir)
+                reportarArranque();
+
+            if(tiempoReal){
+                limite += periodo;
+                LockSupport.parkNanos(limite - System.nanoTime());
+            }
         }
 
-        myChip.imprimirMemoria();
+        if(chip.getNucleo() instanceof NucleoFusion)
+            ((NucleoFusion)chip.getNucleo()).guardarTraduccion();
 
-        Scanner scanner = new Scanner(System.in);
+        System.out.printf(
+                "frames=%d instrucciones=%d indefinidos=%d hash=%016X%n",
+                frame, chip.getCiclosEjecutados(), chip.getOpcodesIndefinidos(), chip.hashEstado()
+        );
+    }
 
-        System.out.println("\n\nEjecucion del programa c8\n");
+    /*
+    * Milisegundos desde que arranco la JVM hasta el fin del primer frame
+    * (cota de la primera instruccion). Se mide antes de cargar las clases
+    * de java.lang.management, que solo se usan para leer el arranque.
+    */
+    private static void reportarArranque() {
+        long ahora = System.currentTimeMillis();
+        long inicio = java.lang.management.ManagementFactory.getRuntimeMXBean().getStartTime();
+        System.err.printf("Primera instruccion: %d ms desde el arranque de la JVM%n", ahora - inicio);
+    }
 
-        // Ciclo principal
-        while(myChip.RUNNING){
-            myChip.emularCiclo();
+    // Depurador de consola: ordenes desde la entrada estandar (ver ConsolaDepurador)
+    private static void pasos(Chip8 chip) throws IOException {
+        BufferedReader entrada = new BufferedReader(new InputStreamReader(System.in));
+        new ConsolaDepurador(new Depurador(chip), entrada, System.out).ejecutar();
+    }
+
+    public static void main(String[] args) {
+        Main opciones = leerArgumentos(args);
+        if(opciones == null){
+            System.err.println(USO);
+            System.exit(2);
+        }
 
-            // Polling del keypad
-            //TODO
+        try {
+            Chip8 chip = opciones.crearChip();
 
-            // Render
-            if(myChip.drawFlag){
-                myChip.textRender();
-                myChip.drawFlag = false;
+            switch(opciones.modo){
+                case "sin-pantalla":
+                    opciones.sinPantalla(chip);
+                    break;
+                case "terminal":
+                    new MainTerminal(chip).iniciar();
+                    break;
+                case "pasos":
+                    pasos(chip);
+                    break;
+                case "ventana":
+                    new MainFrame(chip).iniciar();
+                    break;
+                default:
+                    System.err.println(USO);
+                    System.exit(2);
             }
-            scanner.nextInt();
+
+        } catch (IllegalArgumentException ex) {
+            // Opciones que solo se validan al crear la maquina (nucleo desconocido)
+            System.err.println(ex.getMessage());
+            System.err.println(USO);
+            System.exit(2);
+        } catch (IOException ex) {
+            Logger.getLogger(Main.class.getName()).log(Level.SEVERE, null, ex);
+            System.exit(1);
         }
     }
 }
@@ -5,42 +5,182 @@ package chip8;
  * Fecha: 15/07/15.
  */
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 public class MainFrame {
     public Chip8 chip8;
     public ChipFrame frame;
+    public GrabadorFrames grabador;
+    public EjecucionAdelantada adelanto;
+    public ControladorChip8 controlador;
 
     public MainFrame(String archivo) throws IOException {
-        chip8 = new Chip8(false);
-        chip8.init();
-        chip8.cargarJuego(archivo);
+        this(crearChip(archivo));
+    }
+
+    // Maquina con el motor de -Dchip8.nucleo=referencia|switch|fusion y la ROM
+    // cargada (el motor va antes, para que pueda precargar su cache); las
+    // ROM .xo8 se cargan como XO-CHIP
+    private static Chip8 crearChip(String archivo) throws IOException {
+        Chip8 chip = new Chip8(false);
+
+        String nucleo = System.getProperty("chip8.nucleo");
+        if(nucleo != null)
+            chip.setNucleo(NucleoCpu.crear(nucleo));
+
+        chip.init();
+        byte datos[] = Files.readAllBytes(Paths.get(archivo));
+        chip.cargarJuego(archivo.endsWith(".xo8") ? ImagenRom.crearXo(datos) : ImagenRom.crear(datos));
+        return chip;
+    }
+
+    // Ventana para una maquina ya configurada y con la ROM cargada (ver Main)
+    public MainFrame(Chip8 chip) throws IOException {
+        chip8 = chip;
+        chip8.setSalidaSonido(AudioChip8.crear());
         frame = new ChipFrame(chip8);
+
+        // Persistencia opcional contra el parpadeo: -Dchip8.persistencia=true
+        frame.getPanel().setPersistencia(Boolean.getBoolean("chip8.persistencia"));
+        activarEstadisticas();
+
+        // Perfilado opcional: -Dchip8.perfil=<prefijo de los reportes>
+        String perfil = System.getProperty("chip8.perfil");
+        if(perfil != null)
+            activarPerfilador(perfil);
+
+        // Grabacion opcional: -Dchip8.grabar=<archivo.gif | directorio de PNGs>
+        String grabacion = System.getProperty("chip8.grabar");
+        if(grabacion != null)
+            activarGrabador(grabacion);
+
+        // Ejecucion adelantada opcional: -Dchip8.adelanto=<frames>
+        String frames = System.getProperty("chip8.adelanto");
+        if(frames != null)
+            activarAdelanto(Integer.parseInt(frames));
     }
 
-    public static void main(String[] args) {
-        MainFrame mainFrame;
+    private void activarAdelanto(int frames) {
+        adelanto = new EjecucionAdelantada(chip8, frames);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() ->
+                Logger.getLogger(MainFrame.class.getName())
+                        .log(Level.INFO, "Ejecucion adelantada: {0}", adelanto)
+        ));
+    }
+
+    /*
+    * Fin de cada frame de 60 Hz, en el hilo del emulador: se entrega
+    * siempre al panel, que omite lo que no cambia y, con persistencia,
+    * necesita un frame mas para borrar el rastro.
+    */
+    private void presentar(Chip8 chip, long[] pantalla, boolean cambio) {
+        if(frame.getPanel().presentar(pantalla) && cambio && grabador != null)
+            grabador.capturar(chip);
+    }
+
+    private void activarEstadisticas() {
+        long inicio = System.nanoTime();
+        ChipPanel panel = frame.getPanel();
 
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            double segundos = (System.nanoTime() - inicio) / 1e9;
+            Logger.getLogger(MainFrame.class.getName()).log(
+                    Level.INFO, String.format(
+                            "Frames presentados: %d, omitidos: %d, ocultos: %d, repintados: %d (%.1f/s)",
+                            panel.getPresentados(), panel.getOmitidos(), panel.getSuspendidos(),
+                            panel.getPintados(), panel.getPintados() / segundos
+                    )
+            );
+
+            if(controlador != null && controlador.getNanosReposo() > 0)
+                Logger.getLogger(MainFrame.class.getName()).log(
+                        Level.INFO, String.format(
+                                "En reposo: %.1f s con %.2f ms de CPU",
+                                controlador.getNanosReposo() / 1e9, controlador.getCpuReposo() / 1e6
+                        )
+                );
+        }));
+    }
+
+    private void activarGrabador(String destino) throws IOException {
+        Path ruta = Paths.get(destino);
+        CodificadorFrames codificador = destino.toLowerCase().endsWith(".gif")
+                ? new CodificadorGif(ruta, 4, 0x000000, 0xFFFFFF)
+                : new CodificadorPng(ruta, 4, 0x000000, 0xFFFFFF);
+        grabador = new GrabadorFrames(codificador, 64);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                grabador.cerrar();
+                Logger.getLogger(MainFrame.class.getName()).log(
+                        Level.INFO, "Frames grabados: {0}, descartados: {1}",
+                        new Object[]{grabador.getCapturados(), grabador.getDescartados()}
+                );
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+    }
+
+    private void activarPerfilador(String prefijo) {
+        Perfilador perfilador = new Perfilador();
+        chip8.setMonitor(perfilador);
+
+        // Los reportes se escriben al cerrar la ventana
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                perfilador.escribirReporte(Paths.get(prefijo + ".txt"));
+                perfilador.escribirPilasColapsadas(Paths.get(prefijo + ".folded"));
+            } catch (IOException ex) {
+                Logger.getLogger(MainFrame.class.getName())
+                        .log(Level.SEVERE, null, ex);
+            }
+        }));
+    }
+
+    /*
+    * Emula por frames completos de 60 Hz en el hilo del controlador y
+    * presenta al final de cada uno.
+    */
+    public void iniciar() {
+        controlador = new ControladorChip8(chip8);
+        controlador.setAdelanto(adelanto);
+        controlador.agregarOyente(new OyenteChip8() {
+            @Override
+            public void frameCompleto(Chip8 chip, long[] pantalla, boolean cambio) {
+                presentar(chip, pantalla, cambio);
+            }
+        });
+        frame.setControlador(controlador);
+
+        // Con la ventana oculta o sin foco: -Dchip8.oculta, -Dchip8.sinfoco
+        // = normal | timers | pausa
+        frame.setPoliticas(
+                ControladorChip8.politica(System.getProperty("chip8.oculta", "timers")),
+                ControladorChip8.politica(System.getProperty("chip8.sinfoco", "normal"))
+        );
+
+        // El analisis del motor se guarda al salir, con la maquina pausada
+        if(chip8.getNucleo() instanceof NucleoFusion) {
+            NucleoFusion fusion = (NucleoFusion)chip8.getNucleo();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                controlador.pausar();
+                fusion.guardarTraduccion();
+            }));
+        }
+
+        controlador.iniciar();
+    }
+
+    public static void main(String[] args) {
         try {
-            //mainFrame = new MainFrame(args[0]);
-            mainFrame = new MainFrame("invaders.c8");
-
-            //Ciclo de reloj objetivo: ~500hz / ~1000hz (super chip8)
-            ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor();
-
-            service.scheduleAtFixedRate(() -> {
-                mainFrame.chip8.setKeyPad(mainFrame.frame.getKeyBuffer());
-                mainFrame.chip8.emularCiclo();
-                if(mainFrame.chip8.drawFlag) {
-                    mainFrame.frame.repaint();
-                    mainFrame.chip8.drawFlag = false;
-                }
-            }, 0, mainFrame.chip8.period, TimeUnit.MILLISECONDS);
+            new MainFrame(args.length > 0 ? args[0] : "invaders.c8").iniciar();
 
         } catch (IOException ex) {
             Logger.getLogger(MainFrame.class.getName())
@@ -0,0 +1,82 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class MainTerminal {
+    public Chip8 chip8;
+    public RenderTerminal terminal;
+    public ControladorChip8 controlador;
+
+    // XO-CHIP se ve en la terminal reducido a 64x32 (ver EstadoXoChip)
+    final private long reducida[] = new long[32];
+
+    public MainTerminal(String archivo) throws IOException {
+        this(new Chip8(false));
+        chip8.init();
+        chip8.cargarJuego(archivo);
+    }
+
+    // Terminal para una maquina ya configurada y con la ROM cargada (ver Main)
+    public MainTerminal(Chip8 chip) {
+        chip8 = chip;
+
+        // Se escribe directo al descriptor para evitar el buffer de System.out
+        terminal = new RenderTerminal(new FileOutputStream(FileDescriptor.out));
+    }
+
+    // Fin de cada frame, en el hilo del emulador: nunca se ve un frame a medias
+    private void render(long[] filas, boolean cambio) {
+        if(!cambio)
+            return;
+
+        try {
+            terminal.dibujar(filas);
+        } catch (IOException ex) {
+            Logger.getLogger(MainTerminal.class.getName())
+                    .log(Level.SEVERE, null, ex);
+        }
+    }
+
+    public void iniciar() {
+        controlador = new ControladorChip8(chip8);
+        controlador.agregarOyente(new OyenteChip8() {
+            @Override
+            public void frameCompleto(Chip8 chip, long[] pantalla, boolean cambio) {
+                if(chip.isXo()){
+                    chip.empaquetarGfx(reducida);
+                    pantalla = reducida;
+                }
+                render(pantalla, cambio);
+            }
+        });
+        // Ctrl+C o el fin de la JVM no deben dejar el cursor oculto
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                terminal.restaurar();
+            } catch (IOException ex) {
+                Logger.getLogger(MainTerminal.class.getName())
+                        .log(Level.SEVERE, null, ex);
+            }
+        }));
+        controlador.iniciar();
+    }
+
+    public static void main(String[] args) {
+        try {
+            new MainTerminal(args.length > 0 ? args[0] : "invaders.c8").iniciar();
+
+        } catch (IOException ex) {
+            Logger.getLogger(MainTerminal.class.getName())
+                    .log(Level.SEVERE, null, ex);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+/*
+* Observador opcional de la ejecucion: Chip8 lo invoca antes de ejecutar cada
+* instruccion con la direccion y el opcode ya leidos de memoria.
+*/
+@FunctionalInterface
+public interface MonitorCiclo {
+    void antesDeCiclo(int pc, int opcode);
+}
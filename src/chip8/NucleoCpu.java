@@ -0,0 +1,57 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+/*
+* Motor de ejecucion del Chip8: ejecuta la instruccion ya leida y
+* decodificada (Chip8 se encarga de leerla, del monitor, de los timers y
+* de los contadores). Todos los motores deben dar exactamente el mismo
+* resultado; ValidadorLockstep lo comprueba.
+*/
+@FunctionalInterface
+public interface NucleoCpu {
+    // Tabla de referencias a metodos de Chip8 (tablaChip8)
+    NucleoCpu REFERENCIA = (chip, opcode) -> chip.ejecutarCiclo(chip.tablaChip8[opcode.header]);
+
+    void ejecutar(Chip8 chip, Opcode opcode);
+
+    /*
+    * Ejecuta varias instrucciones desde el pc en un solo despacho, sin
+    * pasar de "maximo". Regresa cuantas ejecuto, o 0 si no hay nada que
+    * ejecutar asi en esa direccion (Chip8 ejecuta entonces una normal).
+    */
+    default int ejecutarBloque(Chip8 chip, int maximo) {
+        return 0;
+    }
+
+    // Aviso de escritura en memoria, para motores que guardan codigo decodificado
+    default void memoriaEscrita(int direccion) {
+    }
+
+    // Aviso de Chip8.cargarJuego(ImagenRom), para motores que guardan su analisis por ROM
+    default void juegoCargado(ImagenRom imagen) {
+    }
+
+    // Motor para otra maquina (Chip8.fork): los que no tienen estado se comparten
+    default NucleoCpu copiar() {
+        return this;
+    }
+
+    // Motor por nombre, para elegirlo al arrancar: referencia, switch, fusion.
+    // Los motores con estado (fusion) son una instancia nueva por maquina.
+    static NucleoCpu crear(String nombre) {
+        switch(nombre){
+            case "referencia":
+                return REFERENCIA;
+            case "switch":
+                return NucleoSwitch.INSTANCIA;
+            case "fusion":
+                return new NucleoFusion(CacheTraduccion.predeterminada());
+            default:
+                throw new IllegalArgumentException("Nucleo desconocido: " + nombre);
+        }
+    }
+}
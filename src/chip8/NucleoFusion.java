@@ -0,0 +1,483 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+public class NucleoFusion implements NucleoCpu {
+    /***********************
+     * Motor con superinstrucciones: secuencias frecuentes de opcodes se
+     * reconocen una vez y se ejecutan despues en un solo despacho.
+     *
+     *   Secuencias reconocidas (en la misma pagina de 256 bytes):
+     *      CARGAS    6XNN 6XNN ...        hasta 8 cargas seguidas
+     *      SPRITE    ANNN DXYN            si I + N no sale de la memoria
+     *      SALTO     3XNN/4XNN 1NNN       1 o 2 instrucciones segun el skip
+     *      CONTADOR  7XNN 3YNN/4YNN       incremento y comparacion
+     *      CICLO     7XNN 3YNN/4YNN 1NNN  2 o 3 instrucciones segun el skip
+     *
+     *   El analisis de cada direccion se guarda en "fusion". Se olvida al
+     *   escribir dentro de la secuencia (memoriaEscrita) y, cuando la
+     *   pagina pasa a ser otro arreglo (al restaurar o cargar otra ROM),
+     *   si la secuencia cubre algun byte distinto.
+     *
+     *   Con una CacheTraduccion, el analisis de las direcciones que siguen
+     *   iguales a la imagen se guarda al cambiar de juego (o con
+     *   guardarTraduccion) y se precarga al cargar la misma ROM, asi una
+     *   sesion nueva no vuelve a analizar lo que ya conoce.
+     *
+     *   Las instrucciones sueltas se ejecutan con NucleoSwitch. Una
+     *   instancia por maquina.
+     **************************/
+
+    public static final int CARGAS = 1;
+    public static final int SPRITE = 2;
+    public static final int SALTO = 3;
+    public static final int CONTADOR = 4;
+    public static final int CICLO = 5;
+
+    // Cambia cuando cambia el significado de las entradas de "fusion"
+    public static final int VERSION_ANALISIS = 1;
+
+    private static final String NOMBRES[] = {"", "CARGAS", "SPRITE", "SALTO", "CONTADOR", "CICLO"};
+
+    private static final int SIN_ANALIZAR = 0;
+    private static final int SIN_FUSION = -1;
+
+    // Instrucciones mas largas que puede cubrir una secuencia
+    private static final int MAX_LARGO = 8;
+
+    // Por direccion: SIN_ANALIZAR, SIN_FUSION o (tipo << 8) | largo
+    final private int fusion[] = new int[4096];
+
+    // Pagina (arreglo) con la que se hizo el analisis de cada pagina
+    final private byte analizadas[][] = new byte[ImagenRom.PAGINAS][];
+
+    // Metricas por tipo
+    final private long despachos[] = new long[NOMBRES.length];
+    final private long instrucciones[] = new long[NOMBRES.length];
+
+    // Cache en disco (o null) e imagen cargada, para guardar el analisis
+    final private CacheTraduccion cache;
+    private ImagenRom imagen;
+
+    // Direcciones analizadas: en total y desde que se guardo
+    private long analisis;
+    private int analisisSinGuardar;
+
+    public NucleoFusion() {
+        this(null);
+    }
+
+    public NucleoFusion(CacheTraduccion cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public void ejecutar(Chip8 chip, Opcode opcode) {
+        NucleoSwitch.INSTANCIA.ejecutar(chip, opcode);
+    }
+
+    @Override
+    public NucleoCpu copiar() {
+        return new NucleoFusion(cache);
+    }
+
+    @Override
+    public void juegoCargado(ImagenRom imagen) {
+        guardarTraduccion();
+        this.imagen = imagen;
+        if(cache != null)
+            precargar(cache.leer(imagen, VERSION_ANALISIS));
+    }
+
+    private void precargar(CacheTraduccion.Entrada entrada) {
+        if(entrada == null)
+            return;
+
+        // Las entradas se revisan antes de usarlas: nunca deben poder romper la ejecucion
+        int indice = 0;
+        for(int pagina = 0; pagina < ImagenRom.PAGINAS; pagina++){
+            if((entrada.paginas & (1 << pagina)) == 0)
+                continue;
+            for(int i = 0; i < ImagenRom.TAM_PAGINA; i++){
+                if(!entradaValida(i, entrada.datos.get(indice++))){
+                    cache.descartar(imagen, "entrada invalida en la pagina " + pagina);
+                    return;
+                }
+            }
+        }
+
+        entrada.datos.rewind();
+        for(int pagina = 0; pagina < ImagenRom.PAGINAS; pagina++){
+            if((entrada.paginas & (1 << pagina)) == 0)
+                continue;
+            entrada.datos.get(fusion, pagina * ImagenRom.TAM_PAGINA, ImagenRom.TAM_PAGINA);
+            analizadas[pagina] = imagen.paginas[pagina];
+        }
+    }
+
+    // Una entrada que analizar() pudo haber producido en esa posicion de la pagina
+    private static boolean entradaValida(int posicion, int entrada) {
+        if(entrada == SIN_ANALIZAR || entrada == SIN_FUSION)
+            return true;
+
+        int tipo = entrada >>> 8;
+        int largo = entrada & 0xFF;
+        if(posicion + (largo * 2) > ImagenRom.TAM_PAGINA)
+            return false;
+
+        switch(tipo){
+            case CARGAS:
+                return largo >= 2 && largo <= MAX_LARGO;
+            case SPRITE:
+            case SALTO:
+            case CONTADOR:
+                return largo == 2;
+            case CICLO:
+                return largo == 3;
+            default:
+                return false;
+        }
+    }
+
+    /*
+    * Guarda en la cache el analisis que sigue valiendo para la imagen
+    * cargada: el de cada direccion cuyos bytes (los que analizar() pudo
+    * leer) son iguales a los de la imagen, aunque el juego ya haya escrito
+    * en otra parte de la pagina. Debe llamarse desde el hilo que ejecuta.
+    */
+    public void guardarTraduccion() {
+        if(cache == null || imagen == null || analisisSinGuardar == 0)
+            return;
+
+        int tabla[] = new int[fusion.length];
+        int paginas = 0;
+        for(int pagina = 0; pagina < ImagenRom.PAGINAS; pagina++){
+            byte analizada[] = analizadas[pagina];
+            byte original[] = imagen.paginas[pagina];
+            if(analizada == null)
+                continue;
+
+            for(int i = 0; i < ImagenRom.TAM_PAGINA; i++){
+                int entrada = fusion[(pagina << 8) | i];
+                if(entrada != SIN_ANALIZAR && (analizada == original || igual(analizada, original, i)))
+                    tabla[(pagina << 8) | i] = entrada;
+            }
+            paginas |= 1 << pagina;
+        }
+        cache.guardar(imagen, VERSION_ANALISIS, paginas, tabla);
+        analisisSinGuardar = 0;
+    }
+
+    // Bytes que analizar() puede leer desde "desde", sin salir de la pagina
+    private static boolean igual(byte[] a, byte[] b, int desde) {
+        int hasta = Math.min(desde + (MAX_LARGO * 2), ImagenRom.TAM_PAGINA);
+        for(int i = desde; i < hasta; i++){
+            if(a[i] != b[i])
+                return false;
+        }
+        return true;
+    }
+
+    public long getAnalisis() {
+        return analisis;
+    }
+
+    @Override
+    public void memoriaEscrita(int direccion) {
+        // Secuencias que empiezan hasta MAX_LARGO instrucciones antes, en la misma pagina
+        int desde = Math.max(direccion - ((MAX_LARGO * 2) - 1), direccion & ~0xFF);
+        for(int i = desde; i <= direccion; i++)
+            fusion[i] = SIN_ANALIZAR;
+    }
+
+    @Override
+    public int ejecutarBloque(Chip8 chip, int maximo) {
+        int pc = chip.pc;
+        if((pc & ~0xFFF) != 0)
+            return 0;
+
+        int pagina = pc >>> 8;
+        if(analizadas[pagina] != chip.paginas[pagina])
+            cambiarPagina(pagina, chip.paginas[pagina]);
+
+        int entrada = fusion[pc];
+        if(entrada == SIN_ANALIZAR){
+            entrada = analizar(chip, pc);
+            fusion[pc] = entrada;
+            analisis++;
+            analisisSinGuardar++;
+        }
+        if(entrada == SIN_FUSION)
+            return 0;
+
+        int tipo = entrada >>> 8;
+        int largo = entrada & 0xFF;
+
+        // Las secuencias de largo fijo no pueden pasar del limite del frame
+        if(tipo != CARGAS && largo > maximo)
+            return 0;
+
+        int ejecutadas;
+        switch(tipo){
+            case CARGAS:
+                ejecutadas = cargas(chip, pc, Math.min(largo, maximo));
+                break;
+            case SPRITE:
+                ejecutadas = sprite(chip, pc);
+                break;
+            case SALTO:
+                ejecutadas = salto(chip, pc, opcodeEn(chip, pc));
+                break;
+            case CONTADOR:
+                ejecutadas = contador(chip, pc);
+                break;
+            default:
+                ejecutadas = contador(chip, pc);
+                if(ejecutadas == 2 && chip.pc == pc + 4)
+                    ejecutadas += salto1NNN(chip, opcodeEn(chip, pc + 4));
+                break;
+        }
+
+        despachos[tipo]++;
+        instrucciones[tipo] += ejecutadas;
+        return ejecutadas;
+    }
+
+    /*
+    * La pagina es otro arreglo (copia al escribir, restaurarEstado, otra
+    * ROM): solo se olvidan las secuencias que cubren bytes distintos.
+    */
+    private void cambiarPagina(int pagina, byte[] nueva) {
+        byte anterior[] = analizadas[pagina];
+        int base = pagina << 8;
+
+        if(anterior == null)
+            Arrays.fill(fusion, base, base + ImagenRom.TAM_PAGINA, SIN_ANALIZAR);
+        else{
+            for(int i = 0; i < ImagenRom.TAM_PAGINA; i++){
+                if(anterior[i] != nueva[i])
+                    Arrays.fill(fusion, Math.max(base, base + i - ((MAX_LARGO * 2) - 1)), base + i + 1, SIN_ANALIZAR);
+            }
+        }
+        analizadas[pagina] = nueva;
+    }
+
+    private static int opcodeEn(Chip8 chip, int direccion) {
+        return (chip.leerMemoria(direccion) << 8) | chip.leerMemoria(direccion + 1);
+    }
+
+    /****************************************************************
+     * Analisis
+     ****************************************************************/
+    private int analizar(Chip8 chip, int pc) {
+        // Cuantas instrucciones caben antes del fin de la pagina
+        int disponibles = (0x100 - (pc & 0xFF)) / 2;
+        if(disponibles < 2)
+            return SIN_FUSION;
+
+        int primero = opcodeEn(chip, pc);
+        int segundo = opcodeEn(chip, pc + 2);
+
+        switch(primero >>> 12){
+            case 0x6: {
+                int largo = 1;
+                while(largo < Math.min(MAX_LARGO, disponibles)
+                        && (opcodeEn(chip, pc + (largo * 2)) >>> 12) == 0x6)
+                    largo++;
+                return largo > 1 ? (CARGAS << 8) | largo : SIN_FUSION;
+            }
+
+            case 0xA:
+                // I = NNN; el sprite no debe leer fuera de la memoria
+                if((segundo >>> 12) == 0xD && (primero & 0xFFF) + (segundo & 0xF) <= 4096)
+                    return (SPRITE << 8) | 2;
+                return SIN_FUSION;
+
+            case 0x3:
+            case 0x4:
+                return (segundo >>> 12) == 0x1 ? (SALTO << 8) | 2 : SIN_FUSION;
+
+            case 0x7: {
+                int tipoSegundo = segundo >>> 12;
+                if(tipoSegundo != 0x3 && tipoSegundo != 0x4)
+                    return SIN_FUSION;
+                if(disponibles >= 3 && (opcodeEn(chip, pc + 4) >>> 12) == 0x1)
+                    return (CICLO << 8) | 3;
+                return (CONTADOR << 8) | 2;
+            }
+
+            default:
+                return SIN_FUSION;
+        }
+    }
+
+    /****************************************************************
+     * Secuencias fusionadas: misma semantica que NucleoSwitch
+     ****************************************************************/
+    private static int cargas(Chip8 chip, int pc, int largo) {
+        for(int i = 0; i < largo; i++){
+            int opcode = opcodeEn(chip, pc + (i * 2));
+            chip.V[(opcode >> 8) & 0xF] = opcode & 0xFF;
+        }
+        chip.pc = pc + (largo * 2);
+        return largo;
+    }
+
+    private static int sprite(Chip8 chip, int pc) {
+        int opcode = opcodeEn(chip, pc + 2);
+        chip.I = opcodeEn(chip, pc) & 0xFFF;
+        NucleoSwitch.dibujar(chip, chip.V,
+                chip.V[(opcode >> 8) & 0xF], chip.V[(opcode >> 4) & 0xF], opcode & 0xF);
+        chip.pc = pc + 4;
+        return 2;
+    }
+
+    // 3XNN/4XNN y, si no hubo skip, el 1NNN que sigue
+    private static int salto(Chip8 chip, int pc, int opcode) {
+        int valor = chip.V[(opcode >> 8) & 0xF];
+        boolean igual = valor == (opcode & 0xFF);
+        boolean skip = (opcode >>> 12) == 0x3 ? igual : !igual;
+
+        if(skip){
+            chip.pc = pc + 4;
+            return 1;
+        }
+        chip.pc = pc + 2;
+        return 1 + salto1NNN(chip, opcodeEn(chip, pc + 2));
+    }
+
+    private static int salto1NNN(Chip8 chip, int opcode) {
+        chip.pc = opcode & 0xFFF;
+        return 1;
+    }
+
+    // 7XNN seguido de 3YNN/4YNN (sin el posible 1NNN)
+    private static int contador(Chip8 chip, int pc) {
+        int suma = opcodeEn(chip, pc);
+        int x = (suma >> 8) & 0xF;
+        chip.V[x] = (chip.V[x] + (suma & 0xFF)) & 0xFF;
+
+        int comparacion = opcodeEn(chip, pc + 2);
+        boolean igual = chip.V[(comparacion >> 8) & 0xF] == (comparacion & 0xFF);
+        boolean skip = (comparacion >>> 12) == 0x3 ? igual : !igual;
+        chip.pc = pc + (skip ? 6 : 4);
+        return 2;
+    }
+
+    /****************************************************************
+     * Reporte
+     ****************************************************************/
+    public long getDespachos(int tipo) {
+        return despachos[tipo];
+    }
+
+    public long getInstrucciones(int tipo) {
+        return instrucciones[tipo];
+    }
+
+    public long getInstruccionesFusionadas() {
+        long total = 0;
+        for(long valor: instrucciones)
+            total += valor;
+        return total;
+    }
+
+    /*
+    * Porcentaje de las instrucciones ejecutadas que entraron en una
+    * secuencia, por tipo, y despachos ahorrados.
+    */
+    public String reporte(long totalInstrucciones) {
+        StringBuilder reporte = new StringBuilder();
+        long fusionadas = 0;
+        long ahorrados = 0;
+
+        for(int tipo = 1; tipo < NOMBRES.length; tipo++){
+            fusionadas += instrucciones[tipo];
+            ahorrados += instrucciones[tipo] - despachos[tipo];
+            reporte.append(String.format(
+                    "  %-9s %6.2f%% (%d despachos)%n", NOMBRES[tipo],
+                    100.0 * instrucciones[tipo] / Math.max(1, totalInstrucciones), despachos[tipo]
+            ));
+        }
+
+        reporte.insert(0, String.format(
+                "Fusionadas: %.2f%% de %d instrucciones, despachos ahorrados: %.2f%%%n",
+                100.0 * fusionadas / Math.max(1, totalInstrucciones), totalInstrucciones,
+                100.0 * ahorrados / Math.max(1, totalInstrucciones)
+        ));
+        return reporte.toString();
+    }
+
+    /*
+    * Tasa de fusion por ROM y tiempo por instruccion contra el motor de
+    * referencia, con el mismo guion de teclado y la misma semilla.
+    */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1){
+            System.out.println("Uso: NucleoFusion <rom>... [-frames N]");
+            return;
+        }
+
+        int frames = 36000;
+        for(int i = 0; i < args.length - 1; i++){
+            if(args[i].equals("-frames"))
+                frames = Integer.parseInt(args[i + 1]);
+        }
+
+        for(int i = 0; i < args.length; i++){
+            if(args[i].equals("-frames")){
+                i++;
+                continue;
+            }
+            byte rom[] = Files.readAllBytes(Paths.get(args[i]));
+
+            // Dos rondas: la primera solo calienta el JIT
+            long nanosReferencia = 0;
+            long nanosFusion = 0;
+            NucleoFusion nucleo = null;
+            Chip8 chip = null;
+            for(int ronda = 0; ronda < 2; ronda++){
+                nanosReferencia = medir(rom, frames, NucleoCpu.REFERENCIA);
+                nucleo = new NucleoFusion();
+                chip = new Chip8(false);
+                nanosFusion = medir(chip, rom, frames, nucleo);
+            }
+
+            long total = chip.getCiclosEjecutados();
+            System.out.printf(
+                    "%s: referencia %.1f ns/instr, fusion %.1f ns/instr%n",
+                    Paths.get(args[i]).getFileName(),
+                    (double)nanosReferencia / total, (double)nanosFusion / total
+            );
+            System.out.print(nucleo.reporte(total));
+        }
+    }
+
+    private static long medir(byte[] rom, int frames, NucleoCpu nucleo) throws IOException {
+        return medir(new Chip8(false), rom, frames, nucleo);
+    }
+
+    private static long medir(Chip8 chip, byte[] rom, int frames, NucleoCpu nucleo) throws IOException {
+        chip.init();
+        chip.setSemilla(1);
+        chip.setNucleo(nucleo);
+        chip.cargarJuego(rom);
+        int teclado[] = new int[16];
+
+        long inicio = System.nanoTime();
+        for(int frame = 0; frame < frames && chip.RUNNING; frame++){
+            teclado[(frame / 30) % 16] = (frame % 60) < 30 ? 1 : 0;
+            chip.setKeyPad(teclado);
+            chip.emularFrame();
+        }
+        return System.nanoTime() - inicio;
+    }
+}
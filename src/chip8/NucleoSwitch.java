@@ -0,0 +1,242 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+public final class NucleoSwitch implements NucleoCpu {
+    /***********************
+     * Motor con un solo switch por instruccion sobre los campos de Chip8.
+     *
+     *   La tabla de referencia llama a traves de CicloChip8 a 35 metodos
+     *   distintos desde el mismo punto, algo que el JIT no puede
+     *   inlinear. Aqui todo el despacho queda en un metodo que el JIT
+     *   compila completo. La semantica es la de Chip8, incluyendo sus
+     *   particularidades (VF como operando de 8XY4, 8XYE sin recortar
+     *   a 8 bits, 8XYF sin entrada en la tabla) y las peculiaridades de
+     *   la ROM (ConfiguracionRom).
+     **************************/
+
+    public static final NucleoSwitch INSTANCIA = new NucleoSwitch();
+
+    private NucleoSwitch() {
+    }
+
+    @Override
+    public void ejecutar(Chip8 c, Opcode op) {
+        final int V[] = c.V;
+        final int x = op.vx;
+        final int y = op.vy;
+
+        switch(op.header){
+            case 0x0:
+                if(op.nibble == 0x0){
+                    for(int fila = 0; fila < c.gfx.length; fila++)
+                        c.gfx[fila] = 0;
+                    c.drawFlag = true;
+                    c.pc += 2;
+                }
+                else if(op.nibble == 0xE){
+                    c.sp--;
+                    c.pc = c.stack[c.sp] + 2;
+                }
+                else
+                    c.opcodeUndefined();
+                break;
+
+            case 0x1:
+                c.pc = op.address;
+                break;
+
+            case 0x2:
+                c.stack[c.sp] = c.pc;
+                c.sp++;
+                c.pc = op.address;
+                break;
+
+            case 0x3:
+                c.pc += V[x] == op._byte ? 4 : 2;
+                break;
+
+            case 0x4:
+                c.pc += V[x] != op._byte ? 4 : 2;
+                break;
+
+            case 0x5:
+                c.pc += V[x] == V[y] ? 4 : 2;
+                break;
+
+            case 0x6:
+                V[x] = op._byte;
+                c.pc += 2;
+                break;
+
+            case 0x7:
+                V[x] = (V[x] + op._byte) & 0xFF;
+                c.pc += 2;
+                break;
+
+            case 0x8:
+                ejecutarAritmetica(c, V, x, y, op.nibble);
+                break;
+
+            case 0x9:
+                c.pc += V[x] != V[y] ? 4 : 2;
+                break;
+
+            case 0xA:
+                c.I = op.address;
+                c.pc += 2;
+                break;
+
+            case 0xB:
+                c.pc = op.address + V[0];
+                break;
+
+            case 0xC: {
+                int semilla = c.semillaRng;
+                semilla ^= semilla << 13;
+                semilla ^= semilla >>> 17;
+                semilla ^= semilla << 5;
+                c.semillaRng = semilla;
+                V[x] = op._byte & semilla & 0xFF;
+                c.pc += 2;
+                break;
+            }
+
+            case 0xD:
+                dibujar(c, V, V[x], V[y], op.nibble);
+                c.pc += 2;
+                break;
+
+            case 0xE:
+                if(op._byte == 0x9E)
+                    c.pc += c.key[V[x]] != 0 ? 4 : 2;
+                else if(op._byte == 0xA1)
+                    c.pc += c.key[V[x]] == 0 ? 4 : 2;
+                else
+                    c.opcodeUndefined();
+                break;
+
+            default:
+                ejecutarFX(c, V, x, op._byte);
+                break;
+        }
+    }
+
+    private static void ejecutarAritmetica(Chip8 c, int[] V, int x, int y, int n) {
+        switch(n){
+            case 0x0: V[x] = V[y]; break;
+            case 0x1: V[x] |= V[y]; break;
+            case 0x2: V[x] &= V[y]; break;
+            case 0x3: V[x] ^= V[y]; break;
+            case 0x4:
+                V[0xF] = V[y] > (0xFF - V[x]) ? 1 : 0;
+                V[x] = (V[x] + V[y]) & 0xFF;
+                break;
+            case 0x5:
+                V[0xF] = V[x] > V[y] ? 1 : 0;
+                V[x] = (V[x] - V[y]) & 0xFF;
+                break;
+            case 0x6:
+                if((c.peculiaridades & ConfiguracionRom.DESPLAZAR_VY) != 0)
+                    V[x] = V[y];
+                V[0xF] = V[x] & 0x1;
+                V[x] >>= 1;
+                break;
+            case 0x7:
+                V[0xF] = V[x] > V[y] ? 0 : 1;
+                V[x] = (V[y] - V[x]) & 0xFF;
+                break;
+            case 0xE:
+                if((c.peculiaridades & ConfiguracionRom.DESPLAZAR_VY) != 0)
+                    V[x] = V[y];
+                V[0xF] = V[x] >> 7;
+                V[x] <<= 1;
+                break;
+            default:
+                c.opcodeUndefined();
+                return;
+        }
+        c.pc += 2;
+    }
+
+    static void dibujar(Chip8 c, int[] V, int x, int y, int filas) {
+        V[0xF] = 0;
+        for(int ejeY = 0; ejeY < filas; ejeY++){
+            long sprite = Long.rotateRight(((long)c.leerMemoria(c.I + ejeY)) << 56, x);
+            int fila = (y + ejeY) & 0x1F;
+
+            if((c.gfx[fila] & sprite) != 0)
+                V[0xF] = 1;
+            c.gfx[fila] ^= sprite;
+        }
+        c.drawFlag = true;
+    }
+
+    private static void ejecutarFX(Chip8 c, int[] V, int x, int nn) {
+        switch(nn){
+            case 0x07:
+                V[x] = c.delayTimer;
+                break;
+
+            case 0x0A: {
+                boolean presionada = false;
+                for(int i = 0; i < 16; i++){
+                    if(c.key[i] != 0){
+                        V[x] = i;
+                        presionada = true;
+                    }
+                }
+                c.esperandoTecla = !presionada;
+                if(!presionada)
+                    return;
+                break;
+            }
+
+            case 0x15:
+                c.delayTimer = V[x];
+                break;
+
+            case 0x18:
+                c.soundTimer = V[x];
+                c.sonido.setActivo(c.soundTimer > 0);
+                break;
+
+            case 0x1E:
+                V[0xF] = (c.I + V[x]) > 0xFFF ? 1 : 0;
+                c.I += V[x];
+                break;
+
+            case 0x29:
+                c.I = V[x] * 0x5;
+                break;
+
+            case 0x33:
+                c.escribirMemoria(c.I, V[x] / 100);
+                c.escribirMemoria(c.I + 1, (V[x] / 10) % 10);
+                c.escribirMemoria(c.I + 2, (V[x] % 100) % 10);
+                break;
+
+            case 0x55:
+                for(int i = 0; i <= x; i++)
+                    c.escribirMemoria(c.I + i, V[i]);
+                if((c.peculiaridades & ConfiguracionRom.CONSERVAR_I) == 0)
+                    c.I += x + 1;
+                break;
+
+            case 0x65:
+                for(int i = 0; i <= x; i++)
+                    V[i] = c.leerMemoria(c.I + i);
+                if((c.peculiaridades & ConfiguracionRom.CONSERVAR_I) == 0)
+                    c.I += x + 1;
+                break;
+
+            default:
+                c.opcodeUndefined();
+                return;
+        }
+        c.pc += 2;
+    }
+}
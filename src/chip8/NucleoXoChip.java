@@ -0,0 +1,369 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+public final class NucleoXoChip implements NucleoCpu {
+    /***********************
+     * Motor de XO-CHIP (la extension de Octo): Chip8 lo usa mientras esta
+     * cargada una imagen de ImagenRom.crearXo. Con el mismo switch que
+     * NucleoSwitch, mas:
+     *
+     *      00CN / 00DN     bajar / subir N filas
+     *      00FB / 00FC     4 pixeles a la derecha / izquierda
+     *      00FD            salir (RUNNING = false)
+     *      00FE / 00FF     64x32 / 128x64
+     *      5XY2 / 5XY3     guardar / leer VX..VY en I (I no cambia)
+     *      DXY0            sprite de 16x16
+     *      F000 NNNN       I = NNNN (instruccion de 4 bytes)
+     *      FN01            planos de dibujo (bit 0: plano 1, bit 1: plano 2)
+     *      F002            patron de audio de 16 bytes desde I
+     *      FX30            fuente grande
+     *      FX3A            tono del patron
+     *      FX75 / FX85     guardar / leer V0..VX en los registros de banderas
+     *
+     *   Con las reglas de XO-CHIP: memoria de 64 KB, los saltos condicionales
+     *   brincan los 4 bytes de un F000, 8XY1-8XY3 no tocan VF, 8XY6 y 8XYE
+     *   desplazan VY, VF se escribe despues del resultado, FX1E no marca
+     *   desbordamiento y los sprites dan la vuelta a la pantalla.
+     *
+     *   La pantalla y el resto del estado extra estan en EstadoXoChip.
+     **************************/
+
+    public static final NucleoXoChip INSTANCIA = new NucleoXoChip();
+
+    private NucleoXoChip() {
+    }
+
+    @Override
+    public void ejecutar(Chip8 c, Opcode op) {
+        final int V[] = c.V;
+        final int x = op.vx;
+        final int y = op.vy;
+
+        switch(op.header){
+            case 0x0:
+                ejecutar00(c, op);
+                return;
+
+            case 0x1:
+                c.pc = op.address;
+                return;
+
+            case 0x2:
+                c.stack[c.sp] = c.pc;
+                c.sp++;
+                c.pc = op.address;
+                return;
+
+            case 0x3:
+                avanzar(c, saltar(c, V[x] == op._byte));
+                return;
+
+            case 0x4:
+                avanzar(c, saltar(c, V[x] != op._byte));
+                return;
+
+            case 0x5:
+                ejecutar5(c, V, x, y, op.nibble);
+                return;
+
+            case 0x6:
+                V[x] = op._byte;
+                break;
+
+            case 0x7:
+                V[x] = (V[x] + op._byte) & 0xFF;
+                break;
+
+            case 0x8:
+                if(!ejecutarAritmetica(V, x, y, op.nibble)){
+                    c.opcodeUndefined();
+                    return;
+                }
+                break;
+
+            case 0x9:
+                avanzar(c, saltar(c, V[x] != V[y]));
+                return;
+
+            case 0xA:
+                c.I = op.address;
+                break;
+
+            case 0xB:
+                c.pc = op.address + V[0];
+                return;
+
+            case 0xC: {
+                int semilla = c.semillaRng;
+                semilla ^= semilla << 13;
+                semilla ^= semilla >>> 17;
+                semilla ^= semilla << 5;
+                c.semillaRng = semilla;
+                V[x] = op._byte & semilla & 0xFF;
+                break;
+            }
+
+            case 0xD:
+                V[0xF] = c.xo.dibujar(c, V[x], V[y], op.nibble);
+                c.drawFlag = true;
+                break;
+
+            case 0xE:
+                if(op._byte == 0x9E)
+                    avanzar(c, saltar(c, c.key[V[x] & 0xF] != 0));
+                else if(op._byte == 0xA1)
+                    avanzar(c, saltar(c, c.key[V[x] & 0xF] == 0));
+                else
+                    c.opcodeUndefined();
+                return;
+
+            default:
+                ejecutarFX(c, V, x, op);
+                return;
+        }
+        avanzar(c, 2);
+    }
+
+    private static void avanzar(Chip8 c, int bytes) {
+        c.pc = (c.pc + bytes) & 0xFFFF;
+    }
+
+    // Bytes a avanzar en un salto condicional: el F000 NNNN ocupa 4
+    private static int saltar(Chip8 c, boolean condicion) {
+        if(!condicion)
+            return 2;
+        boolean largo = c.leerMemoria((c.pc + 2) & 0xFFFF) == 0xF0
+                && c.leerMemoria((c.pc + 3) & 0xFFFF) == 0x00;
+        return largo ? 6 : 4;
+    }
+
+    private static void ejecutar00(Chip8 c, Opcode op) {
+        EstadoXoChip xo = c.xo;
+
+        switch(op._byte & 0xF0){
+            case 0xC0:
+                xo.bajar(op.nibble);
+                c.drawFlag = true;
+                avanzar(c, 2);
+                return;
+            case 0xD0:
+                xo.subir(op.nibble);
+                c.drawFlag = true;
+                avanzar(c, 2);
+                return;
+            default:
+                break;
+        }
+
+        switch(op._byte){
+            case 0xE0:
+                xo.limpiar();
+                c.drawFlag = true;
+                break;
+            case 0xEE:
+                c.sp--;
+                c.pc = c.stack[c.sp];
+                break;
+            case 0xFB:
+                xo.derecha();
+                c.drawFlag = true;
+                break;
+            case 0xFC:
+                xo.izquierda();
+                c.drawFlag = true;
+                break;
+            case 0xFD:
+                c.RUNNING = false;
+                return;
+            case 0xFE:
+            case 0xFF:
+                xo.setHires(op._byte == 0xFF);
+                c.drawFlag = true;
+                break;
+            default:
+                c.opcodeUndefined();
+                return;
+        }
+        avanzar(c, 2);
+    }
+
+    /*
+    * 5XY0 y los accesos en bloque: VX..VY en orden, o al reves si X > Y,
+    * desde I sin modificarlo.
+    */
+    private static void ejecutar5(Chip8 c, int[] V, int x, int y, int n) {
+        int paso = x <= y ? 1 : -1;
+        int cuantos = Math.abs(y - x) + 1;
+
+        switch(n){
+            case 0x0:
+                avanzar(c, saltar(c, V[x] == V[y]));
+                return;
+            case 0x2:
+                // Byte a byte a proposito: escribirMemoria copia la pagina
+                // solo si algun valor cambia y avisa al motor de cada byte
+                for(int i = 0; i < cuantos; i++)
+                    c.escribirMemoria((c.I + i) & 0xFFFF, V[x + (i * paso)]);
+                break;
+            case 0x3: {
+                // Por pagina: una busqueda de pagina por tramo, no por byte
+                int direccion = c.I & 0xFFFF;
+                int i = 0;
+                while(i < cuantos){
+                    byte pagina[] = c.paginas[direccion >>> 8];
+                    int fin = Math.min(cuantos, i + 256 - (direccion & 0xFF));
+                    for(; i < fin; i++, direccion++)
+                        V[x + (i * paso)] = pagina[direccion & 0xFF] & 0xFF;
+                    direccion &= 0xFFFF;
+                }
+                break;
+            }
+            default:
+                c.opcodeUndefined();
+                return;
+        }
+        avanzar(c, 2);
+    }
+
+    private static boolean ejecutarAritmetica(int[] V, int x, int y, int n) {
+        int bandera;
+        switch(n){
+            case 0x0: V[x] = V[y]; return true;
+            case 0x1: V[x] |= V[y]; return true;
+            case 0x2: V[x] &= V[y]; return true;
+            case 0x3: V[x] ^= V[y]; return true;
+            case 0x4:
+                bandera = V[x] + V[y] > 0xFF ? 1 : 0;
+                V[x] = (V[x] + V[y]) & 0xFF;
+                break;
+            case 0x5:
+                bandera = V[x] >= V[y] ? 1 : 0;
+                V[x] = (V[x] - V[y]) & 0xFF;
+                break;
+            case 0x6:
+                bandera = V[y] & 0x1;
+                V[x] = V[y] >> 1;
+                break;
+            case 0x7:
+                bandera = V[y] >= V[x] ? 1 : 0;
+                V[x] = (V[y] - V[x]) & 0xFF;
+                break;
+            case 0xE:
+                bandera = V[y] >> 7;
+                V[x] = (V[y] << 1) & 0xFF;
+                break;
+            default:
+                return false;
+        }
+        V[0xF] = bandera;
+        return true;
+    }
+
+    private static void ejecutarFX(Chip8 c, int[] V, int x, Opcode op) {
+        EstadoXoChip xo = c.xo;
+
+        switch(op._byte){
+            case 0x00:
+                if(x != 0){
+                    c.opcodeUndefined();
+                    return;
+                }
+                c.I = (c.leerMemoria((c.pc + 2) & 0xFFFF) << 8) | c.leerMemoria((c.pc + 3) & 0xFFFF);
+                avanzar(c, 4);
+                return;
+
+            case 0x01:
+                xo.seleccion = x & 0x3;
+                break;
+
+            case 0x02:
+                if(x != 0){
+                    c.opcodeUndefined();
+                    return;
+                }
+                for(int i = 0; i < xo.patron.length; i++)
+                    xo.patron[i] = (byte)c.leerMemoria((c.I + i) & 0xFFFF);
+                c.sonido.setPatron(xo.patron, xo.tono);
+                break;
+
+            case 0x07:
+                V[x] = c.delayTimer;
+                break;
+
+            case 0x0A: {
+                boolean presionada = false;
+                for(int i = 0; i < 16; i++){
+                    if(c.key[i] != 0){
+                        V[x] = i;
+                        presionada = true;
+                    }
+                }
+                c.esperandoTecla = !presionada;
+                if(!presionada)
+                    return;
+                break;
+            }
+
+            case 0x15:
+                c.delayTimer = V[x];
+                break;
+
+            case 0x18:
+                c.soundTimer = V[x];
+                c.sonido.setActivo(c.soundTimer > 0);
+                break;
+
+            case 0x1E:
+                c.I = (c.I + V[x]) & 0xFFFF;
+                break;
+
+            case 0x29:
+                c.I = (V[x] & 0xF) * 5;
+                break;
+
+            case 0x30:
+                c.I = ImagenRom.DIRECCION_FUENTE_GRANDE + ((V[x] & 0xF) * 10);
+                break;
+
+            case 0x33:
+                c.escribirMemoria(c.I & 0xFFFF, V[x] / 100);
+                c.escribirMemoria((c.I + 1) & 0xFFFF, (V[x] / 10) % 10);
+                c.escribirMemoria((c.I + 2) & 0xFFFF, V[x] % 10);
+                break;
+
+            case 0x3A:
+                xo.tono = V[x];
+                c.sonido.setPatron(xo.patron, xo.tono);
+                break;
+
+            case 0x55:
+                for(int i = 0; i <= x; i++)
+                    c.escribirMemoria((c.I + i) & 0xFFFF, V[i]);
+                c.I = (c.I + x + 1) & 0xFFFF;
+                break;
+
+            case 0x65:
+                for(int i = 0; i <= x; i++)
+                    V[i] = c.leerMemoria((c.I + i) & 0xFFFF);
+                c.I = (c.I + x + 1) & 0xFFFF;
+                break;
+
+            case 0x75:
+                System.arraycopy(V, 0, xo.banderas, 0, x + 1);
+                break;
+
+            case 0x85:
+                System.arraycopy(xo.banderas, 0, V, 0, x + 1);
+                break;
+
+            default:
+                c.opcodeUndefined();
+                return;
+        }
+        avanzar(c, 2);
+    }
+}
@@ -35,15 +35,19 @@ public class Opcode {
     // Componente Y
     public int vy;
 
-    // Atributos para representacion en texto
-    public String identificador;
-    public String assembly;
-
     /*
     * Constructor default, desglosa los componentes del opcode apartir de una
     * representacion numerica.
     */
     public Opcode(int opcode){
+        decodificar(opcode);
+    }
+
+    /*
+    * Reutiliza la instancia para otro opcode; Chip8 decodifica cada ciclo
+    * sobre el mismo objeto en lugar de crear uno nuevo.
+    */
+    public void decodificar(int opcode){
         hex_opcode = opcode;
         header  = (opcode & 0xF000) >> 12;
         address = opcode & 0x0FFF;
@@ -52,14 +56,112 @@ public class Opcode {
 
         vx = (opcode & 0x0F00) >> 8;
         vy = (opcode & 0x00F0) >> 4;
+    }
 
-        identificador = "";
-        assembly = "";
+    /*
+    * La representacion en texto se genera solo cuando se solicita, de modo
+    * que la ejecucion de cada ciclo no paga el costo de String.format.
+    */
+    public String getIdentificador(){
+        return identificar(hex_opcode);
+    }
 
+    public String getAssembly(){
+        return desensamblar(hex_opcode);
     }
 
     @Override
     public String toString(){
-        return assembly;
+        return getAssembly();
+    }
+
+    /****************************************************************
+     * Desensamblado: sigue las mismas reglas de decodificacion que
+     *  las tablas de ejecucion de Chip8.
+     ****************************************************************/
+    public static String identificar(int opcode){
+        int nibble = opcode & 0x000F;
+        int _byte  = opcode & 0x00FF;
+
+        switch((opcode & 0xF000) >> 12){
+            case 0x0:
+                if(nibble == 0x0) return "00E0";
+                if(nibble == 0xE) return "00EE";
+                return "UNDEFINED";
+            case 0x1: return "1nnn";
+            case 0x2: return "2nnn";
+            case 0x3: return "3xkk";
+            case 0x4: return "4xkk";
+            case 0x5: return "5xy0";
+            case 0x6: return "6xkk";
+            case 0x7: return "7xkk";
+            case 0x8:
+                if(nibble <= 0x7 || nibble == 0xE)
+                    return String.format("8xy%01X", nibble);
+                return "UNDEFINED";
+            case 0x9: return "9xy0";
+            case 0xA: return "Annn";
+            case 0xB: return "Bnnn";
+            case 0xC: return "Cxkk";
+            case 0xD: return "Dxyn";
+            case 0xE:
+                if(_byte == 0x9E) return "Ex9E";
+                if(_byte == 0xA1) return "ExA1";
+                return "UNDEFINED";
+            default:
+                switch(_byte){
+                    case 0x07: case 0x0A: case 0x15: case 0x18: case 0x1E:
+                    case 0x29: case 0x33: case 0x55: case 0x65:
+                        return String.format("Fx%02X", _byte);
+                    default:
+                        return "UNDEFINED";
+                }
+        }
+    }
+
+    public static String desensamblar(int opcode){
+        int address = opcode & 0x0FFF;
+        int _byte   = opcode & 0x00FF;
+        int nibble  = opcode & 0x000F;
+        int vx = (opcode & 0x0F00) >> 8;
+        int vy = (opcode & 0x00F0) >> 4;
+
+        switch(identificar(opcode)){
+            case "00E0": return "CLS";
+            case "00EE": return "RET";
+            case "1nnn": return String.format("JP %03X", address);
+            case "2nnn": return String.format("CALL %03X", address);
+            case "3xkk": return String.format("SE V%01X %02X", vx, _byte);
+            case "4xkk": return String.format("SNE V%01X %02X", vx, _byte);
+            case "5xy0": return String.format("SE V%01X V%01X", vx, vy);
+            case "6xkk": return String.format("LD V%01X %02X", vx, _byte);
+            case "7xkk": return String.format("ADD V%01X %02X", vx, _byte);
+            case "8xy0": return String.format("LD V%01X V%01X", vx, vy);
+            case "8xy1": return String.format("OR V%01X V%01X", vx, vy);
+            case "8xy2": return String.format("AND V%01X V%01X", vx, vy);
+            case "8xy3": return String.format("XOR V%01X V%01X", vx, vy);
+            case "8xy4": return String.format("ADD V%01X V%01X", vx, vy);
+            case "8xy5": return String.format("SUB V%01X V%01X", vx, vy);
+            case "8xy6": return String.format("SHR V%01X { V%01X }", vx, vy);
+            case "8xy7": return String.format("SUBN V%01X V%01X", vx, vy);
+            case "8xyE": return String.format("SHL V%01X { V%01X }", vx, vy);
+            case "9xy0": return String.format("SNE V%01X V%01X", vx, vy);
+            case "Annn": return String.format("LD I %03X", address);
+            case "Bnnn": return String.format("JP V0 %03X", address);
+            case "Cxkk": return String.format("RND V%01X %02X", vx, _byte);
+            case "Dxyn": return String.format("DRW V%01X V%01X %01X", vx, vy, nibble);
+            case "Ex9E": return String.format("SKP V%01X", vx);
+            case "ExA1": return String.format("SKNP V%01X", vx);
+            case "Fx07": return String.format("LD V%01X DT", vx);
+            case "Fx0A": return String.format("LD V%01X K", vx);
+            case "Fx15": return String.format("LD DT V%01X", vx);
+            case "Fx18": return String.format("LD ST V%01X", vx);
+            case "Fx1E": return String.format("ADD I V%01X", vx);
+            case "Fx29": return String.format("LD F V%01X", vx);
+            case "Fx33": return String.format("LD B V%01X", vx);
+            case "Fx55": return String.format("LD [I] V%01X", vx);
+            case "Fx65": return String.format("LD V%01X [I]", vx);
+            default:     return "UNDEFINED";
+        }
     }
 }
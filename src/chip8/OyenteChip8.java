@@ -0,0 +1,30 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+/*
+* Eventos de una maquina que corre en su propio hilo (ver ControladorChip8).
+* Todos se invocan en el hilo del emulador, en el orden en que ocurren y en
+* el orden de registro de los oyentes: los cambios del tono de un frame
+* llegan antes que su frameCompleto. Mientras dura la llamada el estado del
+* chip se puede leer sin sincronizar; la implementacion no debe bloquear.
+*/
+public interface OyenteChip8 {
+    /*
+    * Fin de un frame de 60 Hz. "pantalla" son las 32 filas empaquetadas a
+    * presentar (ver Chip8.empaquetarGfx), o los dos planos de 128x64 en
+    * XO-CHIP (EstadoXoChip.TAM_PANTALLA longs, ver empaquetarPantalla); se
+    * reutiliza en cada frame, asi que hay que copiarla para guardarla.
+    * "cambio" indica que el frame dibujo algo.
+    */
+    default void frameCompleto(Chip8 chip, long[] pantalla, boolean cambio) {}
+
+    // El tono se encendio o se apago
+    default void sonido(boolean activo) {}
+
+    // La maquina dejo de correr: RUNNING en false o una excepcion ("causa")
+    default void detenido(Chip8 chip, Throwable causa) {}
+}
@@ -0,0 +1,197 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Perfilador implements MonitorCiclo {
+    /***********************
+     * Perfilador exacto de programas del Chip-8.
+     *
+     *   Cuenta cada ciclo ejecutado por direccion (pc) y lo atribuye a la
+     *   subrutina activa, siguiendo los CALL (2nnn) y RET (00EE) del
+     *   programa. Genera dos reportes:
+     *      - Reporte plano: direcciones calientes con su desensamblado y
+     *        costo inclusivo/exclusivo por subrutina.
+     *      - Pilas colapsadas: una linea por pila de llamadas, en el formato
+     *        que esperan las herramientas de flame graphs.
+     **************************/
+
+    // Ciclos ejecutados en cada direccion de memoria; cubren los 64 KB de
+    // XO-CHIP, donde pc pasa de 0xFFF
+    final private long conteoPc[] = new long[ImagenRom.PAGINAS_XO * ImagenRom.TAM_PAGINA];
+
+    // Ultimo opcode leido en cada direccion, usado para el desensamblado
+    final private int opcodes[] = new int[conteoPc.length];
+
+    private long totalCiclos;
+
+    // Arbol de llamadas: cada nodo es una subrutina dentro de una pila
+    final private Nodo raiz = new Nodo(0x200, null);
+    private Nodo actual = raiz;
+
+    private static class Nodo {
+        final int direccion;
+        final Nodo padre;
+        final Map<Integer, Nodo> hijos = new HashMap<>();
+        long ciclos;
+        long llamadas;
+
+        Nodo(int direccion, Nodo padre){
+            this.direccion = direccion;
+            this.padre = padre;
+        }
+
+        Nodo hijo(int direccion){
+            Nodo hijo = hijos.get(direccion);
+            if(hijo == null){
+                hijo = new Nodo(direccion, this);
+                hijos.put(direccion, hijo);
+            }
+            return hijo;
+        }
+    }
+
+    @Override
+    public void antesDeCiclo(int pc, int opcode){
+        conteoPc[pc]++;
+        opcodes[pc] = opcode;
+        totalCiclos++;
+        actual.ciclos++;
+
+        // Mismas reglas de decodificacion que la tabla de Chip8
+        if((opcode & 0xF000) == 0x2000){
+            // CALL: los siguientes ciclos pertenecen a la subrutina llamada
+            actual = actual.hijo(opcode & 0x0FFF);
+            actual.llamadas++;
+        }
+        else if((opcode & 0xF00F) == 0x000E && actual.padre != null){
+            // RET: se regresa a quien hizo la llamada
+            actual = actual.padre;
+        }
+    }
+
+    public void reiniciar(){
+        Arrays.fill(conteoPc, 0);
+        Arrays.fill(opcodes, 0);
+        totalCiclos = 0;
+        raiz.hijos.clear();
+        raiz.ciclos = 0;
+        actual = raiz;
+    }
+
+    public long getTotalCiclos(){
+        return totalCiclos;
+    }
+
+    public long getConteo(int pc){
+        return conteoPc[pc];
+    }
+
+    // Las n direcciones con mas ciclos, de mayor a menor
+    public int[] direccionesCalientes(int n){
+        Integer direcciones[] = new Integer[conteoPc.length];
+        for(int i = 0; i < direcciones.length; i++) direcciones[i] = i;
+
+        Arrays.sort(direcciones, (a, b) -> Long.compare(conteoPc[b], conteoPc[a]));
+
+        int resultado[] = new int[n];
+        int total = 0;
+        for(int i = 0; i < direcciones.length && total < n; i++){
+            if(conteoPc[direcciones[i]] == 0) break;
+            resultado[total++] = direcciones[i];
+        }
+        return Arrays.copyOf(resultado, total);
+    }
+
+    /****************************************************************
+     * Reportes
+     ****************************************************************/
+    public void escribirReporte(Path archivo) throws IOException{
+        try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(archivo))){
+            out.printf("Perfil de ejecucion: %d ciclos%n%n", totalCiclos);
+
+            out.println("Direccion       Ciclos        %  Opcode  Instruccion");
+            for(int pc: direccionesCalientes(conteoPc.length)){
+                out.printf(
+                        "0x%03X     %12d  %6.2f%%  %04X    %s%n",
+                        pc,
+                        conteoPc[pc],
+                        porcentaje(conteoPc[pc]),
+                        opcodes[pc],
+                        Opcode.desensamblar(opcodes[pc])
+                );
+            }
+
+            // Costo acumulado por subrutina: {inclusivo, exclusivo, llamadas}
+            Map<Integer, long[]> subrutinas = new HashMap<>();
+            acumularSubrutinas(raiz, subrutinas, new HashMap<>());
+
+            List<Integer> orden = new ArrayList<>(subrutinas.keySet());
+            orden.sort((a, b) -> Long.compare(subrutinas.get(b)[0], subrutinas.get(a)[0]));
+
+            out.printf("%nSubrutina    Inclusivo        %%    Exclusivo   Llamadas%n");
+            for(int direccion: orden){
+                long datos[] = subrutinas.get(direccion);
+                out.printf(
+                        "%-10s %11d  %6.2f%%  %11d  %9d%n",
+                        nombre(direccion), datos[0], porcentaje(datos[0]), datos[1], datos[2]
+                );
+            }
+        }
+    }
+
+    public void escribirPilasColapsadas(Path archivo) throws IOException{
+        try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(archivo))){
+            escribirPila(raiz, nombre(raiz.direccion), out);
+        }
+    }
+
+    private void escribirPila(Nodo nodo, String pila, PrintWriter out){
+        if(nodo.ciclos > 0)
+            out.println(pila + " " + nodo.ciclos);
+
+        for(Nodo hijo: nodo.hijos.values())
+            escribirPila(hijo, pila + ";" + nombre(hijo.direccion), out);
+    }
+
+    // Regresa el costo inclusivo del nodo. Las subrutinas recursivas solo
+    // suman su costo inclusivo una vez por pila.
+    private long acumularSubrutinas(Nodo nodo, Map<Integer, long[]> subrutinas,
+                                    Map<Integer, Integer> enPila){
+        long inclusivo = nodo.ciclos;
+        int activas = enPila.getOrDefault(nodo.direccion, 0);
+        enPila.put(nodo.direccion, activas + 1);
+
+        for(Nodo hijo: nodo.hijos.values())
+            inclusivo += acumularSubrutinas(hijo, subrutinas, enPila);
+
+        enPila.put(nodo.direccion, activas);
+
+        long datos[] = subrutinas.computeIfAbsent(nodo.direccion, k -> new long[3]);
+        if(activas == 0) datos[0] += inclusivo;
+        datos[1] += nodo.ciclos;
+        datos[2] += nodo.llamadas;
+
+        return inclusivo;
+    }
+
+    private double porcentaje(long ciclos){
+        return totalCiclos == 0 ? 0 : (100.0 * ciclos) / totalCiclos;
+    }
+
+    private String nombre(int direccion){
+        return String.format("sub_%03X", direccion);
+    }
+}
@@ -0,0 +1,172 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class PlanificadorSesiones {
+    /***********************
+     * Planificador compartido para muchas sesiones del Chip-8 en una JVM.
+     *
+     *   En lugar de un ScheduledExecutorService por sesion (como MainFrame),
+     *   un grupo fijo de hilos toma de una cola ordenada por limite de tiempo
+     *   la sesion mas urgente, ejecuta su presupuesto de un frame
+     *   (Chip8.emularFrame) y la vuelve a encolar para el siguiente frame.
+     *
+     *   - Las sesiones en pausa o detenidas en FX0A no estan en la cola.
+     *   - Una sesion atrasada mas de MAX_ATRASO frames pierde esos frames
+     *     en lugar de acumular deuda.
+     *   - Si el atraso promedio supera el umbral el planificador esta
+     *     saturado y rechaza nuevas sesiones (RejectedExecutionException).
+     **************************/
+
+    public static final long NANOS_FRAME = TimeUnit.SECONDS.toNanos(1) / 60;
+    private static final int MAX_ATRASO = 2;
+
+    final private DelayQueue<SesionChip8> cola = new DelayQueue<>();
+    final private Thread hilos[];
+    final private ThreadMXBean mxBean = ManagementFactory.getThreadMXBean();
+    final private boolean medirCpu;
+
+    // Umbral de saturacion: atraso promedio permitido en nanosegundos
+    final private long umbralAtraso;
+
+    // Promedio movil del atraso con que se atienden los frames; lo
+    // actualizan todos los hilos, asi que cada cambio es atomico
+    final private AtomicLong atrasoPromedio = new AtomicLong();
+
+    private volatile boolean activo = true;
+
+    public PlanificadorSesiones(int numHilos, long umbralAtraso, TimeUnit unidad) {
+        this.umbralAtraso = unidad.toNanos(umbralAtraso);
+        this.medirCpu = mxBean.isCurrentThreadCpuTimeSupported();
+
+        hilos = new Thread[numHilos];
+        for(int i = 0; i < numHilos; i++){
+            hilos[i] = new Thread(this::atender, "chip8-planificador-" + i);
+            hilos[i].setDaemon(true);
+            hilos[i].start();
+        }
+    }
+
+    public PlanificadorSesiones(int numHilos) {
+        this(numHilos, NANOS_FRAME / 2, TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isSaturado() {
+        return atrasoPromedio.get() > umbralAtraso;
+    }
+
+    public long getAtrasoPromedio() {
+        return atrasoPromedio.get();
+    }
+
+    public int getSesionesEnCola() {
+        return cola.size();
+    }
+
+    /*
+    * Agrega una sesion y la programa de inmediato. Se rechaza si el
+    * planificador ya no alcanza a atender a tiempo las sesiones actuales.
+    */
+    public void registrar(SesionChip8 sesion) {
+        if(!activo || isSaturado())
+            throw new RejectedExecutionException("Planificador saturado");
+
+        sesion.asignar(this);
+        sesion.reanudar();
+    }
+
+    public void detener() {
+        activo = false;
+        for(Thread hilo: hilos)
+            hilo.interrupt();
+    }
+
+    void encolar(SesionChip8 sesion, long limite) {
+        sesion.limite = limite;
+        cola.put(sesion);
+    }
+
+    private void atender() {
+        while(activo){
+            SesionChip8 sesion;
+            try {
+                sesion = cola.take();
+            } catch (InterruptedException ex) {
+                break;
+            }
+            ejecutarFrame(sesion);
+        }
+    }
+
+    private void ejecutarFrame(SesionChip8 sesion) {
+        long inicio = System.nanoTime();
+        long atraso = inicio - sesion.limite;
+        atrasoPromedio.accumulateAndGet(atraso, (promedio, nuevo) -> promedio + ((nuevo - promedio) >> 4));
+
+        if(sesion.pausaSolicitada){
+            sesion.estado.set(SesionChip8.PAUSADA);
+
+            // reanudar() pudo llegar entre la lectura y el cambio de estado
+            if(!sesion.pausaSolicitada && sesion.estado.compareAndSet(
+                    SesionChip8.PAUSADA, SesionChip8.PROGRAMADA))
+                encolar(sesion, inicio);
+            return;
+        }
+
+        sesion.estado.set(SesionChip8.EJECUTANDO);
+        long cpuInicio = medirCpu ? mxBean.getCurrentThreadCpuTime() : inicio;
+
+        Chip8 chip = sesion.chip;
+        try {
+            sesion.aplicarTeclado();
+            chip.emularFrame();
+        } catch (RuntimeException ex) {
+            Logger.getLogger(PlanificadorSesiones.class.getName())
+                    .log(Level.WARNING, "Sesion terminada por error", ex);
+            sesion.estado.set(SesionChip8.TERMINADA);
+            return;
+        }
+
+        long cpuFin = medirCpu ? mxBean.getCurrentThreadCpuTime() : System.nanoTime();
+        sesion.tiempoCpu += cpuFin - cpuInicio;
+        sesion.frames++;
+
+        if(!chip.RUNNING){
+            sesion.estado.set(SesionChip8.TERMINADA);
+            return;
+        }
+
+        // Detenida en FX0A sin teclas: sale de la cola hasta que llegue una
+        if(chip.isEsperandoTecla() && sesion.teclas.get() == 0){
+            sesion.estado.set(SesionChip8.ESPERANDO_TECLA);
+
+            if(sesion.teclas.get() != 0 && sesion.estado.compareAndSet(
+                    SesionChip8.ESPERANDO_TECLA, SesionChip8.PROGRAMADA))
+                encolar(sesion, System.nanoTime());
+            return;
+        }
+
+        // Siguiente frame; si va muy atrasada se descartan los frames perdidos
+        long limite = sesion.limite + NANOS_FRAME;
+        long ahora = System.nanoTime();
+        if(ahora - limite > MAX_ATRASO * NANOS_FRAME){
+            sesion.framesPerdidos += (ahora - limite) / NANOS_FRAME;
+            limite = ahora;
+        }
+
+        sesion.estado.set(SesionChip8.PROGRAMADA);
+        encolar(sesion, limite);
+    }
+}
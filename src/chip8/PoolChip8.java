@@ -0,0 +1,99 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class PoolChip8 {
+    /***********************
+     * Pool de maquinas listas para ejecutar una misma ROM.
+     *
+     *   La plantilla (font + ROM recien cargada) se construye una sola vez y
+     *   nunca se modifica. Entregar una maquina del pool es una copia en
+     *   bloque de la plantilla (restaurarEstado) en lugar de construir un
+     *   Chip8 nuevo y llamar a init() + cargarJuego().
+     *
+     *   El pool guarda como maximo "capacidad" maquinas libres; las que se
+     *   devuelven de mas se descartan.
+     **************************/
+
+    final private EstadoChip8 plantilla = new EstadoChip8();
+    final private ConcurrentLinkedQueue<Chip8> libres = new ConcurrentLinkedQueue<>();
+    final private AtomicInteger totalLibres = new AtomicInteger();
+    final private int capacidad;
+
+    final private AtomicLong aciertos = new AtomicLong();
+    final private AtomicLong fallos = new AtomicLong();
+    final private AtomicLong descartados = new AtomicLong();
+
+    public PoolChip8(byte[] rom, int capacidad) throws IOException {
+        this.capacidad = capacidad;
+
+        Chip8 chip = new Chip8(false);
+        chip.init();
+        chip.cargarJuego(rom);
+        chip.guardarEstado(plantilla);
+
+        devolver(chip);
+    }
+
+    /*
+    * Entrega una maquina en el estado inicial de la ROM. Si no hay
+    * maquinas libres se construye una nueva (fallo del pool).
+    */
+    public Chip8 obtener() {
+        Chip8 chip = libres.poll();
+
+        if(chip == null){
+            fallos.incrementAndGet();
+            chip = new Chip8(false);
+        }
+        else{
+            totalLibres.decrementAndGet();
+            aciertos.incrementAndGet();
+        }
+
+        chip.restaurarEstado(plantilla);
+        return chip;
+    }
+
+    public void devolver(Chip8 chip) {
+        // Se quitan los observadores de quien uso la maquina
+        chip.setMonitor(null);
+        chip.setSalidaSonido(SalidaSonido.NULA);
+        chip.RUNNING = true;
+        // Lo que no guarda la plantilla vuelve a los valores de un Chip8 nuevo
+        chip.setCiclosPorFrame(0);
+        chip.setNucleo(NucleoCpu.REFERENCIA);
+        chip.period = 3;
+
+        if(totalLibres.incrementAndGet() > capacidad){
+            totalLibres.decrementAndGet();
+            descartados.incrementAndGet();
+            return;
+        }
+        libres.offer(chip);
+    }
+
+    public int getLibres() {
+        return totalLibres.get();
+    }
+
+    public long getAciertos() {
+        return aciertos.get();
+    }
+
+    public long getFallos() {
+        return fallos.get();
+    }
+
+    public long getDescartados() {
+        return descartados.get();
+    }
+}
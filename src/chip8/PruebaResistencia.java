@@ -0,0 +1,391 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class PruebaResistencia {
+    /***********************
+     * Prueba de resistencia: cada ROM corre minutos seguidos con el mismo
+     * trabajo por frame que MainFrame (teclado, emularFrame, empaquetar la
+     * pantalla y compararla con la presentada), pero sin reloj de 60 Hz
+     * ni ventana, para medir el rendimiento sostenido:
+     *
+     *      instruccionesPorSegundo     instrucciones / tiempo de pared
+     *      p99FrameNs                  percentil 99 del tiempo de un frame
+     *      bytesPorFrame               asignacion del hilo (com.sun ThreadMXBean)
+     *      pausasGcMs, colecciones     GarbageCollectorMXBean durante la ROM
+     *      heapRetenido                heap usado despues de un GC al terminar
+     *
+     *   El resultado se escribe en JSON (una ROM por linea) y se compara
+     *   con una base guardada en el repositorio (resistencia-base.json). Una
+     *   metrica empeora si pasa de base * (1 + tolerancia) + holgura (o,
+     *   para las instrucciones, si baja de base * (1 - tolerancia)); la
+     *   holgura absorbe el ruido de las que normalmente estan cerca de
+     *   cero. Con alguna regresion el proceso termina con codigo 1.
+     *
+     *   El teclado sale de un guion (ver GuionEntrada) o, sin el, presiona
+     *   cada tecla medio segundo por turnos. Los frames se miden en un
+     *   histograma fijo, asi la medicion no asigna memoria.
+     **************************/
+
+    private static final String USO =
+            "Uso: PruebaResistencia [-segundos n] [-guion archivo] [-salida archivo.json]\n"
+            + "            [-base archivo.json] [-tolerancia metrica=fraccion]... [rom...]";
+
+    // ROMs incluidas en el repositorio, si no se dan otras
+    static final String ROMS[] = {
+            "BLINKY", "BLITZ", "BRIX", "MISSILE", "PONG.c8", "SYZYGY", "TANK",
+            "invaders.c8", "pong2.c8", "tetris.c8"
+    };
+
+    /*
+    * Metricas comparadas contra la base: nombre, si mas es mejor,
+    * tolerancia relativa por defecto y holgura absoluta.
+    */
+    static final String METRICAS[] = {
+            "instruccionesPorSegundo", "p99FrameNs", "bytesPorFrame", "pausasGcMs", "heapRetenido"
+    };
+    private static final boolean MAYOR_ES_MEJOR[] = {true, false, false, false, false};
+    private static final double TOLERANCIAS[] = {0.30, 0.50, 0.50, 1.00, 0.50};
+    private static final double HOLGURAS[] = {0, 2000, 64, 50, 4 << 20};
+
+    // Histograma de frames: cubetas de 32 ns hasta ~2 ms, mas una de desborde
+    private static final int RESOLUCION_NS = 32;
+    private static final int CUBETAS = 1 << 16;
+
+    public static class Resultado {
+        public final String rom;
+        public final long frames;
+        public final long instrucciones;
+        public final long nanos;
+        public final long p99FrameNs;
+        public final long bytes;
+        public final long pausasGcMs;
+        public final long colecciones;
+        public final long heapRetenido;
+
+        Resultado(String rom, long frames, long instrucciones, long nanos, long p99FrameNs,
+                  long bytes, long pausasGcMs, long colecciones, long heapRetenido) {
+            this.rom = rom;
+            this.frames = frames;
+            this.instrucciones = instrucciones;
+            this.nanos = nanos;
+            this.p99FrameNs = p99FrameNs;
+            this.bytes = bytes;
+            this.pausasGcMs = pausasGcMs;
+            this.colecciones = colecciones;
+            this.heapRetenido = heapRetenido;
+        }
+
+        public double getInstruccionesPorSegundo() {
+            return instrucciones / (nanos / 1e9);
+        }
+
+        // Negativo si la JVM no mide la asignacion por hilo
+        public double getBytesPorFrame() {
+            return bytes < 0 ? -1 : bytes / (double)Math.max(1, frames);
+        }
+
+        // Las metricas en el orden de METRICAS
+        double metrica(int indice) {
+            switch(indice){
+                case 0: return getInstruccionesPorSegundo();
+                case 1: return p99FrameNs;
+                case 2: return getBytesPorFrame();
+                case 3: return pausasGcMs;
+                default: return heapRetenido;
+            }
+        }
+    }
+
+    final private long nanosPorRom;
+    final private GuionEntrada guion;
+    final private long histograma[] = new long[CUBETAS];
+
+    public PruebaResistencia(double segundosPorRom, GuionEntrada guion) {
+        this.nanosPorRom = (long)(segundosPorRom * TimeUnit.SECONDS.toNanos(1));
+        this.guion = guion;
+    }
+
+    /****************************************************************
+     * Ejecucion
+     ****************************************************************/
+    public Resultado ejecutar(String nombre, ImagenRom imagen) {
+        Chip8 chip = new Chip8(false);
+        chip.init();
+        chip.setSemilla(1);
+        chip.cargarJuego(imagen);
+
+        long pantalla[] = new long[chip.isXo() ? EstadoXoChip.TAM_PANTALLA : 32];
+        long presentada[] = new long[pantalla.length];
+        int teclado[] = new int[16];
+        int siguiente = 0;
+        Arrays.fill(histograma, 0);
+
+        ThreadMXBean hilos = ManagementFactory.getThreadMXBean();
+        long hilo = Thread.currentThread().getId();
+        long bytesInicio = bytesAsignados(hilos, hilo);
+        long pausasInicio = pausasGc();
+        long coleccionesInicio = colecciones();
+        long instruccionesInicio = chip.getCiclosEjecutados();
+
+        long inicio = System.nanoTime();
+        long anterior = inicio;
+        long frame = 0;
+        for(; anterior - inicio < nanosPorRom && chip.RUNNING; frame++){
+            if(guion != null)
+                siguiente = guion.aplicar((int)frame, siguiente, teclado);
+            else
+                tecladoAutomatico(frame, teclado);
+            chip.setKeyPad(teclado);
+            chip.emularFrame();
+
+            // Lo que hace ChipPanel.presentar: omitir el frame si no cambio
+            chip.empaquetarPantalla(pantalla);
+            if(!Arrays.equals(pantalla, presentada))
+                System.arraycopy(pantalla, 0, presentada, 0, pantalla.length);
+
+            long ahora = System.nanoTime();
+            histograma[(int)Math.min((ahora - anterior) / RESOLUCION_NS, CUBETAS - 1)]++;
+            anterior = ahora;
+        }
+
+        long nanos = anterior - inicio;
+        long instrucciones = chip.getCiclosEjecutados() - instruccionesInicio;
+        long bytesFin = bytesAsignados(hilos, hilo);
+        long bytes = bytesInicio < 0 || bytesFin < 0 ? -1 : bytesFin - bytesInicio;
+        long pausas = pausasGc() - pausasInicio;
+        long gc = colecciones() - coleccionesInicio;
+
+        // El chip sigue vivo mientras se mide lo que retiene
+        long heap = heapRetenido();
+        if(!chip.RUNNING)
+            System.out.println(nombre + ": la maquina se detuvo en el frame " + frame);
+
+        return new Resultado(nombre, frame, instrucciones, nanos, percentil(0.99, frame), bytes, pausas, gc, heap);
+    }
+
+    // Cada tecla medio segundo por turnos, como ValidadorLockstep
+    private static void tecladoAutomatico(long frame, int[] teclado) {
+        Arrays.fill(teclado, 0);
+        teclado[(int)((frame / 30) % 16)] = (frame % 60) < 30 ? 1 : 0;
+    }
+
+    private long percentil(double fraccion, long total) {
+        long objetivo = (long)Math.ceil(total * fraccion);
+        long acumulado = 0;
+        for(int i = 0; i < CUBETAS; i++){
+            acumulado += histograma[i];
+            if(acumulado >= objetivo)
+                return (long)(i + 1) * RESOLUCION_NS;
+        }
+        return (long)CUBETAS * RESOLUCION_NS;
+    }
+
+    private static long bytesAsignados(ThreadMXBean hilos, long hilo) {
+        if(!(hilos instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        return ((com.sun.management.ThreadMXBean)hilos).getThreadAllocatedBytes(hilo);
+    }
+
+    private static long pausasGc() {
+        long total = 0;
+        for(GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans())
+            total += Math.max(0, gc.getCollectionTime());
+        return total;
+    }
+
+    private static long colecciones() {
+        long total = 0;
+        for(GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans())
+            total += Math.max(0, gc.getCollectionCount());
+        return total;
+    }
+
+    private static long heapRetenido() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /****************************************************************
+     * JSON
+     *  Formato fijo, una ROM por linea:
+     *      {"segundos": 60.0, "roms": {
+     *          "invaders.c8": {"instruccionesPorSegundo": ..., ...},
+     *          ...
+     *      }}
+     ****************************************************************/
+    public static String aJson(List<Resultado> resultados, double segundos) {
+        StringBuilder texto = new StringBuilder();
+        texto.append(String.format(Locale.ROOT, "{\"segundos\": %.1f, \"roms\": {%n", segundos));
+
+        for(int i = 0; i < resultados.size(); i++){
+            Resultado r = resultados.get(i);
+            texto.append(String.format(Locale.ROOT,
+                    "  \"%s\": {\"instruccionesPorSegundo\": %.0f, \"p99FrameNs\": %d, "
+                            + "\"bytesPorFrame\": %.2f, \"pausasGcMs\": %d, \"colecciones\": %d, "
+                            + "\"heapRetenido\": %d, \"frames\": %d, \"instrucciones\": %d}%s%n",
+                    r.rom, r.getInstruccionesPorSegundo(), r.p99FrameNs, r.getBytesPorFrame(),
+                    r.pausasGcMs, r.colecciones, r.heapRetenido, r.frames, r.instrucciones,
+                    i + 1 < resultados.size() ? "," : ""
+            ));
+        }
+        texto.append("}}\n");
+        return texto.toString();
+    }
+
+    private static final Pattern ROM = Pattern.compile("\"([^\"]+)\"\\s*:\\s*\\{([^{}]*)\\}");
+    private static final Pattern CAMPO = Pattern.compile("\"(\\w+)\"\\s*:\\s*(-?[0-9.eE+-]+)");
+
+    // Metricas por ROM de un JSON escrito por aJson
+    public static Map<String, Map<String, Double>> leerJson(String texto) {
+        Map<String, Map<String, Double>> roms = new LinkedHashMap<>();
+        Matcher rom = ROM.matcher(texto);
+        while(rom.find()){
+            Map<String, Double> campos = new LinkedHashMap<>();
+            Matcher campo = CAMPO.matcher(rom.group(2));
+            while(campo.find())
+                campos.put(campo.group(1), Double.parseDouble(campo.group(2)));
+            roms.put(rom.group(1), campos);
+        }
+        return roms;
+    }
+
+    /*
+    * Compara contra la base; regresa una linea por cada metrica que
+    * empeoro mas de lo permitido. "tolerancias" reemplaza las de
+    * TOLERANCIAS por nombre de metrica. Las ROMs o metricas que no estan
+    * en la base no se comparan.
+    */
+    public static List<String> comparar(List<Resultado> resultados, Map<String, Map<String, Double>> base,
+                                        Map<String, Double> tolerancias) {
+        List<String> regresiones = new ArrayList<>();
+
+        for(Resultado r: resultados){
+            Map<String, Double> referencia = base.get(r.rom);
+            if(referencia == null)
+                continue;
+
+            for(int i = 0; i < METRICAS.length; i++){
+                Double esperado = referencia.get(METRICAS[i]);
+                double actual = r.metrica(i);
+                if(esperado == null || esperado < 0 || actual < 0)
+                    continue;
+
+                Double propia = tolerancias.get(METRICAS[i]);
+                double tolerancia = propia != null ? propia : TOLERANCIAS[i];
+                boolean empeoro = MAYOR_ES_MEJOR[i]
+                        ? actual < (esperado * (1 - tolerancia)) - HOLGURAS[i]
+                        : actual > (esperado * (1 + tolerancia)) + HOLGURAS[i];
+
+                if(empeoro)
+                    regresiones.add(String.format(Locale.ROOT,
+                            "%s: %s = %.2f, base %.2f (tolerancia %.0f%%)",
+                            r.rom, METRICAS[i], actual, esperado, tolerancia * 100
+                    ));
+            }
+        }
+        return regresiones;
+    }
+
+    /****************************************************************
+     * Linea de comandos
+     ****************************************************************/
+    public static void main(String[] args) throws IOException {
+        double segundos = 60;
+        String guion = null;
+        String salida = "resistencia.json";
+        String base = null;
+        Map<String, Double> tolerancias = new LinkedHashMap<>();
+        List<String> roms = new ArrayList<>();
+
+        for(int i = 0; i < args.length; i++){
+            boolean conValor = i + 1 < args.length;
+            switch(args[i]){
+                case "-segundos":
+                    if(conValor) segundos = Double.parseDouble(args[++i]);
+                    break;
+                case "-guion":
+                    if(conValor) guion = args[++i];
+                    break;
+                case "-salida":
+                    if(conValor) salida = args[++i];
+                    break;
+                case "-base":
+                    if(conValor) base = args[++i];
+                    break;
+                case "-tolerancia":
+                    if(conValor){
+                        String partes[] = args[++i].split("=");
+                        if(partes.length != 2 || !Arrays.asList(METRICAS).contains(partes[0])){
+                            System.out.println("Tolerancia invalida: " + args[i] + "\n" + USO);
+                            System.exit(2);
+                        }
+                        tolerancias.put(partes[0], Double.parseDouble(partes[1]));
+                    }
+                    break;
+                default:
+                    if(args[i].startsWith("-")){
+                        System.out.println(USO);
+                        System.exit(2);
+                    }
+                    roms.add(args[i]);
+                    break;
+            }
+        }
+        if(roms.isEmpty())
+            roms.addAll(Arrays.asList(ROMS));
+
+        PruebaResistencia prueba = new PruebaResistencia(
+                segundos, guion != null ? GuionEntrada.leer(Paths.get(guion)) : null
+        );
+        BibliotecaRoms biblioteca = new BibliotecaRoms();
+        List<Resultado> resultados = new ArrayList<>();
+
+        for(String rom: roms){
+            Path archivo = Paths.get(rom);
+            Resultado r = prueba.ejecutar(archivo.getFileName().toString(), biblioteca.cargar(archivo));
+            resultados.add(r);
+            System.out.printf(Locale.ROOT,
+                    "%-12s %12.0f instr/s  p99 %7d ns  %8.2f B/frame  GC %d ms (%d)  heap %d KB%n",
+                    r.rom, r.getInstruccionesPorSegundo(), r.p99FrameNs, r.getBytesPorFrame(),
+                    r.pausasGcMs, r.colecciones, r.heapRetenido >> 10
+            );
+        }
+
+        Files.write(Paths.get(salida), aJson(resultados, segundos).getBytes(StandardCharsets.UTF_8));
+        if(base == null)
+            return;
+
+        List<String> regresiones = comparar(
+                resultados, leerJson(new String(Files.readAllBytes(Paths.get(base)), StandardCharsets.UTF_8)),
+                tolerancias
+        );
+        for(String regresion: regresiones)
+            System.out.println("Regresion: " + regresion);
+        if(!regresiones.isEmpty())
+            System.exit(1);
+        System.out.println("Sin regresiones contra " + base);
+    }
+}
@@ -0,0 +1,146 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+public class RenderTerminal {
+    /***********************
+     * Render diferencial de la pantalla del Chip-8 para terminales ANSI.
+     *
+     *   Cada linea de texto representa dos filas de pixeles con los
+     *   caracteres de medio bloque de Unicode, de modo que la pantalla de
+     *   64x32 ocupa 64x16 celdas. Solo se escriben las celdas que cambiaron
+     *   respecto al frame anterior, con movimientos de cursor entre ellas.
+     *   Todo el frame se arma en un mismo buffer y se escribe con una sola
+     *   llamada.
+     **************************/
+
+    private static final int COLUMNAS = 64;
+    private static final int LINEAS = 16;
+
+    // Glifos en UTF-8, indexados por (pixel superior | pixel inferior << 1)
+    private static final byte GLIFOS[][] = {
+            {' '},
+            {(byte)0xE2, (byte)0x96, (byte)0x80}, // U+2580 medio bloque superior
+            {(byte)0xE2, (byte)0x96, (byte)0x84}, // U+2584 medio bloque inferior
+            {(byte)0xE2, (byte)0x96, (byte)0x88}  // U+2588 bloque completo
+    };
+
+    private static final byte LIMPIAR[] = {
+            0x1B, '[', '?', '2', '5', 'l', // Ocultar cursor
+            0x1B, '[', '2', 'J'            // Borrar pantalla
+    };
+
+    private static final byte RESTAURAR[] = {
+            0x1B, '[', '1', '7', ';', '1', 'H', // Linea siguiente a la imagen
+            0x1B, '[', '?', '2', '5', 'h'       // Mostrar cursor
+    };
+
+    // Peor caso por celda: "ESC[LL;CCCH" (8 bytes) + glifo (3 bytes)
+    final private byte buffer[] = new byte[LIMPIAR.length + COLUMNAS * LINEAS * 11];
+
+    // Celdas del ultimo frame escrito; -1 obliga a redibujar la celda
+    final private byte anterior[] = new byte[COLUMNAS * LINEAS];
+
+    final private OutputStream out;
+
+    private boolean limpiarPantalla;
+    private boolean cerrado;
+
+    public RenderTerminal(OutputStream out) {
+        this.out = out;
+        invalidar();
+    }
+
+    // Obliga a redibujar toda la pantalla en el siguiente frame
+    public void invalidar() {
+        Arrays.fill(anterior, (byte)-1);
+        limpiarPantalla = true;
+    }
+
+    // Recibe la pantalla empaquetada (ver Chip8.empaquetarGfx)
+    public synchronized void dibujar(long[] filas) throws IOException {
+        if(cerrado)
+            return;
+
+        int largo = 0;
+
+        if(limpiarPantalla) {
+            System.arraycopy(LIMPIAR, 0, buffer, 0, LIMPIAR.length);
+            largo = LIMPIAR.length;
+            limpiarPantalla = false;
+        }
+
+        // Posicion actual del cursor; -1 cuando es desconocida
+        int cursorLinea = -1;
+        int cursorColumna = -1;
+
+        for(int linea = 0; linea < LINEAS; linea++) {
+            long filaSuperior = filas[linea * 2];
+            long filaInferior = filas[(linea * 2) + 1];
+
+            for(int x = 0; x < COLUMNAS; x++) {
+                int celda = (int)((filaSuperior >>> (63 - x)) & 1)
+                        | (int)(((filaInferior >>> (63 - x)) & 1) << 1);
+                int indice = (linea * COLUMNAS) + x;
+
+                if(anterior[indice] == celda)
+                    continue;
+                anterior[indice] = (byte)celda;
+
+                // Solo se mueve el cursor si no esta ya en la celda
+                if(cursorLinea != linea || cursorColumna != x)
+                    largo = moverCursor(largo, linea + 1, x + 1);
+
+                byte glifo[] = GLIFOS[celda];
+                System.arraycopy(glifo, 0, buffer, largo, glifo.length);
+                largo += glifo.length;
+
+                cursorLinea = linea;
+                cursorColumna = x + 1;
+            }
+        }
+
+        if(largo > 0) {
+            out.write(buffer, 0, largo);
+            out.flush();
+        }
+    }
+
+    /*
+    * Deja la terminal como estaba: cursor visible y debajo de la imagen.
+    * Despues de esto ya no se dibuja, para no ocultar el cursor otra vez.
+    */
+    public synchronized void restaurar() throws IOException {
+        if(cerrado)
+            return;
+
+        cerrado = true;
+        out.write(RESTAURAR);
+        out.flush();
+    }
+
+    // Escribe "ESC[linea;columnaH" en el buffer sin crear cadenas
+    private int moverCursor(int largo, int linea, int columna) {
+        buffer[largo++] = 0x1B;
+        buffer[largo++] = '[';
+        largo = escribirNumero(largo, linea);
+        buffer[largo++] = ';';
+        largo = escribirNumero(largo, columna);
+        buffer[largo++] = 'H';
+        return largo;
+    }
+
+    private int escribirNumero(int largo, int numero) {
+        if(numero >= 10)
+            buffer[largo++] = (byte)('0' + (numero / 10));
+        buffer[largo++] = (byte)('0' + (numero % 10));
+        return largo;
+    }
+}
@@ -0,0 +1,28 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+/*
+* Destino del tono del Chip-8. Chip8 solo notifica los cambios de estado
+* (encendido/apagado) desde el timer de sonido; la implementacion no debe
+* bloquear el hilo del emulador.
+*/
+@FunctionalInterface
+public interface SalidaSonido {
+    // Salida muda: usada por defecto y cuando no existe un dispositivo de audio
+    SalidaSonido NULA = activo -> {};
+
+    void setActivo(boolean activo);
+
+    /*
+    * XO-CHIP: patron de 128 bits (16 bytes, el bit mas alto primero) que
+    * se repite mientras suena, a 4000 * 2^((tono - 64) / 48) bits por
+    * segundo. Las salidas que no lo soportan siguen con su tono fijo. El
+    * arreglo es de la maquina: hay que copiarlo.
+    */
+    default void setPatron(byte[] patron, int tono) {
+    }
+}
@@ -0,0 +1,286 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class ServidorFrames {
+    /***********************
+     * Modo servidor sin Swing: el Chip8 se emula a 60 Hz y cada frame se
+     * envia a los clientes conectados como delta (ver CodecDelta).
+     *
+     *   Protocolo, servidor -> cliente:
+     *      [largo: 2 bytes][delta: largo bytes]
+     *   Solo se envia un mensaje cuando la pantalla cambio respecto a lo
+     *   que el cliente ya tiene, asi que una sesion inactiva no usa red.
+     *
+     *   Protocolo, cliente -> servidor:
+     *      [tecla: 1 byte][presionada: 1 byte]
+     *
+     *   Todo ocurre en un solo hilo con canales no bloqueantes. Si un cliente
+     *   no ha terminado de recibir el mensaje anterior, se le salta el frame;
+     *   el siguiente delta se calcula contra lo ultimo que si se le envio.
+     **************************/
+
+    public static final int ENCABEZADO = 2;
+
+    final private Chip8 chip;
+    final private long frame[] = new long[32];
+    final private int teclado[] = new int[16];
+
+    private Selector selector;
+    private ServerSocketChannel servidor;
+    private ScheduledExecutorService service;
+
+    private long bytesEnviados;
+    private long framesSaltados;
+
+    // Solo lo modifica el hilo del servidor; selector.keys() no es seguro
+    // fuera de ese hilo
+    private volatile int clientes;
+
+    private static class Cliente {
+        final SocketChannel canal;
+        final ByteBuffer salida = ByteBuffer.allocate(ENCABEZADO + CodecDelta.MAX_DELTA);
+        final ByteBuffer entrada = ByteBuffer.allocate(64);
+
+        // Ultimo frame enviado: empieza vacio, el primer delta es completo
+        final long enviado[] = new long[32];
+
+        // Teclas presionadas por este cliente, un bit por tecla
+        int teclas;
+
+        Cliente(SocketChannel canal){
+            this.canal = canal;
+            salida.flip();
+        }
+    }
+
+    public ServidorFrames(Chip8 chip) {
+        this.chip = chip;
+    }
+
+    public void abrir(int puerto) throws IOException {
+        selector = Selector.open();
+        servidor = ServerSocketChannel.open();
+        servidor.bind(new InetSocketAddress(puerto));
+        servidor.configureBlocking(false);
+        servidor.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPuerto() {
+        return servidor.socket().getLocalPort();
+    }
+
+    public long getBytesEnviados() {
+        return bytesEnviados;
+    }
+
+    public long getFramesSaltados() {
+        return framesSaltados;
+    }
+
+    public int getClientes() {
+        return clientes;
+    }
+
+    // Ejecuta procesarFrame a 60 Hz en un hilo propio
+    public void iniciar() {
+        service = Executors.newSingleThreadScheduledExecutor();
+        service.scheduleAtFixedRate(() -> {
+            // Una excepcion que escape cancela la tarea periodica y detiene
+            // el envio a todos los clientes
+            try {
+                procesarFrame();
+            } catch (IOException | RuntimeException ex) {
+                Logger.getLogger(ServidorFrames.class.getName())
+                        .log(Level.SEVERE, null, ex);
+            }
+        }, 0, 1000000 / 60, TimeUnit.MICROSECONDS);
+    }
+
+    public void detener() throws IOException {
+        // Se espera al frame en curso: no debe usar canales ya cerrados
+        if(service != null){
+            service.shutdown();
+            try {
+                service.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        for(SelectionKey llave: selector.keys())
+            llave.channel().close();
+        selector.close();
+    }
+
+    /*
+    * Un frame del servidor: atiende la red, aplica el teclado de los
+    * clientes, emula un frame de 60 Hz y envia los deltas.
+    */
+    public void procesarFrame() throws IOException {
+        atenderRed();
+
+        chip.setKeyPad(teclado);
+        chip.emularFrame();
+        chip.empaquetarGfx(frame);
+
+        for(SelectionKey llave: selector.keys()){
+            if(llave.isValid() && llave.attachment() != null)
+                enviarFrame(llave, (Cliente)llave.attachment());
+        }
+    }
+
+    private void atenderRed() throws IOException {
+        selector.selectNow();
+
+        Iterator<SelectionKey> llaves = selector.selectedKeys().iterator();
+        while(llaves.hasNext()){
+            SelectionKey llave = llaves.next();
+            llaves.remove();
+
+            if(!llave.isValid())
+                continue;
+
+            if(llave.isAcceptable())
+                aceptar();
+
+            else{
+                Cliente cliente = (Cliente)llave.attachment();
+                try {
+                    if(llave.isReadable())
+                        leerTeclas(llave, cliente);
+
+                    if(llave.isValid() && llave.isWritable())
+                        vaciarSalida(llave, cliente);
+
+                } catch (IOException ex) {
+                    desconectar(llave, cliente);
+                }
+            }
+        }
+    }
+
+    private void aceptar() throws IOException {
+        SocketChannel canal = servidor.accept();
+        if(canal == null)
+            return;
+
+        canal.configureBlocking(false);
+        canal.socket().setTcpNoDelay(true);
+        canal.register(selector, SelectionKey.OP_READ, new Cliente(canal));
+        clientes++;
+    }
+
+    private void leerTeclas(SelectionKey llave, Cliente cliente) throws IOException {
+        if(cliente.canal.read(cliente.entrada) == -1){
+            desconectar(llave, cliente);
+            return;
+        }
+
+        cliente.entrada.flip();
+        while(cliente.entrada.remaining() >= 2){
+            int tecla = cliente.entrada.get() & 0x0F;
+            boolean presionada = cliente.entrada.get() != 0;
+
+            if(presionada)
+                cliente.teclas |= (1 << tecla);
+            else
+                cliente.teclas &= ~(1 << tecla);
+        }
+        cliente.entrada.compact();
+
+        actualizarTeclado();
+    }
+
+    private void enviarFrame(SelectionKey llave, Cliente cliente) throws IOException {
+        // El cliente aun no recibe el mensaje anterior: se salta el frame
+        if(cliente.salida.hasRemaining()){
+            framesSaltados++;
+            return;
+        }
+
+        cliente.salida.clear();
+        cliente.salida.position(ENCABEZADO);
+        int largo = CodecDelta.codificar(cliente.enviado, frame, cliente.salida);
+
+        if(largo == 0){
+            cliente.salida.limit(0);
+            return;
+        }
+
+        cliente.salida.putShort(0, (short)largo);
+        cliente.salida.flip();
+        System.arraycopy(frame, 0, cliente.enviado, 0, 32);
+
+        try {
+            vaciarSalida(llave, cliente);
+        } catch (IOException ex) {
+            desconectar(llave, cliente);
+        }
+    }
+
+    private void vaciarSalida(SelectionKey llave, Cliente cliente) throws IOException {
+        bytesEnviados += cliente.canal.write(cliente.salida);
+
+        // Solo se espera OP_WRITE mientras queda algo pendiente
+        if(cliente.salida.hasRemaining())
+            llave.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        else
+            llave.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void desconectar(SelectionKey llave, Cliente cliente) throws IOException {
+        if(!llave.isValid())
+            return;
+
+        clientes--;
+        llave.cancel();
+        cliente.canal.close();
+        actualizarTeclado();
+    }
+
+    // El teclado del Chip8 es la union de las teclas de todos los clientes
+    private void actualizarTeclado() {
+        int teclas = 0;
+        for(SelectionKey llave: selector.keys()){
+            if(llave.isValid() && llave.attachment() != null)
+                teclas |= ((Cliente)llave.attachment()).teclas;
+        }
+
+        for(int i = 0; i < 16; i++)
+            teclado[i] = (teclas >> i) & 1;
+    }
+
+    public static void main(String[] args) {
+        try {
+            Chip8 chip8 = new Chip8(false);
+            chip8.init();
+            chip8.cargarJuego(args.length > 0 ? args[0] : "invaders.c8");
+
+            ServidorFrames servidor = new ServidorFrames(chip8);
+            servidor.abrir(args.length > 1 ? Integer.parseInt(args[1]) : 8008);
+            servidor.iniciar();
+
+        } catch (IOException ex) {
+            Logger.getLogger(ServidorFrames.class.getName())
+                    .log(Level.SEVERE, null, ex);
+        }
+    }
+}
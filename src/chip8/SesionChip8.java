@@ -0,0 +1,120 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SesionChip8 implements Delayed {
+    /***********************
+     * Sesion interactiva atendida por un PlanificadorSesiones.
+     *
+     *   El teclado se publica sin locks en una mascara atomica que el
+     *   planificador aplica antes de cada frame. Una sesion detenida en FX0A
+     *   o en pausa sale de la cola y no consume CPU hasta que llega una
+     *   tecla o se reanuda.
+     **************************/
+
+    static final int PROGRAMADA = 0;
+    static final int EJECUTANDO = 1;
+    static final int ESPERANDO_TECLA = 2;
+    static final int PAUSADA = 3;
+    static final int TERMINADA = 4;
+
+    final Chip8 chip;
+    final AtomicInteger estado = new AtomicInteger(PAUSADA);
+    final AtomicInteger teclas = new AtomicInteger();
+
+    // Bandera de pausa solicitada desde otro hilo
+    volatile boolean pausaSolicitada;
+
+    // Instante (System.nanoTime) en que debe ejecutarse el siguiente frame
+    long limite;
+
+    private PlanificadorSesiones planificador;
+    final private int teclado[] = new int[16];
+
+    // Contabilidad de la sesion
+    volatile long frames;
+    volatile long framesPerdidos;
+    volatile long tiempoCpu;
+
+    public SesionChip8(Chip8 chip) {
+        this.chip = chip;
+    }
+
+    void asignar(PlanificadorSesiones planificador) {
+        this.planificador = planificador;
+    }
+
+    public Chip8 getChip() {
+        return chip;
+    }
+
+    public void setTecla(int tecla, boolean presionada) {
+        int mascara = 1 << tecla;
+        int actual;
+        do {
+            actual = teclas.get();
+        } while(!teclas.compareAndSet(actual, presionada ? (actual | mascara) : (actual & ~mascara)));
+
+        // Una tecla presionada despierta a la sesion detenida en FX0A
+        if(presionada && estado.compareAndSet(ESPERANDO_TECLA, PROGRAMADA))
+            planificador.encolar(this, System.nanoTime());
+    }
+
+    public void pausar() {
+        pausaSolicitada = true;
+    }
+
+    public void reanudar() {
+        pausaSolicitada = false;
+        if(estado.compareAndSet(PAUSADA, PROGRAMADA))
+            planificador.encolar(this, System.nanoTime());
+    }
+
+    public boolean isTerminada() {
+        return estado.get() == TERMINADA;
+    }
+
+    public boolean isInactiva() {
+        int actual = estado.get();
+        return actual == ESPERANDO_TECLA || actual == PAUSADA;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getFramesPerdidos() {
+        return framesPerdidos;
+    }
+
+    // Tiempo de CPU consumido por la sesion, en nanosegundos
+    public long getTiempoCpu() {
+        return tiempoCpu;
+    }
+
+    // Aplica el teclado publicado; solo lo llama el hilo que ejecuta la sesion
+    void aplicarTeclado() {
+        int mascara = teclas.get();
+        for(int i = 0; i < 16; i++)
+            teclado[i] = (mascara >> i) & 1;
+        chip.setKeyPad(teclado);
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(limite - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed otro) {
+        // Diferencia y no comparacion directa: nanoTime puede desbordarse
+        return Long.signum(limite - ((SesionChip8)otro).limite);
+    }
+}
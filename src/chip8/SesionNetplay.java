@@ -0,0 +1,305 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class SesionNetplay {
+    /***********************
+     * Netplay de dos jugadores con rollback.
+     *
+     *   Los dos lados emulan el mismo Chip8 (misma ROM y misma semilla de
+     *   CXNN) por frames completos, sin reloj de pared. El teclado de cada
+     *   frame es la union de las teclas de los dos jugadores: el de este
+     *   lado se conoce, el del otro se predice repitiendo su ultima entrada
+     *   confirmada.
+     *
+     *   Antes de emular cada frame se guarda el estado. Cuando llega la
+     *   entrada real de un frame ya emulado y es distinta a la predicha, se
+     *   restaura el estado de ese frame y se vuelven a emular los frames
+     *   hasta el actual (rollback). Si el otro jugador se atrasa mas de
+     *   MAX_ROLLBACK frames, este lado espera.
+     *
+     *   Paquete (se reenvian todas las entradas que el otro no confirma,
+     *   asi que un paquete perdido se recupera con el siguiente):
+     *      [confirmado: 4 bytes][inicio: 4 bytes][n: 1 byte][n mascaras: 2 bytes c/u]
+     *   "confirmado" es el ultimo frame del otro jugador recibido completo.
+     **************************/
+
+    public static final int MAX_ROLLBACK = 8;
+
+    private static final int VENTANA = 128;
+    private static final int MAX_ENTRADAS = 64;
+
+    final private Chip8 chip;
+    final private TransporteNetplay transporte;
+
+    // Estado al inicio de cada uno de los ultimos frames
+    final private EstadoChip8 estados[] = new EstadoChip8[16];
+
+    // Entradas por frame (indice frame % VENTANA)
+    final private short locales[] = new short[VENTANA];
+    final private short remotas[] = new short[VENTANA];
+    // Entrada remota con la que se emulo cada frame (confirmada o predicha)
+    final private short usadas[] = new short[VENTANA];
+
+    final private ByteBuffer paquete = ByteBuffer.allocate(9 + (MAX_ENTRADAS * 2));
+    final private int teclado[] = new int[16];
+
+    // Siguiente frame a emular
+    private int frame;
+    // Ultimo frame con entrada remota confirmada
+    private int confirmadoRemoto = -1;
+    // Ultimo frame local que el otro jugador confirmo
+    private int confirmadoLocal = -1;
+
+    // Metricas
+    private long rollbacks;
+    private long profundidadTotal;
+    private int profundidadMaxima;
+    private long framesResimulados;
+    private long nanosResimulacion;
+    private long esperas;
+    private long paquetesRecibidos;
+
+    public SesionNetplay(Chip8 chip, TransporteNetplay transporte) {
+        this.chip = chip;
+        this.transporte = transporte;
+        for(int i = 0; i < estados.length; i++)
+            estados[i] = new EstadoChip8();
+    }
+
+    /*
+    * Emula el siguiente frame con las teclas locales (una mascara de 16
+    * bits). Regresa false si hubo que esperar al otro jugador; en ese caso
+    * el frame no avanzo y las teclas se deben volver a entregar.
+    */
+    public boolean avanzar(int teclas) throws IOException {
+        sincronizar();
+
+        if(frame - confirmadoRemoto > MAX_ROLLBACK){
+            esperas++;
+            return false;
+        }
+
+        locales[frame % VENTANA] = (short)teclas;
+        emular();
+        enviar();
+        return true;
+    }
+
+    /*
+    * Atiende los paquetes recibidos, hace el rollback si alguna prediccion
+    * fallo y reenvia las entradas pendientes, sin avanzar de frame.
+    */
+    public void sincronizar() throws IOException {
+        int rollbackDesde = frame;
+
+        while(transporte.recibir(paquete)){
+            paquetesRecibidos++;
+            rollbackDesde = Math.min(rollbackDesde, leerPaquete());
+        }
+
+        if(rollbackDesde < frame)
+            resimular(rollbackDesde);
+
+        enviar();
+    }
+
+    // Regresa el primer frame mal predicho del paquete, o el frame actual
+    private int leerPaquete() {
+        if(paquete.remaining() < 9)
+            return frame;
+
+        confirmadoLocal = Math.max(confirmadoLocal, paquete.getInt());
+        int inicio = paquete.getInt();
+        int total = paquete.get() & 0xFF;
+        int malPredicho = frame;
+
+        for(int i = 0; i < total && paquete.remaining() >= 2; i++){
+            int remoto = inicio + i;
+            short teclas = paquete.getShort();
+
+            // Solo sirven las entradas contiguas a lo ya confirmado
+            if(remoto != confirmadoRemoto + 1)
+                continue;
+
+            remotas[remoto % VENTANA] = teclas;
+            confirmadoRemoto = remoto;
+
+            if(remoto < frame && usadas[remoto % VENTANA] != teclas)
+                malPredicho = Math.min(malPredicho, remoto);
+        }
+        return malPredicho;
+    }
+
+    private void resimular(int desde) {
+        long inicio = System.nanoTime();
+        int profundidad = frame - desde;
+
+        // Los frames repetidos no llegan al sonido ni al monitor
+        MonitorCiclo monitor = chip.getMonitor();
+        SalidaSonido sonido = chip.getSalidaSonido();
+        chip.setMonitor(null);
+        chip.setSalidaSonido(SalidaSonido.NULA);
+
+        chip.restaurarEstado(estados[desde % estados.length]);
+        int hasta = frame;
+        for(frame = desde; frame < hasta; )
+            emular();
+
+        chip.setMonitor(monitor);
+        chip.setSalidaSonido(sonido);
+
+        rollbacks++;
+        profundidadTotal += profundidad;
+        profundidadMaxima = Math.max(profundidadMaxima, profundidad);
+        framesResimulados += profundidad;
+        nanosResimulacion += System.nanoTime() - inicio;
+    }
+
+    // Guarda el estado y emula el frame actual con la entrada conocida
+    private void emular() {
+        int indice = frame % VENTANA;
+        short remota = frame <= confirmadoRemoto
+                ? remotas[indice]
+                : (confirmadoRemoto < 0 ? 0 : remotas[confirmadoRemoto % VENTANA]);
+        usadas[indice] = remota;
+
+        int teclas = (locales[indice] | remota) & 0xFFFF;
+        for(int i = 0; i < 16; i++)
+            teclado[i] = (teclas >> i) & 1;
+
+        chip.guardarEstado(estados[frame % estados.length]);
+        chip.setKeyPad(teclado);
+        chip.emularFrame();
+        frame++;
+    }
+
+    // Envia las entradas locales que el otro jugador aun no confirma
+    private void enviar() throws IOException {
+        int inicio = Math.max(confirmadoLocal + 1, frame - MAX_ENTRADAS);
+        int total = frame - inicio;
+
+        paquete.clear();
+        paquete.putInt(confirmadoRemoto);
+        paquete.putInt(inicio);
+        paquete.put((byte)total);
+        for(int i = 0; i < total; i++)
+            paquete.putShort(locales[(inicio + i) % VENTANA]);
+        paquete.flip();
+
+        transporte.enviar(paquete);
+    }
+
+    public int getFrame() {
+        return frame;
+    }
+
+    public int getConfirmadoRemoto() {
+        return confirmadoRemoto;
+    }
+
+    // Verdadero si todos los frames emulados usaron entradas confirmadas
+    public boolean isConfirmado() {
+        return confirmadoRemoto >= frame - 1;
+    }
+
+    public long getRollbacks() {
+        return rollbacks;
+    }
+
+    public int getProfundidadMaxima() {
+        return profundidadMaxima;
+    }
+
+    public double getProfundidadPromedio() {
+        return rollbacks == 0 ? 0 : (double)profundidadTotal / rollbacks;
+    }
+
+    public long getFramesResimulados() {
+        return framesResimulados;
+    }
+
+    public long getNanosResimulacion() {
+        return nanosResimulacion;
+    }
+
+    public long getEsperas() {
+        return esperas;
+    }
+
+    public long getPaquetesRecibidos() {
+        return paquetesRecibidos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "frame=%d rollbacks=%d profundidad=%.2f/%d resimulados=%d (%.1fus) esperas=%d paquetes=%d",
+                frame, rollbacks, getProfundidadPromedio(), profundidadMaxima,
+                framesResimulados, nanosResimulacion / 1000.0, esperas, paquetesRecibidos
+        );
+    }
+
+    /*
+    * Uso: SesionNetplay <rom> <puerto local> <host remoto> <puerto remoto>
+    * Los dos jugadores deben usar la misma ROM.
+    */
+    public static void main(String[] args) {
+        if(args.length < 4){
+            System.out.println("Uso: SesionNetplay <rom> <puerto local> <host remoto> <puerto remoto>");
+            return;
+        }
+
+        try {
+            Chip8 chip = new Chip8(false);
+            chip.init();
+            chip.setSemilla(0x5EED);
+            chip.cargarJuego(args[0]);
+            chip.setSalidaSonido(AudioChip8.crear());
+
+            TransporteUdp transporte = new TransporteUdp(
+                    Integer.parseInt(args[1]),
+                    new InetSocketAddress(args[2], Integer.parseInt(args[3]))
+            );
+            SesionNetplay sesion = new SesionNetplay(chip, transporte);
+            ChipFrame frame = new ChipFrame(chip);
+
+            ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor();
+            service.scheduleAtFixedRate(() -> {
+                int teclas = 0;
+                int buffer[] = frame.getKeyBuffer();
+                for(int i = 0; i < 16; i++)
+                    teclas |= buffer[i] << i;
+
+                try {
+                    sesion.avanzar(teclas);
+                } catch (IOException ex) {
+                    Logger.getLogger(SesionNetplay.class.getName())
+                            .log(Level.SEVERE, null, ex);
+                }
+                frame.repaint();
+            }, 0, 1000000 / 60, TimeUnit.MICROSECONDS);
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() ->
+                    Logger.getLogger(SesionNetplay.class.getName())
+                            .log(Level.INFO, "Netplay: {0}", sesion)
+            ));
+
+        } catch (IOException ex) {
+            Logger.getLogger(SesionNetplay.class.getName())
+                    .log(Level.SEVERE, null, ex);
+        }
+    }
+}
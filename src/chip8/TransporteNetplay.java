@@ -0,0 +1,23 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/*
+* Canal de paquetes entre los dos jugadores de SesionNetplay. Como UDP, un
+* paquete puede perderse, duplicarse o llegar en otro orden; ninguna
+* operacion debe bloquear.
+*/
+public interface TransporteNetplay {
+    // Envia los bytes entre position y limit como un solo paquete
+    void enviar(ByteBuffer paquete) throws IOException;
+
+    // Deja el siguiente paquete recibido en el buffer (listo para leer);
+    // regresa false si no hay ninguno
+    boolean recibir(ByteBuffer paquete) throws IOException;
+}
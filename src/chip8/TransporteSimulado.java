@@ -0,0 +1,117 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.nio.ByteBuffer;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+public class TransporteSimulado implements TransporteNetplay {
+    /***********************
+     * Par de transportes en memoria para probar netplay sin red.
+     *
+     *   El tiempo es un reloj de ticks compartido por los dos extremos que
+     *   avanza solo con avanzar(), de modo que una prueba es reproducible.
+     *   Cada paquete tarda "latencia" ticks mas un jitter aleatorio de
+     *   0..jitter (los paquetes pueden llegar en otro orden) y se pierde
+     *   con la probabilidad dada.
+     **************************/
+
+    private static class Red {
+        final int latencia;
+        final int jitter;
+        final double perdida;
+        final Random random;
+
+        long reloj;
+        long secuencia;
+
+        Red(int latencia, int jitter, double perdida, long semilla) {
+            this.latencia = latencia;
+            this.jitter = jitter;
+            this.perdida = perdida;
+            this.random = new Random(semilla);
+        }
+    }
+
+    private static class Paquete {
+        final byte datos[];
+        final long entrega;
+        final long secuencia;
+
+        Paquete(byte[] datos, long entrega, long secuencia) {
+            this.datos = datos;
+            this.entrega = entrega;
+            this.secuencia = secuencia;
+        }
+    }
+
+    final private Red red;
+    final private PriorityQueue<Paquete> entrantes = new PriorityQueue<>((a, b) ->
+            a.entrega != b.entrega
+                    ? Long.compare(a.entrega, b.entrega)
+                    : Long.compare(a.secuencia, b.secuencia)
+    );
+    private TransporteSimulado destino;
+
+    private long enviados;
+    private long perdidos;
+
+    private TransporteSimulado(Red red) {
+        this.red = red;
+    }
+
+    public static TransporteSimulado[] crearPar(int latencia, int jitter, double perdida, long semilla) {
+        Red red = new Red(latencia, jitter, perdida, semilla);
+        TransporteSimulado a = new TransporteSimulado(red);
+        TransporteSimulado b = new TransporteSimulado(red);
+        a.destino = b;
+        b.destino = a;
+        return new TransporteSimulado[]{a, b};
+    }
+
+    // Avanza un tick el reloj compartido por los dos extremos
+    public void avanzar() {
+        red.reloj++;
+    }
+
+    public long getEnviados() {
+        return enviados;
+    }
+
+    public long getPerdidos() {
+        return perdidos;
+    }
+
+    @Override
+    public void enviar(ByteBuffer paquete) {
+        enviados++;
+        if(red.random.nextDouble() < red.perdida){
+            perdidos++;
+            paquete.position(paquete.limit());
+            return;
+        }
+
+        byte datos[] = new byte[paquete.remaining()];
+        paquete.get(datos);
+
+        long entrega = red.reloj + red.latencia + red.random.nextInt(red.jitter + 1);
+        destino.entrantes.add(new Paquete(datos, entrega, red.secuencia++));
+    }
+
+    @Override
+    public boolean recibir(ByteBuffer paquete) {
+        Paquete siguiente = entrantes.peek();
+        if(siguiente == null || siguiente.entrega > red.reloj)
+            return false;
+
+        entrantes.poll();
+        paquete.clear();
+        paquete.put(siguiente.datos);
+        paquete.flip();
+        return true;
+    }
+}
@@ -0,0 +1,58 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+public class TransporteUdp implements TransporteNetplay {
+    /***********************
+     * Transporte de netplay sobre UDP con un DatagramChannel no bloqueante
+     * conectado al otro jugador.
+     **************************/
+
+    final private DatagramChannel canal;
+
+    public TransporteUdp(int puertoLocal, InetSocketAddress remoto) throws IOException {
+        canal = DatagramChannel.open();
+        canal.bind(new InetSocketAddress(puertoLocal));
+        canal.connect(remoto);
+        canal.configureBlocking(false);
+    }
+
+    public int getPuertoLocal() throws IOException {
+        return ((InetSocketAddress)canal.getLocalAddress()).getPort();
+    }
+
+    @Override
+    public void enviar(ByteBuffer paquete) throws IOException {
+        try {
+            canal.write(paquete);
+        } catch (PortUnreachableException ex) {
+            // El otro jugador aun no abre su puerto: el paquete se pierde
+        }
+    }
+
+    @Override
+    public boolean recibir(ByteBuffer paquete) throws IOException {
+        paquete.clear();
+        try {
+            if(canal.read(paquete) <= 0)
+                return false;
+        } catch (PortUnreachableException ex) {
+            return false;
+        }
+        paquete.flip();
+        return true;
+    }
+
+    public void cerrar() throws IOException {
+        canal.close();
+    }
+}
@@ -0,0 +1,313 @@
+package chip8;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+public class ValidadorLockstep {
+    /***********************
+     * Ejecuta dos maquinas en el mismo estado con motores distintos (ver
+     * NucleoCpu), instruccion por instruccion, y encuentra la primera
+     * instruccion en la que dejan de coincidir.
+     *
+     *   Despues de cada instruccion se acumula un hash barato de pc, I, sp
+     *   y registros. Cada "intervalo" instrucciones se comparan esos hashes
+     *   y las paginas de memoria que alguna de las dos escribio (las
+     *   compartidas son iguales por construccion), y se guarda un punto
+     *   de control. Al encontrar una diferencia se regresa al punto de
+     *   control y se repite paso a paso comparando el estado completo.
+     **************************/
+
+    public static class Divergencia {
+        // Numero de instruccion (desde que se creo el validador)
+        public final long instruccion;
+        public final int pc;
+        public final int opcode;
+        public final String detalle;
+
+        Divergencia(long instruccion, int pc, int opcode, String detalle) {
+            this.instruccion = instruccion;
+            this.pc = pc;
+            this.opcode = opcode;
+            this.detalle = detalle;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "Instruccion %d en 0x%03X (%04X %s): %s",
+                    instruccion, pc, opcode, Opcode.desensamblar(opcode), detalle
+            );
+        }
+    }
+
+    final private Chip8 a;
+    final private Chip8 b;
+    final private int intervalo;
+
+    // Punto de control: ultimo estado en el que las dos coincidian
+    final private EstadoChip8 puntoA = new EstadoChip8();
+    final private EstadoChip8 puntoB = new EstadoChip8();
+    private long puntoInstruccion;
+
+    private long instrucciones;
+    private long hashA;
+    private long hashB;
+    private long comprobaciones;
+
+    // Tramos ejecutados desde el punto de control: instruccion en la que
+    // termina cada uno y teclas con que se ejecuto, para repetirlos igual
+    private long finTramos[] = new long[16];
+    private int teclasTramos[] = new int[16];
+    private int totalTramos;
+
+    /*
+    * Las dos maquinas deben estar ya en el mismo estado (por ejemplo, una
+    * es fork de la otra) y con su motor asignado.
+    */
+    public ValidadorLockstep(Chip8 a, Chip8 b, int intervalo) {
+        this.a = a;
+        this.b = b;
+        this.intervalo = intervalo;
+
+        String diferencia = comparar(a, b);
+        if(diferencia != null)
+            throw new IllegalArgumentException("Las maquinas no inician iguales: " + diferencia);
+        guardarPunto();
+    }
+
+    public long getInstrucciones() {
+        return instrucciones;
+    }
+
+    public long getComprobaciones() {
+        return comprobaciones;
+    }
+
+    // Un frame de 60 Hz en las dos maquinas; null si siguen iguales
+    public Divergencia ejecutarFrame(int[] teclado) {
+        a.setKeyPad(teclado);
+        b.setKeyPad(teclado);
+        return ejecutar(a.ciclosPorFrame());
+    }
+
+    /*
+    * Ejecuta "total" instrucciones en las dos maquinas. Los motores que
+    * fusionan instrucciones avanzan por bloques; la maquina A decide el
+    * tamano de cada bloque y la B avanza lo mismo antes de comparar.
+    */
+    public Divergencia ejecutar(int total) {
+        agregarTramo(instrucciones + total, teclas(a));
+
+        long fin = instrucciones + total;
+        while(instrucciones < fin){
+            int ejecutadas = pasoAlineado((int)(fin - instrucciones));
+            if(ejecutadas < 0)
+                return localizar();
+
+            hashA = mezclar(hashA, a);
+            hashB = mezclar(hashB, b);
+            instrucciones += ejecutadas;
+
+            if(instrucciones - puntoInstruccion >= intervalo){
+                comprobaciones++;
+                if(hashA != hashB || !mismaMemoria(a, b))
+                    return localizar();
+                guardarPunto();
+            }
+        }
+        return null;
+    }
+
+    /*
+    * Avanza las dos maquinas el mismo numero de instrucciones. Regresa
+    * cuantas, o -1 si solo una de las dos lanzo una excepcion.
+    */
+    private int pasoAlineado(int maximo) {
+        RuntimeException errorA = null;
+        RuntimeException errorB = null;
+        int ejecutadas = 1;
+
+        try {
+            ejecutadas = a.emularBloque(maximo);
+        } catch (RuntimeException ex) {
+            errorA = ex;
+        }
+        try {
+            for(int hechas = 0; hechas < ejecutadas; )
+                hechas += b.emularBloque(ejecutadas - hechas);
+        } catch (RuntimeException ex) {
+            errorB = ex;
+        }
+
+        if(errorA == null && errorB == null)
+            return ejecutadas;
+        if(errorA != null && errorB != null && errorA.getClass() == errorB.getClass())
+            throw errorA;
+        return -1;
+    }
+
+    private static int teclas(Chip8 chip) {
+        int teclas = 0;
+        for(int i = 0; i < 16; i++)
+            teclas |= (chip.key[i] != 0 ? 1 : 0) << i;
+        return teclas;
+    }
+
+    private void agregarTramo(long fin, int teclas) {
+        if(totalTramos == finTramos.length){
+            finTramos = Arrays.copyOf(finTramos, totalTramos * 2);
+            teclasTramos = Arrays.copyOf(teclasTramos, totalTramos * 2);
+        }
+        finTramos[totalTramos] = fin;
+        teclasTramos[totalTramos] = teclas;
+        totalTramos++;
+    }
+
+    private static long mezclar(long hash, Chip8 chip) {
+        hash = (hash ^ chip.pc) * 0x100000001B3L;
+        hash = (hash ^ chip.I) * 0x100000001B3L;
+        hash = (hash ^ chip.sp) * 0x100000001B3L;
+        for(int valor: chip.V)
+            hash = (hash ^ valor) * 0x100000001B3L;
+        return hash;
+    }
+
+    private void guardarPunto() {
+        a.guardarEstado(puntoA);
+        b.guardarEstado(puntoB);
+        puntoInstruccion = instrucciones;
+
+        // Solo se conserva el tramo en curso
+        if(totalTramos > 0){
+            finTramos[0] = finTramos[totalTramos - 1];
+            teclasTramos[0] = teclasTramos[totalTramos - 1];
+            totalTramos = 1;
+        }
+    }
+
+    /*
+    * Repite desde el punto de control, con las mismas teclas y limites de
+    * cada tramo, comparando todo despues de cada bloque. Las maquinas
+    * quedan en el estado de la divergencia.
+    */
+    private Divergencia localizar() {
+        a.restaurarEstado(puntoA);
+        b.restaurarEstado(puntoB);
+        instrucciones = puntoInstruccion;
+
+        for(int tramo = 0; tramo < totalTramos; tramo++){
+            for(int i = 0; i < 16; i++){
+                int valor = (teclasTramos[tramo] >> i) & 1;
+                a.setTecla(i, valor != 0);
+                b.setTecla(i, valor != 0);
+            }
+
+            while(instrucciones < finTramos[tramo]){
+                int pc = a.pc;
+                int opcode = (a.leerMemoria(pc) << 8) | a.leerMemoria(pc + 1);
+
+                int ejecutadas = pasoAlineado((int)(finTramos[tramo] - instrucciones));
+                String diferencia = ejecutadas < 0 ? "excepcion en una sola maquina" : comparar(a, b);
+
+                if(diferencia != null){
+                    if(ejecutadas > 1)
+                        diferencia += " (bloque de " + ejecutadas + " instrucciones)";
+                    return new Divergencia(instrucciones, pc, opcode, diferencia);
+                }
+                instrucciones += ejecutadas;
+            }
+        }
+
+        // La diferencia no se reprodujo (no deberia pasar con motores deterministas)
+        return new Divergencia(instrucciones, a.pc, 0, "diferencia no reproducible");
+    }
+
+    static boolean mismaMemoria(Chip8 a, Chip8 b) {
+        for(int i = 0; i < a.paginas.length; i++){
+            if(a.paginas[i] != b.paginas[i] && !Arrays.equals(a.paginas[i], b.paginas[i]))
+                return false;
+        }
+        return true;
+    }
+
+    // Describe la primera diferencia entre los dos estados, o null
+    static String comparar(Chip8 a, Chip8 b) {
+        if(a.pc != b.pc) return String.format("pc 0x%03X / 0x%03X", a.pc, b.pc);
+        if(a.I != b.I) return String.format("I 0x%03X / 0x%03X", a.I, b.I);
+        if(a.sp != b.sp) return "sp " + a.sp + " / " + b.sp;
+
+        for(int i = 0; i < 16; i++){
+            if(a.V[i] != b.V[i])
+                return String.format("V%X %d / %d", i, a.V[i], b.V[i]);
+            if(a.stack[i] != b.stack[i])
+                return String.format("stack[%d] 0x%03X / 0x%03X", i, a.stack[i], b.stack[i]);
+        }
+
+        if(a.delayTimer != b.delayTimer) return "delay " + a.delayTimer + " / " + b.delayTimer;
+        if(a.soundTimer != b.soundTimer) return "sonido " + a.soundTimer + " / " + b.soundTimer;
+        if(a.semillaRng != b.semillaRng) return "semilla " + a.semillaRng + " / " + b.semillaRng;
+        if(a.esperandoTecla != b.esperandoTecla) return "esperando tecla";
+
+        for(int fila = 0; fila < 32; fila++){
+            if(a.gfx[fila] != b.gfx[fila])
+                return String.format("pantalla fila %d %016X / %016X", fila, a.gfx[fila], b.gfx[fila]);
+        }
+
+        for(int direccion = 0; direccion < 4096; direccion++){
+            if(a.leerMemoria(direccion) != b.leerMemoria(direccion))
+                return String.format("memoria[0x%03X] %02X / %02X", direccion,
+                        a.leerMemoria(direccion), b.leerMemoria(direccion));
+        }
+
+        if(a.getOpcodesIndefinidos() != b.getOpcodesIndefinidos())
+            return "opcodes indefinidos " + a.getOpcodesIndefinidos() + " / " + b.getOpcodesIndefinidos();
+        return null;
+    }
+
+    /*
+    * Uso: ValidadorLockstep <rom> [frames] [intervalo] [nucleo A] [nucleo B]
+    * Las teclas cambian cada medio segundo para recorrer mas codigo.
+    */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1){
+            System.out.println("Uso: ValidadorLockstep <rom> [frames] [intervalo] [nucleo A] [nucleo B]");
+            return;
+        }
+
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 36000;
+        int intervalo = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        Chip8 a = new Chip8(false);
+        a.init();
+        a.setSemilla(1);
+        a.cargarJuego(Files.readAllBytes(Paths.get(args[0])));
+        Chip8 b = a.fork();
+        a.setNucleo(NucleoCpu.crear(args.length > 3 ? args[3] : "referencia"));
+        b.setNucleo(NucleoCpu.crear(args.length > 4 ? args[4] : "switch"));
+
+        ValidadorLockstep validador = new ValidadorLockstep(a, b, intervalo);
+        int teclado[] = new int[16];
+
+        for(int frame = 0; frame < frames; frame++){
+            teclado[(frame / 30) % 16] = (frame % 60) < 30 ? 1 : 0;
+
+            Divergencia divergencia = validador.ejecutarFrame(teclado);
+            if(divergencia != null){
+                System.out.println("Divergencia en el frame " + frame + ": " + divergencia);
+                System.exit(1);
+            }
+        }
+
+        System.out.printf(
+                "Sin divergencias: %d instrucciones, %d comprobaciones%n",
+                validador.getInstrucciones(), validador.getComprobaciones()
+        );
+    }
+}
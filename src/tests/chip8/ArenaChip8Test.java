@@ -0,0 +1,140 @@
+package tests.chip8;
+
+import chip8.ArenaChip8;
+import chip8.BibliotecaRoms;
+import chip8.Chip8;
+import chip8.ImagenRom;
+import chip8.InterpreteArena;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class ArenaChip8Test {
+    private static final String ROMS[] = {"invaders.c8", "BRIX", "tetris.c8", "PONG.c8", "BLITZ"};
+
+    @Test
+    public void testMismoEstadoQueChip8() throws Exception {
+        BibliotecaRoms biblioteca = new BibliotecaRoms();
+        ArenaChip8 arena = ArenaChip8.crear(ROMS.length);
+        InterpreteArena interprete = new InterpreteArena(arena);
+        Chip8 chips[] = new Chip8[ROMS.length];
+
+        for(int i = 0; i < ROMS.length; i++){
+            ImagenRom imagen = biblioteca.cargar(Paths.get(ROMS[i]));
+            chips[i] = new Chip8(false);
+            chips[i].init();
+            chips[i].setSemilla(i);
+            chips[i].cargarJuego(imagen);
+            arena.cargar(i, imagen, i);
+            assertEquals(chips[i].hashEstado(), arena.hashEstado(i));
+        }
+
+        int teclado[] = new int[16];
+        for(int frame = 0; frame < 2000; frame++){
+            int teclas = ((frame / 20) & 1) << ((frame / 40) & 0xF);
+            for(int t = 0; t < 16; t++)
+                teclado[t] = (teclas >> t) & 1;
+
+            for(int i = 0; i < ROMS.length; i++){
+                chips[i].setKeyPad(teclado);
+                chips[i].emularFrame();
+                arena.setTeclas(i, teclas);
+                interprete.emularFrame(i, chips[i].ciclosPorFrame());
+            }
+        }
+
+        for(int i = 0; i < ROMS.length; i++)
+            assertEquals(ROMS[i], chips[i].hashEstado(), arena.hashEstado(i));
+    }
+
+    @Test
+    public void testOpcode8XYFIndefinido() throws Exception {
+        // Igual que Chip8: 8XYF se cuenta como indefinido, sin caerse
+        ImagenRom imagen = ImagenRom.crear(new byte[]{0x60, 0x01, (byte)0x81, 0x0F});
+        Chip8 chip = new Chip8(false);
+        chip.init();
+        chip.setSemilla(0);
+        chip.cargarJuego(imagen);
+        ArenaChip8 arena = ArenaChip8.crear(1);
+        arena.cargar(0, imagen, 0);
+
+        chip.emularFrame();
+        new InterpreteArena(arena).emularFrame(0, chip.ciclosPorFrame());
+        assertTrue(chip.getOpcodesIndefinidos() > 0);
+        assertEquals(chip.hashEstado(), arena.hashEstado(0));
+    }
+
+    @Test
+    public void testImportarExportarYArchivoMapeado() throws Exception {
+        Chip8 chip = new Chip8(false);
+        chip.init();
+        chip.setSemilla(3);
+        chip.cargarJuego("invaders.c8");
+        for(int frame = 0; frame < 300; frame++) chip.emularFrame();
+
+        Path archivo = Files.createTempFile("arena", ".bin");
+        Files.delete(archivo);
+        ArenaChip8 escritora = ArenaChip8.mapear(archivo, 4);
+        escritora.importar(2, chip);
+
+        // Otra vista del mismo archivo ve el estado sin copiarlo
+        ArenaChip8 lectora = ArenaChip8.mapear(archivo, 4);
+        assertEquals(chip.hashEstado(), lectora.hashEstado(2));
+
+        Chip8 copia = new Chip8(false);
+        lectora.exportar(2, copia);
+        assertEquals(chip.hashEstado(), copia.hashEstado());
+
+        // Captura de toda la arena y restauracion de una ranura
+        ArenaChip8 captura = ArenaChip8.crear(4);
+        escritora.copiarA(captura);
+        new InterpreteArena(escritora).emularFrame(2, 60);
+        assertNotEquals(chip.hashEstado(), escritora.hashEstado(2));
+        captura.copiarA(escritora);
+        assertEquals(chip.hashEstado(), escritora.hashEstado(2));
+
+        Files.delete(archivo);
+    }
+
+    @Test
+    public void testArchivoIncompatibleNoSeModifica() throws Exception {
+        // Un archivo ajeno, aunque sea mas chico que la arena
+        Path ajeno = Files.createTempFile("arena", ".txt");
+        byte contenido[] = "no es una arena".getBytes("US-ASCII");
+        Files.write(ajeno, contenido);
+        try{
+            ArenaChip8.mapear(ajeno, 2);
+            fail("Se mapeo un archivo que no es arena");
+        } catch (IOException ex) {
+            // esperado
+        }
+        assertArrayEquals(contenido, Files.readAllBytes(ajeno));
+        Files.delete(ajeno);
+
+        // Una arena con otro numero de instancias
+        Path archivo = Files.createTempFile("arena", ".bin");
+        Files.delete(archivo);
+        ArenaChip8.mapear(archivo, 2);
+        long tam = Files.size(archivo);
+        for(int instancias : new int[]{1, 4}){
+            try{
+                ArenaChip8.mapear(archivo, instancias);
+                fail("Se aceptaron " + instancias + " instancias");
+            } catch (IOException ex) {
+                // esperado
+            }
+        }
+        assertEquals(tam, Files.size(archivo));
+        assertEquals(2, ArenaChip8.mapear(archivo, 2).getInstancias());
+        Files.delete(archivo);
+    }
+}
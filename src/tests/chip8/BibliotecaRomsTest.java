@@ -0,0 +1,97 @@
+package tests.chip8;
+
+import chip8.BibliotecaRoms;
+import chip8.Chip8;
+import chip8.ImagenRom;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class BibliotecaRomsTest {
+    private BibliotecaRoms biblioteca;
+    private byte rom[];
+
+    @Before
+    public void setUp() throws Exception {
+        biblioteca = new BibliotecaRoms();
+        rom = Files.readAllBytes(Paths.get("invaders.c8"));
+    }
+
+    @Test
+    public void testMismaRomUnaSolaImagen() throws Exception {
+        Path archivo = Files.createTempFile("rom", ".c8");
+        Files.write(archivo, rom);
+
+        Path zip = Files.createTempFile("roms", ".zip");
+        try(ZipOutputStream salida = new ZipOutputStream(Files.newOutputStream(zip))){
+            salida.putNextEntry(new ZipEntry("invaders.c8"));
+            salida.write(rom);
+            salida.closeEntry();
+        }
+
+        ImagenRom mapeada = biblioteca.cargar(archivo);
+        List<ImagenRom> delZip = biblioteca.cargarZip(zip);
+        Files.delete(archivo);
+        Files.delete(zip);
+
+        assertEquals(1, biblioteca.getTamano());
+        assertSame(mapeada, delZip.get(0));
+        assertSame(mapeada, biblioteca.obtener(mapeada.getHash()));
+        assertEquals(rom.length, mapeada.getTamano());
+    }
+
+    @Test
+    public void testImagenIgualACargarBytes() throws Exception {
+        Chip8 compartida = new Chip8(false);
+        compartida.init();
+        compartida.setSemilla(7);
+        compartida.cargarJuego(biblioteca.registrar(rom));
+
+        Chip8 copiada = new Chip8(false);
+        copiada.init();
+        copiada.setSemilla(7);
+        copiada.cargarJuego(rom);
+
+        assertEquals(copiada.hashEstado(), compartida.hashEstado());
+        assertEquals(0, compartida.getPaginasPropias());
+
+        for(int i = 0; i < 300; i++){
+            compartida.emularFrame();
+            copiada.emularFrame();
+        }
+        assertEquals(copiada.hashEstado(), compartida.hashEstado());
+    }
+
+    @Test
+    public void testForkIndependiente() throws Exception {
+        Chip8 original = new Chip8(false);
+        original.init();
+        original.setSemilla(3);
+        original.cargarJuego(biblioteca.registrar(rom));
+        for(int i = 0; i < 100; i++) original.emularFrame();
+
+        Chip8 copia = original.fork();
+        assertEquals(original.hashEstado(), copia.hashEstado());
+        assertEquals(0, copia.getPaginasPropias());
+
+        // La copia avanza con una tecla presionada; el original no cambia
+        long antes = original.hashEstado();
+        copia.setTecla(5, true);
+        for(int i = 0; i < 200; i++) copia.emularFrame();
+
+        assertEquals(antes, original.hashEstado());
+        assertNotEquals(antes, copia.hashEstado());
+    }
+}
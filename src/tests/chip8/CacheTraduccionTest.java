@@ -0,0 +1,122 @@
+package tests.chip8;
+
+import chip8.BibliotecaRoms;
+import chip8.CacheTraduccion;
+import chip8.Chip8;
+import chip8.ImagenRom;
+import chip8.NucleoFusion;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class CacheTraduccionTest {
+    private Path raiz;
+    private BibliotecaRoms biblioteca;
+    private CacheTraduccion cache;
+    private ImagenRom invaders;
+
+    @Before
+    public void setUp() throws Exception {
+        raiz = Files.createTempDirectory("cache");
+        biblioteca = new BibliotecaRoms();
+        cache = new CacheTraduccion(raiz, 1 << 20);
+        invaders = biblioteca.cargar(Paths.get("invaders.c8"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try(DirectoryStream<Path> archivos = Files.newDirectoryStream(raiz)){
+            for(Path archivo: archivos)
+                Files.delete(archivo);
+        }
+        Files.delete(raiz);
+    }
+
+    // Ejecuta una sesion de 600 frames y guarda el analisis
+    private NucleoFusion sesion(ImagenRom imagen, long hashEsperado) {
+        NucleoFusion nucleo = new NucleoFusion(cache);
+        Chip8 chip = new Chip8(false);
+        chip.setNucleo(nucleo);
+        chip.init();
+        chip.setSemilla(1);
+        chip.cargarJuego(imagen);
+
+        for(int frame = 0; frame < 600; frame++)
+            chip.emularFrame();
+        nucleo.guardarTraduccion();
+
+        if(hashEsperado != 0)
+            assertEquals(hashEsperado, chip.hashEstado());
+        return nucleo;
+    }
+
+    private long hashReferencia(ImagenRom imagen) {
+        Chip8 chip = new Chip8(false);
+        chip.init();
+        chip.setSemilla(1);
+        chip.cargarJuego(imagen);
+        for(int frame = 0; frame < 600; frame++)
+            chip.emularFrame();
+        return chip.hashEstado();
+    }
+
+    @Test
+    public void testSegundaSesionSinAnalisis() throws Exception {
+        long esperado = hashReferencia(invaders);
+
+        assertTrue(sesion(invaders, esperado).getAnalisis() > 0);
+        assertEquals(0, sesion(invaders, esperado).getAnalisis());
+        assertEquals(1, cache.getAciertos());
+    }
+
+    @Test
+    public void testArchivoCorruptoSeDescarta() throws Exception {
+        sesion(invaders, 0);
+        Path archivo = raiz.resolve(invaders.getHash() + ".c8t");
+        byte contenido[] = Files.readAllBytes(archivo);
+
+        // Un byte de los datos cambiado: el CRC ya no coincide
+        contenido[contenido.length - 3] ^= 0x40;
+        Files.write(archivo, contenido);
+
+        NucleoFusion nucleo = sesion(invaders, hashReferencia(invaders));
+        assertTrue(nucleo.getAnalisis() > 0);
+        assertEquals(1, cache.getDescartadas());
+
+        // Se vuelve a guardar una version valida
+        assertEquals(0, sesion(invaders, 0).getAnalisis());
+    }
+
+    @Test
+    public void testDesalojaLoMenosUsado() throws Exception {
+        ImagenRom pong = biblioteca.cargar(Paths.get("PONG.c8"));
+        ImagenRom tetris = biblioteca.cargar(Paths.get("tetris.c8"));
+
+        sesion(invaders, 0);
+        sesion(pong, 0);
+        Files.setLastModifiedTime(raiz.resolve(invaders.getHash() + ".c8t"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(raiz.resolve(pong.getHash() + ".c8t"), FileTime.fromMillis(2000));
+        long usado = Files.size(raiz.resolve(invaders.getHash() + ".c8t"))
+                + Files.size(raiz.resolve(pong.getHash() + ".c8t"));
+
+        // Solo cabe lo que ya hay: guardar tetris saca a invaders
+        cache = new CacheTraduccion(raiz, usado);
+        sesion(tetris, 0);
+
+        assertFalse(Files.exists(raiz.resolve(invaders.getHash() + ".c8t")));
+        assertTrue(Files.exists(raiz.resolve(tetris.getHash() + ".c8t")));
+        assertEquals(1, cache.getDesalojadas());
+    }
+}
@@ -0,0 +1,100 @@
+package tests.chip8;
+
+import chip8.Chip8;
+import chip8.ChipPanel;
+import chip8.EstadoXoChip;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class ChipPanelTest {
+    private ChipPanel panel;
+
+    @Before
+    public void setUp() {
+        System.setProperty("java.awt.headless", "true");
+        Chip8 chip = new Chip8(false);
+        chip.init();
+        panel = new ChipPanel(chip);
+        panel.setSize(64, 32);
+    }
+
+    // Pinta el panel a escala 1 y regresa el color del pixel (x, y)
+    private int color(int x, int y) {
+        BufferedImage destino = new BufferedImage(64, 32, BufferedImage.TYPE_INT_RGB);
+        Graphics g = destino.getGraphics();
+        panel.paint(g);
+        g.dispose();
+        return destino.getRGB(x, y) & 0xFFFFFF;
+    }
+
+    private static long[] pantalla(int x, int y) {
+        long filas[] = new long[32];
+        filas[y] = 1L << (63 - x);
+        return filas;
+    }
+
+    @Test
+    public void testOmiteFramesIguales() {
+        assertTrue(panel.presentar(pantalla(1, 1)));
+        assertFalse(panel.presentar(pantalla(1, 1)));
+        assertTrue(panel.presentar(pantalla(2, 1)));
+        assertFalse(panel.presentar(pantalla(2, 1)));
+        assertEquals(2, panel.getPresentados());
+        assertEquals(2, panel.getOmitidos());
+
+        // Sin persistencia el pixel anterior ya esta apagado
+        assertEquals(0xFFFFFF, color(2, 1));
+        assertEquals(0x000000, color(1, 1));
+    }
+
+    @Test
+    public void testPersistencia() {
+        panel.setPersistencia(true);
+        assertTrue(panel.presentar(pantalla(1, 1)));
+        assertTrue(panel.presentar(pantalla(2, 1)));
+
+        // El pixel que se apago se pinta atenuado durante un frame
+        assertEquals(0xFFFFFF, color(2, 1));
+        assertEquals(0x5A5A5A, color(1, 1));
+
+        // El mismo frame otra vez se presenta para borrar el rastro, y
+        // despues ya se omite
+        assertTrue(panel.presentar(pantalla(2, 1)));
+        assertEquals(0x000000, color(1, 1));
+        assertFalse(panel.presentar(pantalla(2, 1)));
+    }
+
+    @Test
+    public void testSuspendido() {
+        assertTrue(panel.presentar(pantalla(1, 1)));
+        panel.setSuspendido(true);
+        assertFalse(panel.presentar(pantalla(2, 2)));
+        assertEquals(1, panel.getSuspendidos());
+
+        panel.setSuspendido(false);
+        assertTrue(panel.presentar(pantalla(2, 2)));
+    }
+
+    @Test
+    public void testCambioDeModo() {
+        long xo[] = new long[EstadoXoChip.TAM_PANTALLA];
+        xo[0] = 1L << 63;
+        assertTrue(panel.presentar(pantalla(1, 1)));
+        assertTrue(panel.presentar(xo));
+        assertFalse(panel.presentar(xo));
+
+        // La pantalla de 64x32 regresa aunque sea igual a la ultima de ese modo
+        assertTrue(panel.presentar(pantalla(1, 1)));
+        assertEquals(0xFFFFFF, color(1, 1));
+        assertTrue(panel.presentar(xo));
+    }
+}
@@ -0,0 +1,93 @@
+package tests.chip8;
+
+import chip8.BibliotecaRoms;
+import chip8.Chip8;
+import chip8.ConfiguracionRom;
+import chip8.EntornoChip8;
+import chip8.ExtractorRecompensa;
+import chip8.ImagenRom;
+import chip8.NucleoCpu;
+import chip8.PoolChip8;
+import chip8.ValidadorLockstep;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class ConfiguracionRomTest {
+
+    @Test
+    public void testBusquedaPorHuella() throws Exception {
+        byte blinky[] = Files.readAllBytes(Paths.get("BLINKY"));
+        ConfiguracionRom configuracion = ConfiguracionRom.buscar(ImagenRom.huella(blinky));
+        assertNotNull(configuracion);
+        assertEquals("BLINKY", configuracion.getNombre());
+        assertEquals(ConfiguracionRom.CONSERVAR_I, configuracion.getPeculiaridades());
+        assertEquals("LEFT", configuracion.getTeclas().get(7));
+        assertTrue(ConfiguracionRom.getTotal() >= 10);
+
+        // Los dos caminos de cargarJuego consultan la base
+        Chip8 chip = new Chip8(false);
+        chip.init();
+        chip.cargarJuego(blinky);
+        assertSame(configuracion, chip.getConfiguracion());
+        chip.init();
+        assertNull(chip.getConfiguracion());
+        chip.cargarJuego(ImagenRom.crear(new byte[]{0x12, 0x00}));
+        assertNull(chip.getConfiguracion());
+    }
+
+    @Test
+    public void testPeculiaridades() throws Exception {
+        // 6301 A300 F355 F365: una ROM sin configuracion avanza I
+        byte rom[] = {0x63, 0x01, (byte)0xA3, 0x00, (byte)0xF3, 0x55, (byte)0xF3, 0x65};
+        Chip8 chip = new Chip8(false);
+        chip.init();
+        chip.cargarJuego(ImagenRom.crear(rom));
+        for(int i = 0; i < 4; i++)
+            chip.emularCiclo();
+        assertEquals(0x308, chip.getI());
+
+        // Con la configuracion de BLINKY los dos motores coinciden
+        Chip8 referencia = new Chip8(false);
+        referencia.init();
+        referencia.setSemilla(1);
+        referencia.cargarJuego(new BibliotecaRoms().cargar(Paths.get("BLINKY")));
+        Chip8 rapido = referencia.fork();
+        rapido.setNucleo(NucleoCpu.crear("switch"));
+        ValidadorLockstep validador = new ValidadorLockstep(referencia, rapido, 256);
+
+        int teclado[] = new int[16];
+        for(int frame = 0; frame < 2000; frame++){
+            teclado[(frame / 30) % 16] = (frame % 60) < 30 ? 1 : 0;
+            assertNull(validador.ejecutarFrame(teclado));
+        }
+        assertSame(referencia.getConfiguracion(), rapido.getConfiguracion());
+    }
+
+    @Test
+    public void testPlantillasConservanConfiguracion() throws Exception {
+        // El pool y el entorno parten de un EstadoChip8, no de cargarJuego
+        byte blinky[] = Files.readAllBytes(Paths.get("BLINKY"));
+        ConfiguracionRom configuracion = ConfiguracionRom.buscar(ImagenRom.huella(blinky));
+
+        PoolChip8 pool = new PoolChip8(blinky, 1);
+        Chip8 acierto = pool.obtener();
+        Chip8 fallo = pool.obtener();
+        assertEquals(1, pool.getFallos());
+        assertSame(configuracion, acierto.getConfiguracion());
+        assertSame(configuracion, fallo.getConfiguracion());
+
+        EntornoChip8 entorno = new EntornoChip8(new BibliotecaRoms().cargar(Paths.get("BLINKY")), 2,
+                () -> ExtractorRecompensa.NINGUNO, 1);
+        assertSame(configuracion, entorno.getChip(0).getConfiguracion());
+        entorno.reiniciar(1);
+        assertSame(configuracion, entorno.getChip(1).getConfiguracion());
+    }
+}
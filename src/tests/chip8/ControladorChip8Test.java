@@ -0,0 +1,175 @@
+package tests.chip8;
+
+import chip8.Chip8;
+import chip8.ControladorChip8;
+import chip8.Depurador;
+import chip8.ImagenRom;
+import chip8.OyenteChip8;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class ControladorChip8Test {
+    private ControladorChip8 controlador;
+
+    // Cuenta los eventos; solo se lee con la maquina pausada o detenida
+    private static class Contador implements OyenteChip8 {
+        int frames;
+        int cambios;
+        int detenciones;
+        final List<Boolean> tonos = new ArrayList<>();
+
+        @Override
+        public void frameCompleto(Chip8 chip, long[] pantalla, boolean cambio) {
+            frames++;
+            if(cambio)
+                cambios++;
+        }
+
+        @Override
+        public void sonido(boolean activo) {
+            tonos.add(activo);
+        }
+
+        @Override
+        public void detenido(Chip8 chip, Throwable causa) {
+            detenciones++;
+        }
+    }
+
+    private Chip8 crearChip() throws Exception {
+        Chip8 chip = new Chip8(false);
+        chip.init();
+        chip.setSemilla(1);
+        chip.cargarJuego("invaders.c8");
+        return chip;
+    }
+
+    @After
+    public void tearDown() {
+        if(controlador != null)
+            controlador.cerrar();
+    }
+
+    @Test
+    public void testPasoEjecutaUnFrame() throws Exception {
+        Chip8 chip = crearChip();
+        Contador contador = new Contador();
+        controlador = new ControladorChip8(chip);
+        controlador.agregarOyente(contador);
+
+        controlador.iniciar();
+        controlador.pausar();
+        long frames = controlador.getFrames();
+        assertEquals(frames, contador.frames);
+
+        controlador.paso();
+        controlador.paso();
+        assertEquals(frames + 2, controlador.getFrames());
+        assertEquals(frames + 2, contador.frames);
+
+        // El estado que ve este hilo es el de una ejecucion sin hilos
+        Chip8 referencia = crearChip();
+        for(long frame = 0; frame < controlador.getFrames(); frame++)
+            referencia.emularFrame();
+        assertEquals(referencia.hashEstado(), chip.hashEstado());
+
+        controlador.reanudar();
+        assertFalse(controlador.isPausado());
+    }
+
+    @Test
+    public void testDetenidoSeAvisaUnaVez() throws Exception {
+        Chip8 chip = crearChip();
+        Contador contador = new Contador();
+        controlador = new ControladorChip8(chip);
+        controlador.agregarOyente(new OyenteChip8() {
+            @Override
+            public void frameCompleto(Chip8 chip, long[] pantalla, boolean cambio) {
+                chip.RUNNING = false;
+            }
+        });
+        controlador.agregarOyente(contador);
+
+        controlador.iniciar();
+        controlador.paso();
+        controlador.paso();
+
+        assertTrue(controlador.isDetenido());
+        assertEquals(1, controlador.getFrames());
+        assertEquals(1, contador.frames);
+        assertEquals(1, contador.detenciones);
+    }
+
+    @Test
+    public void testSonidoSoloEnCambios() throws Exception {
+        // 6005 F018: tono por 5 instrucciones; 1204: ciclo infinito
+        byte rom[] = {0x60, 0x05, (byte)0xF0, 0x18, 0x12, 0x04};
+        Chip8 chip = new Chip8(false);
+        chip.init();
+        chip.cargarJuego(ImagenRom.crear(rom));
+
+        Contador contador = new Contador();
+        controlador = new ControladorChip8(chip);
+        controlador.agregarOyente(contador);
+
+        controlador.iniciar();
+        controlador.pausar();
+        while(controlador.getFrames() < 3)
+            controlador.paso();
+
+        List<Boolean> esperados = new ArrayList<>();
+        esperados.add(true);
+        esperados.add(false);
+        assertEquals(esperados, contador.tonos);
+    }
+
+    @Test
+    public void testReposo() throws Exception {
+        // 60FF F015: DT = 255; 1204: ciclo infinito
+        byte rom[] = {0x60, (byte)0xFF, (byte)0xF0, 0x15, 0x12, 0x04};
+        Chip8 chip = new Chip8(false);
+        chip.init();
+        chip.cargarJuego(ImagenRom.crear(rom));
+        Depurador registros = new Depurador(chip);
+
+        controlador = new ControladorChip8(chip);
+        controlador.iniciar();
+        controlador.pausar();
+        controlador.paso();
+        long frames = controlador.getFrames();
+        int delay = registros.leerRegistro(Depurador.REGISTRO_DT);
+        assertTrue(delay > 0);
+
+        // En pausa no avanza nada
+        controlador.setReposo(ControladorChip8.POLITICA_PAUSA);
+        controlador.reanudar();
+        Thread.sleep(100);
+        controlador.pausar();
+        assertEquals(frames, controlador.getFrames());
+        assertEquals(delay, registros.leerRegistro(Depurador.REGISTRO_DT));
+
+        // Solo con timers: el reloj avanza y el programa no
+        controlador.setReposo(ControladorChip8.POLITICA_TIMERS);
+        controlador.reanudar();
+        Thread.sleep(600);
+        controlador.pausar();
+        assertEquals(frames, controlador.getFrames());
+        assertTrue(registros.leerRegistro(Depurador.REGISTRO_DT) < delay);
+
+        controlador.setReposo(ControladorChip8.POLITICA_NORMAL);
+        controlador.reanudar();
+        for(int i = 0; i < 100 && controlador.getFrames() == frames; i++)
+            Thread.sleep(10);
+        assertTrue(controlador.getFrames() > frames);
+        assertTrue(controlador.getNanosReposo() > 0);
+    }
+}
@@ -0,0 +1,144 @@
+package tests.chip8;
+
+import chip8.Chip8;
+import chip8.ConsolaDepurador;
+import chip8.Depurador;
+import chip8.ImagenRom;
+import chip8.NucleoCpu;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class DepuradorTest {
+    // 0x200: V0 = 5; I = 0x300; CALL 0x210; V0 += 1; JP 0x208
+    // 0x210: BCD de V0 en I; V1 += 1; RET
+    private static final int PROGRAMA[] = {
+            0x6005, 0xA300, 0x2210, 0x7001, 0x1208, 0x0000, 0x0000, 0x0000,
+            0xF033, 0x7101, 0x00EE
+    };
+
+    private Chip8 chip;
+    private Depurador depurador;
+
+    @Before
+    public void setUp() throws Exception {
+        byte rom[] = new byte[PROGRAMA.length * 2];
+        for(int i = 0; i < PROGRAMA.length; i++){
+            rom[i * 2] = (byte)(PROGRAMA[i] >> 8);
+            rom[(i * 2) + 1] = (byte)PROGRAMA[i];
+        }
+
+        chip = new Chip8(false);
+        chip.setNucleo(NucleoCpu.crear("switch"));
+        chip.init();
+        chip.cargarJuego(ImagenRom.crear(rom));
+        depurador = new Depurador(chip);
+    }
+
+    @Test
+    public void testPasos() throws Exception {
+        depurador.paso();
+        depurador.paso();
+        assertEquals(0x204, chip.pc);
+
+        // Sobre el CALL: la subrutina completa
+        depurador.pasoSobre();
+        assertEquals(0x206, chip.pc);
+        assertEquals(1, chip.getRegistro(1));
+
+        chip.init();
+        chip.cargarJuego(ImagenRom.crear(new byte[]{0x22, 0x04, 0x12, 0x02, 0x71, 0x01, 0x71, 0x01, 0x00, (byte)0xEE}));
+        depurador.paso();
+        assertEquals(0x204, chip.pc);
+        depurador.pasoFuera();
+        assertEquals(0x202, chip.pc);
+        assertEquals(2, chip.getRegistro(1));
+        assertEquals(Depurador.PARADA_PASO, depurador.getMotivo());
+    }
+
+    @Test
+    public void testPuntosYCondiciones() throws Exception {
+        depurador.agregarPunto(0x212);
+        String parada = depurador.continuar(1000);
+        assertEquals(Depurador.PARADA_PUNTO, depurador.getMotivo());
+        assertEquals(0x212, chip.pc);
+        assertTrue(parada.contains("0x0212"));
+
+        // Continuar desde el punto no se detiene otra vez en el
+        depurador.quitarPunto(0x212);
+        depurador.agregarCondicion(0, "==", 6, -1);
+        depurador.continuar(1000);
+        assertEquals(Depurador.PARADA_CONDICION, depurador.getMotivo());
+        assertEquals(0x208, chip.pc);
+    }
+
+    @Test
+    public void testVigilancias() throws Exception {
+        NucleoCpu motor = chip.getNucleo();
+
+        // El BCD escribe 0x300-0x302; se detiene despues de la escritura
+        depurador.vigilarMemoria(0x301, 0x301, false, true);
+        depurador.pasoSobre();
+        depurador.pasoSobre();
+        depurador.pasoSobre();
+        assertEquals(Depurador.PARADA_ESCRITURA, depurador.getMotivo());
+        assertEquals(0x212, chip.pc);
+        assertEquals(0, chip.leerMemoria(0x301));
+        assertEquals(5, chip.leerMemoria(0x302));
+
+        // El motor instrumentado solo esta puesto mientras se ejecuta
+        assertSame(motor, chip.getNucleo());
+
+        depurador.limpiar();
+        depurador.vigilarI(true, false);
+        chip.init();
+        chip.cargarJuego(ImagenRom.crear(new byte[]{(byte)0xA3, 0x00, 0x60, 0x01, (byte)0xF0, 0x1E}));
+        depurador.continuar(10);
+        assertEquals(Depurador.PARADA_LECTURA, depurador.getMotivo());
+        assertEquals(0x301, chip.getI());
+    }
+
+    @Test
+    public void testVigilanciaSpriteXoChip() throws Exception {
+        // I = 0x300; planos 1 y 2 (F301); DXY0 lee 2 x 32 bytes: 0x300-0x33F
+        byte rom[] = {(byte)0xA3, 0x00, (byte)0xF3, 0x01, (byte)0xD0, 0x00, 0x12, 0x06};
+        chip.init();
+        chip.cargarJuego(ImagenRom.crearXo(rom));
+
+        depurador.vigilarMemoria(0x340, 0x340, true, false);
+        depurador.continuar(10);
+        assertNotEquals(Depurador.PARADA_LECTURA, depurador.getMotivo());
+
+        chip.init();
+        chip.cargarJuego(ImagenRom.crearXo(rom));
+        depurador.limpiar();
+        depurador.vigilarMemoria(0x33F, 0x33F, true, false);
+        depurador.continuar(10);
+        assertEquals(Depurador.PARADA_LECTURA, depurador.getMotivo());
+    }
+
+    @Test
+    public void testConsola() throws Exception {
+        String guion = "b 0x212   # dentro de la subrutina\nc\nregs\nsalir\np\n";
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        new ConsolaDepurador(
+                depurador, new BufferedReader(new StringReader(guion)), new PrintStream(salida, true)
+        ).ejecutar();
+
+        String texto = salida.toString();
+        assertTrue(texto.contains("Punto de parada en 0x0212"));
+        assertTrue(texto.contains("V0=05"));
+        assertEquals(0x212, chip.pc);
+    }
+}
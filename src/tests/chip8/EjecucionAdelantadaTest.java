@@ -0,0 +1,137 @@
+package tests.chip8;
+
+import chip8.BibliotecaRoms;
+import chip8.Chip8;
+import chip8.EjecucionAdelantada;
+import chip8.EstadoChip8;
+import chip8.ImagenRom;
+import chip8.NucleoCpu;
+import chip8.SalidaSonido;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class EjecucionAdelantadaTest {
+
+    private static Chip8 crearChip(ImagenRom imagen, String motor) {
+        Chip8 chip = new Chip8(false);
+        chip.setNucleo(NucleoCpu.crear(motor));
+        chip.init();
+        chip.setSemilla(1);
+        chip.cargarJuego(imagen);
+        return chip;
+    }
+
+    private static EstadoChip8 guardar(Chip8 chip) {
+        EstadoChip8 estado = new EstadoChip8();
+        chip.guardarEstado(estado);
+        return estado;
+    }
+
+    @Test
+    public void testEstadoRealSinCambios() throws Exception {
+        ImagenRom imagen = new BibliotecaRoms().cargar(Paths.get("invaders.c8"));
+        int teclado[] = new int[16];
+
+        for(String motor: new String[]{"referencia", "fusion"}){
+            Chip8 normal = crearChip(imagen, motor);
+            Chip8 adelantado = crearChip(imagen, motor);
+            EjecucionAdelantada ejecucion = new EjecucionAdelantada(adelantado, 4);
+            Chip8 futuro = crearChip(imagen, motor);
+            long pantalla[] = new long[32];
+
+            for(int frame = 0; frame < 1500; frame++){
+                teclado[(frame / 30) % 16] = (frame % 60) < 30 ? 1 : 0;
+                normal.setKeyPad(teclado);
+                normal.emularFrame();
+                ejecucion.emularFrame(teclado);
+                assertEquals(motor + " frame " + frame, normal.hashEstado(), adelantado.hashEstado());
+                assertEquals(normal.getCiclosEjecutados(), adelantado.getCiclosEjecutados());
+
+                // La pantalla presentada es la de 4 frames despues
+                if(frame == 600){
+                    futuro.restaurarEstado(guardar(normal));
+                    for(int i = 0; i < 4; i++)
+                        futuro.emularFrame();
+                    futuro.empaquetarGfx(pantalla);
+                    assertArrayEquals(pantalla, ejecucion.getPantalla());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAltoFuturoNoDetieneLaMaquina() throws Exception {
+        // XO-CHIP: 7001 x 12 y despues 00FD (salir)
+        int palabras[] = new int[13];
+        for(int i = 0; i < 12; i++)
+            palabras[i] = 0x7001;
+        palabras[12] = 0x00FD;
+        byte rom[] = new byte[palabras.length * 2];
+        for(int i = 0; i < palabras.length; i++){
+            rom[i * 2] = (byte)(palabras[i] >> 8);
+            rom[(i * 2) + 1] = (byte)palabras[i];
+        }
+
+        Chip8 chip = new Chip8(false);
+        chip.init();
+        chip.setCiclosPorFrame(2);
+        chip.cargarJuego(ImagenRom.crearXo(rom));
+        EjecucionAdelantada ejecucion = new EjecucionAdelantada(chip, 8);
+
+        int teclado[] = new int[16];
+        for(int frame = 0; frame < 6; frame++){
+            ejecucion.emularFrame(teclado);
+            assertTrue(chip.RUNNING);
+        }
+        assertEquals(12, chip.getRegistro(0));
+        ejecucion.emularFrame(teclado);
+        assertFalse(chip.RUNNING);
+    }
+
+    // Cambios de tono que recibe la salida, sin repeticiones
+    private static List<Boolean> registrarTono(Chip8 chip) {
+        List<Boolean> cambios = new ArrayList<>();
+        chip.setSalidaSonido(activo -> {
+            if(cambios.isEmpty() || cambios.get(cambios.size() - 1) != activo)
+                cambios.add(activo);
+        });
+        return cambios;
+    }
+
+    @Test
+    public void testSonidoSoloDelFrameReal() throws Exception {
+        // V0 cuenta hasta 0x40 y entonces suena (F118 con V1 = 0x30); el
+        // tono se enciende dentro de la ventana del adelanto
+        int palabras[] = {0x6000, 0x7001, 0x3040, 0x1202, 0x6130, 0xF118, 0x1200};
+        byte rom[] = new byte[palabras.length * 2];
+        for(int i = 0; i < palabras.length; i++){
+            rom[i * 2] = (byte)(palabras[i] >> 8);
+            rom[(i * 2) + 1] = (byte)palabras[i];
+        }
+        ImagenRom imagen = ImagenRom.crear(rom);
+
+        Chip8 normal = crearChip(imagen, "referencia");
+        Chip8 adelantado = crearChip(imagen, "referencia");
+        List<Boolean> esperados = registrarTono(normal);
+        List<Boolean> recibidos = registrarTono(adelantado);
+        EjecucionAdelantada ejecucion = new EjecucionAdelantada(adelantado, 8);
+
+        int teclado[] = new int[16];
+        for(int frame = 0; frame < 300; frame++){
+            normal.setKeyPad(teclado);
+            normal.emularFrame();
+            ejecucion.emularFrame(teclado);
+            assertEquals("frame " + frame, esperados, recibidos);
+        }
+        assertTrue(esperados.size() > 2);
+    }
+}
@@ -0,0 +1,142 @@
+package tests.chip8;
+
+import chip8.BibliotecaRoms;
+import chip8.Chip8;
+import chip8.EntornoChip8;
+import chip8.ExtractorRecompensa;
+import chip8.ImagenRom;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class EntornoChip8Test {
+
+    private static ImagenRom rom(int... palabras) throws Exception {
+        byte rom[] = new byte[palabras.length * 2];
+        for(int i = 0; i < palabras.length; i++){
+            rom[i * 2] = (byte)(palabras[i] >> 8);
+            rom[(i * 2) + 1] = (byte)palabras[i];
+        }
+        return ImagenRom.crear(rom);
+    }
+
+    // El episodio termina cuando V1 llega al limite
+    private static ExtractorRecompensa hastaV1(int limite) {
+        ExtractorRecompensa delta = ExtractorRecompensa.deltaRegistro(1);
+        return new ExtractorRecompensa() {
+            @Override
+            public void reiniciar(Chip8 chip) {
+                delta.reiniciar(chip);
+            }
+
+            @Override
+            public float recompensa(Chip8 chip) {
+                return delta.recompensa(chip);
+            }
+
+            @Override
+            public boolean terminado(Chip8 chip) {
+                return chip.getRegistro(1) >= limite;
+            }
+        };
+    }
+
+    @Test
+    public void testPasoYReinicio() throws Exception {
+        // 7101 1200: V1 += 1 cada dos instrucciones, 3 por frame de 6 ciclos
+        EntornoChip8 entorno = new EntornoChip8(rom(0x7101, 0x1200), 2, () -> hastaV1(9), 1);
+        assertEquals(6, entorno.getChip(0).ciclosPorFrame());
+        assertEquals(1, entorno.getEpisodios(0));
+
+        ByteBuffer observacion = ByteBuffer.allocate(EntornoChip8.BYTES_OBSERVACION);
+        int acciones[] = {0x0001, 0x8000};
+        for(int paso = 1; paso <= 2; paso++){
+            entorno.paso(acciones);
+            for(int i = 0; i < 2; i++){
+                assertEquals(3.0f, entorno.getRecompensas().getFloat(i * 4), 0);
+                assertEquals(0, entorno.getTerminados().get(i));
+                assertEquals(3 * paso, entorno.getChip(i).getRegistro(1));
+
+                entorno.getChip(i).escribirPantalla(observacion, 0);
+                for(int b = 0; b < EntornoChip8.BYTES_OBSERVACION; b++)
+                    assertEquals(observacion.get(b), entorno.getObservaciones().get((i * EntornoChip8.BYTES_OBSERVACION) + b));
+            }
+        }
+        assertEquals(1, entorno.getChip(0).key[0]);
+        assertEquals(1, entorno.getChip(1).key[15]);
+
+        // El tercer paso llega a 9: termina y la instancia ya esta reiniciada
+        entorno.paso(acciones);
+        for(int i = 0; i < 2; i++){
+            assertEquals(1, entorno.getTerminados().get(i));
+            assertEquals(3.0f, entorno.getRecompensas().getFloat(i * 4), 0);
+            assertEquals(0, entorno.getChip(i).getRegistro(1));
+            assertEquals(0x200, entorno.getChip(i).pc);
+            assertEquals(2, entorno.getEpisodios(i));
+        }
+        assertEquals(3, entorno.getPasos());
+    }
+
+    @Test
+    public void testReproducible() throws Exception {
+        // C1FF 1200: V1 al azar en cada frame
+        ImagenRom imagen = rom(0xC1FF, 0x1200);
+        EntornoChip8 a = new EntornoChip8(imagen, 4, () -> ExtractorRecompensa.NINGUNO, 7);
+        EntornoChip8 b = new EntornoChip8(imagen, 4, () -> ExtractorRecompensa.NINGUNO, 7);
+
+        int acciones[] = new int[4];
+        boolean distintas = false;
+        for(int paso = 0; paso < 100; paso++){
+            a.paso(acciones);
+            b.paso(acciones);
+            for(int i = 0; i < 4; i++)
+                assertEquals(a.getChip(i).hashEstado(), b.getChip(i).hashEstado());
+            distintas |= a.getChip(0).getRegistro(1) != a.getChip(1).getRegistro(1);
+        }
+
+        // Cada instancia tiene su propia semilla
+        assertTrue(distintas);
+
+        // Y un episodio nuevo no repite el anterior
+        long antes = a.getChip(2).hashEstado();
+        a.reiniciar(2);
+        b.reiniciar(2);
+        a.paso(acciones);
+        b.paso(acciones);
+        assertEquals(a.getChip(2).hashEstado(), b.getChip(2).hashEstado());
+        assertNotEquals(antes, a.getChip(2).hashEstado());
+    }
+
+    @Test
+    public void testIgualQueCargarJuego() throws Exception {
+        // Una instancia corre igual que init + cargarJuego con la misma
+        // semilla, incluida la configuracion de la ROM (BLINKY: conservarI)
+        ImagenRom imagen = new BibliotecaRoms().cargar(Paths.get("BLINKY"));
+        EntornoChip8 entorno = new EntornoChip8(imagen, 1, () -> ExtractorRecompensa.NINGUNO, 3);
+
+        Chip8 directo = new Chip8(false);
+        directo.init();
+        directo.cargarJuego(imagen);
+        directo.setSemilla(3);
+
+        int acciones[] = new int[1];
+        int teclado[] = new int[16];
+        for(int paso = 0; paso < 600; paso++){
+            acciones[0] = (paso % 60) < 30 ? 1 << ((paso / 60) % 16) : 0;
+            for(int tecla = 0; tecla < 16; tecla++)
+                teclado[tecla] = (acciones[0] >> tecla) & 1;
+
+            entorno.paso(acciones);
+            directo.setKeyPad(teclado);
+            directo.emularFrame();
+            assertEquals("paso " + paso, directo.hashEstado(), entorno.getChip(0).hashEstado());
+        }
+    }
+}
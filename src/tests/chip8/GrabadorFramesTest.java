@@ -0,0 +1,115 @@
+package tests.chip8;
+
+import chip8.Chip8;
+import chip8.CodificadorGif;
+import chip8.CodificadorPng;
+import chip8.GrabadorFrames;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class GrabadorFramesTest {
+    private static final int APAGADO = 0x102030;
+    private static final int ENCENDIDO = 0xE0D0C0;
+
+    // Compara cada pixel de la imagen (escalada) con el frame empaquetado
+    private static void compararImagen(long[] filas, BufferedImage imagen, int escala) {
+        assertEquals(64 * escala, imagen.getWidth());
+        assertEquals(32 * escala, imagen.getHeight());
+        for(int y = 0; y < imagen.getHeight(); y++){
+            for(int x = 0; x < imagen.getWidth(); x++){
+                long pixel = (filas[y / escala] >>> (63 - (x / escala))) & 1;
+                int color = imagen.getRGB(x, y) & 0xFFFFFF;
+                assertEquals("pixel " + x + "," + y, pixel == 1 ? ENCENDIDO : APAGADO, color);
+            }
+        }
+    }
+
+    private static void borrar(Path directorio) throws Exception {
+        try(Stream<Path> archivos = Files.list(directorio)){
+            for(Path archivo: (Iterable<Path>)archivos::iterator)
+                Files.delete(archivo);
+        }
+        Files.delete(directorio);
+    }
+
+    @Test
+    public void testPngDelGrabador() throws Exception {
+        Chip8 chip = new Chip8(false);
+        chip.init();
+        chip.setSemilla(1);
+        chip.cargarJuego("invaders.c8");
+        for(int i = 0; i < 200; i++)
+            chip.emularFrame();
+
+        Path directorio = Files.createTempDirectory("grabador");
+        GrabadorFrames grabador = new GrabadorFrames(new CodificadorPng(directorio, 3, APAGADO, ENCENDIDO), 8);
+        assertTrue(grabador.capturar(chip));
+        grabador.cerrar();
+
+        long filas[] = new long[32];
+        chip.empaquetarGfx(filas);
+        BufferedImage imagen = ImageIO.read(directorio.resolve("frame_00000.png").toFile());
+        assertNotNull(imagen);
+        compararImagen(filas, imagen, 3);
+        assertEquals(1, grabador.getCapturados());
+        borrar(directorio);
+    }
+
+    @Test
+    public void testPngRuido() throws Exception {
+        // Pixeles al azar: lo que peor comprime
+        Path directorio = Files.createTempDirectory("png");
+        CodificadorPng png = new CodificadorPng(directorio, 1, APAGADO, ENCENDIDO);
+        Random azar = new Random(3);
+        long filas[] = new long[32];
+        for(int frame = 0; frame < 3; frame++){
+            for(int i = 0; i < 32; i++)
+                filas[i] = azar.nextLong();
+            png.escribir(filas, 0);
+            BufferedImage imagen = ImageIO.read(directorio.resolve(String.format("frame_%05d.png", frame)).toFile());
+            compararImagen(filas, imagen, 1);
+        }
+        png.cerrar();
+        borrar(directorio);
+    }
+
+    @Test
+    public void testGif() throws Exception {
+        Path archivo = Files.createTempFile("grabacion", ".gif");
+        CodificadorGif gif = new CodificadorGif(archivo, 2, APAGADO, ENCENDIDO);
+        long filas[] = new long[32];
+        for(int i = 0; i < 32; i++)
+            filas[i] = 0xF0F0F0F0F0F0F0F0L >>> i;
+
+        // Un frame de 50 ms y otro que lo sigue
+        gif.escribir(filas, 0);
+        long segundo[] = new long[32];
+        segundo[5] = -1L;
+        gif.escribir(segundo, 50000000L);
+        gif.cerrar();
+
+        ImageReader lector = ImageIO.getImageReadersByFormatName("gif").next();
+        try(ImageInputStream entrada = ImageIO.createImageInputStream(archivo.toFile())){
+            lector.setInput(entrada);
+            assertEquals(2, lector.getNumImages(true));
+            compararImagen(filas, lector.read(0), 2);
+            compararImagen(segundo, lector.read(1), 2);
+        }
+        lector.dispose();
+        Files.delete(archivo);
+    }
+}
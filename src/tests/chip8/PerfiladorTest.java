@@ -0,0 +1,95 @@
+package tests.chip8;
+
+import chip8.Chip8;
+import chip8.ImagenRom;
+import chip8.Opcode;
+import chip8.Perfilador;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class PerfiladorTest {
+    private Chip8 chip;
+    private Perfilador perfilador;
+
+    @Before
+    public void setUp() throws Exception {
+        // 0x200: CALL 206 / 0x202: JP 202 / 0x204: -- / 0x206: LD V0 01 / 0x208: RET
+        byte rom[] = {
+                0x22, 0x06, 0x12, 0x02, 0x00, 0x00,
+                0x60, 0x01, 0x00, (byte)0xEE
+        };
+        Path archivo = Files.createTempFile("perfil", ".c8");
+        Files.write(archivo, rom);
+
+        chip = new Chip8(false);
+        chip.init();
+        chip.cargarJuego(archivo.toString());
+        Files.delete(archivo);
+
+        perfilador = new Perfilador();
+        chip.setMonitor(perfilador);
+    }
+
+    @Test
+    public void testConteoPorDireccion() throws Exception {
+        for(int i = 0; i < 5; i++) chip.emularCiclo();
+
+        assertEquals(5, perfilador.getTotalCiclos());
+        assertEquals(1, perfilador.getConteo(0x200));
+        assertEquals(2, perfilador.getConteo(0x202));
+        assertEquals(1, perfilador.getConteo(0x206));
+        assertEquals(0x202, perfilador.direccionesCalientes(1)[0]);
+    }
+
+    @Test
+    public void testPilasColapsadas() throws Exception {
+        for(int i = 0; i < 5; i++) chip.emularCiclo();
+
+        Path archivo = Files.createTempFile("perfil", ".folded");
+        perfilador.escribirPilasColapsadas(archivo);
+        List<String> lineas = Files.readAllLines(archivo);
+        Files.delete(archivo);
+
+        assertTrue(lineas.contains("sub_200 3"));
+        assertTrue(lineas.contains("sub_200;sub_206 2"));
+    }
+
+    @Test
+    public void testMemoriaXoChip() throws Exception {
+        // 0x200: JP FFE / 0xFFE: LD V0 00 / 0x1000: LD V0 01 / 0x1002: JP FFE
+        // En XO-CHIP el programa sigue despues de 0xFFF
+        byte rom[] = new byte[0x1004 - 0x200];
+        rom[0] = 0x1F; rom[1] = (byte)0xFE;
+        rom[0xDFE] = 0x60; rom[0xDFF] = 0x00;
+        rom[0xE00] = 0x60; rom[0xE01] = 0x01;
+        rom[0xE02] = 0x1F; rom[0xE03] = (byte)0xFE;
+
+        Chip8 xo = new Chip8(false);
+        xo.init();
+        xo.cargarJuego(ImagenRom.crearXo(rom));
+        xo.setMonitor(perfilador);
+        for(int i = 0; i < 7; i++) xo.emularCiclo();
+
+        assertEquals(2, perfilador.getConteo(0x1000));
+        assertEquals(2, perfilador.getConteo(0x1002));
+        assertEquals(1, xo.getRegistro(0));
+    }
+
+    @Test
+    public void testDesensamblar() throws Exception {
+        assertEquals("CALL 206", Opcode.desensamblar(0x2206));
+        assertEquals("DRW V1 V2 5", Opcode.desensamblar(0xD125));
+        assertEquals("Fx33", Opcode.identificar(0xF433));
+        assertEquals("UNDEFINED", Opcode.desensamblar(0x8008));
+    }
+}
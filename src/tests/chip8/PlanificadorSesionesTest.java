@@ -0,0 +1,126 @@
+package tests.chip8;
+
+import chip8.Chip8;
+import chip8.ImagenRom;
+import chip8.PlanificadorSesiones;
+import chip8.SesionChip8;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class PlanificadorSesionesTest {
+    private PlanificadorSesiones planificador;
+
+    @After
+    public void tearDown() {
+        if(planificador != null)
+            planificador.detener();
+    }
+
+    private static SesionChip8 crearSesion(int... palabras) throws Exception {
+        byte rom[] = new byte[palabras.length * 2];
+        for(int i = 0; i < palabras.length; i++){
+            rom[i * 2] = (byte)(palabras[i] >> 8);
+            rom[(i * 2) + 1] = (byte)palabras[i];
+        }
+
+        Chip8 chip = new Chip8(false);
+        chip.init();
+        chip.cargarJuego(ImagenRom.crear(rom));
+        return new SesionChip8(chip);
+    }
+
+    // Espera hasta un segundo a que la condicion se cumpla
+    private static boolean esperar(BooleanSupplier condicion) throws InterruptedException {
+        for(int i = 0; i < 200 && !condicion.getAsBoolean(); i++)
+            Thread.sleep(5);
+        return condicion.getAsBoolean();
+    }
+
+    @Test
+    public void testFramesAlRitmoDe60Hz() throws Exception {
+        planificador = new PlanificadorSesiones(2);
+        SesionChip8 sesiones[] = new SesionChip8[8];
+        long inicio = System.nanoTime();
+        for(int i = 0; i < sesiones.length; i++){
+            sesiones[i] = crearSesion(0x1200);
+            planificador.registrar(sesiones[i]);
+        }
+
+        // Cada sesion ejecuta un frame al registrarse y uno cada 1/60 s; los
+        // atrasos solo pueden quitar alguno, nunca adelantarlos
+        Thread.sleep(300);
+        long frames[] = new long[sesiones.length];
+        for(int i = 0; i < sesiones.length; i++)
+            frames[i] = sesiones[i].getFrames();
+        long esperados = 1 + (System.nanoTime() - inicio) / PlanificadorSesiones.NANOS_FRAME;
+
+        for(long total: frames){
+            assertTrue("frames: " + total + " de " + esperados, total >= esperados / 2);
+            assertTrue("frames: " + total + " de " + esperados, total <= esperados + 1);
+        }
+        assertFalse(planificador.isSaturado());
+    }
+
+    @Test
+    public void testPausaYReanudar() throws Exception {
+        planificador = new PlanificadorSesiones(1);
+        SesionChip8 sesion = crearSesion(0x1200);
+        planificador.registrar(sesion);
+        assertTrue(esperar(() -> sesion.getFrames() > 2));
+
+        sesion.pausar();
+        assertTrue(esperar(sesion::isInactiva));
+        long frames = sesion.getFrames();
+        Thread.sleep(100);
+        assertEquals(frames, sesion.getFrames());
+        assertEquals(0, planificador.getSesionesEnCola());
+
+        sesion.reanudar();
+        assertTrue(esperar(() -> sesion.getFrames() > frames + 2));
+    }
+
+    @Test
+    public void testTeclaDespiertaSesion() throws Exception {
+        // F00A: espera una tecla en V0; 1202: ciclo
+        planificador = new PlanificadorSesiones(1);
+        SesionChip8 sesion = crearSesion(0xF00A, 0x1202);
+        planificador.registrar(sesion);
+
+        // Sale de la cola en lugar de ejecutar frames vacios
+        assertTrue(esperar(sesion::isInactiva));
+        long frames = sesion.getFrames();
+        Thread.sleep(100);
+        assertEquals(frames, sesion.getFrames());
+
+        sesion.setTecla(7, true);
+        assertTrue(esperar(() -> sesion.getChip().getRegistro(0) == 7));
+        assertTrue(esperar(() -> sesion.getFrames() > frames + 2));
+        assertFalse(sesion.isTerminada());
+    }
+
+    @Test
+    public void testSaturacion() throws Exception {
+        // Con umbral 0 cualquier atraso satura al planificador
+        planificador = new PlanificadorSesiones(1, 0, TimeUnit.NANOSECONDS);
+        SesionChip8 sesion = crearSesion(0x1200);
+        planificador.registrar(sesion);
+        assertTrue(esperar(planificador::isSaturado));
+
+        try {
+            planificador.registrar(crearSesion(0x1200));
+            fail("Se esperaba RejectedExecutionException");
+        } catch (RejectedExecutionException ex) {
+            assertTrue(planificador.getAtrasoPromedio() > 0);
+        }
+    }
+}
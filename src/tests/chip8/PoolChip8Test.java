@@ -0,0 +1,87 @@
+package tests.chip8;
+
+import chip8.Chip8;
+import chip8.NucleoCpu;
+import chip8.NucleoSwitch;
+import chip8.PoolChip8;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class PoolChip8Test {
+
+    // Combina el hash de cada frame: dos ejecuciones pueden separarse y
+    // volver a coincidir mas adelante
+    private static long ejecutar(Chip8 chip, int frames) {
+        int teclado[] = new int[16];
+        long hash = 0;
+        chip.setSemilla(1);
+        for(int frame = 0; frame < frames; frame++){
+            teclado[(frame / 30) % 16] = (frame % 60) < 30 ? 1 : 0;
+            chip.setKeyPad(teclado);
+            chip.emularFrame();
+            hash = (hash * 31) + chip.hashEstado();
+        }
+        return hash;
+    }
+
+    @Test
+    public void testAciertoYFalloIguales() throws Exception {
+        // BLINKY tiene peculiaridades: un fallo tambien debe recibirlas
+        byte rom[] = Files.readAllBytes(Paths.get("BLINKY"));
+        PoolChip8 pool = new PoolChip8(rom, 1);
+
+        Chip8 acierto = pool.obtener();
+        Chip8 fallo = pool.obtener();
+        assertEquals(1, pool.getAciertos());
+        assertEquals(1, pool.getFallos());
+        assertEquals(acierto.hashEstado(), fallo.hashEstado());
+
+        // Y los dos igual que una maquina cargada con init + cargarJuego
+        Chip8 directo = new Chip8(false);
+        directo.init();
+        directo.cargarJuego(rom);
+        long esperado = ejecutar(directo, 1000);
+        assertEquals(esperado, ejecutar(acierto, 1000));
+        assertEquals(esperado, ejecutar(fallo, 1000));
+
+        // Una maquina usada regresa al estado inicial de la ROM
+        pool.devolver(acierto);
+        pool.devolver(fallo);
+        assertEquals(1, pool.getLibres());
+        assertEquals(1, pool.getDescartados());
+        Chip8 reusada = pool.obtener();
+        assertSame(acierto, reusada);
+        assertEquals(esperado, ejecutar(reusada, 1000));
+    }
+
+    @Test
+    public void testDevolverRestableceAjustes() throws Exception {
+        byte rom[] = Files.readAllBytes(Paths.get("BLINKY"));
+        PoolChip8 pool = new PoolChip8(rom, 1);
+        Chip8 nuevo = new Chip8(false);
+        nuevo.init();
+        nuevo.cargarJuego(rom);
+
+        // Ajustes que no forman parte de la plantilla
+        Chip8 usada = pool.obtener();
+        usada.setCiclosPorFrame(50);
+        usada.setNucleo(NucleoSwitch.INSTANCIA);
+        usada.period = 1;
+        pool.devolver(usada);
+
+        Chip8 reusada = pool.obtener();
+        assertSame(usada, reusada);
+        assertEquals(nuevo.ciclosPorFrame(), reusada.ciclosPorFrame());
+        assertSame(NucleoCpu.REFERENCIA, reusada.getNucleo());
+        assertEquals(3, reusada.period);
+        assertEquals(ejecutar(nuevo, 300), ejecutar(reusada, 300));
+    }
+}
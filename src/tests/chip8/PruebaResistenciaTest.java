@@ -0,0 +1,48 @@
+package tests.chip8;
+
+import chip8.BibliotecaRoms;
+import chip8.PruebaResistencia;
+import chip8.PruebaResistencia.Resultado;
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class PruebaResistenciaTest {
+
+    @Test
+    public void testJsonYComparacion() throws Exception {
+        PruebaResistencia prueba = new PruebaResistencia(0.2, null);
+        Resultado resultado = prueba.ejecutar("invaders.c8", new BibliotecaRoms().cargar(Paths.get("invaders.c8")));
+        assertTrue(resultado.frames > 0);
+        assertTrue(resultado.instrucciones > 0);
+        assertTrue(resultado.p99FrameNs > 0);
+
+        List<Resultado> resultados = Collections.singletonList(resultado);
+        String json = PruebaResistencia.aJson(resultados, 0.2);
+        Map<String, Map<String, Double>> base = PruebaResistencia.leerJson(json);
+        assertEquals(resultado.frames, base.get("invaders.c8").get("frames").longValue());
+
+        // Contra si mismo no hay regresiones
+        Map<String, Double> tolerancias = new HashMap<>();
+        assertTrue(PruebaResistencia.comparar(resultados, base, tolerancias).isEmpty());
+
+        // Una base 10 veces mas rapida si es regresion, salvo con tolerancia total
+        base.get("invaders.c8").put("instruccionesPorSegundo", resultado.getInstruccionesPorSegundo() * 10);
+        List<String> regresiones = PruebaResistencia.comparar(resultados, base, tolerancias);
+        assertEquals(1, regresiones.size());
+        assertTrue(regresiones.get(0).contains("instruccionesPorSegundo"));
+
+        tolerancias.put("instruccionesPorSegundo", 1.0);
+        assertTrue(PruebaResistencia.comparar(resultados, base, tolerancias).isEmpty());
+    }
+}
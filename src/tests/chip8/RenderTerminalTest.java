@@ -0,0 +1,142 @@
+package tests.chip8;
+
+import chip8.RenderTerminal;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class RenderTerminalTest {
+    private static final String ESC = "\u001B";
+    private static final char GLIFOS[] = {' ', '\u2580', '\u2584', '\u2588'};
+
+    private final ByteArrayOutputStream salida = new ByteArrayOutputStream();
+    private final RenderTerminal render = new RenderTerminal(salida);
+
+    private String dibujar(long[] filas) throws Exception {
+        salida.reset();
+        render.dibujar(filas);
+        return new String(salida.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void encender(long[] filas, int x, int y) {
+        filas[y] |= 1L << (63 - x);
+    }
+
+    /*
+    * Terminal minima: aplica a la pantalla de 64x16 celdas lo que escribio
+    * el render (borrar, mover el cursor y glifos que lo avanzan).
+    */
+    private static void aplicar(String texto, char[][] pantalla) {
+        int linea = 0;
+        int columna = 0;
+        for(int i = 0; i < texto.length(); ){
+            if(texto.startsWith(ESC + "[?25l", i)){
+                i += 6;
+            }
+            else if(texto.startsWith(ESC + "[2J", i)){
+                for(char[] fila: pantalla)
+                    Arrays.fill(fila, ' ');
+                i += 4;
+            }
+            else if(texto.startsWith(ESC + "[", i)){
+                int fin = texto.indexOf('H', i);
+                String posicion[] = texto.substring(i + 2, fin).split(";");
+                linea = Integer.parseInt(posicion[0]) - 1;
+                columna = Integer.parseInt(posicion[1]) - 1;
+                i = fin + 1;
+            }
+            else {
+                pantalla[linea][columna++] = texto.charAt(i++);
+            }
+        }
+    }
+
+    private static void comparar(long[] filas, char[][] pantalla) {
+        for(int linea = 0; linea < 16; linea++){
+            for(int x = 0; x < 64; x++){
+                int celda = (int)((filas[linea * 2] >>> (63 - x)) & 1)
+                        | (int)(((filas[(linea * 2) + 1] >>> (63 - x)) & 1) << 1);
+                assertEquals("celda " + x + "," + linea, GLIFOS[celda], pantalla[linea][x]);
+            }
+        }
+    }
+
+    @Test
+    public void testSoloCeldasCambiadas() throws Exception {
+        long filas[] = new long[32];
+
+        // El primer frame borra la pantalla y escribe las 1024 celdas
+        String primero = dibujar(filas);
+        assertTrue(primero.startsWith(ESC + "[?25l" + ESC + "[2J"));
+        assertEquals(1024, primero.chars().filter(c -> c == ' ').count());
+
+        // Sin cambios no se escribe nada
+        assertEquals("", dibujar(filas));
+
+        // Un pixel inferior: una sola celda con su movimiento de cursor
+        encender(filas, 10, 3);
+        assertEquals(ESC + "[2;11H\u2584", dibujar(filas));
+
+        // Celdas contiguas comparten el movimiento de cursor
+        encender(filas, 20, 0);
+        encender(filas, 21, 0);
+        encender(filas, 21, 1);
+        encender(filas, 63, 31);
+        assertEquals(ESC + "[1;21H\u2580\u2588" + ESC + "[16;64H\u2584", dibujar(filas));
+
+        // invalidar() obliga a borrar y redibujar todo
+        render.invalidar();
+        String completo = dibujar(filas);
+        assertTrue(completo.startsWith(ESC + "[?25l" + ESC + "[2J"));
+        char pantalla[][] = new char[16][64];
+        aplicar(completo, pantalla);
+        comparar(filas, pantalla);
+    }
+
+    @Test
+    public void testFramesAlAzar() throws Exception {
+        // Los deltas aplicados en orden reproducen cada frame
+        Random azar = new Random(5);
+        long filas[] = new long[32];
+        char pantalla[][] = new char[16][64];
+
+        for(int frame = 0; frame < 200; frame++){
+            for(int i = 0; i < 1 + azar.nextInt(40); i++)
+                filas[azar.nextInt(32)] ^= 1L << azar.nextInt(64);
+            if(frame % 50 == 49)
+                filas[azar.nextInt(32)] = azar.nextLong();
+
+            aplicar(dibujar(filas), pantalla);
+            comparar(filas, pantalla);
+        }
+    }
+
+    @Test
+    public void testRestaurarTerminal() throws Exception {
+        long filas[] = new long[32];
+        encender(filas, 3, 3);
+        assertTrue(dibujar(filas).startsWith(ESC + "[?25l"));
+
+        // Cursor debajo de las 16 lineas y visible otra vez
+        salida.reset();
+        render.restaurar();
+        assertEquals(ESC + "[17;1H" + ESC + "[?25h",
+                new String(salida.toByteArray(), StandardCharsets.UTF_8));
+
+        // Ya no se dibuja ni se restaura dos veces
+        encender(filas, 10, 10);
+        assertEquals("", dibujar(filas));
+        salida.reset();
+        render.restaurar();
+        assertEquals(0, salida.size());
+    }
+}
@@ -0,0 +1,143 @@
+package tests.chip8;
+
+import chip8.Chip8;
+import chip8.ClienteFrames;
+import chip8.CodecDelta;
+import chip8.ServidorFrames;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class ServidorFramesTest {
+    private Chip8 chip;
+    private ServidorFrames servidor;
+    private ClienteFrames cliente;
+
+    @Before
+    public void setUp() throws Exception {
+        chip = new Chip8(false);
+        chip.init();
+        chip.cargarJuego("invaders.c8");
+
+        servidor = new ServidorFrames(chip);
+        servidor.abrir(0);
+        cliente = new ClienteFrames("localhost", servidor.getPuerto());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cliente.cerrar();
+        servidor.detener();
+    }
+
+    @Test
+    public void testDeltaCompleto() throws Exception {
+        long vacio[] = new long[32];
+        long lleno[] = new long[32];
+        for(int i = 0; i < 32; i++) lleno[i] = 0x5A5A5A5A5A5A5A5AL * (i + 1);
+
+        ByteBuffer buffer = ByteBuffer.allocate(CodecDelta.MAX_DELTA);
+        int largo = CodecDelta.codificar(vacio, lleno, buffer);
+        assertTrue(largo <= CodecDelta.MAX_DELTA);
+
+        buffer.flip();
+        CodecDelta.aplicar(buffer, largo, vacio);
+        assertArrayEquals(lleno, vacio);
+
+        buffer.clear();
+        assertEquals(0, CodecDelta.codificar(lleno, lleno, buffer));
+    }
+
+    @Test
+    public void testDeltaPeorCaso() throws Exception {
+        // Bytes alternados 0xFF / 0x00: sin absorber los huecos serian 128
+        // corridas de un literal, 384 bytes
+        long vacio[] = new long[32];
+        long alternado[] = new long[32];
+        Arrays.fill(alternado, 0xFF00FF00FF00FF00L);
+
+        ByteBuffer buffer = ByteBuffer.allocate(ServidorFrames.ENCABEZADO + CodecDelta.MAX_DELTA);
+        int largo = CodecDelta.codificar(vacio, alternado, buffer);
+        assertTrue(largo <= CodecDelta.MAX_DELTA);
+        buffer.flip();
+        CodecDelta.aplicar(buffer, largo, vacio);
+        assertArrayEquals(alternado, vacio);
+
+        // Un byte de cada dos, tres, cuatro y cinco, mas frames al azar
+        Random azar = new Random(1);
+        for(int prueba = 0; prueba < 2000; prueba++){
+            long anterior[] = new long[32];
+            long actual[] = new long[32];
+            int paso = 2 + (prueba % 4);
+            for(int i = 0; i < CodecDelta.BYTES_FRAME; i++){
+                boolean cambia = prueba < 8 ? (i % paso) == 0 : azar.nextInt(3) == 0;
+                if(cambia)
+                    actual[i >> 3] |= 0x80L << (56 - ((i & 7) << 3));
+            }
+
+            buffer.clear();
+            largo = CodecDelta.codificar(anterior, actual, buffer);
+            assertTrue(largo <= CodecDelta.MAX_DELTA);
+            buffer.flip();
+            CodecDelta.aplicar(buffer, largo, anterior);
+            assertArrayEquals(actual, anterior);
+        }
+    }
+
+    @Test
+    public void testClienteRecibePantalla() throws Exception {
+        long esperado[] = new long[32];
+
+        // El primer frame con contenido llega como delta contra la pantalla vacia
+        for(int i = 0; i < 200; i++){
+            servidor.procesarFrame();
+            Thread.sleep(1);
+        }
+        chip.empaquetarGfx(esperado);
+
+        long recibidos = 0;
+        while(recibidos < servidor.getBytesEnviados()){
+            recibidos += cliente.recibirFrame() + ServidorFrames.ENCABEZADO;
+        }
+        assertArrayEquals(esperado, cliente.frame);
+    }
+
+    @Test
+    public void testTeclasDelCliente() throws Exception {
+        servidor.procesarFrame();
+        cliente.enviarTecla(5, true);
+
+        for(int i = 0; i < 100 && chip.key[5] == 0; i++){
+            Thread.sleep(1);
+            servidor.procesarFrame();
+        }
+        assertEquals(1, chip.key[5]);
+    }
+
+    @Test
+    public void testCuentaClientes() throws Exception {
+        for(int i = 0; i < 100 && servidor.getClientes() == 0; i++){
+            Thread.sleep(1);
+            servidor.procesarFrame();
+        }
+        assertEquals(1, servidor.getClientes());
+
+        // Un cierre del cliente se detecta al leer su canal
+        cliente.cerrar();
+        for(int i = 0; i < 100 && servidor.getClientes() == 1; i++){
+            Thread.sleep(1);
+            servidor.procesarFrame();
+        }
+        assertEquals(0, servidor.getClientes());
+    }
+}
@@ -0,0 +1,102 @@
+package tests.chip8;
+
+import chip8.Chip8;
+import chip8.SesionNetplay;
+import chip8.TransporteSimulado;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class SesionNetplayTest {
+    private static final int FRAMES = 600;
+
+    private byte rom[];
+    private int entradasA[];
+    private int entradasB[];
+
+    @Before
+    public void setUp() throws Exception {
+        rom = Files.readAllBytes(Paths.get("invaders.c8"));
+
+        // Cada jugador cambia de teclas cada 8 frames: disparo y movimiento
+        Random random = new Random(11);
+        int teclas[] = {0, 1 << 4, 1 << 5, 1 << 6, (1 << 4) | (1 << 5)};
+        entradasA = new int[FRAMES];
+        entradasB = new int[FRAMES];
+        for(int frame = 0; frame < FRAMES; frame += 8){
+            int a = teclas[random.nextInt(teclas.length)];
+            int b = teclas[random.nextInt(teclas.length)];
+            for(int i = frame; i < frame + 8; i++){
+                entradasA[i] = a;
+                entradasB[i] = b;
+            }
+        }
+    }
+
+    private Chip8 crearChip() throws Exception {
+        Chip8 chip = new Chip8(false);
+        chip.init();
+        chip.setSemilla(5);
+        chip.cargarJuego(rom);
+        return chip;
+    }
+
+    // Ejecucion sin red con el teclado combinado de los dos jugadores
+    private long hashReferencia() throws Exception {
+        Chip8 chip = crearChip();
+        int teclado[] = new int[16];
+        for(int frame = 0; frame < FRAMES; frame++){
+            int teclas = entradasA[frame] | entradasB[frame];
+            for(int i = 0; i < 16; i++)
+                teclado[i] = (teclas >> i) & 1;
+            chip.setKeyPad(teclado);
+            chip.emularFrame();
+        }
+        return chip.hashEstado();
+    }
+
+    @Test
+    public void testRollbackConLatenciaYPerdida() throws Exception {
+        TransporteSimulado par[] = TransporteSimulado.crearPar(3, 2, 0.2, 1);
+        Chip8 chipA = crearChip();
+        Chip8 chipB = crearChip();
+        SesionNetplay a = new SesionNetplay(chipA, par[0]);
+        SesionNetplay b = new SesionNetplay(chipB, par[1]);
+
+        for(int tick = 0; tick < FRAMES * 10; tick++){
+            if(a.getFrame() < FRAMES) a.avanzar(entradasA[a.getFrame()]);
+            else a.sincronizar();
+
+            if(b.getFrame() < FRAMES) b.avanzar(entradasB[b.getFrame()]);
+            else b.sincronizar();
+
+            par[0].avanzar();
+
+            if(a.getFrame() == FRAMES && b.getFrame() == FRAMES
+                    && a.isConfirmado() && b.isConfirmado())
+                break;
+        }
+
+        assertEquals(FRAMES, a.getFrame());
+        assertEquals(FRAMES, b.getFrame());
+        assertTrue(a.isConfirmado() && b.isConfirmado());
+
+        // Tras confirmar todo, los dos lados llegan al estado sin red
+        long referencia = hashReferencia();
+        assertEquals(referencia, chipA.hashEstado());
+        assertEquals(referencia, chipB.hashEstado());
+
+        assertTrue(par[0].getPerdidos() > 0);
+        assertTrue(a.getRollbacks() > 0);
+        assertTrue(a.getProfundidadMaxima() <= SesionNetplay.MAX_ROLLBACK + 1);
+    }
+}
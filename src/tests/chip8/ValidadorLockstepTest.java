@@ -0,0 +1,99 @@
+package tests.chip8;
+
+import chip8.Chip8;
+import chip8.NucleoCpu;
+import chip8.NucleoFusion;
+import chip8.ValidadorLockstep;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class ValidadorLockstepTest {
+    private Chip8 referencia;
+
+    @Before
+    public void setUp() throws Exception {
+        referencia = new Chip8(false);
+        referencia.init();
+        referencia.setSemilla(1);
+        referencia.cargarJuego("invaders.c8");
+    }
+
+    @Test
+    public void testSwitchIgualAReferencia() throws Exception {
+        Chip8 rapido = referencia.fork();
+        rapido.setNucleo(NucleoCpu.crear("switch"));
+        ValidadorLockstep validador = new ValidadorLockstep(referencia, rapido, 256);
+
+        int teclado[] = new int[16];
+        for(int frame = 0; frame < 3000; frame++){
+            teclado[(frame / 30) % 16] = (frame % 60) < 30 ? 1 : 0;
+            assertNull(validador.ejecutarFrame(teclado));
+        }
+        assertEquals(referencia.hashEstado(), rapido.hashEstado());
+    }
+
+    @Test
+    public void testFusionIgualAReferencia() throws Exception {
+        // El motor con bloques va primero: el decide el tamano de cada paso
+        NucleoFusion fusion = new NucleoFusion();
+        Chip8 rapido = referencia.fork();
+        rapido.setNucleo(fusion);
+        ValidadorLockstep validador = new ValidadorLockstep(rapido, referencia, 256);
+
+        int teclado[] = new int[16];
+        for(int frame = 0; frame < 3000; frame++){
+            teclado[(frame / 30) % 16] = (frame % 60) < 30 ? 1 : 0;
+            assertNull(validador.ejecutarFrame(teclado));
+        }
+        assertEquals(referencia.hashEstado(), rapido.hashEstado());
+        assertTrue(fusion.getInstruccionesFusionadas() > 0);
+    }
+
+    @Test
+    public void testPrimeraInstruccionDistinta() throws Exception {
+        // Motor con la variante de FX65 que no incrementa I
+        NucleoCpu variante = (chip, opcode) -> {
+            int indice = chip.getI();
+            NucleoCpu.REFERENCIA.ejecutar(chip, opcode);
+            if(opcode.header == 0xF && opcode._byte == 0x65)
+                chip.setI(indice);
+        };
+
+        Chip8 probado = referencia.fork();
+        probado.setNucleo(variante);
+        ValidadorLockstep validador = new ValidadorLockstep(referencia, probado, 1000);
+
+        ValidadorLockstep.Divergencia divergencia = null;
+        int teclado[] = new int[16];
+        for(int frame = 0; frame < 3000 && divergencia == null; frame++){
+            teclado[(frame / 30) % 16] = (frame % 60) < 30 ? 1 : 0;
+            divergencia = validador.ejecutarFrame(teclado);
+        }
+
+        assertNotNull(divergencia);
+        assertEquals(0xF065, divergencia.opcode & 0xF0FF);
+        assertEquals(divergencia.pc + 2, referencia.pc);
+        assertTrue(divergencia.detalle, divergencia.detalle.startsWith("I "));
+    }
+
+    @Test
+    public void testOpcode8XYFIndefinido() throws Exception {
+        // 8XYF no existe: ningun motor debe caerse, solo contarlo
+        byte rom[] = {0x60, 0x01, (byte)0x81, 0x0F};
+        for(String nombre : new String[]{"referencia", "switch", "fusion"}){
+            Chip8 chip = new Chip8(false);
+            chip.init();
+            chip.cargarJuego(rom);
+            chip.setNucleo(NucleoCpu.crear(nombre));
+            chip.emularFrame();
+            assertEquals(nombre, chip.ciclosPorFrame() - 1, chip.getOpcodesIndefinidos());
+            assertEquals(nombre, 0x202, chip.pc);
+        }
+    }
+}
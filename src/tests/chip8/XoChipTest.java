@@ -0,0 +1,187 @@
+package tests.chip8;
+
+import chip8.Chip8;
+import chip8.EstadoXoChip;
+import chip8.ImagenRom;
+import chip8.NucleoCpu;
+import chip8.NucleoXoChip;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Creado por luismario
+ * Fecha: 18/10/26.
+ */
+public class XoChipTest {
+
+    private static byte[] rom(int... palabras) {
+        byte rom[] = new byte[palabras.length * 2];
+        for(int i = 0; i < palabras.length; i++){
+            rom[i * 2] = (byte)(palabras[i] >> 8);
+            rom[(i * 2) + 1] = (byte)palabras[i];
+        }
+        return rom;
+    }
+
+    private static Chip8 crearChip(int... palabras) throws Exception {
+        Chip8 chip = new Chip8(false);
+        chip.init();
+        chip.cargarJuego(ImagenRom.crearXo(rom(palabras)));
+        return chip;
+    }
+
+    private static void ejecutar(Chip8 chip, int instrucciones) {
+        for(int i = 0; i < instrucciones; i++)
+            chip.emularCiclo();
+    }
+
+    // Pixel (x, y) de 128x64 del plano dado, segun empaquetarPantalla
+    private static int pixel(long[] pantalla, int plano, int x, int y) {
+        long palabra = pantalla[(plano * EstadoXoChip.ALTO * 2) + (y * 2) + (x / 64)];
+        return (int)(palabra >>> (63 - (x % 64))) & 1;
+    }
+
+    @Test
+    public void testDibujoEnAltaResolucion() throws Exception {
+        // 00FF; I = sprite; V0 = 124, V1 = 63; DXY1 dos veces (cruza la
+        // palabra y da la vuelta en x); 00C1 baja una fila (y 63 sale)
+        Chip8 chip = crearChip(
+                0x00FF, 0xA20E, 0x607C, 0x613F, 0xD011, 0xD011, 0x00C1, 0xFF00
+        );
+        long pantalla[] = new long[EstadoXoChip.TAM_PANTALLA];
+
+        ejecutar(chip, 5);
+        assertTrue(chip.getEstadoXo().isHires());
+        assertEquals(EstadoXoChip.TAM_PANTALLA, chip.empaquetarPantalla(pantalla));
+        for(int x = 124; x < 132; x++)
+            assertEquals(1, pixel(pantalla, 0, x % 128, 63));
+        assertEquals(0, pixel(pantalla, 0, 4, 63));
+        assertEquals(0, pixel(pantalla, 1, 124, 63));
+        assertEquals(0, chip.getRegistro(0xF));
+
+        // El segundo dibujo borra lo mismo y marca la colision
+        ejecutar(chip, 1);
+        assertEquals(1, chip.getRegistro(0xF));
+        chip.empaquetarPantalla(pantalla);
+        assertEquals(0, pixel(pantalla, 0, 124, 63));
+
+        chip.init();
+        chip.cargarJuego(ImagenRom.crearXo(rom(0x00FF, 0xA20C, 0x6000, 0x6100, 0xD011, 0x00C1, 0xFF00)));
+        ejecutar(chip, 6);
+        chip.empaquetarPantalla(pantalla);
+        assertEquals(0, pixel(pantalla, 0, 0, 0));
+        assertEquals(1, pixel(pantalla, 0, 0, 1));
+    }
+
+    @Test
+    public void testBajaResolucionEscalada() throws Exception {
+        // Un pixel en (1, 1) de 64x32 ocupa 2x2 en la pantalla de 128x64
+        Chip8 chip = crearChip(0xA208, 0x6001, 0x6101, 0xD011, 0x8000);
+        long pantalla[] = new long[EstadoXoChip.TAM_PANTALLA];
+
+        ejecutar(chip, 4);
+        chip.empaquetarPantalla(pantalla);
+        assertEquals(1, pixel(pantalla, 0, 2, 2));
+        assertEquals(1, pixel(pantalla, 0, 3, 3));
+        assertEquals(0, pixel(pantalla, 0, 4, 2));
+        assertEquals(1, chip.getPixel(1, 1));
+    }
+
+    @Test
+    public void testPlanos() throws Exception {
+        // F201: solo el plano 2; F301: los dos, el sprite del plano 2 sigue
+        // al del plano 1 en memoria
+        Chip8 chip = crearChip(
+                0xF201, 0xA210, 0x6000, 0xD001, 0xF301, 0x6108, 0xD101, 0x1000,
+                0xF0FF
+        );
+        long pantalla[] = new long[EstadoXoChip.TAM_PANTALLA];
+
+        ejecutar(chip, 7);
+        chip.empaquetarPantalla(pantalla);
+        assertEquals(0, pixel(pantalla, 0, 0, 0));
+        assertEquals(1, pixel(pantalla, 1, 0, 0));
+        assertEquals(1, pixel(pantalla, 0, 16, 0));
+        assertEquals(0, pixel(pantalla, 0, 24, 0));
+        assertEquals(1, pixel(pantalla, 1, 24, 0));
+    }
+
+    @Test
+    public void testMemoriaLarga() throws Exception {
+        // F000 0x1234; V0..V2 = 1, 2, 3; 5022 los guarda; V0..V2 = 0;
+        // 5203 los lee al reves
+        Chip8 chip = crearChip(
+                0xF000, 0x1234, 0x6001, 0x6102, 0x6203, 0x5022,
+                0x6000, 0x6100, 0x6200, 0x5203
+        );
+
+        ejecutar(chip, 6);
+        assertEquals(0x1234, chip.getI());
+        assertEquals(2, chip.leerMemoria(0x1235));
+        assertEquals(3, chip.leerMemoria(0x1236));
+
+        ejecutar(chip, 3);
+        assertEquals(1, chip.getRegistro(2));
+        assertEquals(3, chip.getRegistro(0));
+        assertEquals(0x1234, chip.getI());
+        assertEquals(1, chip.getPaginasPropias());
+    }
+
+    @Test
+    public void testMemoriaLargaDaLaVuelta() throws Exception {
+        // F000 0xFFFE; V0..V3 = 1..4; 5032 cruza de 0xFFFF a 0x0000;
+        // V0..V3 = 0; 5033 los vuelve a leer
+        Chip8 chip = crearChip(
+                0xF000, 0xFFFE, 0x6001, 0x6102, 0x6203, 0x6304, 0x5032,
+                0x6000, 0x6100, 0x6200, 0x6300, 0x5033
+        );
+
+        ejecutar(chip, 11);
+        assertEquals(2, chip.leerMemoria(0xFFFF));
+        assertEquals(3, chip.leerMemoria(0x0000));
+        for(int i = 0; i < 4; i++)
+            assertEquals(i + 1, chip.getRegistro(i));
+        assertEquals(0xFFFE, chip.getI());
+    }
+
+    @Test
+    public void testSaltoSobreF000() throws Exception {
+        // 3000 salta el F000 NNNN completo (4 bytes)
+        Chip8 chip = crearChip(0x3000, 0xF000, 0x1234, 0x6101);
+
+        ejecutar(chip, 1);
+        assertEquals(0x206, chip.pc);
+        ejecutar(chip, 1);
+        assertEquals(1, chip.getRegistro(1));
+        assertEquals(0, chip.getI());
+    }
+
+    @Test
+    public void testForkYModo() throws Exception {
+        Chip8 chip = crearChip(
+                0x00FF, 0xC0FF, 0xC1FF, 0xA200, 0xD018, 0x00FB, 0x7001, 0x1202
+        );
+        chip.setSemilla(7);
+        ejecutar(chip, 50);
+
+        Chip8 copia = chip.fork();
+        assertTrue(copia.isXo());
+        assertEquals(chip.hashEstado(), copia.hashEstado());
+        ejecutar(chip, 100);
+        ejecutar(copia, 100);
+        assertEquals(chip.hashEstado(), copia.hashEstado());
+
+        // Una imagen CHIP-8 regresa al motor anterior y a 64x32
+        NucleoCpu motor = NucleoCpu.crear("switch");
+        Chip8 otro = new Chip8(false);
+        otro.setNucleo(motor);
+        otro.init();
+        otro.cargarJuego(ImagenRom.crearXo(rom(0x1200)));
+        assertSame(NucleoXoChip.INSTANCIA, otro.getNucleo());
+        otro.cargarJuego(ImagenRom.crear(rom(0x1200)));
+        assertFalse(otro.isXo());
+        assertSame(motor, otro.getNucleo());
+        assertEquals(32, otro.empaquetarPantalla(new long[EstadoXoChip.TAM_PANTALLA]));
+    }
+}